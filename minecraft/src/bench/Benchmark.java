@@ -0,0 +1,47 @@
+package bench;
+
+/**
+ * Operation measured by the BenchmarkRunner. It is prepared once for every pair of seed and size with setUp() and
+ * then run() is called again and again while it is measured.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public abstract class Benchmark {
+
+	/**
+	 * Name of the benchmark
+	 */
+	private String name;
+
+	/**
+	 * Constructor
+	 * @param name name of the benchmark
+	 */
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return name of the benchmark
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * It prepares the benchmark for a seed and a size. It is not measured. By default it does nothing.
+	 * @param seed seed of the world
+	 * @param size size of the world
+	 * @throws Exception if the benchmark can not be prepared
+	 */
+	public void setUp(long seed, int size) throws Exception {
+	}
+
+	/**
+	 * It runs the measured operation once.
+	 * @return result of the operation, so that it can not be optimised away
+	 * @throws Exception if the operation fails
+	 */
+	public abstract Object run() throws Exception;
+}
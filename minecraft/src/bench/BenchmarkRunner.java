@@ -0,0 +1,332 @@
+package bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * It measures benchmarks for every combination of seeds and sizes, in the way of JMH: some warmup iterations that are
+ * not measured, then some measured iterations of a fixed time each. The standard output is silenced while a benchmark
+ * is prepared or run, since the generation of a world prints its progress.
+ * When the allocation profile is enabled, it also reports the bytes allocated by the thread of the benchmark and the
+ * garbage collections done while it was measured.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * Number of warmup iterations
+	 */
+	private int warmupIterations = 3;
+	/**
+	 * Number of measured iterations
+	 */
+	private int iterations = 5;
+	/**
+	 * Minimum time of an iteration, in milliseconds. An iteration runs at least one operation.
+	 */
+	private long iterationTime = 1000;
+	/**
+	 * If the allocations and garbage collections are reported
+	 */
+	private boolean profileGc = false;
+	/**
+	 * Last result of a benchmark, kept so that the operations can not be optimised away
+	 */
+	private volatile Object sink;
+
+	/**
+	 * Result of a benchmark for a seed and a size.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	public static class Result {
+		/**
+		 * Name of the benchmark
+		 */
+		private String name;
+		/**
+		 * Seed used
+		 */
+		private long seed;
+		/**
+		 * Size used
+		 */
+		private int size;
+		/**
+		 * Mean time per operation, in nanoseconds
+		 */
+		private double nanosPerOp;
+		/**
+		 * Standard deviation of the time per operation between iterations, in nanoseconds
+		 */
+		private double error;
+		/**
+		 * Bytes allocated per operation, or -1 if not measured
+		 */
+		private double bytesPerOp;
+		/**
+		 * Garbage collections while measuring, or -1 if not measured
+		 */
+		private long gcCount;
+		/**
+		 * Time spent collecting garbage while measuring, in milliseconds, or -1 if not measured
+		 */
+		private long gcTime;
+
+		/**
+		 * Trivial getter
+		 * @return name of the benchmark
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return seed used
+		 */
+		public long getSeed() {
+			return this.seed;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return size used
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return mean time per operation, in nanoseconds
+		 */
+		public double getNanosPerOp() {
+			return this.nanosPerOp;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return standard deviation of the time per operation between iterations, in nanoseconds
+		 */
+		public double getError() {
+			return this.error;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return bytes allocated per operation, or -1 if not measured
+		 */
+		public double getBytesPerOp() {
+			return this.bytesPerOp;
+		}
+
+		/**
+		 * It returns the allocation rate while measuring.
+		 * @return megabytes allocated per second, or -1 if not measured
+		 */
+		public double getAllocationRate() {
+			if (this.bytesPerOp < 0) return -1;
+			return this.bytesPerOp / this.nanosPerOp * 1e9 / (1024 * 1024);
+		}
+
+		/**
+		 * Trivial getter
+		 * @return garbage collections while measuring, or -1 if not measured
+		 */
+		public long getGcCount() {
+			return this.gcCount;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return time spent collecting garbage while measuring, in milliseconds, or -1 if not measured
+		 */
+		public long getGcTime() {
+			return this.gcTime;
+		}
+
+		@Override
+		public String toString() {
+			String s = String.format("%-24s %8d %6d %16.1f +- %12.1f ns/op", this.name, this.seed, this.size, this.nanosPerOp, this.error);
+			if (this.bytesPerOp >= 0) {
+				s += String.format(" %14.1f B/op %10.1f MB/s %5d gc %6d ms", this.bytesPerOp, getAllocationRate(), this.gcCount, this.gcTime);
+			}
+			return s;
+		}
+	}
+
+	/**
+	 * Trivial setter
+	 * @param warmupIterations number of warmup iterations
+	 */
+	public void setWarmupIterations(int warmupIterations) {
+		this.warmupIterations = warmupIterations;
+	}
+
+	/**
+	 * Trivial setter
+	 * @param iterations number of measured iterations, at least one
+	 */
+	public void setIterations(int iterations) {
+		this.iterations = Math.max(1, iterations);
+	}
+
+	/**
+	 * Trivial setter
+	 * @param iterationTime minimum time of an iteration, in milliseconds
+	 */
+	public void setIterationTime(long iterationTime) {
+		this.iterationTime = iterationTime;
+	}
+
+	/**
+	 * Trivial setter
+	 * @param profileGc if the allocations and garbage collections are reported
+	 */
+	public void setProfileGc(boolean profileGc) {
+		this.profileGc = profileGc;
+	}
+
+	/**
+	 * It runs every benchmark with every seed and size and prints the results as they are measured.
+	 * @param benchmarks benchmarks to run
+	 * @param seeds seeds to use
+	 * @param sizes sizes to use
+	 * @param out stream for the results
+	 * @return results, in the order they were measured
+	 * @throws Exception if a benchmark fails
+	 */
+	public List<Result> run(List<Benchmark> benchmarks, long[] seeds, int[] sizes, PrintStream out) throws Exception {
+		List<Result> results = new ArrayList<Result>();
+		for (Benchmark b : benchmarks) {
+			for (long seed : seeds) {
+				for (int size : sizes) {
+					Result r = run(b, seed, size);
+					out.println(r);
+					out.flush();
+					results.add(r);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * It measures a benchmark for a seed and a size.
+	 * @param b benchmark
+	 * @param seed seed to use
+	 * @param size size to use
+	 * @return result of the benchmark
+	 * @throws Exception if the benchmark fails
+	 */
+	public Result run(Benchmark b, long seed, int size) throws Exception {
+		PrintStream stdout = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int c) {
+			}
+
+			@Override
+			public void write(byte[] buf, int off, int len) {
+			}
+		}));
+		try {
+			b.setUp(seed, size);
+			for (int i = 0; i < this.warmupIterations; i++) iteration(b);
+			com.sun.management.ThreadMXBean threads = threadBean();
+			long threadId = Thread.currentThread().getId();
+			long bytes = (threads != null) ? threads.getThreadAllocatedBytes(threadId) : 0;
+			long gcCount = gcCount();
+			long gcTime = gcTime();
+			double[] nanos = new double[this.iterations];
+			long totalOps = 0;
+			long totalNanos = 0;
+			for (int i = 0; i < this.iterations; i++) {
+				long[] it = iteration(b);
+				nanos[i] = (double) it[1] / it[0];
+				totalOps += it[0];
+				totalNanos += it[1];
+			}
+			Result r = new Result();
+			r.name = b.getName();
+			r.seed = seed;
+			r.size = size;
+			r.nanosPerOp = (double) totalNanos / totalOps;
+			double variance = 0;
+			for (double n : nanos) variance += (n - r.nanosPerOp) * (n - r.nanosPerOp);
+			r.error = Math.sqrt(variance / nanos.length);
+			r.bytesPerOp = -1;
+			r.gcCount = -1;
+			r.gcTime = -1;
+			if (this.profileGc) {
+				if (threads != null) r.bytesPerOp = (double) (threads.getThreadAllocatedBytes(threadId) - bytes) / totalOps;
+				r.gcCount = gcCount() - gcCount;
+				r.gcTime = gcTime() - gcTime;
+			}
+			return r;
+		}
+		finally {
+			System.setOut(stdout);
+		}
+	}
+
+	/**
+	 * It runs the operation of a benchmark until the time of an iteration has passed.
+	 * @param b benchmark
+	 * @return number of operations run and time spent, in nanoseconds
+	 * @throws Exception if the benchmark fails
+	 */
+	private long[] iteration(Benchmark b) throws Exception {
+		long limit = this.iterationTime * 1000000L;
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			this.sink = b.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < limit);
+		return new long[] { ops, elapsed };
+	}
+
+	/**
+	 * It returns the bean that measures the allocations of every thread, if this virtual machine has one.
+	 * @return bean that measures the allocations, or null if it is not available
+	 */
+	static com.sun.management.ThreadMXBean threadBean() {
+		try {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if (!bean.isThreadAllocatedMemorySupported()) return null;
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return bean;
+		} catch (ClassCastException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * It returns the garbage collections done since the virtual machine started.
+	 * @return number of collections
+	 */
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	/**
+	 * It returns the time spent collecting garbage since the virtual machine started.
+	 * @return time in milliseconds
+	 */
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+}
@@ -0,0 +1,724 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import model.Block;
+import model.BlockFactory;
+import model.BlockWorld;
+import model.CommandBatch;
+import model.Inventory;
+import model.InventoryView;
+import model.ItemStack;
+import model.Location;
+import model.Material;
+import model.Neighborhood;
+import model.NeighbourhoodRenderer;
+import model.ViewTracker;
+import model.World;
+import model.entities.Animal;
+import model.entities.LivingEntity;
+import model.entities.Player;
+import model.event.WorldEvent;
+import model.event.WorldEventBus;
+import model.event.WorldEventListener;
+import model.exceptions.BadLocationException;
+import model.exceptions.StackSizeException;
+import model.persistence.IInventory;
+import model.persistence.InventoryAdapter;
+import model.persistence.PlayerAdapter;
+import model.persistence.WorldAdapter;
+
+/**
+ * Benchmarks of the paths of the game used the most: generation of worlds, lookups of blocks and creatures,
+ * neighbourhoods, commands of the player and the adapter used to save worlds.
+ * Usage (the options follow the ones of JMH):
+ * <pre>
+ * java bench.Benchmarks [-p seed=1,2] [-p size=64,128] [-wi 3] [-i 5] [-r 1000] [-prof gc] [regex]
+ * </pre>
+ * -wi and -i are the number of warmup and measured iterations, -r the time of an iteration in milliseconds, -prof gc
+ * reports the allocations and garbage collections, and only the benchmarks whose name contains the regex are run.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class Benchmarks {
+
+	/**
+	 * Number of random locations visited by the lookups
+	 */
+	private static final int LOCATIONS = 1024;
+	/**
+	 * Number of moves of the batches executed by BlockWorld.executeBatch64
+	 */
+	private static final int BATCH = 64;
+	/**
+	 * Number of stacks of the inventory of the player in the benchmarks of the inventory
+	 */
+	private static final int INVENTORY = 32;
+	/**
+	 * Materials, as Material.values() copies them every time
+	 */
+	private static final Material[] MATERIALS = Material.values();
+
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private Benchmarks() {
+	}
+
+	/**
+	 * Benchmark over a world that is not modified. The world and some random locations in it are created in setUp(),
+	 * and the world is reused by the next benchmark with the same seed and size.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private abstract static class WorldBenchmark extends Benchmark {
+		/**
+		 * Last world created
+		 */
+		private static World cached;
+		/**
+		 * World used
+		 */
+		protected World world;
+		/**
+		 * Random locations of the world, from y=0 to y=Location.UPPER_Y_VALUE
+		 */
+		protected Location[] locations;
+		/**
+		 * Next location to use
+		 */
+		protected int next;
+
+		/**
+		 * Constructor
+		 * @param name name of the benchmark
+		 */
+		WorldBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(long seed, int size) throws Exception {
+			if (cached == null || cached.getSeed() != seed || cached.getSize() != size) {
+				cached = null;
+				cached = new World(seed, size, "Bench", "Steve");
+			}
+			this.world = cached;
+			this.locations = randomLocations(this.world, new Random(seed), 1);
+			this.next = 0;
+		}
+
+		/**
+		 * It returns the next location to use.
+		 * @return location
+		 */
+		protected Location nextLocation() {
+			Location l = this.locations[this.next];
+			this.next = (this.next + 1) & (LOCATIONS - 1);
+			return l;
+		}
+	}
+
+	/**
+	 * Benchmark over random locations on the surface of a world that is not modified, where the player usually is.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private abstract static class SurfaceBenchmark extends WorldBenchmark {
+		/**
+		 * Constructor
+		 * @param name name of the benchmark
+		 */
+		SurfaceBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(long seed, int size) throws Exception {
+			super.setUp(seed, size);
+			for (int i = 0; i < LOCATIONS; i++) {
+				Location l = this.world.getHighestLocationAt(this.locations[i]);
+				l.setY(Math.min(l.getY() + 1, Location.UPPER_Y_VALUE));
+				this.locations[i] = l;
+			}
+		}
+	}
+
+	/**
+	 * Benchmark of the changes of a world: a block is added above the surface of a random column and destroyed again,
+	 * so every run publishes two events to the bus of the world if it has subscribers. Every benchmark creates its own
+	 * world and subscribes to its bus in subscribe().
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private abstract static class MutationBenchmark extends Benchmark {
+		/**
+		 * World changed
+		 */
+		protected World world;
+		/**
+		 * Free locations above the surface
+		 */
+		private Location[] locations;
+		/**
+		 * Block added and destroyed
+		 */
+		private Block block;
+		/**
+		 * Next location to use
+		 */
+		private int next;
+
+		/**
+		 * Constructor
+		 * @param name name of the benchmark
+		 */
+		MutationBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(long seed, int size) throws Exception {
+			this.world = World.headless(seed, size, "Bench", "Steve", new Random(seed));
+			this.locations = randomLocations(this.world, new Random(seed), 1);
+			Location player = this.world.getPlayer().getLocation();
+			for (int i = 0; i < LOCATIONS; i++) {
+				Location l = this.world.getHighestLocationAt(this.locations[i]);
+				l.setY(Math.min(l.getY() + 1, Location.UPPER_Y_VALUE));
+				if (l.equals(player)) l.setY(Location.UPPER_Y_VALUE);
+				this.locations[i] = l;
+			}
+			this.block = BlockFactory.createBlock(Material.STONE);
+			this.next = 0;
+			subscribe();
+		}
+
+		/**
+		 * It subscribes to the bus of the world, as the benchmark needs.
+		 */
+		protected abstract void subscribe();
+
+		@Override
+		public Object run() throws Exception {
+			Location l = this.locations[this.next];
+			this.next = (this.next + 1) & (LOCATIONS - 1);
+			this.world.addBlock(l, this.block);
+			this.world.destroyBlockAt(l);
+			return l;
+		}
+	}
+
+	/**
+	 * Subscriber that counts the events it receives.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private static final class EventCounter implements WorldEventListener {
+		/**
+		 * Number of events received
+		 */
+		private long events;
+
+		@Override
+		public void onEvent(WorldEvent e) {
+			this.events++;
+		}
+	}
+
+	/**
+	 * It returns the neighbourhood of a location as World.getNeighbourhoodString() did before NeighbourhoodRenderer:
+	 * concatenating strings and looking up every location several times through Location objects and copies of the
+	 * blocks. It is the reference of the benchmarks of the renderer.
+	 * @param w world
+	 * @param loc location of the world
+	 * @return string representing the neighbourhood
+	 * @throws BadLocationException if the location does not belong to the world
+	 */
+	static String legacyNeighbourhoodString(World w, Location loc) throws BadLocationException {
+		String s = "";
+		for (int z = -1; z <= 1; z++) {
+			for (int y = 1; y >= -1; y--) {
+				for (int x = -1; x <= 1; x++) {
+					Location l = new Location(w, x + loc.getX(), y + loc.getY(), z + loc.getZ());
+					if (!loc.isAdjacent(l) && !(x == 0 && y == 0 && z == 0)) s += "X";
+					else if (w.getPlayer().getLocation().equals(l)) s += "P";
+					else if (w.getItemsAt(l) == null) {
+						if (w.getCreatureAt(l) == null) {
+							if (w.getBlockAt(l) == null) s += ".";
+							else s += w.getBlockAt(l).getType().getSymbol();
+						}
+						else s += w.getCreatureAt(l).getSymbol();
+					}
+					else if (w.getItemsAt(l).getType().isBlock()) s += Character.toUpperCase(w.getItemsAt(l).getType().getSymbol());
+					else s += w.getItemsAt(l).getType().getSymbol();
+				}
+				s += " ";
+			}
+			s += "\n";
+		}
+		return s;
+	}
+
+	/**
+	 * It creates random locations inside a world.
+	 * @param w world
+	 * @param rng generator of random numbers
+	 * @param step the coordinates are multiples of this value from the lowest corner of the world
+	 * @return LOCATIONS random locations
+	 */
+	private static Location[] randomLocations(World w, Random rng, int step) {
+		int size = w.getSize();
+		int negative = (size % 2 == 0) ? -(size / 2 - 1) : -(size / 2);
+		int cells = (size + step - 1) / step;
+		int levels = ((int) Location.UPPER_Y_VALUE + step) / step;
+		Location[] locations = new Location[LOCATIONS];
+		for (int i = 0; i < LOCATIONS; i++) {
+			locations[i] = new Location(w, negative + rng.nextInt(cells) * step, rng.nextInt(levels) * step, negative + rng.nextInt(cells) * step);
+		}
+		return locations;
+	}
+
+	/**
+	 * It creates the benchmarks of the suite.
+	 * @return benchmarks
+	 */
+	public static List<Benchmark> suite() {
+		List<Benchmark> suite = new ArrayList<Benchmark>();
+		suite.add(new Benchmark("World.new") {
+			private long seed;
+			private int size;
+
+			@Override
+			public void setUp(long seed, int size) {
+				this.seed = seed;
+				this.size = size;
+			}
+
+			@Override
+			public Object run() {
+				return new World(this.seed, this.size, "Bench", "Steve");
+			}
+		});
+		suite.add(new WorldBenchmark("World.getBlockAt") {
+			@Override
+			public Object run() throws BadLocationException {
+				return this.world.getBlockAt(nextLocation());
+			}
+		});
+		suite.add(new WorldBenchmark("World.isFree") {
+			@Override
+			public Object run() throws BadLocationException {
+				return this.world.isFree(nextLocation());
+			}
+		});
+		suite.add(new WorldBenchmark("World.getCreatureAt") {
+			@Override
+			public Object run() throws BadLocationException {
+				return this.world.getCreatureAt(nextLocation());
+			}
+		});
+		suite.add(new WorldBenchmark("Location.hashMapGet") {
+			private Map<Location, Location> map;
+			private Location[] probes;
+
+			@Override
+			public void setUp(long seed, int size) throws Exception {
+				super.setUp(seed, size);
+				this.map = new HashMap<Location, Location>();
+				this.probes = new Location[this.locations.length];
+				for (int i = 0; i < this.locations.length; i++) {
+					this.map.put(this.locations[i], this.locations[i]);
+					this.probes[i] = new Location(this.locations[i]);
+				}
+			}
+
+			@Override
+			public Object run() {
+				Location l = this.probes[this.next];
+				nextLocation();
+				return this.map.get(l);
+			}
+		});
+		suite.add(new WorldBenchmark("Location.getNeighborhood") {
+			@Override
+			public Object run() {
+				return nextLocation().getNeighborhood();
+			}
+		});
+		suite.add(new WorldBenchmark("Location.isAdjacent") {
+			@Override
+			public Object run() {
+				Location l = nextLocation();
+				return l.isAdjacent(this.locations[this.next]);
+			}
+		});
+		suite.add(new WorldBenchmark("Neighborhood.forEach") {
+			private int count;
+			private Neighborhood.Visitor counter = new Neighborhood.Visitor() {
+				@Override
+				public boolean visit(int x, int y, int z) {
+					count++;
+					return true;
+				}
+			};
+
+			@Override
+			public Object run() {
+				Location l = nextLocation();
+				this.count = 0;
+				Neighborhood.forEach(this.world, (int) l.getX(), (int) l.getY(), (int) l.getZ(), this.counter);
+				return this.count;
+			}
+		});
+		suite.add(new WorldBenchmark("World.getNearbyCreatures") {
+			@Override
+			public Object run() throws BadLocationException {
+				return this.world.getNearbyCreatures(nextLocation());
+			}
+		});
+		suite.add(new WorldBenchmark("World.getNearbyCreatures.crowded") {
+			@Override
+			public void setUp(long seed, int size) throws Exception {
+				this.world = new World(seed, size, "Crowded", "Steve");
+				this.locations = randomLocations(this.world, new Random(seed), 1);
+				for (int i = 0; i < LOCATIONS; i++) {
+					Location l = this.locations[i];
+					this.locations[i] = new Location(this.world, l.getX(), Location.UPPER_Y_VALUE - 1, l.getZ());
+					for (int n = 0; n < Neighborhood.SIZE; n += 2) {
+						Location c = new Location(this.world, l.getX() + Neighborhood.dx(n), Location.UPPER_Y_VALUE - 1 + Neighborhood.dy(n), l.getZ() + Neighborhood.dz(n));
+						if (Location.check(c) && c.isFree()) this.world.addCreature(new Animal(c, 10));
+					}
+				}
+				this.next = 0;
+			}
+
+			@Override
+			public Object run() throws BadLocationException {
+				return this.world.getNearbyCreatures(nextLocation());
+			}
+		});
+		suite.add(new SurfaceBenchmark("World.getNeighbourhoodString.legacy") {
+			@Override
+			public Object run() throws BadLocationException {
+				return legacyNeighbourhoodString(this.world, nextLocation());
+			}
+		});
+		suite.add(new SurfaceBenchmark("World.getNeighbourhoodString") {
+			@Override
+			public Object run() throws BadLocationException {
+				return this.world.getNeighbourhoodString(nextLocation());
+			}
+		});
+		suite.add(new SurfaceBenchmark("NeighbourhoodRenderer.render1") {
+			private NeighbourhoodRenderer renderer = new NeighbourhoodRenderer(1);
+
+			@Override
+			public Object run() {
+				Location l = nextLocation();
+				return this.renderer.render(this.world, (int) l.getX(), (int) l.getY(), (int) l.getZ()).getView();
+			}
+		});
+		suite.add(new SurfaceBenchmark("NeighbourhoodRenderer.render3") {
+			private NeighbourhoodRenderer renderer = new NeighbourhoodRenderer(3);
+
+			@Override
+			public Object run() {
+				Location l = nextLocation();
+				return this.renderer.render(this.world, (int) l.getX(), (int) l.getY(), (int) l.getZ()).getView();
+			}
+		});
+		suite.add(new SurfaceBenchmark("ViewTracker.update3") {
+			private ViewTracker tracker;
+			private int step;
+
+			@Override
+			public void setUp(long seed, int size) throws Exception {
+				super.setUp(seed, size);
+				if (this.tracker != null) this.tracker.close();
+				this.tracker = new ViewTracker(this.world, 3);
+			}
+
+			@Override
+			public Object run() {
+				// a walk of 7 steps along 'x' and back, as a player that moves between two views
+				Location l = this.locations[0];
+				int dx = this.step++ % 14;
+				if (dx > 7) dx = 14 - dx;
+				return this.tracker.update((int) l.getX() + dx, (int) l.getY(), (int) l.getZ());
+			}
+		});
+		suite.add(new MutationBenchmark("WorldEventBus.noBus") {
+			@Override
+			protected void subscribe() {
+			}
+		});
+		suite.add(new MutationBenchmark("WorldEventBus.noSubscribers") {
+			@Override
+			protected void subscribe() {
+				EventCounter counter = new EventCounter();
+				this.world.getEventBus().subscribe(counter);
+				this.world.getEventBus().unsubscribe(counter);
+			}
+		});
+		suite.add(new MutationBenchmark("WorldEventBus.sync") {
+			@Override
+			protected void subscribe() {
+				this.world.getEventBus().subscribe(new EventCounter());
+			}
+		});
+		suite.add(new MutationBenchmark("WorldEventBus.async") {
+			private WorldEventBus.Subscription subscription;
+
+			@Override
+			protected void subscribe() {
+				if (this.subscription != null) this.subscription.close();
+				this.subscription = this.world.getEventBus().subscribeAsync(new EventCounter());
+			}
+		});
+		suite.add(new WorldBenchmark("WorldAdapter.getMapBlock") {
+			private WorldAdapter adapter;
+
+			@Override
+			public void setUp(long seed, int size) throws Exception {
+				super.setUp(seed, size);
+				this.adapter = new WorldAdapter(this.world);
+				this.locations = randomLocations(this.world, new Random(seed), 16);
+			}
+
+			@Override
+			public Object run() {
+				return this.adapter.getMapBlock(nextLocation());
+			}
+		});
+		suite.add(new PlayerBenchmark("BlockWorld.movePlayer") {
+			@Override
+			public Object run() throws Exception {
+				heal();
+				try {
+					this.game.movePlayer(this.player, this.moves[this.next], this.moves[this.next + 1], this.moves[this.next + 2]);
+				} catch (BadLocationException e) {
+					// occupied or outside the world, the player stays
+				}
+				this.next = (this.next + 3) % this.moves.length;
+				return this.player.getLocation();
+			}
+		});
+		suite.add(new PlayerBenchmark("BlockWorld.executeBatch64") {
+			private CommandBatch[] batches = new CommandBatch[LOCATIONS / BATCH];
+			private byte[] status = new byte[BATCH];
+
+			@Override
+			public void setUp(long seed, int size) {
+				super.setUp(seed, size);
+				for (int b = 0; b < this.batches.length; b++) {
+					this.batches[b] = new CommandBatch(BATCH);
+					for (int i = 3 * b * BATCH; i < 3 * (b + 1) * BATCH; i += 3)
+						this.batches[b].move(this.moves[i], this.moves[i + 1], this.moves[i + 2]);
+				}
+			}
+
+			@Override
+			public Object run() {
+				heal();
+				int done = this.game.executeBatch(this.player, this.batches[this.next], this.status);
+				this.next = (this.next + 1) % this.batches.length;
+				return done;
+			}
+		});
+		suite.add(new InventoryBenchmark("PlayerAdapter.new") {
+			@Override
+			public Object run() {
+				return count(new PlayerAdapter(this.player).getInventory());
+			}
+		});
+		suite.add(new InventoryBenchmark("Player.getInventoryView") {
+			@Override
+			public Object run() {
+				return count(new InventoryAdapter(this.player.getInventoryView()));
+			}
+		});
+		suite.add(new InventoryBenchmark("Inventory.first") {
+			@Override
+			public Object run() {
+				InventoryView inventory = this.player.getInventoryView();
+				int n = 0;
+				for (Material m : MATERIALS) n += inventory.first(m);
+				return n;
+			}
+		});
+		suite.add(new Benchmark("Inventory.addItem.merge") {
+			private Inventory inventory;
+			private int next;
+
+			@Override
+			public void setUp(long seed, int size) {
+				this.inventory = new Inventory();
+				this.inventory.setAutoMerge(true);
+				this.next = 0;
+			}
+
+			@Override
+			public Object run() throws Exception {
+				this.next = (this.next + 1) % 10;
+				return this.inventory.addItem(new ItemStack(Material.SAND, 1 + this.next));
+			}
+		});
+		suite.add(new PlayerBenchmark("BlockWorld.useItem") {
+			@Override
+			public Object run() throws Exception {
+				heal();
+				int x = this.moves[this.next];
+				int y = this.moves[this.next + 1];
+				int z = this.moves[this.next + 2];
+				this.next = (this.next + 3) % this.moves.length;
+				if (x == 0 && y == 0 && z == 0) z = 1;
+				this.player.orientate(x, y, z);
+				this.game.useItem(this.player, 1);
+				return this.player.getOrientation();
+			}
+		});
+		return suite;
+	}
+
+	/**
+	 * Benchmark of the commands of the player. A new game is created in setUp() and the player follows random moves,
+	 * being healed before every command so that it never dies.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private abstract static class PlayerBenchmark extends Benchmark {
+		/**
+		 * Game
+		 */
+		protected BlockWorld game;
+		/**
+		 * Player of the game
+		 */
+		protected Player player;
+		/**
+		 * Random moves, three values from -1 to 1 each
+		 */
+		protected int[] moves;
+		/**
+		 * Position of the next move
+		 */
+		protected int next;
+
+		/**
+		 * Constructor
+		 * @param name name of the benchmark
+		 */
+		PlayerBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(long seed, int size) {
+			this.game = BlockWorld.getInstance();
+			this.player = this.game.createWorld(seed, size, "Bench", "Steve").getPlayer();
+			Random rng = new Random(seed);
+			this.moves = new int[3 * LOCATIONS];
+			for (int i = 0; i < this.moves.length; i++) this.moves[i] = rng.nextInt(3) - 1;
+			this.next = 0;
+		}
+
+		/**
+		 * It restores the health and food of the player.
+		 */
+		protected void heal() {
+			this.player.setHealth(LivingEntity.MAX_HEALTH);
+			this.player.setFoodLevel(Player.MAX_FOODLEVEL);
+		}
+	}
+
+	/**
+	 * Benchmark of the inspection of the inventory of a player with INVENTORY stacks of items, as the persistence
+	 * does.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private abstract static class InventoryBenchmark extends PlayerBenchmark {
+		/**
+		 * Constructor
+		 * @param name name of the benchmark
+		 */
+		InventoryBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(long seed, int size) {
+			super.setUp(seed, size);
+			Material[] materials = Material.values();
+			try {
+				for (int i = 0; i < INVENTORY; i++) {
+					Material m = materials[i % materials.length];
+					this.player.addItemsToInventory(new ItemStack(m, (m.isWeapon() || m.isTool()) ? 1 : 1 + i % ItemStack.MAX_STACK_SIZE));
+				}
+			} catch (StackSizeException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * It counts the items of an inventory.
+		 * @param inventory inventory
+		 * @return number of items, including the ones in the hand
+		 */
+		protected static int count(IInventory inventory) {
+			int n = (inventory.inHandItem() != null) ? inventory.inHandItem().getAmount() : 0;
+			for (int i = 0; i < inventory.getSize(); i++) n += inventory.getItem(i).getAmount();
+			return n;
+		}
+	}
+
+	/**
+	 * It parses a list of numbers separated by commas.
+	 * @param s list of numbers
+	 * @return numbers
+	 */
+	private static long[] parseList(String s) {
+		String[] parts = s.split(",");
+		long[] values = new long[parts.length];
+		for (int i = 0; i < parts.length; i++) values[i] = Long.parseLong(parts[i].trim());
+		return values;
+	}
+
+	/**
+	 * It runs the suite with the options given.
+	 * @param args options, see the documentation of the class
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		long[] seeds = { 1 };
+		long[] sizes = { 64, 128 };
+		Pattern filter = null;
+		BenchmarkRunner runner = new BenchmarkRunner();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-p") && i + 1 < args.length) {
+				String p = args[++i];
+				if (p.startsWith("seed=")) seeds = parseList(p.substring(5));
+				else if (p.startsWith("size=")) sizes = parseList(p.substring(5));
+				else throw new IllegalArgumentException("Unknown parameter " + p);
+			}
+			else if (args[i].equals("-wi") && i + 1 < args.length) runner.setWarmupIterations(Integer.parseInt(args[++i]));
+			else if (args[i].equals("-i") && i + 1 < args.length) runner.setIterations(Integer.parseInt(args[++i]));
+			else if (args[i].equals("-r") && i + 1 < args.length) runner.setIterationTime(Long.parseLong(args[++i]));
+			else if (args[i].equals("-prof") && i + 1 < args.length) runner.setProfileGc(args[++i].equals("gc"));
+			else filter = Pattern.compile(args[i]);
+		}
+		int[] intSizes = new int[sizes.length];
+		for (int i = 0; i < sizes.length; i++) intSizes[i] = (int) sizes[i];
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (Benchmark b : suite()) {
+			if (filter == null || filter.matcher(b.getName()).find()) benchmarks.add(b);
+		}
+		System.out.println(String.format("%-24s %8s %6s %16s    %12s", "Benchmark", "seed", "size", "score", "error"));
+		runner.run(benchmarks, seeds, intSizes, System.out);
+	}
+}
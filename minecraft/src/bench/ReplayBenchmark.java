@@ -0,0 +1,321 @@
+package bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import model.BlockWorld;
+import model.Material;
+import model.script.ScriptReader;
+
+/**
+ * Throughput benchmark that replays play scripts (the files read by BlockWorld.playFile()) without printing anything.
+ * The corpus is made of the scripts given, by default the ones of test/files, and of long synthetic scripts that follow
+ * the random walk of Main4_ranking. Every script is replayed several times and it reports the commands per second, the
+ * median and 99th percentile of the time of a command and the bytes allocated per command.
+ * The output of the commands of every replay is checked against the expected output of the script (the '.solution'
+ * file of an '.input' script, the '.sol' file of a '.txt' script, without the lines printed while the world is
+ * generated) and against the output of its first replay, so a faster game can not play differently.
+ * Usage:
+ * <pre>
+ * java bench.ReplayBenchmark [-wi 3] [-i 5] [-synthetic 2] [-moves 2000] [-size 64] [script...]
+ * </pre>
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class ReplayBenchmark {
+
+	/**
+	 * Play script with its expected output.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private static class Script {
+		/**
+		 * Name of the script
+		 */
+		private String name;
+		/**
+		 * Commands of the script
+		 */
+		private String text;
+		/**
+		 * Expected output of the commands of the script, null if it is not known
+		 */
+		private String expected;
+		/**
+		 * Output of the commands in the first replay
+		 */
+		private String first;
+
+		/**
+		 * Constructor
+		 * @param name name of the script
+		 * @param text commands of the script
+		 * @param expected expected output, or null if it is not known
+		 */
+		Script(String name, String text, String expected) {
+			this.name = name;
+			this.text = text;
+			this.expected = expected;
+		}
+	}
+
+	/**
+	 * Measures of one replay of a script.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private static class Replay {
+		/**
+		 * Output printed by the commands
+		 */
+		private String output;
+		/**
+		 * Time of every command, in nanoseconds
+		 */
+		private long[] nanos;
+		/**
+		 * Number of commands executed
+		 */
+		private int commands;
+		/**
+		 * Bytes allocated while executing the commands, or -1 if not measured
+		 */
+		private long bytes;
+	}
+
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private ReplayBenchmark() {
+	}
+
+	/**
+	 * It creates a script that follows the random walk of Main4_ranking: a move in every step and, one time in three,
+	 * a change of orientation, a use of the item in hand and a show. Every 20 steps it selects an item and shows the
+	 * player.
+	 * @param seed seed of the world and of the walk
+	 * @param size size of the world
+	 * @param moves number of steps
+	 * @return commands of the script
+	 */
+	public static String randomWalkScript(long seed, int size, int moves) {
+		Random rng = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append(seed).append(' ').append(size).append(" Walker Random walk ").append(seed).append('\n');
+		for (int i = 0; i < moves; i++) {
+			int x = rng.nextInt(3) - 1;
+			int y = rng.nextInt(3) - 1;
+			int z = rng.nextInt(3) - 1;
+			if (y == 1 && ((x != 0) || (z != 0))) if (rng.nextDouble() > 0.5) y = -rng.nextInt(2);
+			sb.append("move ").append(x).append(' ').append(y).append(' ').append(z).append('\n');
+			if (rng.nextDouble() < 0.33) {
+				x = rng.nextInt(3) - 1;
+				y = rng.nextInt(3) - 1;
+				z = rng.nextInt(3) - 1;
+				if (Math.abs(y) == 1 && rng.nextDouble() > 0.33) y = 0;
+				sb.append("orientate ").append(x).append(' ').append(y).append(' ').append(z).append('\n');
+				sb.append("useItem ").append(rng.nextInt(5) + 1).append('\n');
+				sb.append("show\n");
+			}
+			if (i % 20 == 0) {
+				sb.append("selectItem ").append(rng.nextInt(4)).append('\n');
+				sb.append("show\n");
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * It replays a script with the standard output and error silenced, reading it with ScriptReader as
+	 * BlockWorld.playFile() does and timing every command.
+	 * @param script script to replay
+	 * @return measures of the replay
+	 * @throws IOException if the script can not be read
+	 */
+	private static Replay replay(Script script) throws IOException {
+		PrintStream stdout = System.out;
+		PrintStream stderr = System.err;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+		System.setErr(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int c) {
+			}
+
+			@Override
+			public void write(byte[] buf, int off, int len) {
+			}
+		}));
+		try {
+			Material.setRandomSeed(1L);
+			BlockWorld game = BlockWorld.getInstance();
+			ScriptReader in = new ScriptReader(script.text.getBytes(StandardCharsets.UTF_8));
+			game.startPlay(in);
+			System.out.flush();
+			output.reset();
+			Replay r = new Replay();
+			r.nanos = new long[256];
+			com.sun.management.ThreadMXBean threads = BenchmarkRunner.threadBean();
+			long threadId = Thread.currentThread().getId();
+			long bytes = (threads != null) ? threads.getThreadAllocatedBytes(threadId) : 0;
+			while (true) {
+				long start = System.nanoTime();
+				if (!game.playNextCommand(in)) break;
+				long elapsed = System.nanoTime() - start;
+				if (r.commands == r.nanos.length) r.nanos = Arrays.copyOf(r.nanos, r.nanos.length * 2);
+				r.nanos[r.commands++] = elapsed;
+			}
+			r.bytes = (threads != null) ? threads.getThreadAllocatedBytes(threadId) - bytes : -1;
+			System.out.flush();
+			r.output = new String(output.toByteArray(), StandardCharsets.UTF_8);
+			return r;
+		}
+		finally {
+			System.setOut(stdout);
+			System.setErr(stderr);
+		}
+	}
+
+	/**
+	 * It compares an output with the expected one, line by line, in the way of the tests of playFile(): ignoring the
+	 * spaces around the lines, the empty lines at the end and the space after "world=".
+	 * @param expected expected output
+	 * @param output output to check
+	 * @return number of the first different line starting from 1, or 0 if both are equal
+	 */
+	private static int firstDifference(String expected, String output) {
+		String[] exp = expected.replace("\r", "").replaceAll("\\s+$", "").split("\n");
+		String[] out = output.replace("\r", "").replaceAll("\\s+$", "").split("\n");
+		for (int i = 0; i < Math.max(exp.length, out.length); i++) {
+			if (i >= exp.length || i >= out.length) return i + 1;
+			if (!exp[i].trim().replace("world= ", "world=").equals(out[i].trim().replace("world= ", "world="))) return i + 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * It removes from the output of a game the lines printed while its world was generated. Only the command "show"
+	 * prints to the standard output, and its output starts with the name of the player.
+	 * @param output output of a game
+	 * @return output of the commands of the game
+	 */
+	private static String commandsOutput(String output) {
+		int start = output.startsWith("Name=") ? 0 : output.indexOf("\nName=");
+		if (start < 0) return "";
+		return output.substring(start).replaceAll("^\n", "");
+	}
+
+	/**
+	 * It returns a percentile of some sorted values.
+	 * @param sorted values in ascending order
+	 * @param n number of values
+	 * @param p percentile, from 0 to 1
+	 * @return value of the percentile, or 0 if there are no values
+	 */
+	private static long percentile(long[] sorted, int n, double p) {
+		if (n == 0) return 0;
+		return sorted[Math.max(0, (int) Math.ceil(p * n) - 1)];
+	}
+
+	/**
+	 * It loads a script and its expected output, if there is one.
+	 * @param f file of the script
+	 * @return script
+	 * @throws IOException if the script can not be read
+	 */
+	private static Script load(File f) throws IOException {
+		String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+		String path = f.getPath();
+		File solution = null;
+		if (path.endsWith(".input")) solution = new File(path.substring(0, path.length() - 6) + ".solution");
+		else if (path.endsWith(".txt")) solution = new File(path.substring(0, path.length() - 4) + ".sol");
+		String expected = null;
+		if (solution != null && solution.isFile()) {
+			expected = commandsOutput(new String(Files.readAllBytes(solution.toPath()), StandardCharsets.UTF_8));
+		}
+		return new Script(f.getName(), text, expected);
+	}
+
+	/**
+	 * It replays the corpus and prints the results.
+	 * @param args options, see the documentation of the class
+	 * @throws IOException if a script can not be read
+	 */
+	public static void main(String[] args) throws IOException {
+		int warmup = 3;
+		int iterations = 5;
+		int synthetic = 2;
+		int moves = 2000;
+		int size = 64;
+		List<Script> scripts = new ArrayList<Script>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-wi") && i + 1 < args.length) warmup = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i") && i + 1 < args.length) iterations = Math.max(1, Integer.parseInt(args[++i]));
+			else if (args[i].equals("-synthetic") && i + 1 < args.length) synthetic = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-moves") && i + 1 < args.length) moves = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-size") && i + 1 < args.length) size = Integer.parseInt(args[++i]);
+			else scripts.add(load(new File(args[i])));
+		}
+		if (scripts.isEmpty()) {
+			File[] files = new File("test/files").listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File f : files) {
+					if (f.getName().endsWith(".input") || f.getName().endsWith(".txt")) scripts.add(load(f));
+				}
+			}
+		}
+		for (int i = 1; i <= synthetic; i++) {
+			scripts.add(new Script("randomWalk-" + i, randomWalkScript(i, size, moves), null));
+		}
+
+		boolean failed = false;
+		System.out.println(String.format("%-24s %8s %12s %10s %10s %12s  %s", "Script", "commands", "commands/s", "p50 ns", "p99 ns", "B/command", "output"));
+		for (Script s : scripts) {
+			String check = (s.expected == null) ? "deterministic" : "matches expected";
+			for (int i = 0; i < warmup; i++) {
+				Replay r = replay(s);
+				if (s.first == null) s.first = r.output;
+			}
+			long[] all = new long[0];
+			int commands = 0;
+			long totalNanos = 0;
+			long bytes = 0;
+			for (int i = 0; i < iterations; i++) {
+				Replay r = replay(s);
+				if (s.first == null) s.first = r.output;
+				int line = firstDifference(s.first, r.output);
+				if (line != 0 && check.indexOf("DIFFERS") < 0) {
+					check = "DIFFERS between replays at line " + line;
+					failed = true;
+				}
+				line = (s.expected == null) ? 0 : firstDifference(s.expected, r.output);
+				if (line != 0 && check.indexOf("DIFFERS") < 0) {
+					check = "DIFFERS from expected at line " + line;
+					failed = true;
+				}
+				all = Arrays.copyOf(all, commands + r.commands);
+				System.arraycopy(r.nanos, 0, all, commands, r.commands);
+				commands += r.commands;
+				for (int c = 0; c < r.commands; c++) totalNanos += r.nanos[c];
+				bytes = (r.bytes < 0 || bytes < 0) ? -1 : bytes + r.bytes;
+			}
+			Arrays.sort(all, 0, commands);
+			double perSecond = (totalNanos == 0) ? 0 : commands * 1e9 / totalNanos;
+			double perCommand = (bytes < 0 || commands == 0) ? -1 : (double) bytes / commands;
+			System.out.println(String.format("%-24s %8d %12.0f %10d %10d %12.1f  %s", s.name, commands / iterations, perSecond,
+					percentile(all, commands, 0.5), percentile(all, commands, 0.99), perCommand, check));
+		}
+		if (failed) System.exit(1);
+	}
+}
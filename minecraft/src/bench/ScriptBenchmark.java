@@ -0,0 +1,268 @@
+package bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Scanner;
+
+import model.BlockWorld;
+import model.Material;
+import model.script.ScriptReader;
+import model.script.ScriptWriter;
+
+/**
+ * Benchmark of the reading of play scripts. It writes a long synthetic script (see ReplayBenchmark.randomWalkScript())
+ * as text and compiled to the binary format, and measures:
+ * <ul>
+ * <li>the parse of the script with Scanner, as BlockWorld read the scripts before ScriptReader, with ScriptReader and
+ * with ScriptReader in the binary format, without executing the commands;</li>
+ * <li>the whole game: the text script played command by command with playNextCommand(), and with playFile() in text
+ * and binary, with the output silenced.</li>
+ * </ul>
+ * For every case it reports milliseconds per run, megabytes of script and commands per second and bytes allocated per
+ * command. The commands of the play cases are the ones executed until the player dies, which the playNextCommand() case
+ * counts for the other two; most of the time of those cases is the creation of the world.
+ * Usage:
+ * <pre>
+ * java bench.ScriptBenchmark [-wi 2] [-i 5] [-moves 200000] [-playMoves 20000] [-size 64]
+ * </pre>
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class ScriptBenchmark {
+
+	/**
+	 * Way of reading a script
+	 */
+	private interface Case {
+		/**
+		 * It reads or plays the script once.
+		 * @return number of commands
+		 * @throws IOException if the script can not be read
+		 */
+		int run() throws IOException;
+	}
+
+	/**
+	 * Number of commands executed by the last play with playNextCommand()
+	 */
+	private static int executed;
+
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private ScriptBenchmark() {
+	}
+
+	/**
+	 * It parses a script with Scanner, reading the tokens as BlockWorld did before ScriptReader.
+	 * @param f script
+	 * @return number of commands
+	 * @throws FileNotFoundException if the script can not be opened
+	 */
+	private static int parseScanner(File f) throws FileNotFoundException {
+		int commands = 0;
+		long sum = 0;
+		try (Scanner sc = new Scanner(f)) {
+			sum += sc.nextLong() + sc.nextInt();
+			sc.next();
+			sc.nextLine();
+			while (sc.hasNext()) {
+				String command = sc.next();
+				switch (command) {
+				case "move":
+				case "orientate":
+					sum += sc.nextInt() + sc.nextInt() + sc.nextInt();
+					break;
+				case "useItem":
+				case "selectItem":
+					sum += sc.nextInt();
+					break;
+				case "show":
+					break;
+				default:
+					sc.nextLine();
+					continue;
+				}
+				commands++;
+			}
+		}
+		return (sum == Long.MIN_VALUE) ? -1 : commands;
+	}
+
+	/**
+	 * It parses a script with ScriptReader.
+	 * @param f script, text or binary
+	 * @return number of commands
+	 * @throws IOException if the script can not be read
+	 */
+	private static int parseReader(File f) throws IOException {
+		int commands = 0;
+		long sum = 0;
+		try (ScriptReader in = ScriptReader.open(f)) {
+			in.readHeader();
+			while (in.next()) {
+				sum += in.getArgument(0) + in.getArgument(1) + in.getArgument(2);
+				commands++;
+			}
+		}
+		return (sum == Long.MIN_VALUE) ? -1 : commands;
+	}
+
+	/**
+	 * It plays a script command by command with BlockWorld.playNextCommand(), counting the commands executed.
+	 * @param f script, text or binary
+	 * @return number of commands executed
+	 * @throws IOException if the script can not be read
+	 */
+	private static int playCommands(File f) throws IOException {
+		Material.setRandomSeed(1L);
+		BlockWorld game = BlockWorld.getInstance();
+		int commands = 0;
+		try (ScriptReader in = ScriptReader.open(f)) {
+			game.startPlay(in);
+			while (game.playNextCommand(in)) commands++;
+		}
+		executed = commands;
+		return commands;
+	}
+
+	/**
+	 * It plays a script with BlockWorld.playFile().
+	 * @param f script, text or binary
+	 * @return number of commands executed by the last play with playNextCommand() of the same script
+	 * @throws FileNotFoundException if the script can not be opened
+	 */
+	private static int playFile(File f) throws FileNotFoundException {
+		Material.setRandomSeed(1L);
+		BlockWorld.getInstance().playFile(f.getPath());
+		return executed;
+	}
+
+	/**
+	 * It measures a case and prints its results.
+	 * @param name name of the case
+	 * @param bytes size of the script
+	 * @param c case
+	 * @param warmup warmup iterations
+	 * @param iterations measured iterations
+	 * @throws IOException if the script can not be read
+	 */
+	private static void measure(String name, long bytes, Case c, int warmup, int iterations) throws IOException {
+		PrintStream stdout = System.out;
+		PrintStream stderr = System.err;
+		PrintStream silent = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] buf, int off, int len) {
+			}
+		});
+		com.sun.management.ThreadMXBean threads = BenchmarkRunner.threadBean();
+		long threadId = Thread.currentThread().getId();
+		long nanos = 0;
+		long allocated = 0;
+		long commands = 0;
+		System.setOut(silent);
+		System.setErr(silent);
+		try {
+			for (int i = 0; i < warmup; i++) c.run();
+			for (int i = 0; i < iterations; i++) {
+				long before = (threads != null) ? threads.getThreadAllocatedBytes(threadId) : 0;
+				long start = System.nanoTime();
+				commands += c.run();
+				nanos += System.nanoTime() - start;
+				allocated += (threads != null) ? threads.getThreadAllocatedBytes(threadId) - before : 0;
+			}
+		}
+		finally {
+			System.setOut(stdout);
+			System.setErr(stderr);
+		}
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-24s %10.2f %10.1f %14.0f %12.1f", name, nanos / 1e6 / iterations,
+				bytes * (double) iterations / seconds / 1e6, commands / seconds, (threads != null) ? (double) allocated / commands : -1.0));
+	}
+
+	/**
+	 * It writes a synthetic script as text and compiled to the binary format.
+	 * @param moves number of steps of the random walk
+	 * @param size size of the world
+	 * @return text and binary scripts
+	 * @throws IOException if the scripts can not be written
+	 */
+	private static File[] scripts(int moves, int size) throws IOException {
+		File text = File.createTempFile("script", ".txt");
+		File binary = File.createTempFile("script", ".bws");
+		text.deleteOnExit();
+		binary.deleteOnExit();
+		Files.write(text.toPath(), ReplayBenchmark.randomWalkScript(1, size, moves).getBytes(StandardCharsets.UTF_8));
+		try (ScriptReader in = ScriptReader.open(text); FileOutputStream out = new FileOutputStream(binary)) {
+			ScriptWriter.compile(in, out);
+		}
+		return new File[] { text, binary };
+	}
+
+	/**
+	 * It runs the benchmark and prints the results.
+	 * @param args options, see the documentation of the class
+	 * @throws IOException if the scripts can not be written or read
+	 */
+	public static void main(String[] args) throws IOException {
+		int warmup = 2;
+		int iterations = 5;
+		int moves = 200000;
+		int playMoves = 20000;
+		int size = 64;
+		for (int i = 0; i + 1 < args.length; i++) {
+			if (args[i].equals("-wi")) warmup = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-i")) iterations = Math.max(1, Integer.parseInt(args[++i]));
+			else if (args[i].equals("-moves")) moves = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-playMoves")) playMoves = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-size")) size = Integer.parseInt(args[++i]);
+		}
+
+		final File[] parse = scripts(moves, size);
+		final File[] play = scripts(playMoves, size);
+		System.out.println(String.format("Parse: %d bytes of text, %d bytes of binary; play: %d commands", parse[0].length(),
+				parse[1].length(), parseReader(play[0])));
+		System.out.println(String.format("%-24s %10s %10s %14s %12s", "Case", "ms/run", "MB/s", "commands/s", "B/command"));
+		measure("parse Scanner", parse[0].length(), new Case() {
+			public int run() throws IOException {
+				return parseScanner(parse[0]);
+			}
+		}, warmup, iterations);
+		measure("parse ScriptReader text", parse[0].length(), new Case() {
+			public int run() throws IOException {
+				return parseReader(parse[0]);
+			}
+		}, warmup, iterations);
+		measure("parse ScriptReader bin", parse[1].length(), new Case() {
+			public int run() throws IOException {
+				return parseReader(parse[1]);
+			}
+		}, warmup, iterations);
+		measure("playNextCommand text", play[0].length(), new Case() {
+			public int run() throws IOException {
+				return playCommands(play[0]);
+			}
+		}, warmup, iterations);
+		measure("playFile text", play[0].length(), new Case() {
+			public int run() throws IOException {
+				return playFile(play[0]);
+			}
+		}, warmup, iterations);
+		measure("playFile binary", play[1].length(), new Case() {
+			public int run() throws IOException {
+				return playFile(play[1]);
+			}
+		}, warmup, iterations);
+	}
+}
@@ -0,0 +1,224 @@
+package bench;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import model.session.SessionManager;
+import model.session.SessionServer;
+
+/**
+ * Load generator of SessionServer. It opens idle sessions, which only send their header, and active sessions, which
+ * send one command at a time and wait for its status before sending the next one. It reports the commands per
+ * second of the active sessions and the percentiles of the time between sending a command and receiving its status.
+ * The server is started in the same JVM unless -port is given; -size should be small with many sessions, since every
+ * session has its own world.
+ * Usage:
+ * <pre>
+ * java bench.ServerLoadBenchmark [-idle 10000] [-active 1000] [-size 16] [-threads N] [-warmup 2] [-seconds 10] [-port P]
+ * </pre>
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class ServerLoadBenchmark {
+
+	/**
+	 * Client connection of the load generator
+	 */
+	private static final class Client {
+		/**
+		 * Channel of the connection
+		 */
+		final SocketChannel channel;
+		/**
+		 * True if the client sends commands
+		 */
+		final boolean active;
+		/**
+		 * Bytes received and not processed yet
+		 */
+		final ByteBuffer in = ByteBuffer.allocate(4096);
+		/**
+		 * True when the server has answered the header
+		 */
+		boolean open;
+		/**
+		 * Time when the last command was sent
+		 */
+		long sent;
+
+		/**
+		 * Constructor
+		 * @param channel channel of the connection
+		 * @param active true if the client sends commands
+		 */
+		Client(SocketChannel channel, boolean active) {
+			this.channel = channel;
+			this.active = active;
+		}
+	}
+
+	/**
+	 * Commands sent by the active clients
+	 */
+	private static final byte[][] COMMANDS = {
+			"move 1 0 0\n".getBytes(StandardCharsets.US_ASCII), "move -1 0 0\n".getBytes(StandardCharsets.US_ASCII),
+			"orientate 0 0 1\n".getBytes(StandardCharsets.US_ASCII), "useItem 1\n".getBytes(StandardCharsets.US_ASCII),
+			"move 0 0 1\n".getBytes(StandardCharsets.US_ASCII), "move 0 0 -1\n".getBytes(StandardCharsets.US_ASCII) };
+
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private ServerLoadBenchmark() {
+	}
+
+	/**
+	 * It writes all the bytes to a channel.
+	 * @param channel channel
+	 * @param b bytes
+	 * @throws IOException if the channel fails
+	 */
+	private static void send(SocketChannel channel, byte[] b) throws IOException {
+		ByteBuffer buf = ByteBuffer.wrap(b);
+		while (buf.hasRemaining()) channel.write(buf);
+	}
+
+	/**
+	 * It removes the complete lines received by a client.
+	 * @param c client
+	 * @return number of lines that answer the header or a command
+	 */
+	private static int answers(Client c) {
+		byte[] a = c.in.array();
+		int end = c.in.position();
+		int start = 0;
+		int n = 0;
+		for (int i = 0; i < end; i++) {
+			if (a[i] != '\n') continue;
+			if (a[start] == 's' && i - start >= 7 && (a[start + 1] == 'e' || a[start + 1] == 't')) n++;
+			else if (a[start] == 'e') throw new IllegalStateException(new String(a, start, i - start, StandardCharsets.UTF_8));
+			start = i + 1;
+		}
+		System.arraycopy(a, start, a, 0, end - start);
+		c.in.position(end - start);
+		return n;
+	}
+
+	/**
+	 * It runs the load and prints the results.
+	 * @param args options, see the documentation of the class
+	 * @throws IOException if the connections fail
+	 */
+	public static void main(String[] args) throws IOException {
+		int idle = 10000;
+		int active = 1000;
+		int size = 16;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double warmup = 2;
+		double seconds = 10;
+		int port = -1;
+		for (int i = 0; i + 1 < args.length; i++) {
+			if (args[i].equals("-idle")) idle = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-active")) active = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-size")) size = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-warmup")) warmup = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-seconds")) seconds = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-port")) port = Integer.parseInt(args[++i]);
+		}
+
+		SessionManager manager = null;
+		SessionServer server = null;
+		if (port < 0) {
+			manager = new SessionManager(threads);
+			server = new SessionServer(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			server.start();
+			port = server.getPort();
+		}
+		Runtime rt = Runtime.getRuntime();
+		System.gc();
+		long memory = rt.totalMemory() - rt.freeMemory();
+		Selector selector = Selector.open();
+		Random random = new Random(1);
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+		long start = System.nanoTime();
+		int pending = idle + active;
+		for (int i = 0; i < idle + active; i++) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.socket().setTcpNoDelay(true);
+			send(channel, (i + " " + size + " Player" + i + " World" + i + "\n").getBytes(StandardCharsets.US_ASCII));
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ, new Client(channel, i >= idle));
+		}
+
+		long[] latencies = new long[1 << 16];
+		int count = 0;
+		long commands = 0;
+		long measureStart = Long.MAX_VALUE;
+		long measureEnd = Long.MAX_VALUE;
+		while (true) {
+			selector.select(100);
+			long now = System.nanoTime();
+			if (pending == 0 && measureStart == Long.MAX_VALUE) {
+				System.out.println(String.format("Opened %d sessions in %.1f s", idle + active, (now - start) / 1e9));
+				if (server != null) {
+					System.gc();
+					System.out.println(String.format("Memory per session: %.1f KB",
+							(rt.totalMemory() - rt.freeMemory() - memory) / 1024.0 / (idle + active)));
+				}
+				measureStart = now + (long) (warmup * 1e9);
+				measureEnd = measureStart + (long) (seconds * 1e9);
+				for (SelectionKey key : selector.keys()) {
+					Client c = (Client) key.attachment();
+					if (!c.active) continue;
+					c.sent = System.nanoTime();
+					send(c.channel, COMMANDS[random.nextInt(COMMANDS.length)]);
+				}
+			}
+			if (now >= measureEnd) break;
+			Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				SelectionKey key = it.next();
+				it.remove();
+				Client c = (Client) key.attachment();
+				if (c.channel.read(c.in) < 0) throw new IOException("Connection closed by the server");
+				int n = answers(c);
+				if (n == 0) continue;
+				if (!c.open) {
+					c.open = true;
+					pending--;
+					n--;
+				}
+				if (n == 0 || !c.active) continue;
+				long t = System.nanoTime();
+				if (c.sent >= measureStart && t < measureEnd) {
+					if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+					latencies[count++] = t - c.sent;
+					commands++;
+				}
+				c.sent = t;
+				send(c.channel, COMMANDS[random.nextInt(COMMANDS.length)]);
+			}
+		}
+
+		for (SelectionKey key : selector.keys()) key.channel().close();
+		selector.close();
+		if (server != null) server.close();
+		if (manager != null) manager.close();
+		Arrays.sort(latencies, 0, count);
+		System.out.println(String.format("%d idle and %d active sessions, %d threads: %.0f commands/s", idle, active, threads,
+				commands / seconds));
+		if (count == 0) return;
+		System.out.println(String.format("Latency (us): p50 %.0f, p90 %.0f, p99 %.0f, p99.9 %.0f, max %.0f",
+				latencies[(int) (count * 0.5)] / 1e3, latencies[(int) (count * 0.9)] / 1e3,
+				latencies[(int) (count * 0.99)] / 1e3, latencies[(int) (count * 0.999)] / 1e3, latencies[count - 1] / 1e3));
+	}
+}
@@ -3,22 +3,12 @@
  */
 package mains;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Random;
 import java.util.Scanner;
 import java.util.SortedSet;
 
 
 import model.BlockWorld;
-import model.Location;
 import model.World;
-import model.entities.Creature;
-import model.entities.LivingEntity;
-import model.entities.Player;
-import model.exceptions.BadInventoryPositionException;
-import model.exceptions.BadLocationException;
-import model.exceptions.EntityIsDeadException;
 import model.exceptions.score.EmptyRankingException;
 import model.score.CollectedItemsScore;
 import model.score.MiningScore;
@@ -28,6 +18,7 @@ import model.score.XPScore;
 
 /** This program plays several random games with the parameters provided by the user.
  * At the end of its execution it shows the ranking of scores of all the games played.
+ * Tournament plays the same games in parallel without printing them.
  * 
  * @author Katarzyna Kaczorowska
  *
@@ -47,74 +38,7 @@ public final class Main4_ranking {
 		BlockWorld game = BlockWorld.getInstance();	
 		System.out.println("-> game.createWorld("+seed+","+size+","+worldName+","+playerName+")");
 		World world = game.createWorld(seed, size, worldName, playerName);
-		Random rng = new Random(world.getSeed());
-
-		Player player = world.getPlayer();
-		System.out.println(game.showPlayerInfo(player));
-		int x,y,z;
-		for (int i=0; i<numMovs; i++) // we try to make numMovs movements
-		try {
-			if (player.isDead()) {
-				System.out.flush(); System.err.flush();
-				System.err.println(player.getName()+" has died!!!!!"); System.err.flush();
-				break;
-			}
-			x = rng.nextInt(3) - 1; // generates -1, 0 or 1 randomly
-			y = rng.nextInt(3) - 1; 
-			z = rng.nextInt(3) - 1;
-
-			
-			if (y==1 && ((x!=0) || (z!=0))) if (rng.nextDouble() > 0.5) y = - rng.nextInt(2);
-
-			System.out.println("("+i+") -> game.movePlayer(player, "+x+", "+y+", "+z+")"); System.out.flush();
-			game.movePlayer(player, x,y,z);
-			
-			if (rng.nextDouble() < 0.33) {
-				Collection<Creature> entities = world.getNearbyCreatures(player.getLocation());
-				try  {
-					if (entities.size() > 0) {
-						Iterator<Creature> iterator = entities.iterator();
-						int idx = rng.nextInt(entities.size());
-						LivingEntity entity = null;
-						while (idx-- >= 0) entity = iterator.next();
-						Location entity_loc = entity.getLocation();
-						entity_loc.substract(player.getLocation()); 
-						x = (int)entity_loc.getX();
-						y = (int)entity_loc.getY();
-						z = (int)entity_loc.getZ();
-						System.out.println("("+i+") -> game.orientatePlayer(player, "+x+", "+y+", "+z+")"); System.out.flush();
-						game.orientatePlayer(player, x,y,z);
-					} else { 
-						x = rng.nextInt(3) - 1; 
-						y = rng.nextInt(3) - 1;
-						z = rng.nextInt(3) - 1;
-						
-						if (Math.abs(y)==1 && rng.nextDouble() > 0.33)
-							y = 0;
-						System.out.println("("+i+") -> game.orientatePlayer(player, "+x+", "+y+", "+z+")"); System.out.flush();
-						game.orientatePlayer(player,x, y, z);
-					}
-				} catch(BadLocationException e) { 
-					System.err.println(e.getMessage()); System.err.flush();
-				}
-				int times = rng.nextInt(5)+1;
-				System.out.println("("+i+") -> game.useItem(player, "+times+")"); System.out.flush();
-				game.useItem(player, times); 
-				System.out.println(game.showPlayerInfo(player)); System.out.flush();
-			}
-			if (i % 20 == 0) { 
-				if (player.getInventorySize() > 0) {
-					int pos = rng.nextInt(player.getInventorySize());
-					System.out.println("("+i+") -> player.selectItem("+pos+")"); System.out.flush();
-					player.selectItem(pos);
-				}
-				System.out.println(game.showPlayerInfo(player)); System.out.flush();
-			}
-		} catch (BadLocationException | EntityIsDeadException | BadInventoryPositionException  e) {
-			System.err.println(e.getMessage()); System.err.flush();
-			System.out.println(game.showPlayerInfo(player)); System.out.flush();
-		}
-		System.out.println(game.showPlayerInfo(player));
+		Tournament.randomWalk(game, world, numMovs, System.out, System.err);
 		
 		return world;
 
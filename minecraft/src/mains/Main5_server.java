@@ -0,0 +1,42 @@
+package mains;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Scanner;
+
+import model.session.SessionManager;
+import model.session.SessionServer;
+
+/** This program serves games to the clients that connect to a local port, until a line is read from the standard
+ * input. Every connection sends the header of a game and its commands as in the play scripts (see SessionServer).
+ * Usage: java mains.Main5_server [port [threads]]
+ *
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class Main5_server {
+
+	/**
+	 * Private constructor, this class only has the method main
+	 */
+	private Main5_server() {
+	}
+
+	/**
+	 * It starts the server.
+	 * @param args port, 0 or none for any free port, and number of threads that execute the commands
+	 * @throws IOException if the port can not be used
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		try (SessionManager manager = new SessionManager(threads);
+				SessionServer server = new SessionServer(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+			server.start();
+			System.out.println("Listening on port " + server.getPort() + ", press enter to stop");
+			Scanner sc = new Scanner(System.in);
+			if (sc.hasNextLine()) sc.nextLine();
+		}
+	}
+}
@@ -0,0 +1,506 @@
+package mains;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.BlockWorld;
+import model.Location;
+import model.World;
+import model.entities.Creature;
+import model.entities.LivingEntity;
+import model.entities.Player;
+import model.exceptions.BadInventoryPositionException;
+import model.exceptions.BadLocationException;
+import model.exceptions.EntityIsDeadException;
+import model.exceptions.score.EmptyRankingException;
+import model.score.CollectedItemsScore;
+import model.score.MiningScore;
+import model.score.PlayerMovementScore;
+import model.score.Ranking;
+import model.score.XPScore;
+
+/** Headless version of Main4_ranking that plays the random-walk games of a tournament in parallel, without printing
+ * them, and fills the rankings with the same result as playing them one after another with Main4_ranking.
+ * Every game has its own BlockWorld and its world is generated with World.headless(). The only state shared by
+ * the sequential games is the generator of Material, used to choose the materials of the items of every world: each
+ * game gets a generator that continues the one of the previous game, so the worlds are generated in parallel and
+ * only wait for the previous game when they create their items. The rankings are filled at the end in the order of
+ * the games, because a ranking keeps the first of several equal scores.
+ * Usage: java mains.Tournament [-threads N] [-moves 1000] [-games N -size S]. Without -games the games are read
+ * from the standard input as in Main4_ranking.
+ *
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class Tournament {
+
+	/**
+	 * Game of the tournament and its results
+	 */
+	private static final class Game {
+		/**
+		 * Seed of the world
+		 */
+		final int seed;
+		/**
+		 * Size of the world
+		 */
+		final int size;
+		/**
+		 * Name of the player
+		 */
+		final String playerName;
+		/**
+		 * Name of the world
+		 */
+		final String worldName;
+		/**
+		 * Items score, null until the game is played
+		 */
+		CollectedItemsScore items;
+		/**
+		 * Mining score, null until the game is played
+		 */
+		MiningScore mining;
+		/**
+		 * Movement score, null until the game is played
+		 */
+		PlayerMovementScore movement;
+		/**
+		 * Experience score, null until the game is played
+		 */
+		XPScore xp;
+		/**
+		 * Movements made
+		 */
+		int moves;
+
+		/**
+		 * Constructor
+		 * @param seed seed of the world
+		 * @param size size of the world
+		 * @param playerName name of the player
+		 * @param worldName name of the world
+		 */
+		Game(int seed, int size, String playerName, String worldName) {
+			this.seed = seed;
+			this.size = size;
+			this.playerName = playerName;
+			this.worldName = worldName;
+		}
+	}
+
+	/**
+	 * Generator of the materials of the items of a game that continues the generator of the previous game. It produces
+	 * the same numbers as java.util.Random, whose algorithm it implements, starting from the state in which the
+	 * previous game left it. That state can not be computed in advance, because the numbers a game takes depend on the
+	 * items its world spawns, so the first number waits for the previous game to finish its world. A game only waits
+	 * for the games added before it, which never wait for it, as long as they are started in the order they were added.
+	 */
+	private static final class ChainedRandom extends Random {
+		/**
+		 * Serial version of the class
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * Multiplier of the linear congruential generator of java.util.Random
+		 */
+		private static final long MULTIPLIER = 0x5DEECE66DL;
+		/**
+		 * Addend of the linear congruential generator of java.util.Random
+		 */
+		private static final long ADDEND = 0xBL;
+		/**
+		 * Mask of the 48 bits of the state
+		 */
+		private static final long MASK = (1L << 48) - 1;
+
+		/**
+		 * State left by the previous game
+		 */
+		private final CompletableFuture<Long> previous;
+		/**
+		 * State left by this game, for the next one
+		 */
+		private final CompletableFuture<Long> next;
+		/**
+		 * Current state
+		 */
+		private long state;
+		/**
+		 * True when the state of the previous game has been taken
+		 */
+		private boolean started;
+
+		/**
+		 * Constructor
+		 * @param previous state left by the previous game
+		 * @param next state left by this game
+		 */
+		ChainedRandom(CompletableFuture<Long> previous, CompletableFuture<Long> next) {
+			super(0L);
+			this.previous = previous;
+			this.next = next;
+		}
+
+		/**
+		 * It returns the state a java.util.Random has after setSeed().
+		 * @param seed seed
+		 * @return state
+		 */
+		static long initialState(long seed) {
+			return (seed ^ MULTIPLIER) & MASK;
+		}
+
+		@Override
+		protected int next(int bits) {
+			start();
+			this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+			return (int) (this.state >>> (48 - bits));
+		}
+
+		/**
+		 * It waits for the state of the previous game the first time it is needed.
+		 */
+		private void start() {
+			if (!this.started) {
+				this.state = this.previous.join();
+				this.started = true;
+			}
+		}
+
+		/**
+		 * It gives the state to the next game. It must be called when the world has been generated, even if it fails.
+		 */
+		void finish() {
+			try {
+				start();
+				this.next.complete(this.state);
+			} catch (RuntimeException e) {
+				this.next.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Games of the tournament, in order
+	 */
+	private final List<Game> games;
+	/**
+	 * Number of movements of every game
+	 */
+	private final int numMovs;
+	/**
+	 * Seed of the generator of the materials at the start of the first game
+	 */
+	private final long materialSeed;
+	/**
+	 * Items ranking
+	 */
+	private Ranking<CollectedItemsScore> itemsRanking;
+	/**
+	 * Mining ranking
+	 */
+	private Ranking<MiningScore> miningRanking;
+	/**
+	 * Movement ranking
+	 */
+	private Ranking<PlayerMovementScore> movementRanking;
+	/**
+	 * Experience ranking
+	 */
+	private Ranking<XPScore> xpRanking;
+	/**
+	 * Movements made in all the games
+	 */
+	private long moves;
+
+	/**
+	 * It creates a tournament without games. The generator of the materials starts as the one of Material when the
+	 * program starts, so the tournament matches a run of Main4_ranking.
+	 * @param numMovs number of movements of every game
+	 */
+	public Tournament(int numMovs) {
+		this(numMovs, 1L);
+	}
+
+	/**
+	 * It creates a tournament without games.
+	 * @param numMovs number of movements of every game
+	 * @param materialSeed seed of the generator of the materials at the start of the first game (see Material.setRandomSeed())
+	 */
+	public Tournament(int numMovs, long materialSeed) {
+		this.games = new ArrayList<Game>();
+		this.numMovs = numMovs;
+		this.materialSeed = materialSeed;
+		this.itemsRanking = new Ranking<>();
+		this.miningRanking = new Ranking<>();
+		this.movementRanking = new Ranking<>();
+		this.xpRanking = new Ranking<>();
+	}
+
+	/**
+	 * It adds a game to the tournament.
+	 * @param seed seed to create the world
+	 * @param size world size
+	 * @param playerName name of player
+	 * @param worldName name of the world
+	 */
+	public void addGame(int seed, int size, String playerName, String worldName) {
+		this.games.add(new Game(seed, size, playerName, worldName));
+	}
+
+	/**
+	 * It plays all the games and fills the rankings with their scores, in the order the games were added.
+	 * The games run in a fixed thread pool created here, whose queue starts them in the order they were added. The
+	 * items of every world wait for the world of the previous game (see ChainedRandom), so a pool that started a game
+	 * before an earlier one could keep its threads waiting for games that are not running.
+	 * @param threads number of threads that play the games
+	 * @throws InterruptedException if the thread is interrupted while waiting for the games
+	 */
+	public void play(int threads) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		CompletableFuture<Long> previous = CompletableFuture.completedFuture(ChainedRandom.initialState(this.materialSeed));
+		try {
+			for (final Game g : this.games) {
+				CompletableFuture<Long> next = new CompletableFuture<Long>();
+				final ChainedRandom rng = new ChainedRandom(previous, next);
+				previous = next;
+				results.add(pool.submit(new Runnable() {
+					@Override
+					public void run() {
+						play(g, rng);
+					}
+				}));
+			}
+			for (Future<?> f : results) f.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		for (Game g : this.games) {
+			this.itemsRanking.addScore(g.items);
+			this.miningRanking.addScore(g.mining);
+			this.movementRanking.addScore(g.movement);
+			this.xpRanking.addScore(g.xp);
+			this.moves += g.moves;
+		}
+	}
+
+	/**
+	 * It plays a game without printing it.
+	 * @param g game
+	 * @param rng generator of the materials of the items of its world
+	 */
+	private void play(Game g, ChainedRandom rng) {
+		BlockWorld game = BlockWorld.newInstance(World.QUIET, World.QUIET);
+		World world;
+		try {
+			world = game.createWorld(g.seed, g.size, g.worldName, g.playerName, rng);
+		} finally {
+			rng.finish();
+		}
+		g.moves = randomWalk(game, world, this.numMovs, null, null);
+		g.items = game.getItemsScore();
+		g.mining = game.getMiningScore();
+		g.movement = game.getMovementScore();
+		g.xp = new XPScore(world.getPlayer());
+		g.xp.addScore(g.items);
+		g.xp.addScore(g.mining);
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of games
+	 */
+	public int getGames() {
+		return this.games.size();
+	}
+
+	/**
+	 * Trivial getter
+	 * @return movements made in all the games played
+	 */
+	public long getMoves() {
+		return this.moves;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return items ranking
+	 */
+	public Ranking<CollectedItemsScore> getItemsRanking() {
+		return this.itemsRanking;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return mining ranking
+	 */
+	public Ranking<MiningScore> getMiningRanking() {
+		return this.miningRanking;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return movement ranking
+	 */
+	public Ranking<PlayerMovementScore> getMovementRanking() {
+		return this.movementRanking;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return experience ranking
+	 */
+	public Ranking<XPScore> getXpRanking() {
+		return this.xpRanking;
+	}
+
+	/**
+	 * It plays the random walk of Main4_ranking in a world, printing every step if out is not null.
+	 * @param game game of the world
+	 * @param world world whose player walks
+	 * @param numMovs number of movements to be made
+	 * @param out stream where the steps and the information of the player are printed, or null
+	 * @param err stream where the errors are printed, or null
+	 * @return number of movements made before the player died
+	 */
+	static int randomWalk(BlockWorld game, World world, int numMovs, PrintStream out, PrintStream err) {
+		Random rng = new Random(world.getSeed());
+
+		Player player = world.getPlayer();
+		if (out != null) out.println(game.showPlayerInfo(player));
+		int x,y,z;
+		int moves = 0;
+		for (int i=0; i<numMovs; i++) // we try to make numMovs movements
+		try {
+			if (player.isDead()) {
+				if (out != null) { out.flush(); err.flush(); }
+				if (err != null) { err.println(player.getName()+" has died!!!!!"); err.flush(); }
+				break;
+			}
+			moves++;
+			x = rng.nextInt(3) - 1; // generates -1, 0 or 1 randomly
+			y = rng.nextInt(3) - 1;
+			z = rng.nextInt(3) - 1;
+
+
+			if (y==1 && ((x!=0) || (z!=0))) if (rng.nextDouble() > 0.5) y = - rng.nextInt(2);
+
+			if (out != null) { out.println("("+i+") -> game.movePlayer(player, "+x+", "+y+", "+z+")"); out.flush(); }
+			game.movePlayer(player, x,y,z);
+
+			if (rng.nextDouble() < 0.33) {
+				Collection<Creature> entities = world.getNearbyCreatures(player.getLocation());
+				try  {
+					if (entities.size() > 0) {
+						Iterator<Creature> iterator = entities.iterator();
+						int idx = rng.nextInt(entities.size());
+						LivingEntity entity = null;
+						while (idx-- >= 0) entity = iterator.next();
+						Location entity_loc = entity.getLocation();
+						entity_loc.substract(player.getLocation());
+						x = (int)entity_loc.getX();
+						y = (int)entity_loc.getY();
+						z = (int)entity_loc.getZ();
+						if (out != null) { out.println("("+i+") -> game.orientatePlayer(player, "+x+", "+y+", "+z+")"); out.flush(); }
+						game.orientatePlayer(player, x,y,z);
+					} else {
+						x = rng.nextInt(3) - 1;
+						y = rng.nextInt(3) - 1;
+						z = rng.nextInt(3) - 1;
+
+						if (Math.abs(y)==1 && rng.nextDouble() > 0.33)
+							y = 0;
+						if (out != null) { out.println("("+i+") -> game.orientatePlayer(player, "+x+", "+y+", "+z+")"); out.flush(); }
+						game.orientatePlayer(player,x, y, z);
+					}
+				} catch(BadLocationException e) {
+					if (err != null) { err.println(e.getMessage()); err.flush(); }
+				}
+				int times = rng.nextInt(5)+1;
+				if (out != null) { out.println("("+i+") -> game.useItem(player, "+times+")"); out.flush(); }
+				game.useItem(player, times);
+				if (out != null) { out.println(game.showPlayerInfo(player)); out.flush(); }
+			}
+			if (i % 20 == 0) {
+				if (player.getInventorySize() > 0) {
+					int pos = rng.nextInt(player.getInventorySize());
+					if (out != null) { out.println("("+i+") -> player.selectItem("+pos+")"); out.flush(); }
+					player.selectItem(pos);
+				}
+				if (out != null) { out.println(game.showPlayerInfo(player)); out.flush(); }
+			}
+		} catch (BadLocationException | EntityIsDeadException | BadInventoryPositionException  e) {
+			if (err != null) { err.println(e.getMessage()); err.flush(); }
+			if (out != null) { out.println(game.showPlayerInfo(player)); out.flush(); }
+		}
+		if (out != null) out.println(game.showPlayerInfo(player));
+		return moves;
+	}
+
+	/**
+	 * It plays a tournament and prints its rankings, its winners and its throughput.
+	 * @param args options, see the documentation of the class
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int moves = 1000;
+		int numGames = -1;
+		int size = 32;
+		for (int i = 0; i + 1 < args.length; i++) {
+			if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-moves")) moves = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-games")) numGames = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-size")) size = Integer.parseInt(args[++i]);
+		}
+		Tournament t = new Tournament(moves);
+		if (numGames < 0) {
+			Scanner input = new Scanner(System.in);
+			while (input.hasNextInt()) {
+				int seed = input.nextInt();
+				int s = input.nextInt();
+				String playerName = input.next();
+				String worldName = input.nextLine();
+				t.addGame(seed, s, playerName, worldName);
+			}
+			input.close();
+		}
+		else {
+			for (int i = 1; i <= numGames; i++) t.addGame(i, size, "Player" + i, " World" + i);
+		}
+
+		long start = System.nanoTime();
+		t.play(threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println("Collected items ranking: "+t.getItemsRanking().getSortedRanking());
+		System.out.println("Mining ranking: "+t.getMiningRanking().getSortedRanking());
+		System.out.println("Movement ranking: "+t.getMovementRanking().getSortedRanking());
+		System.out.println("Experience ranking: "+t.getXpRanking().getSortedRanking());
+		try {
+			System.out.println("Collected items winner: "+t.getItemsRanking().getWinner());
+			System.out.println("Mining winner: "+t.getMiningRanking().getWinner());
+			System.out.println("Best mover: "+t.getMovementRanking().getWinner());
+			System.out.println("Most experienced player: "+t.getXpRanking().getWinner());
+		} catch (EmptyRankingException e) {
+			System.err.println(e.getMessage());
+		}
+		System.out.println(String.format("%d games, %d moves in %.2f s with %d threads: %.1f games/s, %.0f moves/s",
+				t.getGames(), t.getMoves(), seconds, threads, t.getGames() / seconds, t.getMoves() / seconds));
+	}
+}
@@ -0,0 +1,190 @@
+package model;
+
+import model.storage.LocationKey;
+
+/**
+ * Immutable position of a block: three integer coordinates without a world. Unlike Location it can not change once
+ * created, so it can be shared and kept as a key without copying it, and its hash code is computed only once.
+ * It is used inside World, BlockWorld and the entities for the positions of blocks, while Location is kept for the
+ * public methods.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class BlockPos implements Comparable<BlockPos> {
+
+	/**
+	 * Distance to the east (positive) or west (negative) from the origin
+	 */
+	private final int x;
+	/**
+	 * Height, from 0 to Location.UPPER_Y_VALUE in a world
+	 */
+	private final int y;
+	/**
+	 * Distance to the south (positive) or north (negative) from the origin
+	 */
+	private final int z;
+	/**
+	 * Hash code, computed in the constructor
+	 */
+	private final int hash;
+
+	/**
+	 * Constructor
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 */
+	public BlockPos(int x, int y, int z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.hash = (31 * (31 * x + y)) + z;
+	}
+
+	/**
+	 * It returns the position of the block that contains a location.
+	 * @param l location
+	 * @return position of the block
+	 */
+	public static BlockPos of(Location l) {
+		return new BlockPos((int) Math.floor(l.getX()), (int) Math.floor(l.getY()), (int) Math.floor(l.getZ()));
+	}
+
+	/**
+	 * It creates a new location of a world in this position.
+	 * @param w world of the location
+	 * @return location
+	 */
+	public Location toLocation(World w) {
+		return new Location(w, this.x, this.y, this.z);
+	}
+
+	/**
+	 * Trivial getter
+	 * @return x coordinate
+	 */
+	public int getX() {
+		return this.x;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return y coordinate
+	 */
+	public int getY() {
+		return this.y;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return z coordinate
+	 */
+	public int getZ() {
+		return this.z;
+	}
+
+	/**
+	 * It returns the position moved by the given amounts.
+	 * @param dx difference in 'x'
+	 * @param dy difference in 'y'
+	 * @param dz difference in 'z'
+	 * @return position (x+dx, y+dy, z+dz)
+	 */
+	public BlockPos offset(int dx, int dy, int dz) {
+		return new BlockPos(this.x + dx, this.y + dy, this.z + dz);
+	}
+
+	/**
+	 * It returns the position moved by another one.
+	 * @param d difference
+	 * @return position (x+d.x, y+d.y, z+d.z)
+	 */
+	public BlockPos offset(BlockPos d) {
+		return offset(d.x, d.y, d.z);
+	}
+
+	/**
+	 * It returns the position just above this one, with no limit of height.
+	 * @return position (x, y+1, z)
+	 */
+	public BlockPos above() {
+		return offset(0, 1, 0);
+	}
+
+	/**
+	 * It returns the position just below this one, with no limit of height.
+	 * @return position (x, y-1, z)
+	 */
+	public BlockPos below() {
+		return offset(0, -1, 0);
+	}
+
+	/**
+	 * It checks if the position is within the limits of a world, as Location.check() does.
+	 * @param w world, null has no limits
+	 * @return true if the position is inside the world
+	 */
+	public boolean check(World w) {
+		return Location.check(w, this.x, this.y, this.z);
+	}
+
+	/**
+	 * It returns the distance to another position.
+	 * @param p position
+	 * @return distance
+	 */
+	public double distance(BlockPos p) {
+		double dx = this.x - p.x;
+		double dy = this.y - p.y;
+		double dz = this.z - p.z;
+		return Math.sqrt(dx*dx + dy*dy + dz*dz);
+	}
+
+	/**
+	 * It returns the key of the position in the maps of World (see LocationKey).
+	 * @return packed key
+	 */
+	public long pack() {
+		return LocationKey.pack(this.x, this.y, this.z);
+	}
+
+	/**
+	 * It checks if the position has the given coordinates.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return true if it is the position (x, y, z)
+	 */
+	public boolean equals(int x, int y, int z) {
+		return this.x == x && this.y == y && this.z == z;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof BlockPos))
+			return false;
+		BlockPos other = (BlockPos) obj;
+		return this.hash == other.hash && equals(other.x, other.y, other.z);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public String toString() {
+		return "BlockPos{x=" + this.x + ",y=" + this.y + ",z=" + this.z + "}";
+	}
+
+	@Override
+	public int compareTo(BlockPos other) {
+		if (this.x != other.x) return (this.x < other.x) ? -1 : 1;
+		if (this.y != other.y) return (this.y < other.y) ? -1 : 1;
+		if (this.z != other.z) return (this.z < other.z) ? -1 : 1;
+		return 0;
+	}
+}
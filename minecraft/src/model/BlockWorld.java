@@ -2,8 +2,13 @@ package model;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.Random;
 
+import model.entities.Creature;
 import model.entities.LivingEntity;
 import model.entities.Monster;
 import model.entities.Player;
@@ -14,9 +19,12 @@ import model.exceptions.WrongMaterialException;
 import model.score.CollectedItemsScore;
 import model.score.MiningScore;
 import model.score.PlayerMovementScore;
+import model.script.ScriptReader;
 
 /**
- * The class BlockWorld represents the whole game and its basic functionality; consequently there will only be a single instance of it. 
+ * The class BlockWorld represents the whole game and its basic functionality. getInstance() returns the single game
+ * played from the console and from files; newInstance() creates independent games, such as the sessions of
+ * model.session.SessionManager, each one with its own world, scores and output.
  * @author Katarzyna Kaczorowska
  *
  */
@@ -37,6 +45,32 @@ public class BlockWorld {
 		 * Instance of PlayerMovementScore
 		 */
 		private PlayerMovementScore movementScore;
+		/**
+		 * Stream where the information of the player is printed, or null to use System.out
+		 */
+		private PrintStream out;
+		/**
+		 * Stream where the errors of the commands are printed, or null to use System.err
+		 */
+		private PrintStream err;
+		/**
+		 * Renderer of the neighbourhood shown by showPlayerInfo(), reused by every call
+		 */
+		private NeighbourhoodRenderer view;
+		/**
+		 * Text built by showPlayerInfo(), reused by every call
+		 */
+		private StringBuilder info;
+		
+		/**
+		 * Tracker of the views printed by showPlayerView(), null until the first one
+		 */
+		private ViewTracker tracker;
+		
+		/**
+		 * Maximum radius of the views of showPlayerView()
+		 */
+		public static final int MAX_VIEW_RADIUS = 16;
 		
 		/**
 		 * It returns a reference to the single instance of this class.
@@ -44,23 +78,39 @@ public class BlockWorld {
 		 */
 		public static BlockWorld getInstance() {
 			if (blockWorld == null) 
-	            blockWorld = new BlockWorld(); 
+	            blockWorld = new BlockWorld(null, null); 
 	  
 	        return blockWorld; 
 		}
 		
+		/**
+		 * It creates a new game, independent of the one returned by getInstance().
+		 * @param out stream where the information of the player is printed, or null to use System.out
+		 * @param err stream where the errors of the commands are printed, or null to use System.err
+		 * @return new game, without world until createWorld() is called
+		 */
+		public static BlockWorld newInstance(PrintStream out, PrintStream err) {
+			return new BlockWorld(out, err);
+		}
+		
 		/**
 		 * Representation of a world in block world
 		 */
 		private World world;
 		
 		/**
-		 * Private default constructor
+		 * Private constructor
+		 * @param out stream where the information of the player is printed, or null to use System.out
+		 * @param err stream where the errors of the commands are printed, or null to use System.err
 		 */
-		private BlockWorld() {
+		private BlockWorld(PrintStream out, PrintStream err) {
 			this.itemsScore = null;
 			this.miningScore = null;
 			this.movementScore = null;
+			this.out = out;
+			this.err = err;
+			this.view = new NeighbourhoodRenderer(1);
+			this.info = new StringBuilder(256);
 		}
 		
 		/**
@@ -73,13 +123,68 @@ public class BlockWorld {
 		 */
 		
 		public World createWorld(long seed, int size, String name, String playerName) {
-			this.world = new World(seed, size, name, playerName);
+			return createWorld(seed, size, name, playerName, false);
+		}
+		
+		/**
+		 * It creates a new world, generated sequentially or lazily (see World), and new scores for its player.
+		 * @param seed seed necessary do generate the world
+		 * @param size size of the world
+		 * @param name name of the world
+		 * @param playerName name of player
+		 * @param lazy true to generate the world lazily
+		 * @return created world
+		 */
+		public World createWorld(long seed, int size, String name, String playerName, boolean lazy) {
+			return startGame(new World(seed, size, name, playerName, lazy), playerName);
+		}
+		
+		/**
+		 * It creates a new world sequentially, without printing the progress of its generation and choosing the
+		 * materials of its items with the given generator (see World.headless()), and new scores for its player.
+		 * @param seed seed necessary do generate the world
+		 * @param size size of the world
+		 * @param name name of the world
+		 * @param playerName name of player
+		 * @param materialRng random generator used to choose the material of the items
+		 * @return created world
+		 */
+		public World createWorld(long seed, int size, String name, String playerName, Random materialRng) {
+			return startGame(World.headless(seed, size, name, playerName, materialRng), playerName);
+		}
+		
+		/**
+		 * It makes a world the world of the game and creates new scores for its player.
+		 * @param w world
+		 * @param playerName name of player
+		 * @return the world
+		 */
+		private World startGame(World w, String playerName) {
+			if(this.tracker!=null) this.tracker.close();
+			this.tracker = null;
+			this.world = w;
 			this.itemsScore = new CollectedItemsScore(playerName);
 			this.miningScore = new MiningScore(playerName);
 			this.movementScore = new PlayerMovementScore(playerName);
 			return this.world;
 		}
 		
+		/**
+		 * It makes a world restored by WorldSnapshot the world of the game, with the scores it had when the snapshot was taken.
+		 * @param w restored world, with its player
+		 * @param items score of the collected items
+		 * @param mining score of the mining
+		 * @param movement score of the movement
+		 * @param previous previous location of the movement score, or null if the player has not moved
+		 */
+		void restoreGame(World w, double items, double mining, double movement, Location previous) {
+			startGame(w, w.getPlayer().getName());
+			if(previous!=null) this.movementScore.score(previous);
+			this.itemsScore.setScoring(items);
+			this.miningScore.setScoring(mining);
+			this.movementScore.setScoring(movement);
+		}
+		
 		/**
 		 * It returns a string with information about the player and what is in his or her adjacent locations. 
 		 * @param p representation of player
@@ -87,17 +192,33 @@ public class BlockWorld {
 		 */
 		
 		public String showPlayerInfo(LivingEntity p) {
-			String s = this.world.getPlayer().toString();
-			s+="\n";
-			try {
-				s += this.world.getNeighbourhoodString(this.world.getPlayer().getLocation());
-				s += "Scores: [items: " + this.itemsScore.getScoring() + ", blocks: " + this.miningScore.getScoring() + ", movements: " + this.movementScore.getScoring() + "]";
-				s+="\n";
-			}
-			catch(BadLocationException ex){
-				System.out.println(ex.getMessage());
+			Player player = this.world.getPlayer();
+			BlockPos position = player.getBlockPos();
+			StringBuilder s = this.info;
+			s.setLength(0);
+			s.append(player.toString()).append('\n');
+			this.view.render(this.world, position.getX(), position.getY(), position.getZ()).appendTo(s);
+			s.append("Scores: [items: ").append(this.itemsScore.getScoring()).append(", blocks: ").append(this.miningScore.getScoring())
+				.append(", movements: ").append(this.movementScore.getScoring()).append("]\n");
+			return s.toString();
+		}
+		
+		/**
+		 * It returns the neighbourhood of the player as it changed since the last call (see ViewTracker): in full the
+		 * first time and when the radius changes, and as the cells that changed otherwise.
+		 * @param radius number of locations from the player to every face of the cube of the view
+		 * @return string with the view
+		 * @throws IllegalArgumentException if the radius is negative or greater than MAX_VIEW_RADIUS
+		 */
+		public String showPlayerView(int radius) {
+			if(radius<0||radius>MAX_VIEW_RADIUS) throw new IllegalArgumentException("Wrong radius of view " + radius);
+			if(this.tracker==null||this.tracker.getRadius()!=radius) {
+				if(this.tracker!=null) this.tracker.close();
+				this.tracker = new ViewTracker(this.world, radius);
 			}
-			return s;
+			StringBuilder s = this.info;
+			s.setLength(0);
+			return this.tracker.update().appendTo(s).toString();
 		}
 		
 		/**
@@ -120,17 +241,21 @@ public class BlockWorld {
 			} catch(BadLocationException e2) {
 				throw e2;
 			}
-			if(p.getLocation().getWorld().getBlockAt(p.getLocation())!=null) {
-				if(p.getLocation().getWorld().getBlockAt(p.getLocation()).getType().getSymbol()=='#') {
-					p.setHealth(p.getHealth()-((LiquidBlock)p.getLocation().getWorld().getBlockAt(p.getLocation())).getDamage());
+			World w = p.getWorld();
+			BlockPos position = p.getBlockPos();
+			Block block = w.getSharedBlockAt(position);
+			if(block!=null) {
+				if(block.getType().getSymbol()=='#') {
+					p.setHealth(p.getHealth()-((LiquidBlock)block).getDamage());
 				}
 			}
 			ItemStack items=null;
 			
-			try {
-				items = this.world.getItemsAt(p.getLocation());
-			} catch (BadLocationException e) {
-				System.out.println(e.getMessage());
+			if(w.equals(this.world)) {
+				items = this.world.getItemsAt(position);
+			}
+			else {
+				out().println("Location doesn't belong to this world, can't find items");
 			}
 			
 			if(items!=null) {
@@ -166,33 +291,37 @@ public class BlockWorld {
 		public void useItem(Player p, int i) throws EntityIsDeadException {
 			try {
 				ItemStack inHand=p.useItemInHand(i);
-				if(Location.check(p.getOrientation())) {
+				World w = p.getWorld();
+				BlockPos target = p.getOrientationPos();
+				if(target.check(w)) {
 					double damage=0.0;
 					if(inHand==null) return;
 					else if(inHand.getType().isBlock()) damage=0.1*i;
 					else if(inHand.getType().isTool()||inHand.getType().isWeapon()) damage=inHand.getType().getValue()*i;
 					
-					if(p.getLocation().getWorld().getBlockAt(p.getOrientation())!=null && p.getLocation().getWorld().getBlockAt(p.getOrientation()) instanceof SolidBlock) {
-							if(((SolidBlock)p.getLocation().getWorld().getBlockAt(p.getOrientation())).breaks(damage)) {
-								this.miningScore.score(p.getLocation().getWorld().getBlockAt(p.getOrientation()));
-								p.getLocation().getWorld().destroyBlockAt(p.getOrientation());
+					Block block = w.getSharedBlockAt(target);
+					Creature creature = null;
+					if(block!=null && block instanceof SolidBlock) {
+							if(((SolidBlock)block).breaks(damage)) {
+								this.miningScore.score(block);
+								w.destroyBlockAt(target.toLocation(w));
 							}
 					}
-					else if(p.getLocation().getWorld().getCreatureAt(p.getOrientation())!=null) {
-						p.getLocation().getWorld().getCreatureAt(p.getOrientation()).damage(damage);
-						if(p.getLocation().getWorld().getCreatureAt(p.getOrientation()).isDead()) {
-							this.world.killCreature(p.getOrientation());
+					else if((creature = w.getCreatureAt(target))!=null) {
+						creature.damage(damage);
+						if(creature.isDead()) {
+							this.world.killCreature(target.toLocation(w));
 						}
-						else if(p.getLocation().getWorld().getCreatureAt(p.getOrientation()) instanceof Monster) {
+						else if(creature instanceof Monster) {
 							p.damage(0.5*i);
 						}
 					}
-					else if(p.getLocation().getWorld().getItemsAt(p.getOrientation())!=null) {
+					else if(w.getItemsAt(target)!=null) {
 						
 					}
 					else {
 						if(inHand.getType().isBlock()) {
-							p.getLocation().getWorld().addBlock(p.getOrientation(), BlockFactory.createBlock(inHand.getType()));
+							w.addBlock(target.toLocation(w), BlockFactory.createBlock(inHand.getType()));
 						}
 					}
 				}
@@ -226,70 +355,215 @@ public class BlockWorld {
 			}
 		}
 		/**
-		 * Executes the commands it reads, line by line, from the Scanner object passed as argument. 
-		 * @param sc scanner, from where commands should be read
-		 */
-		private void play(Scanner sc) {
-				long seed=sc.nextLong();
-				int size=sc.nextInt();
-				String playerName=sc.next();
-				String name=sc.nextLine();
-				
-				this.createWorld(seed, size, name, playerName);
-				if(sc.hasNextLine()) {
-					while(!world.getPlayer().isDead()&&sc.hasNext()) {
-						try {
-							String command = sc.next();
-							switch (command) {
-							case "move":
-								movePlayer(this.world.getPlayer(), sc.nextInt(), sc.nextInt(), sc.nextInt());
-								break;
-							case "orientate":
-								orientatePlayer(this.world.getPlayer(), sc.nextInt(), sc.nextInt(), sc.nextInt());
-								break;
-							case "useItem":
-								useItem(this.world.getPlayer(), sc.nextInt());
-								break;
-							case "show":
-								System.out.println(showPlayerInfo(this.world.getPlayer()));
-								break;
-							case "selectItem":
-								selectItem(this.world.getPlayer(), sc.nextInt());
-								break;
-							default:
-								sc.nextLine();
-							}
-						}
-						catch(BadLocationException e) {
-							System.err.println(e.getMessage());
-						} catch (EntityIsDeadException e) {
-							System.err.println(e.getMessage());
-						} catch (BadInventoryPositionException e) {
-							System.err.println(e.getMessage());
-						}
-						catch (IllegalArgumentException e) {
-							System.err.println(e.getMessage());
-						}
+		 * It executes a batch of commands of a player in one call and returns the status of every command
+		 * (see CommandBatch). The commands are checked before they are executed, so the ones that would fail do not
+		 * throw any exception. As in play(), once the player is dead the rest of the commands are not executed.
+		 * @param p player
+		 * @param batch commands
+		 * @return status of every command, in the same order
+		 */
+		public byte[] executeBatch(Player p, CommandBatch batch) {
+			byte[] status = new byte[batch.size()];
+			executeBatch(p, batch, status);
+			return status;
+		}
+		
+		/**
+		 * It executes a batch of commands of a player in one call, leaving the status of every command in an array that
+		 * can be reused between batches (see executeBatch(Player, CommandBatch)).
+		 * @param p player
+		 * @param batch commands
+		 * @param status array where the status of the command 'i' is left in position 'i', at least as long as the batch
+		 * @return number of commands whose status is CommandBatch.OK
+		 */
+		public int executeBatch(Player p, CommandBatch batch, byte[] status) {
+			int n = batch.size();
+			if(status.length<n) throw new IllegalArgumentException("Status array too short");
+			int done = 0;
+			for(int i=0; i<n; i++) {
+				status[i] = execute(p, batch.getOperation(i), batch.getArgument(i, 0), batch.getArgument(i, 1), batch.getArgument(i, 2));
+				if(status[i]==CommandBatch.OK) done++;
+			}
+			return done;
+		}
+		
+		/**
+		 * It executes a command of a batch. The usual failures are detected before calling the methods of the commands;
+		 * the exceptions of the rest of cases are turned into their status.
+		 * @param p player
+		 * @param operation operation of the command
+		 * @param a first argument
+		 * @param b second argument
+		 * @param c third argument
+		 * @return status of the command
+		 */
+		private byte execute(Player p, int operation, int a, int b, int c) {
+			if(p.isDead()) return CommandBatch.ENTITY_DEAD;
+			try {
+				switch (operation) {
+				case CommandBatch.MOVE:
+					if(!isOffset(a, b, c)||!p.getWorld().isFree(p.getBlockPos().offset(a, b, c))) return CommandBatch.BAD_LOCATION;
+					movePlayer(p, a, b, c);
+					break;
+				case CommandBatch.ORIENTATE:
+					if(a==0&&b==0&&c==0) return CommandBatch.BAD_LOCATION;
+					// orientations out of range are still applied by Player.orientate(), so they go through it
+					orientatePlayer(p, a, b, c);
+					break;
+				case CommandBatch.USE_ITEM:
+					if(a<=0) return CommandBatch.ILLEGAL_ARGUMENT;
+					useItem(p, a);
+					break;
+				case CommandBatch.SHOW:
+					out().println(showPlayerInfo(p));
+					break;
+				case CommandBatch.VIEW:
+					out().print(showPlayerView(a));
+					break;
+				default:
+					if(a<0||a>=p.getInventorySize()) return CommandBatch.BAD_INVENTORY_POSITION;
+					selectItem(p, a);
+				}
+			}
+			catch(BadLocationException e) {
+				return CommandBatch.BAD_LOCATION;
+			} catch (EntityIsDeadException e) {
+				return CommandBatch.ENTITY_DEAD;
+			} catch (BadInventoryPositionException e) {
+				return CommandBatch.BAD_INVENTORY_POSITION;
+			} catch (IllegalArgumentException e) {
+				return CommandBatch.ILLEGAL_ARGUMENT;
+			}
+			return CommandBatch.OK;
+		}
+		
+		/**
+		 * It checks if a difference leads to an adjacent location.
+		 * @param dx x-axis difference
+		 * @param dy y-axis difference
+		 * @param dz z-axis difference
+		 * @return true if every difference is between -1 and 1 and not all of them are 0
+		 */
+		private static boolean isOffset(int dx, int dy, int dz) {
+			return dx>=-1&&dx<=1&&dy>=-1&&dy<=1&&dz>=-1&&dz<=1&&(dx!=0||dy!=0||dz!=0);
+		}
+		/**
+		 * Executes the commands it reads from the script passed as argument, after creating the world of its header.
+		 * @param in script, from where the game and the commands should be read
+		 * @throws IOException if the script can not be read
+		 */
+		private void play(ScriptReader in) throws IOException {
+				startPlay(in);
+				while(playNextCommand(in));
+		}
+		/**
+		 * It reads the header of a script (seed, size, player name and world name) and creates the world of the game.
+		 * @param in script, from where the game should be read
+		 * @return created world
+		 * @throws IOException if the script can not be read
+		 */
+		public World startPlay(ScriptReader in) throws IOException {
+				in.readHeader();
+				return this.createWorld(in.getSeed(), in.getSize(), in.getWorldName(), in.getPlayerName());
+		}
+		/**
+		 * It executes the next command read from the script passed as argument, if the player is alive. The script
+		 * must have been started with startPlay(ScriptReader).
+		 * @param in script, from where the command should be read
+		 * @return false if there were no more commands or the player is dead, so nothing was executed
+		 * @throws IOException if the script can not be read
+		 */
+		public boolean playNextCommand(ScriptReader in) throws IOException {
+				if(this.world.getPlayer().isDead()||!in.next()) return false;
+				dispatch(this.world.getPlayer(), in.getOperation(), in.getArgument(0), in.getArgument(1), in.getArgument(2));
+				return true;
+		}
+		/**
+		 * It executes a command of a play script, printing the message of its exception, if any, to the standard error.
+		 * @param p player
+		 * @param operation operation of the command (see CommandBatch)
+		 * @param a first argument
+		 * @param b second argument
+		 * @param c third argument
+		 */
+		private void dispatch(Player p, int operation, int a, int b, int c) {
+				try {
+					switch (operation) {
+					case CommandBatch.MOVE:
+						movePlayer(p, a, b, c);
+						break;
+					case CommandBatch.ORIENTATE:
+						orientatePlayer(p, a, b, c);
+						break;
+					case CommandBatch.USE_ITEM:
+						useItem(p, a);
+						break;
+					case CommandBatch.SHOW:
+						out().println(showPlayerInfo(p));
+						break;
+					case CommandBatch.VIEW:
+						out().print(showPlayerView(a));
+						break;
+					default:
+						selectItem(p, a);
 					}
 				}
-			
+				catch(BadLocationException e) {
+					err().println(e.getMessage());
+				} catch (EntityIsDeadException e) {
+					err().println(e.getMessage());
+				} catch (BadInventoryPositionException e) {
+					err().println(e.getMessage());
+				}
+				catch (IllegalArgumentException e) {
+					err().println(e.getMessage());
+				}
 		}
 		/**
-		 * Opens the given input file and executes each one of its commands 
+		 * Opens the given input file, text or binary (see ScriptReader), and executes each one of its commands 
 		 * @param s name of file
 		 * @throws FileNotFoundException if can not open a file
 		 */
 		public void playFile(String s) throws FileNotFoundException {
 				File f = new File(s);
-				Scanner sc=new Scanner(f);
-				play(sc);
+				try (ScriptReader in = ScriptReader.open(f)) {
+					play(in);
+				} catch (FileNotFoundException e) {
+					throw e;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
 		}
 		/**
 		 * It reads from the standard input the commands to be executed.
 		 */
 		public void playFromConsole() {
-			Scanner sc=new Scanner(System.in);
-			play(sc);
+			try {
+				play(new ScriptReader(Channels.newChannel(System.in)));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		/**
+		 * It returns the stream where the information of the player is printed.
+		 * @return the stream of this game, or System.out
+		 */
+		private PrintStream out() {
+			return (this.out != null) ? this.out : System.out;
+		}
+		/**
+		 * It returns the stream where the errors of the commands are printed.
+		 * @return the stream of this game, or System.err
+		 */
+		private PrintStream err() {
+			return (this.err != null) ? this.err : System.err;
+		}
+		/**
+		 * Trivial getter
+		 * @return world of the game, null if it has not been created
+		 */
+		public World getWorld() {
+			return this.world;
 		}
 		/**
 		 * Trivial getter
@@ -0,0 +1,243 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of parsed commands of a player, executed in one call by BlockWorld.executeBatch(). Every command is kept as
+ * four ints in a single array (operation and up to three arguments), so a batch of thousands of commands is a
+ * single object that can be reused with clear().
+ * The result of every command is a status code instead of an exception: OK, BAD_LOCATION, ENTITY_DEAD,
+ * BAD_INVENTORY_POSITION or ILLEGAL_ARGUMENT.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class CommandBatch {
+
+	/**
+	 * Operation of the command "move dx dy dz"
+	 */
+	public static final int MOVE = 0;
+	/**
+	 * Operation of the command "orientate dx dy dz"
+	 */
+	public static final int ORIENTATE = 1;
+	/**
+	 * Operation of the command "useItem times"
+	 */
+	public static final int USE_ITEM = 2;
+	/**
+	 * Operation of the command "selectItem position"
+	 */
+	public static final int SELECT_ITEM = 3;
+	/**
+	 * Operation of the command "show"
+	 */
+	public static final int SHOW = 4;
+	/**
+	 * Operation of the command "view radius"
+	 */
+	public static final int VIEW = 5;
+
+	/**
+	 * The command was executed
+	 */
+	public static final byte OK = 0;
+	/**
+	 * The command failed as if it had thrown BadLocationException
+	 */
+	public static final byte BAD_LOCATION = 1;
+	/**
+	 * The player was dead, so the command was not executed
+	 */
+	public static final byte ENTITY_DEAD = 2;
+	/**
+	 * The command failed as if it had thrown BadInventoryPositionException
+	 */
+	public static final byte BAD_INVENTORY_POSITION = 3;
+	/**
+	 * The command failed as if it had thrown IllegalArgumentException
+	 */
+	public static final byte ILLEGAL_ARGUMENT = 4;
+
+	/**
+	 * Number of ints used by every command
+	 */
+	private static final int STRIDE = 4;
+
+	/**
+	 * Commands, STRIDE ints each: operation and arguments
+	 */
+	private int[] commands;
+	/**
+	 * Number of commands
+	 */
+	private int size;
+
+	/**
+	 * It creates an empty batch.
+	 */
+	public CommandBatch() {
+		this(16);
+	}
+
+	/**
+	 * It creates an empty batch with room for the given number of commands.
+	 * @param capacity initial number of commands
+	 */
+	public CommandBatch(int capacity) {
+		this.commands = new int[Math.max(1, capacity) * STRIDE];
+		this.size = 0;
+	}
+
+	/**
+	 * It adds a move of the player.
+	 * @param dx x-axis difference
+	 * @param dy y-axis difference
+	 * @param dz z-axis difference
+	 * @return this batch
+	 */
+	public CommandBatch move(int dx, int dy, int dz) {
+		return add(MOVE, dx, dy, dz);
+	}
+
+	/**
+	 * It adds an orientation of the player.
+	 * @param dx x-axis orientation
+	 * @param dy y-axis orientation
+	 * @param dz z-axis orientation
+	 * @return this batch
+	 */
+	public CommandBatch orientate(int dx, int dy, int dz) {
+		return add(ORIENTATE, dx, dy, dz);
+	}
+
+	/**
+	 * It adds a use of the item in the hand of the player.
+	 * @param times times the item is used
+	 * @return this batch
+	 */
+	public CommandBatch useItem(int times) {
+		return add(USE_ITEM, times, 0, 0);
+	}
+
+	/**
+	 * It adds a selection of an item of the inventory.
+	 * @param position position of the item in the inventory
+	 * @return this batch
+	 */
+	public CommandBatch selectItem(int position) {
+		return add(SELECT_ITEM, position, 0, 0);
+	}
+
+	/**
+	 * It adds a show of the player, which prints the information of the player.
+	 * @return this batch
+	 */
+	public CommandBatch show() {
+		return add(SHOW, 0, 0, 0);
+	}
+
+	/**
+	 * It adds a view of the neighbourhood of the player, which prints the cells that changed since the last view
+	 * (see BlockWorld.showPlayerView()).
+	 * @param radius number of locations from the player to every face of the cube of the view
+	 * @return this batch
+	 */
+	public CommandBatch view(int radius) {
+		return add(VIEW, radius, 0, 0);
+	}
+
+	/**
+	 * It adds a command.
+	 * @param operation operation: MOVE, ORIENTATE, USE_ITEM, SELECT_ITEM, SHOW or VIEW
+	 * @param a first argument
+	 * @param b second argument, 0 if the operation has less arguments
+	 * @param c third argument, 0 if the operation has less arguments
+	 * @return this batch
+	 */
+	public CommandBatch add(int operation, int a, int b, int c) {
+		if (operation < MOVE || operation > VIEW) throw new IllegalArgumentException("Unknown operation " + operation);
+		int i = this.size * STRIDE;
+		if (i == this.commands.length) this.commands = Arrays.copyOf(this.commands, this.commands.length * 2);
+		this.commands[i] = operation;
+		this.commands[i + 1] = a;
+		this.commands[i + 2] = b;
+		this.commands[i + 3] = c;
+		this.size++;
+		return this;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of commands
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * It returns the operation of a command.
+	 * @param i number of the command
+	 * @return MOVE, ORIENTATE, USE_ITEM, SELECT_ITEM, SHOW or VIEW
+	 */
+	public int getOperation(int i) {
+		checkIndex(i);
+		return this.commands[i * STRIDE];
+	}
+
+	/**
+	 * It returns an argument of a command.
+	 * @param i number of the command
+	 * @param n number of the argument, from 0 to 2
+	 * @return the argument
+	 */
+	public int getArgument(int i, int n) {
+		checkIndex(i);
+		if (n < 0 || n >= STRIDE - 1) throw new IndexOutOfBoundsException("Argument " + n);
+		return this.commands[i * STRIDE + 1 + n];
+	}
+
+	/**
+	 * It removes all the commands, keeping the memory to add new ones.
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * It checks that a command exists.
+	 * @param i number of the command
+	 */
+	private void checkIndex(int i) {
+		if (i < 0 || i >= this.size) throw new IndexOutOfBoundsException("Command " + i);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < this.size; i++) {
+			int j = i * STRIDE;
+			switch (this.commands[j]) {
+			case MOVE:
+				sb.append("move ").append(this.commands[j + 1]).append(' ').append(this.commands[j + 2]).append(' ').append(this.commands[j + 3]);
+				break;
+			case ORIENTATE:
+				sb.append("orientate ").append(this.commands[j + 1]).append(' ').append(this.commands[j + 2]).append(' ').append(this.commands[j + 3]);
+				break;
+			case USE_ITEM:
+				sb.append("useItem ").append(this.commands[j + 1]);
+				break;
+			case SHOW:
+				sb.append("show");
+				break;
+			case VIEW:
+				sb.append("view ").append(this.commands[j + 1]);
+				break;
+			default:
+				sb.append("selectItem ").append(this.commands[j + 1]);
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -1,16 +1,24 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import model.exceptions.BadInventoryPositionException;
+import model.exceptions.StackSizeException;
 
 /**
  * Class Inventory create an object which represents all items which player collects during the game.
  * It implements methods which are used to managing the player's inventory, like adding and getting items. 
+ * view() returns a read-only view of the inventory that is never copied, and snapshot() a copy that shares the list
+ * of items with the inventory until one of them changes it.
+ * The inventory keeps an index of the positions of each material, built the first time it is needed, so first() and
+ * contains() do not search the list. An inventory that merges stacks (see setAutoMerge()) fills the stacks it already
+ * has of a material before it uses a new position, so its size grows with the number of items divided by
+ * ItemStack.MAX_STACK_SIZE instead of with the number of stacks added.
  * @author Katarzyna Kaczorowska
  *
  */
-public class Inventory {
+public class Inventory implements InventoryView {
 	
 	/**
 	 * Item which player hold in hand and can use
@@ -22,6 +30,90 @@ public class Inventory {
 	 */
 	private ArrayList<ItemStack> items;
 	
+	/**
+	 * True if 'items' may be shared with a snapshot, so it must be copied before it is changed
+	 */
+	private boolean shared;
+	
+	/**
+	 * Read-only view of this inventory, created the first time it is asked for
+	 */
+	private InventoryView view;
+	
+	/**
+	 * Value of 'open' for a material whose stacks are all full
+	 */
+	private static final int NONE_OPEN = -2;
+	
+	/**
+	 * True if the items added are merged into the stacks of the same material that are not full
+	 */
+	private boolean autoMerge;
+	
+	/**
+	 * First position of each material (by ordinal), or -1; null if the index has not been built
+	 */
+	private int[] firsts;
+	
+	/**
+	 * Number of positions of each material (by ordinal)
+	 */
+	private int[] counts;
+	
+	/**
+	 * Position of a stack of each material (by ordinal) that was not full the last time it was looked at, NONE_OPEN if
+	 * all of them were full, or -1 if they must be searched. It is only a hint, because the stacks can be changed by
+	 * whoever gets them: it is checked before it is used.
+	 */
+	private int[] open;
+	
+	/**
+	 * Read-only view of the inventory, see view()
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	private final class ReadOnlyView implements InventoryView {
+		@Override
+		public ItemStack getItem(int n) {
+			return Inventory.this.getItem(n);
+		}
+
+		@Override
+		public int getSize() {
+			return Inventory.this.getSize();
+		}
+
+		@Override
+		public ItemStack getItemInHand() {
+			return Inventory.this.getItemInHand();
+		}
+
+		@Override
+		public int first(Material m) {
+			return Inventory.this.first(m);
+		}
+
+		@Override
+		public boolean contains(Material m) {
+			return Inventory.this.contains(m);
+		}
+
+		@Override
+		public boolean isAutoMerge() {
+			return Inventory.this.isAutoMerge();
+		}
+
+		@Override
+		public Inventory snapshot() {
+			return Inventory.this.snapshot();
+		}
+
+		@Override
+		public String toString() {
+			return Inventory.this.toString();
+		}
+	}
+	
 	/**
 	 * It creates an empty inventory.
 	 */
@@ -40,17 +132,188 @@ public class Inventory {
 			this.inHand=new ItemStack(i.getItemInHand());
 		}
 		else this.inHand = null;
+		this.autoMerge=i.autoMerge;
+	}
+	
+	/**
+	 * Constructor of the snapshots, which share the list of items with their inventory
+	 * @param items list of items, shared
+	 * @param inHand item in hand, not shared
+	 * @param autoMerge true if the snapshot merges stacks
+	 */
+	private Inventory(ArrayList<ItemStack> items, ItemStack inHand, boolean autoMerge) {
+		this.items = items;
+		this.inHand = inHand;
+		this.shared = true;
+		this.autoMerge = autoMerge;
+	}
+	
+	/**
+	 * It returns a copy of this inventory as it is now, as the copy constructor does. The list of items is only copied
+	 * when this inventory or the snapshot change it, so a snapshot that is only read costs the copy of the item in hand.
+	 * @return new inventory
+	 */
+	@Override
+	public Inventory snapshot() {
+		this.shared = true;
+		return new Inventory(this.items, (this.inHand!=null) ? new ItemStack(this.inHand) : null, this.autoMerge);
+	}
+	
+	/**
+	 * Trivial getter
+	 * @return true if the items added are merged into the stacks already in the inventory
+	 */
+	public boolean isAutoMerge() {
+		return this.autoMerge;
+	}
+	
+	/**
+	 * It sets whether addItem() merges the items into the stacks of the same material that are not full before it
+	 * uses a new position. It is off by default; the stacks already in the inventory are not merged when it is set.
+	 * @param autoMerge true to merge the items added
+	 */
+	public void setAutoMerge(boolean autoMerge) {
+		this.autoMerge = autoMerge;
+	}
+	
+	/**
+	 * It returns a read-only view of this inventory, which is created once and shows its current items.
+	 * @return view of this inventory
+	 */
+	public InventoryView view() {
+		if(this.view==null) this.view = new ReadOnlyView();
+		return this.view;
+	}
+	
+	/**
+	 * It copies the list of items before it is changed if it may be shared with a snapshot.
+	 */
+	private void own() {
+		if(this.shared) {
+			this.items = new ArrayList<ItemStack>(this.items);
+			this.shared = false;
+		}
+	}
+	
+	/**
+	 * It builds the index of the positions of the materials if it has not been built yet.
+	 */
+	private void index() {
+		if(this.firsts!=null) return;
+		int n = Material.values().length;
+		this.firsts = new int[n];
+		this.counts = new int[n];
+		this.open = new int[n];
+		Arrays.fill(this.firsts, -1);
+		Arrays.fill(this.open, NONE_OPEN);
+		for(int pos=0; pos<items.size(); pos++) indexAdded(pos);
+	}
+	
+	/**
+	 * It adds to the index the stack in a position.
+	 * @param pos position of the stack
+	 */
+	private void indexAdded(int pos) {
+		ItemStack is = items.get(pos);
+		if(is==null) return;
+		int m = is.getType().ordinal();
+		this.counts[m]++;
+		if(this.firsts[m]<0 || this.firsts[m]>pos) this.firsts[m]=pos;
+		if(this.open[m]==NONE_OPEN && isOpen(is)) this.open[m]=pos;
+	}
+	
+	/**
+	 * It removes from the index the stack in a position, which is still in the list: if it was the first one of its
+	 * material, the list is searched for the next one.
+	 * @param pos position of the stack
+	 */
+	private void indexRemoved(int pos) {
+		ItemStack is = items.get(pos);
+		if(is==null) return;
+		int m = is.getType().ordinal();
+		if(--this.counts[m]==0) {
+			this.firsts[m]=-1;
+			this.open[m]=NONE_OPEN;
+		}
+		else {
+			if(this.firsts[m]==pos) this.firsts[m]=find(is.getType(), pos+1, false);
+			if(this.open[m]==pos) this.open[m]=-1;
+		}
 	}
 	
 	/**
-	 * It adds a stack of items to the inventory in a new position.
+	 * It returns the first position, from a given one, with a stack of a material.
+	 * @param m material
+	 * @param from first position to look at
+	 * @param open true to look only for the stacks that are not full
+	 * @return position or -1 if there is none
+	 */
+	private int find(Material m, int from, boolean open) {
+		for(int pos=from; pos<items.size(); pos++) {
+			ItemStack is = items.get(pos);
+			if(is!=null && is.getType()==m && (!open || isOpen(is))) return pos;
+		}
+		return -1;
+	}
+	
+	/**
+	 * It adds a stack of items to the inventory in a new position. If the inventory merges stacks, the items are added
+	 * first to the stacks of the same material that are not full, which are replaced by new stacks (the ones in the
+	 * inventory may be shared with its copies), and only the ones left are added in a new position. Weapons and tools
+	 * are never merged.
 	 * @param is ItemStack to add
 	 * @return amount of items
 	 */
 	
 	public int addItem(ItemStack is) {
+		own();
+		int amount = is.getAmount();
+		if(autoMerge && isOpen(is)) {
+			is = merge(is);
+			if(is==null) return amount;
+		}
 		items.add(is);
-		return is.getAmount();
+		if(this.firsts!=null) indexAdded(items.size()-1);
+		return amount;
+	}
+	
+	/**
+	 * It checks if more items can be added to a stack: it is not full and it is not a weapon or a tool.
+	 * @param is stack
+	 * @return true if it is not full
+	 */
+	private static boolean isOpen(ItemStack is) {
+		return is.getAmount()<ItemStack.MAX_STACK_SIZE && !is.getType().isWeapon() && !is.getType().isTool();
+	}
+	
+	/**
+	 * It merges a stack into the stacks of the same material that are not full.
+	 * @param is ItemStack to merge
+	 * @return items left, which need a new position, or null if all of them have been merged
+	 */
+	private ItemStack merge(ItemStack is) {
+		index();
+		Material m = is.getType();
+		int left = is.getAmount();
+		int pos = this.open[m.ordinal()];
+		ItemStack target = (pos>=0 && pos<items.size()) ? items.get(pos) : null;
+		if(pos==NONE_OPEN || this.firsts[m.ordinal()]<0) pos = -1;
+		else if(target==null || target.getType()!=m || !isOpen(target)) pos = find(m, this.firsts[m.ordinal()], true);
+		try {
+			while(pos>=0 && left>0) {
+				int amount = items.get(pos).getAmount();
+				int added = Math.min(left, ItemStack.MAX_STACK_SIZE-amount);
+				items.set(pos, new ItemStack(m, amount+added));
+				left -= added;
+				if(amount+added<ItemStack.MAX_STACK_SIZE) break;
+				pos = find(m, pos+1, true);
+			}
+			this.open[m.ordinal()] = (pos<0) ? NONE_OPEN : pos;
+			if(left==0) return null;
+			return (left==is.getAmount()) ? is : new ItemStack(m, left);
+		} catch(StackSizeException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 	
 	/**
@@ -58,8 +321,10 @@ public class Inventory {
 	 */
 	
 	public void clear() {
+		own();
 		items.clear();
 		inHand=null;
+		firsts=null;
 	}
 	
 	/**
@@ -70,6 +335,14 @@ public class Inventory {
 	
 	public void clear(int slot) throws BadInventoryPositionException{
 		if(slot>=this.items.size()) throw new BadInventoryPositionException(slot);
+		own();
+		if(this.firsts!=null) {
+			indexRemoved(slot);
+			for(int m=0; m<this.firsts.length; m++) {
+				if(this.firsts[m]>slot) this.firsts[m]--;
+				if(this.open[m]>slot) this.open[m]--;
+			}
+		}
 		items.remove(slot);
 	}
 	
@@ -80,13 +353,19 @@ public class Inventory {
 	 */
 	
 	public int first(Material m) {
-		
-		for(ItemStack i:items) {
-			if(i.getType().equals(m)) {
-				return items.indexOf(i);
-			}
-		}
-		return -1;
+		index();
+		return this.firsts[m.ordinal()];
+	}
+	
+	/**
+	 * It checks if the inventory contains items of the given type, excluding the item ‘inHand’.
+	 * @param m type of material to search
+	 * @return true if a position of the inventory contains items of that type
+	 */
+	
+	public boolean contains(Material m) {
+		index();
+		return this.counts[m.ordinal()]>0;
 	}
 	
 	/**
@@ -127,7 +406,13 @@ public class Inventory {
 	
 	public void setItem(int pos, ItemStack items) throws BadInventoryPositionException{
 		if(pos>=this.items.size()) throw new BadInventoryPositionException(pos);
-		this.items.set(pos, items);
+		own();
+		if(this.firsts!=null) {
+			indexRemoved(pos);
+			this.items.set(pos, items);
+			indexAdded(pos);
+		}
+		else this.items.set(pos, items);
 	}
 	
 	/**
@@ -0,0 +1,56 @@
+package model;
+
+/**
+ * Read-only view of an inventory, with the methods of IInventory. A view does not copy the inventory, so it always
+ * shows its current items; the stacks it returns are the ones of the inventory and must not be changed. snapshot()
+ * returns a copy for the callers that need the items as they are now.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public interface InventoryView {
+
+	/**
+	 * It returns the items in a given inventory position.
+	 * @param n position in inventory
+	 * @return items in given position or null
+	 */
+	ItemStack getItem(int n);
+
+	/**
+	 * It returns the size of the inventory, excluding the item ‘inHand’.
+	 * @return size of inventory
+	 */
+	int getSize();
+
+	/**
+	 * It returns the items that the player holds in his or her hand
+	 * @return item holding in hand, or null
+	 */
+	ItemStack getItemInHand();
+
+	/**
+	 * It returns the index of the first position in the inventory that contains items of the given type
+	 * @param m type of material to search
+	 * @return index or -1 if not found
+	 */
+	int first(Material m);
+
+	/**
+	 * It checks if the inventory contains items of the given type, excluding the item ‘inHand’.
+	 * @param m type of material to search
+	 * @return true if a position of the inventory contains items of that type
+	 */
+	boolean contains(Material m);
+
+	/**
+	 * It checks if the items added to the inventory are merged into its stacks (see Inventory.setAutoMerge()).
+	 * @return true if the items added are merged
+	 */
+	boolean isAutoMerge();
+
+	/**
+	 * It returns a copy of the inventory as it is now, which does not change with it.
+	 * @return new inventory
+	 */
+	Inventory snapshot();
+}
@@ -316,7 +316,17 @@ public class Location implements Comparable<Location>{
 	}
 	
 	/**
-	 * Class method that checks that the values ‘x’, ‘y’, ‘z’ are within the limits of the given world.
+	 * It checks if the given location is adjacent to this one, in the same way as getNeighborhood().contains(l) but without building the set.
+	 * @param l location
+	 * @return true if 'l' is adjacent to this location and, if this location has a world, inside that world
+	 */
+	
+	public boolean isAdjacent(Location l) {
+		return Neighborhood.isAdjacent(this, l);
+	}
+	
+	/**
+	 * Class method that checks that the values ‘x’, ‘y’, ‘z’ are within the limits of the given world (see World.getBounds()).
 	 * @param w Given world
 	 * @param x x-axis location
 	 * @param y y-axis location
@@ -327,20 +337,24 @@ public class Location implements Comparable<Location>{
 	public static boolean check(World w, double x, double y, double z) {
 		
 		if(w==null) return true;
-		long size = w.getSize();
-		long range_up;
-		long range_down;
-		if(size%2==1) {
-			range_up = (size-1)/2;
-			range_down = range_up*(-1);
-		}
-		else {
-			range_up = size/2;
-			range_down = (range_up-1)*(-1);
-		}
-		if(x>=range_down&&x<=range_up&&y>=0&&y<=UPPER_Y_VALUE&&z>=range_down&&z<=range_up) return true;
+		WorldBounds bounds = w.getBounds();
+		return bounds!=null && bounds.contains(x, y, z);
+	}
+	
+	/**
+	 * Class method that checks that the integer values ‘x’, ‘y’, ‘z’ are within the limits of the given world.
+	 * @param w Given world
+	 * @param x x-axis location
+	 * @param y y-axis location
+	 * @param z z-axis location
+	 * @return true or false value depending on checking
+	 */
+	
+	public static boolean check(World w, int x, int y, int z) {
 		
-		else return false;
+		if(w==null) return true;
+		WorldBounds bounds = w.getBounds();
+		return bounds!=null && bounds.contains(x, y, z);
 	}
 	
 	/**
@@ -363,10 +377,7 @@ public class Location implements Comparable<Location>{
 		if (getClass() != obj.getClass())
 			return false;
 		Location other = (Location) obj;
-		if (world == null) {
-			if (other.world != null)
-				return false;
-		} else if (!world.equals(other.world))
+		if (worldId() != other.worldId())
 			return false;
 		if (Double.doubleToLongBits(x) != Double.doubleToLongBits(other.x))
 			return false;
@@ -380,6 +391,19 @@ public class Location implements Comparable<Location>{
 	
 	@Override
 	public int hashCode() {
+		return hashCode(world, x, y, z);
+	}
+	
+	/**
+	 * It returns the hash code of the location with the given world and coordinates, without creating it.
+	 * @param world world of the location, or null
+	 * @param x x-axis location
+	 * @param y y-axis location
+	 * @param z z-axis location
+	 * @return the same value as hashCode() of that location
+	 */
+	
+	static int hashCode(World world, double x, double y, double z) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((world == null) ? 0 : world.hashCode());
@@ -393,6 +417,14 @@ public class Location implements Comparable<Location>{
 		return result;
 	}
 	
+	/**
+	 * It returns the id of the world of the location (see World.getId()), which is compared instead of the world.
+	 * @return id of the world, or 0 if the location has no world
+	 */
+	private int worldId() {
+		return (world == null) ? 0 : world.getId();
+	}
+	
 	@Override
 	public String toString() {
 		String note;
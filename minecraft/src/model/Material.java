@@ -147,6 +147,14 @@ public enum Material {
 		return false;
 	}
 	
+	/**
+	 * It restarts the random generator used by getRandomItem(int, int), so that the items of a game can be generated again.
+	 * @param seed new seed of the generator
+	 */
+	public static void setRandomSeed(long seed) {
+		rng.setSeed(seed);
+	}
+	
 	/**
 	 * It returns a random material between the ‘first’ and ‘last’ positions of the enumerated type, both included.
 	 * @param first first position of the enumerated type
@@ -154,7 +162,18 @@ public enum Material {
 	 * @return random material
 	 */
 	public static Material getRandomItem(int first, int last) {
-        int i = rng.nextInt(last-first+1)+first;
+        return getRandomItem(rng, first, last);
+    }
+	
+	/**
+	 * It returns a random material between the ‘first’ and ‘last’ positions of the enumerated type, both included, using the given random generator.
+	 * @param r random generator
+	 * @param first first position of the enumerated type
+	 * @param last last position of the enumerated type
+	 * @return random material
+	 */
+	public static Material getRandomItem(Random r, int first, int last) {
+        int i = r.nextInt(last-first+1)+first;
         return values()[i];
     }
 }
@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * The 26 locations adjacent to a block, as a table of offsets computed once. It lets the callers that only need to
+ * visit the neighbours of a location, or to know if two locations are adjacent, do it without building the set of
+ * Location.getNeighborhood().
+ * The offsets are in the same order used by Location.getNeighborhood(): 'x' from -1 to 1, then 'y', then 'z'.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class Neighborhood {
+
+	/**
+	 * Number of adjacent locations
+	 */
+	public static final int SIZE = 26;
+	/**
+	 * Offsets in 'x' of the adjacent locations
+	 */
+	private static final int[] DX = new int[SIZE];
+	/**
+	 * Offsets in 'y' of the adjacent locations
+	 */
+	private static final int[] DY = new int[SIZE];
+	/**
+	 * Offsets in 'z' of the adjacent locations
+	 */
+	private static final int[] DZ = new int[SIZE];
+
+	static {
+		int n = 0;
+		for (int i = -1; i < 2; i++) {
+			for (int j = -1; j < 2; j++) {
+				for (int k = -1; k < 2; k++) {
+					if (i == 0 && j == 0 && k == 0) continue;
+					DX[n] = i;
+					DY[n] = j;
+					DZ[n] = k;
+					n++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Action done on every adjacent location by forEach().
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	public interface Visitor {
+		/**
+		 * It visits an adjacent location.
+		 * @param x x coordinate
+		 * @param y y coordinate
+		 * @param z z coordinate
+		 * @return false to stop visiting the rest of the neighbours
+		 */
+		boolean visit(int x, int y, int z);
+	}
+
+	/**
+	 * Private constructor, this class only has class methods.
+	 */
+	private Neighborhood() {
+	}
+
+	/**
+	 * It returns the offset in 'x' of an adjacent location.
+	 * @param i number of the adjacent location, from 0 to SIZE-1
+	 * @return offset in 'x', from -1 to 1
+	 */
+	public static int dx(int i) {
+		return DX[i];
+	}
+
+	/**
+	 * It returns the offset in 'y' of an adjacent location.
+	 * @param i number of the adjacent location, from 0 to SIZE-1
+	 * @return offset in 'y', from -1 to 1
+	 */
+	public static int dy(int i) {
+		return DY[i];
+	}
+
+	/**
+	 * It returns the offset in 'z' of an adjacent location.
+	 * @param i number of the adjacent location, from 0 to SIZE-1
+	 * @return offset in 'z', from -1 to 1
+	 */
+	public static int dz(int i) {
+		return DZ[i];
+	}
+
+	/**
+	 * It visits the locations adjacent to (x, y, z) that are inside a world, the same ones returned by
+	 * Location.getNeighborhood(), without creating any object.
+	 * @param w world, null to visit the 26 neighbours
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @param v visitor
+	 * @return false if the visitor stopped the visit
+	 */
+	public static boolean forEach(World w, int x, int y, int z, Visitor v) {
+		for (int i = 0; i < SIZE; i++) {
+			int nx = x + DX[i];
+			int ny = y + DY[i];
+			int nz = z + DZ[i];
+			if (w != null && !Location.check(w, nx, ny, nz)) continue;
+			if (!v.visit(nx, ny, nz)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * It checks if two locations are adjacent, i.e. if 'b' is in a.getNeighborhood(), in constant time.
+	 * @param a location
+	 * @param b location that may be adjacent to 'a'
+	 * @return true if 'b' is adjacent to 'a' and inside the world of 'a'
+	 */
+	public static boolean isAdjacent(Location a, Location b) {
+		World w = a.getWorld();
+		if (w == null ? b.getWorld() != null : !w.equals(b.getWorld())) return false;
+		int i = offset(a.getX(), b.getX());
+		int j = offset(a.getY(), b.getY());
+		int k = offset(a.getZ(), b.getZ());
+		if (i == Integer.MIN_VALUE || j == Integer.MIN_VALUE || k == Integer.MIN_VALUE) return false;
+		if (i == 0 && j == 0 && k == 0) return false;
+		return w == null || Location.check(w, a.getX() + i, a.getY() + j, a.getZ() + k);
+	}
+
+	/**
+	 * It returns the offset from -1 to 1 that added to a coordinate gives exactly another one.
+	 * @param from first coordinate
+	 * @param to second coordinate
+	 * @return offset, or Integer.MIN_VALUE if there is none
+	 */
+	private static int offset(double from, double to) {
+		long bits = Double.doubleToLongBits(to);
+		for (int i = -1; i < 2; i++) {
+			if (Double.doubleToLongBits(from + i) == bits) return i;
+		}
+		return Integer.MIN_VALUE;
+	}
+}
@@ -0,0 +1,107 @@
+package model;
+
+import model.exceptions.BadLocationException;
+
+/**
+ * Renderer of the view of the cube of locations around a position, in the format of World.getNeighbourhoodString():
+ * one line per 'z' from the lowest, with the rows of 'y' from the highest separated by a space and every row with
+ * the symbols of the locations from the lowest 'x'. The symbol of a location is the one of the player, the items (in
+ * upper case if they are blocks), the creature or the block in it, '.' if it is empty and 'X' if it is outside the
+ * world. The view is written into a char array allocated once, with a single pass over the cells that does not copy
+ * any block nor create any location, so a renderer can be reused for every view of a game. A renderer must not be
+ * used by several threads at the same time.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class NeighbourhoodRenderer {
+
+	/**
+	 * Number of locations from the centre to every face of the cube
+	 */
+	private final int radius;
+	/**
+	 * Last view rendered
+	 */
+	private final char[] view;
+
+	/**
+	 * It creates a renderer of views of the given radius. The radius 1 is the view of getNeighbourhoodString().
+	 * @param radius number of locations from the centre to every face of the cube, (2*radius+1)^3 locations in total
+	 * @throws IllegalArgumentException if the radius is negative
+	 */
+	public NeighbourhoodRenderer(int radius) {
+		if (radius < 0) throw new IllegalArgumentException("Negative radius " + radius);
+		int side = 2 * radius + 1;
+		this.radius = radius;
+		this.view = new char[side * (side * (side + 1) + 1)];
+	}
+
+	/**
+	 * Trivial getter
+	 * @return radius of the views
+	 */
+	public int getRadius() {
+		return this.radius;
+	}
+
+	/**
+	 * It renders the view around a position. The centre is never 'X', as in World.getNeighbourhoodString().
+	 * @param w world
+	 * @param x x coordinate of the centre
+	 * @param y y coordinate of the centre
+	 * @param z z coordinate of the centre
+	 * @return this renderer, with the new view
+	 */
+	public NeighbourhoodRenderer render(World w, int x, int y, int z) {
+		WorldBounds bounds = w.getBounds();
+		int r = this.radius;
+		int n = 0;
+		for (int dz = -r; dz <= r; dz++) {
+			for (int dy = r; dy >= -r; dy--) {
+				for (int dx = -r; dx <= r; dx++) {
+					int cx = x + dx;
+					int cy = y + dy;
+					int cz = z + dz;
+					if (bounds.contains(cx, cy, cz) || (dx == 0 && dy == 0 && dz == 0)) this.view[n++] = w.symbolAt(cx, cy, cz);
+					else this.view[n++] = 'X';
+				}
+				this.view[n++] = ' ';
+			}
+			this.view[n++] = '\n';
+		}
+		return this;
+	}
+
+	/**
+	 * It renders the view around a location, which is rounded down to the position of its block.
+	 * @param loc centre of the view
+	 * @return this renderer, with the new view
+	 * @throws BadLocationException if the location does not belong to a world
+	 */
+	public NeighbourhoodRenderer render(Location loc) throws BadLocationException {
+		if (loc.getWorld() == null) throw new BadLocationException("Location not associated to any world");
+		return render(loc.getWorld(), (int) Math.floor(loc.getX()), (int) Math.floor(loc.getY()), (int) Math.floor(loc.getZ()));
+	}
+
+	/**
+	 * It appends the last view rendered to a StringBuilder.
+	 * @param sb destination of the view
+	 * @return the same StringBuilder
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		return sb.append(this.view);
+	}
+
+	/**
+	 * It returns the last view rendered, without copying it. It changes with the next call to render().
+	 * @return characters of the view
+	 */
+	public char[] getView() {
+		return this.view;
+	}
+
+	@Override
+	public String toString() {
+		return new String(this.view);
+	}
+}
@@ -0,0 +1,395 @@
+package model;
+
+import model.entities.Player;
+import model.event.WorldEvent;
+import model.event.WorldEventListener;
+import model.storage.LocationKey;
+
+/**
+ * View of the cube of locations around a position that remembers the last view it sent, so every new view can be
+ * sent as the cells that changed since then. The tracker subscribes to the events of the world (see WorldEventBus) and
+ * only looks again at the locations changed inside the last view and at the locations of the player, so a view
+ * where nothing happened costs a few lookups instead of a full render (see NeighbourhoodRenderer).
+ * The first view is sent in full, as "view radius" followed by the lines of NeighbourhoodRenderer. The next ones are
+ * sent as a single line "delta dx dy dz entering n x1 y1 z1 c1 ... xn yn zn cn":
+ * <ul>
+ * <li>(dx, dy, dz) is the movement of the centre since the last view. The cells of the last view still inside the new
+ * one keep their symbol, moved to their new place.</li>
+ * <li>'entering' are the symbols of the cells that entered the view, in the order of the view (z from the lowest,
+ * y from the highest and x from the lowest), or "-" if no cell entered it.</li>
+ * <li>n is the number of cells of the last view whose symbol changed, and (x, y, z) c is every one of them, with its
+ * position relative to the new centre and its new symbol.</li>
+ * </ul>
+ * A tracker must be closed to stop listening to its world, and it must not be used by several threads at the same
+ * time.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class ViewTracker implements WorldEventListener, AutoCloseable {
+
+	/**
+	 * Maximum number of changed locations remembered between two views; after them the whole view is checked again
+	 */
+	private static final int MAX_DIRTY = 64;
+
+	/**
+	 * World of the views
+	 */
+	private final World world;
+	/**
+	 * Number of locations from the centre to every face of the cube
+	 */
+	private final int radius;
+	/**
+	 * Number of locations of every edge of the cube, 2*radius+1
+	 */
+	private final int side;
+	/**
+	 * Symbols of the last view, in the order of the view
+	 */
+	private char[] cells;
+	/**
+	 * Symbols of the view being built while the centre moves, swapped with 'cells'
+	 */
+	private char[] shifted;
+	/**
+	 * False until the first view is built
+	 */
+	private boolean started;
+	/**
+	 * Centre of the last view
+	 */
+	private int cx, cy, cz;
+	/**
+	 * Position of the player in the last view
+	 */
+	private int px, py, pz;
+	/**
+	 * Packed positions (see LocationKey) of the locations of the last view changed since it was built
+	 */
+	private final long[] dirty;
+	/**
+	 * Number of positions in 'dirty'
+	 */
+	private int dirtyCount;
+	/**
+	 * True if more than MAX_DIRTY locations of the view have changed since it was built
+	 */
+	private boolean overflow;
+	/**
+	 * True if the last view was sent in full
+	 */
+	private boolean full;
+	/**
+	 * Movement of the centre in the last view
+	 */
+	private int mx, my, mz;
+	/**
+	 * Symbols of the cells that entered the last view, in the order of the view
+	 */
+	private final char[] entering;
+	/**
+	 * Number of symbols in 'entering'
+	 */
+	private int enteringCount;
+	/**
+	 * Indexes of the cells of the last view whose symbol changed
+	 */
+	private final int[] changed;
+	/**
+	 * Number of indexes in 'changed'
+	 */
+	private int changedCount;
+
+	/**
+	 * It creates a tracker of the views of a world and subscribes it to the events of the world.
+	 * @param w world
+	 * @param radius number of locations from the centre to every face of the cube
+	 * @throws IllegalArgumentException if the radius is negative
+	 */
+	public ViewTracker(World w, int radius) {
+		if (radius < 0) throw new IllegalArgumentException("Negative radius " + radius);
+		this.world = w;
+		this.radius = radius;
+		this.side = 2 * radius + 1;
+		int n = this.side * this.side * this.side;
+		this.cells = new char[n];
+		this.shifted = new char[n];
+		this.entering = new char[n];
+		this.changed = new int[n];
+		this.dirty = new long[MAX_DIRTY];
+		w.getEventBus().subscribe(this);
+	}
+
+	/**
+	 * Trivial getter
+	 * @return radius of the views
+	 */
+	public int getRadius() {
+		return this.radius;
+	}
+
+	/**
+	 * It builds the view around the player of the world.
+	 * @return this tracker, with the new view
+	 */
+	public ViewTracker update() {
+		BlockPos p = this.world.getPlayer().getBlockPos();
+		return update(p.getX(), p.getY(), p.getZ());
+	}
+
+	/**
+	 * It builds the view around a position: in full the first time, and from the last view afterwards.
+	 * @param x x coordinate of the centre
+	 * @param y y coordinate of the centre
+	 * @param z z coordinate of the centre
+	 * @return this tracker, with the new view
+	 */
+	public ViewTracker update(int x, int y, int z) {
+		this.enteringCount = 0;
+		this.changedCount = 0;
+		if (!this.started) {
+			this.cx = x;
+			this.cy = y;
+			this.cz = z;
+			int r = this.radius;
+			int i = 0;
+			for (int rz = -r; rz <= r; rz++) {
+				for (int ry = r; ry >= -r; ry--) {
+					for (int rx = -r; rx <= r; rx++) this.cells[i++] = symbol(x + rx, y + ry, z + rz);
+				}
+			}
+			this.started = true;
+			this.full = true;
+			this.mx = this.my = this.mz = 0;
+		} else {
+			this.full = false;
+			int ox = this.cx, oy = this.cy, oz = this.cz;
+			this.mx = x - ox;
+			this.my = y - oy;
+			this.mz = z - oz;
+			if (this.mx != 0 || this.my != 0 || this.mz != 0) move(x, y, z);
+			if (this.overflow) {
+				int r = this.radius;
+				for (int rz = -r; rz <= r; rz++) {
+					for (int ry = r; ry >= -r; ry--) {
+						for (int rx = -r; rx <= r; rx++) check(x + rx, y + ry, z + rz);
+					}
+				}
+			} else {
+				for (int i = 0; i < this.dirtyCount; i++) {
+					long k = this.dirty[i];
+					check(LocationKey.getX(k), LocationKey.getY(k), LocationKey.getZ(k));
+				}
+			}
+			check(this.px, this.py, this.pz);
+			check(ox, oy, oz);
+			check(x, y, z);
+		}
+		Player p = this.world.getPlayer();
+		if (p != null) {
+			BlockPos at = p.getBlockPos();
+			this.px = at.getX();
+			this.py = at.getY();
+			this.pz = at.getZ();
+			check(this.px, this.py, this.pz);
+		}
+		this.dirtyCount = 0;
+		this.overflow = false;
+		return this;
+	}
+
+	/**
+	 * It moves the centre of the view, keeping the symbols of the cells that stay in it and rendering the ones that
+	 * enter it.
+	 * @param x x coordinate of the new centre
+	 * @param y y coordinate of the new centre
+	 * @param z z coordinate of the new centre
+	 */
+	private void move(int x, int y, int z) {
+		int r = this.radius;
+		int i = 0;
+		for (int rz = -r; rz <= r; rz++) {
+			for (int ry = r; ry >= -r; ry--) {
+				for (int rx = -r; rx <= r; rx++) {
+					int ox = rx + this.mx, oy = ry + this.my, oz = rz + this.mz;
+					if (inside(ox, oy, oz)) this.shifted[i] = this.cells[index(ox, oy, oz)];
+					else {
+						char c = symbol(x + rx, y + ry, z + rz);
+						this.shifted[i] = c;
+						this.entering[this.enteringCount++] = c;
+					}
+					i++;
+				}
+			}
+		}
+		char[] a = this.cells;
+		this.cells = this.shifted;
+		this.shifted = a;
+		this.cx = x;
+		this.cy = y;
+		this.cz = z;
+	}
+
+	/**
+	 * It looks again at a location and records its cell as changed if its symbol is not the one of the view.
+	 * Locations outside the view are ignored.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 */
+	private void check(int x, int y, int z) {
+		int rx = x - this.cx, ry = y - this.cy, rz = z - this.cz;
+		if (!inside(rx, ry, rz)) return;
+		int i = index(rx, ry, rz);
+		char c = symbol(x, y, z);
+		if (this.cells[i] != c) {
+			this.cells[i] = c;
+			this.changed[this.changedCount++] = i;
+		}
+	}
+
+	/**
+	 * It returns the symbol of a location in the current view, as NeighbourhoodRenderer does: 'X' outside the world,
+	 * except for the centre.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return symbol of the location
+	 */
+	private char symbol(int x, int y, int z) {
+		if (this.world.getBounds().contains(x, y, z) || (x == this.cx && y == this.cy && z == this.cz)) return this.world.symbolAt(x, y, z);
+		return 'X';
+	}
+
+	/**
+	 * It checks if a position relative to the centre is inside the view.
+	 * @param rx x-axis difference
+	 * @param ry y-axis difference
+	 * @param rz z-axis difference
+	 * @return true if every difference is between -radius and radius
+	 */
+	private boolean inside(int rx, int ry, int rz) {
+		int r = this.radius;
+		return rx >= -r && rx <= r && ry >= -r && ry <= r && rz >= -r && rz <= r;
+	}
+
+	/**
+	 * It returns the index of a cell in the order of the view.
+	 * @param rx x-axis difference from the centre
+	 * @param ry y-axis difference from the centre
+	 * @param rz z-axis difference from the centre
+	 * @return index in 'cells'
+	 */
+	private int index(int rx, int ry, int rz) {
+		int r = this.radius;
+		return ((rz + r) * this.side + (r - ry)) * this.side + rx + r;
+	}
+
+	/**
+	 * It records the changes of the locations inside the last view, which are checked by the next update().
+	 * @param e event of the world
+	 */
+	@Override
+	public void onEvent(WorldEvent e) {
+		if (!this.started || this.overflow || !inside(e.getX() - this.cx, e.getY() - this.cy, e.getZ() - this.cz)) return;
+		if (this.dirtyCount == MAX_DIRTY) this.overflow = true;
+		else this.dirty[this.dirtyCount++] = LocationKey.pack(e.getX(), e.getY(), e.getZ());
+	}
+
+	/**
+	 * Trivial getter
+	 * @return true if the last view must be sent in full
+	 */
+	public boolean isFull() {
+		return this.full;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of cells that entered the last view
+	 */
+	public int getEntering() {
+		return this.enteringCount;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of cells of the previous view whose symbol changed in the last one
+	 */
+	public int getChanged() {
+		return this.changedCount;
+	}
+
+	/**
+	 * It returns the symbol of a cell of the last view.
+	 * @param rx x-axis difference from the centre
+	 * @param ry y-axis difference from the centre
+	 * @param rz z-axis difference from the centre
+	 * @return symbol of the cell
+	 * @throws IndexOutOfBoundsException if the cell is outside the view
+	 */
+	public char getCell(int rx, int ry, int rz) {
+		if (!inside(rx, ry, rz)) throw new IndexOutOfBoundsException("Cell " + rx + " " + ry + " " + rz);
+		return this.cells[index(rx, ry, rz)];
+	}
+
+	/**
+	 * It appends the last view as it must be sent: in full or as the cells that changed (see ViewTracker).
+	 * @param sb builder where the view is appended
+	 * @return the builder
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		if (this.full) {
+			sb.append("view ").append(this.radius).append('\n');
+			return appendView(sb);
+		}
+		sb.append("delta ").append(this.mx).append(' ').append(this.my).append(' ').append(this.mz).append(' ');
+		if (this.enteringCount == 0) sb.append('-');
+		else sb.append(this.entering, 0, this.enteringCount);
+		sb.append(' ').append(this.changedCount);
+		int r = this.radius;
+		for (int j = 0; j < this.changedCount; j++) {
+			int i = this.changed[j];
+			sb.append(' ').append(i % this.side - r).append(' ').append(r - i / this.side % this.side).append(' ')
+				.append(i / (this.side * this.side) - r).append(' ').append(this.cells[i]);
+		}
+		return sb.append('\n');
+	}
+
+	/**
+	 * It appends the last view in full, in the format of NeighbourhoodRenderer.
+	 * @param sb builder where the view is appended
+	 * @return the builder
+	 */
+	public StringBuilder appendView(StringBuilder sb) {
+		int n = this.side * this.side;
+		for (int i = 0; i < this.cells.length; i += this.side) {
+			sb.append(this.cells, i, this.side).append(' ');
+			if ((i + this.side) % n == 0) sb.append('\n');
+		}
+		return sb;
+	}
+
+	/**
+	 * It forgets the last view, so the next one is sent in full.
+	 */
+	public void reset() {
+		this.started = false;
+		this.dirtyCount = 0;
+		this.overflow = false;
+	}
+
+	/**
+	 * It unsubscribes the tracker from the events of the world.
+	 */
+	@Override
+	public void close() {
+		this.world.getEventBus().unsubscribe(this);
+	}
+
+	@Override
+	public String toString() {
+		return appendView(new StringBuilder(this.cells.length + this.side * (this.side + 1))).toString();
+	}
+}
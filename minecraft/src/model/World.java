@@ -1,12 +1,26 @@
 package model;
 
-import java.util.HashMap;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import model.entities.Creature;
 import model.entities.Player;
+import model.event.WorldEvent;
+import model.event.WorldEventBus;
+import model.storage.BlockStorage;
+import model.storage.ChunkSection;
+import model.storage.FloodFill;
+import model.storage.LocationKey;
+import model.storage.LongObjectMap;
+import model.storage.SpheroidCarver;
 
 import org.bukkit.util.noise.CombinedNoiseGenerator;
 import org.bukkit.util.noise.OctaveGenerator;
@@ -29,6 +43,11 @@ import org.bukkit.util.noise.PerlinOctaveGenerator;
 /**
  * Class world represents the world where player can move, select items, etc.
  * It implements methods which are necessary to generate the world and manage all actions that happen in this world.
+ * A world generated in parallel (see World(long, int, String, String, ForkJoinPool)) only depends on its seed and
+ * size, not on the number of threads, but it is not the world the sequential generation creates with the same seed
+ * and size: every tile of the parallel generation uses its own random generators.
+ * A lazy world is equal to the parallel one. In both, the water and lava of a source do not flow out of the tile of
+ * the source, so the liquids are clipped at the edges of the tiles.
  * @author Katarzyna Kaczorowska
  *
  */
@@ -42,6 +61,21 @@ public class World {
      * Size of the world in the (x,z) plane.
      */
     private int worldSize;
+    
+    /**
+     * Limits of the world, computed once from its size. null if the world has no size.
+     */
+    private WorldBounds bounds;
+    
+    /**
+     * Id of the world, shared only with the live worlds equal to it (see WorldRegistry)
+     */
+    private int id;
+    
+    /**
+     * Hash code of the world, computed once from its name, seed and size
+     */
+    private final int hash;
   
     /**
      * World seed for procedural world generation
@@ -49,22 +83,65 @@ public class World {
 	private long seed;
 
     /**
-     * blocks on the world map
+     * blocks on the world map, stored in palette-compressed sections
+     */
+    private BlockStorage blocks;	
+    
+    /**
+     * flood fill used to generate water and lava over 'blocks'
+     */
+    private FloodFill flood;
+    
+    /**
+     * every flood fill used to generate this world, to report their speed
+     */
+    private List<FloodFill> floods;
+    
+    /**
+     * tiles of a world generated lazily (or in parallel, while it is generated), null otherwise
+     */
+    private Tile[] tiles;
+    
+    /**
+     * number of tiles in 'x' and 'z'
+     */
+    private int tilesPerSide;
+    
+    /**
+     * noise generators of a world generated lazily (or in parallel, while it is generated)
+     */
+    private Noises noises;
+    
+    /**
+     * time spent digging caves while generating this world, in nanoseconds
      */
-    private Map<Location, Block> blocks;	
+    private AtomicLong caveNanos = new AtomicLong();
+    
+    /**
+     * time spent filling veins while generating this world, in nanoseconds
+     */
+    private AtomicLong veinNanos = new AtomicLong();
     
 	/**
-	 * Items deposited somewhere in this world.
+	 * Items deposited somewhere in this world, indexed by the packed key of their location (see LocationKey).
 	 */ 
-    private Map<Location, ItemStack> items;
+    private LongObjectMap<ItemStack> items;
     /**
-     * Mapped collection of creatures in the wolrd 
+     * Mapped collection of creatures in the wolrd, indexed by the packed key of their location
      */
-    private Map<Location, Creature> creatures;
+    private LongObjectMap<Creature> creatures;
+    /**
+     * Key of the locations that can not hold items or creatures; it is never stored in 'items' or 'creatures'
+     */
+    private static final long NO_KEY = -1L;
     /**
      * Player
      */
     private Player player;
+    /**
+     * Bus of the changes of the locations (see getEventBus()), null until it is asked for
+     */
+    private volatile WorldEventBus events;
 
     
     /** This internal class represents a two-dimensional height map
@@ -101,12 +178,13 @@ public class World {
     	
     	/**
     	 * Constructor for height map
-    	 * @param worldsize size of world
+    	 * @param bounds limits of the world
     	 */
-		HeightMap(int worldsize) {
+		HeightMap(WorldBounds bounds) {
+			int worldsize = bounds.getMaxX() - bounds.getMinX() + 1;
 			heightMap = new double[worldsize][worldsize];
-			positiveWorldLimit  = worldsize/2;
-			negativeWorldLimit = (worldsize % 2 == 0) ? -(positiveWorldLimit-1) : -positiveWorldLimit;
+			positiveWorldLimit  = bounds.getMaxX();
+			negativeWorldLimit = bounds.getMinX();
 		}
 		
 		/**
@@ -138,6 +216,57 @@ public class World {
 	
 	private HeightMap heightMap;
 	
+	/**
+	 * Side of the square tiles, in columns, used by the parallel generation. It matches the sections
+	 * of the block storage, so two tiles never modify the same section.
+	 */
+	private static final int TILE_SIZE = ChunkSection.SIZE;
+	/**
+	 * Distance in tiles a cave can reach from the tile where it starts: a cave walks less than 200 unit steps
+	 * and its spheroids have a radius smaller than 6
+	 */
+	private static final int CAVE_REACH = 14;
+	/**
+	 * Distance in tiles a vein can reach from the tile where it starts: less than 38 unit steps and radius 1.5
+	 */
+	private static final int VEIN_REACH = 4;
+	/**
+	 * Materials of the veins, in the order they are generated
+	 */
+	private static final Material[] VEIN_MATERIALS = {Material.GRANITE, Material.OBSIDIAN};
+	/**
+	 * Abundance of every material of VEIN_MATERIALS
+	 */
+	private static final double[] VEIN_ABUNDANCE = {0.5, 0.3};
+	/**
+	 * Probability of a creature spawning above a surface block
+	 */
+	private static final double ENTITY_SPAWN_CHANCE = 0.05;
+	/**
+	 * Probability of items spawning above a surface block without creature
+	 */
+	private static final double ITEMS_SPAWN_CHANCE = 0.10;
+	/**
+	 * Probability of spawned items being food
+	 */
+	private static final double FOOD_CHANCE = 0.8;
+	/**
+	 * Probability of spawned items being tools
+	 */
+	private static final double TOOL_CHANCE = 0.1;
+	/**
+	 * Stream that discards everything printed to it, used to create worlds and play games without printing them
+	 */
+	public static final PrintStream QUIET = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+	
 	/**
 	 * Constructor used to create a world with specified name.
 	 * @param name The name for new-created world.
@@ -145,6 +274,8 @@ public class World {
 	
 	public World(String name) {
 		this.name=name;
+		this.hash = hash(this.name, this.seed, this.worldSize);
+		this.id = WorldRegistry.register(this, this.name, this.seed, this.worldSize);
 	}
 	
 	/**
@@ -156,18 +287,112 @@ public class World {
 	 */
 	
 	public World(long s, int size, String name, String playerName) {
+		this(s, size, name, playerName, null);
+	}
+
+	/**
+	 * It creates a world of size size*size in the plane (x,z) using the threads of a pool. The world only depends
+	 * on the seed and the size, not on the number of threads, but it is not the same world created by the sequential generation.
+	 * @param s seed
+	 * @param size size of world
+	 * @param name name of world
+	 * @param playerName name of player
+	 * @param pool pool used to generate the world, or null to generate it sequentially
+	 */
+
+	public World(long s, int size, String name, String playerName, ForkJoinPool pool) {
+		this(s, size, name, playerName, pool, false, Material.rng, System.out);
+	}
+
+	/**
+	 * It creates a world of size size*size in the plane (x,z) that is generated lazily: a tile of 16x16 columns is only
+	 * generated the first time one of its locations is used, so creating the world takes the same time whatever its size.
+	 * The world is equal to the one generated in parallel with the same seed and size.
+	 * @param s seed
+	 * @param size size of world
+	 * @param name name of world
+	 * @param playerName name of player
+	 * @param lazy true to generate the world lazily, false to generate it sequentially
+	 */
+
+	public World(long s, int size, String name, String playerName, boolean lazy) {
+		this(s, size, name, playerName, null, lazy, Material.rng, System.out);
+	}
+
+	/**
+	 * It creates a world of size size*size in the plane (x,z) sequentially, without printing the progress of the
+	 * generation and choosing the materials of the items with the given generator instead of the one of Material.
+	 * With the same seed, size and state of the generator, it is equal to the world created by World(long, int, String, String).
+	 * @param s seed
+	 * @param size size of world
+	 * @param name name of world
+	 * @param playerName name of player
+	 * @param materialRng random generator used to choose the material of the items
+	 * @return created world
+	 */
+
+	public static World headless(long s, int size, String name, String playerName, Random materialRng) {
+		return new World(s, size, name, playerName, null, false, materialRng, QUIET);
+	}
+
+	/**
+	 * It creates a world of size size*size in the plane (x,z) sequentially, in parallel or lazily.
+	 * @param s seed
+	 * @param size size of world
+	 * @param name name of world
+	 * @param playerName name of player
+	 * @param pool pool used to generate the world, or null
+	 * @param lazy true to generate the world lazily, ignoring the pool
+	 * @param materialRng random generator used to choose the material of the items of the sequential generation
+	 * @param log stream where the progress of the sequential and the parallel generation is printed
+	 */
+
+	private World(long s, int size, String name, String playerName, ForkJoinPool pool, boolean lazy, Random materialRng, PrintStream log) {
 
 		if(size<=0) throw new IllegalArgumentException();
 		this.seed=s;
 		this.worldSize = size;
+		this.bounds = WorldBounds.ofSize(size);
 		this.name = name;
+		this.hash = hash(this.name, this.seed, this.worldSize);
+		this.id = WorldRegistry.register(this, this.name, this.seed, this.worldSize);
 		
-		this.blocks = new HashMap<Location, Block>();
-		this.items = new HashMap<Location, ItemStack>();
-		this.creatures = new HashMap<Location, Creature>();
-		generate(s, size);
+		this.blocks = new BlockStorage(this.bounds);
+		this.flood = new FloodFill(this.blocks);
+		this.floods = new ArrayList<FloodFill>();
+		this.floods.add(this.flood);
+		this.items = new LongObjectMap<ItemStack>();
+		this.creatures = new LongObjectMap<Creature>();
+		if (lazy) generateLazy(s, size);
+		else if (pool == null) generate(s, size, materialRng, log);
+		else generateParallel(s, size, pool, log);
 		this.getPlayer().setName(playerName);
 	}
+
+	/**
+	 * It creates an empty world of size size*size in the plane (x,z), without blocks, items, creatures nor player and
+	 * with the surface at y=0. It is used by WorldSnapshot to restore a world without generating it.
+	 * @param s seed
+	 * @param size size of world
+	 * @param name name of world
+	 */
+
+	World(long s, int size, String name) {
+		if(size<=0) throw new IllegalArgumentException();
+		this.seed=s;
+		this.worldSize = size;
+		this.bounds = WorldBounds.ofSize(size);
+		this.name = name;
+		this.hash = hash(this.name, this.seed, this.worldSize);
+		this.id = WorldRegistry.register(this, this.name, this.seed, this.worldSize);
+		this.blocks = new BlockStorage(this.bounds);
+		this.flood = new FloodFill(this.blocks);
+		this.floods = new ArrayList<FloodFill>();
+		this.floods.add(this.flood);
+		this.items = new LongObjectMap<ItemStack>();
+		this.creatures = new LongObjectMap<Creature>();
+		this.heightMap = new HeightMap(this.bounds);
+	}
   
 
 	 /**
@@ -175,8 +400,10 @@ public class World {
      * will be eliminated. Using the same seed and size we can generate equal worlds
      * @param seed for the generation algorithm 
      * @param size world size for x and z dimensions
+     * @param materialRng random generator used to choose the material of the items
+     * @param log stream where the progress of the generation is printed
      */
-	    private  void generate(long seed, int size) {
+	    private  void generate(long seed, int size, Random materialRng, PrintStream log) {
 	    	
 	    	Random rng = new Random(getSeed());
 
@@ -184,166 +411,66 @@ public class World {
 	    	creatures.clear();
 	    	items.clear();
 	    	
-	    	heightMap = new HeightMap(size);
+	    	heightMap = new HeightMap(bounds);
 	    	CombinedNoiseGenerator noise1 = new CombinedNoiseGenerator(this);
 	    	CombinedNoiseGenerator noise2 = new CombinedNoiseGenerator(this);
 	    	OctaveGenerator noise3 = new PerlinOctaveGenerator(this, 6);
 	    	
-	    	System.out.println("Generating surface of the world...");
+	    	log.println("Generating surface of the world...");
 	    	for (int x=0; x<size; x++) {
 	    		for (int z=0; z<size; z++) {
-	    	    	double heightLow = noise1.noise(x*1.3, z*1.3) / 6.0 - 4.0;
-	    	    	double heightHigh = noise2.noise(x*1.3, z*1.3) / 5.0 + 6.0;
-	    	    	double heightResult = 0.0;
-	    	    	if (noise3.noise(x, z, 0.5, 2) / 8.0 > 0.0)
-	    	    		heightResult = heightLow;
-	    	    	else
-	    	    		heightResult = Math.max(heightHigh, heightLow);
-	    	    	heightResult /= 2.0;
-	    	    	if (heightResult < 0.0)
-	    	    		heightResult = heightResult * 8.0 / 10.0;
-	    	    	heightMap.heightMap[x][z] = Math.floor(heightResult + Location.SEA_LEVEL);
+	    	    	heightMap.heightMap[x][z] = surfaceHeight(noise1, noise2, noise3, x, z);
 	    		}
 	    	}
 	    	
-	    	SolidBlock block = null;
-	    	Location location = null;
-	    	Material material = null;
 	    	OctaveGenerator noise = new PerlinOctaveGenerator(this, 8);
-	    	System.out.println("Generando terreno...");
+	    	log.println("Generando terreno...");
 	    	for (int x=0; x<size; x++) {
 	    		for (int z=0; z<size; z++) {
-	    	    	double dirtThickness = noise.noise(x, z, 0.5, 2.0) / 24 - 4;
-	    	    	double dirtTransition = heightMap.heightMap[x][z];
-	    	    	double stoneTransition = dirtTransition + dirtThickness;
-	    	    	for (int y=0; y<= dirtTransition; y++) {
-	    	    		if (y==0) material = Material.BEDROCK;
-	    	    		else if (y <= stoneTransition) 
-	    	    			material = Material.STONE;
-	    	    		else // if (y <= dirtTransition)
-	    	    			material = Material.DIRT;
-						try {
-							location = new Location(this,x+heightMap.negativeWorldLimit,y,z+heightMap.negativeWorldLimit);
-							block = new SolidBlock(material);
-							if (rng.nextDouble() < 0.5) 
-								block.setDrops(block.getType(), 1);
-							blocks.put(location, block);
-						} catch (WrongMaterialException | StackSizeException e) {
-							// Should never happen
-							e.printStackTrace();
-						}
-	    	    	}
-
+	    	    	generateColumn(rng, noise, x, z);
 	    		}
 	    	}
 	    	
 	    	int numCuevas = size * size * 256 / 8192;
-			double theta = 0.0;
-			double deltaTheta = 0.0;
-			double phi = 0.0;
-			double deltaPhi = 0.0;
+	    	List<double[]> spheroids = new ArrayList<double[]>();
+	    	SpheroidCarver carver = new SpheroidCarver(blocks, bounds.getMinX());
 
-			System.out.print("Generando cuevas");
+			log.print("Generando cuevas");
 	    	for (int cueva=0; cueva<numCuevas; cueva++) {
-	    		System.out.print("."); System.out.flush();
-	    		Location cavePos = new Location(this,rng.nextInt(size),rng.nextInt((int)Location.UPPER_Y_VALUE), rng.nextInt(size));
-	    		double caveLength = rng.nextDouble() * rng.nextDouble() * 200;
-	    		theta = rng.nextDouble() * Math.PI * 2;
-	    		deltaTheta = 0.0;
-	    		phi = rng.nextDouble() * Math.PI * 2;
-	    		deltaPhi = 0.0;
-	    		double caveRadius = rng.nextDouble() * rng.nextDouble();
-
-	    		for (int i=1; i <= (int)caveLength ; i++) {
-	    			cavePos.setX(cavePos.getX()+ Math.sin(theta)*Math.cos(phi));
-	    			cavePos.setY(cavePos.getY()+ Math.cos(theta)*Math.cos(phi));
-	    			cavePos.setZ(cavePos.getZ()+ Math.sin(phi));
-	    			theta += deltaTheta*0.2;
-	    			deltaTheta *= 0.9;
-	    			deltaTheta += rng.nextDouble();
-	    			deltaTheta -= rng.nextDouble();
-	    			phi /= 2.0;
-	    			phi += deltaPhi/4.0;
-	    			deltaPhi *= 0.75;
-	    			deltaPhi += rng.nextDouble();
-	    			deltaPhi -= rng.nextDouble();
-	    			if (rng.nextDouble() >= 0.25) {
-	    				Location centerPos = new Location(cavePos);
-	    				centerPos.setX(centerPos.getX() + (rng.nextDouble()*4.0-2.0)*0.2);
-	    				centerPos.setY(centerPos.getY() + (rng.nextDouble()*4.0-2.0)*0.2);
-	    				centerPos.setZ(centerPos.getZ() + (rng.nextDouble()*4.0-2.0)*0.2);
-	    				double radius = (Location.UPPER_Y_VALUE - centerPos.getY()) / Location.UPPER_Y_VALUE;
-	    				radius = 1.2 + (radius * 3.5 + 1) * caveRadius;
-	    				radius *= Math.sin(i * Math.PI / caveLength);
-	    				try {
-	    					fillOblateSpheroid( centerPos, radius, null);
-	    				} catch (WrongMaterialException e) {
-	    					e.printStackTrace();
-	    				}
-	    			}
-
-	    		}
+	    		log.print("."); log.flush();
+	    		spheroids.clear();
+	    		caveSpheroids(rng, rng.nextInt(size), rng.nextInt((int)Location.UPPER_Y_VALUE), rng.nextInt(size), spheroids);
+	    		carve(carver, spheroids, null, 0, size, 0, size);
 	    	}
-	    	System.out.println();
+	    	log.println();
 	    	
-	    	double abundance[] = new double[2];
-	    	abundance[0] = 0.5;
-	    	abundance[1] =  0.3; 
-	    	int numVeins[] = new int[2];
-	    	numVeins[0] = (int) (size * size * 256 * abundance[0]) / 16384; 
-	    	numVeins[1] =  (int) (size * size * 256 * abundance[1]) / 16384;
-
-	    	Material vein = Material.GRANITE;
-	    	for (int numVein=0 ; numVein<2 ; numVein++, vein = Material.OBSIDIAN) { 
-	    		System.out.print("Generando vetas de "+vein);
-	    		for (int v=0; v<numVeins[numVein]; v++) {
-	    			System.out.print(vein.getSymbol());
-	    			Location veinPos = new Location(this,rng.nextInt(size),rng.nextInt((int)Location.UPPER_Y_VALUE), rng.nextInt(size));
-	    			double veinLength = rng.nextDouble() * rng.nextDouble() * 75 * abundance[numVein];
-	    			theta = rng.nextDouble() * Math.PI * 2;
-	    			deltaTheta = 0.0;
-	    			phi = rng.nextDouble() * Math.PI * 2;
-	    			deltaPhi = 0.0;
-	    			for (int len=0; len<(int)veinLength; len++) {
-	    				veinPos.setX(veinPos.getX()+ Math.sin(theta)*Math.cos(phi));
-	    				veinPos.setY(veinPos.getY()+ Math.cos(theta)*Math.cos(phi));
-	    				veinPos.setZ(veinPos.getZ()+ Math.sin(phi));
-	    				theta += deltaTheta*0.2;
-	    				deltaTheta *= 0.9;
-	    				deltaTheta += rng.nextDouble();
-	    				deltaTheta -= rng.nextDouble();
-	    				phi /= 2.0;
-	    				phi += deltaPhi/4.0;
-	    				deltaPhi *= 0.9; 
-	    				deltaPhi += rng.nextDouble();
-	    				deltaPhi -= rng.nextDouble();
-	    				double radius = abundance[numVein] * Math.sin(len * Math.PI / veinLength) + 1;
-
-	    				try {
-	    					fillOblateSpheroid(veinPos, radius, vein);
-	    				} catch (WrongMaterialException ex) {
-	    					// should not ocuur
-	    					ex.printStackTrace();
-	    				}
-	    			}
+	    	for (int numVein=0 ; numVein<VEIN_MATERIALS.length ; numVein++) { 
+	    		Material vein = VEIN_MATERIALS[numVein];
+	    		int numVeins = (int) (size * size * 256 * VEIN_ABUNDANCE[numVein]) / 16384;
+	    		log.print("Generando vetas de "+vein);
+	    		for (int v=0; v<numVeins; v++) {
+	    			log.print(vein.getSymbol());
+	    			spheroids.clear();
+	    			veinSpheroids(rng, rng.nextInt(size), rng.nextInt((int)Location.UPPER_Y_VALUE), rng.nextInt(size), VEIN_ABUNDANCE[numVein], spheroids);
+	    			carve(carver, spheroids, vein, 0, size, 0, size);
 	    		}
-	    		System.out.println();
+	    		log.println();
 	    	}
 	    	
-	    	System.out.println();
+	    	log.println();
      	
 	    	char water= Material.WATER.getSymbol();
 
 	    	int numWaterSources = size*size/800;
 	    	
-	    	System.out.print("Creating underground water sources");
+	    	log.print("Creating underground water sources");
 	    	int x = 0;
 	    	int z = 0;
 	    	int y = 0;
 	    	for (int w=0; w<numWaterSources; w++) {
-	    		System.out.print(water);
-	    		x = rng.nextInt(size)+heightMap.negativeWorldLimit;
-	    		z = rng.nextInt(size)+heightMap.negativeWorldLimit;
+	    		log.print(water);
+	    		x = rng.nextInt(size)+bounds.getMinX();
+	    		z = rng.nextInt(size)+bounds.getMinZ();
 	    		y = (int)Location.SEA_LEVEL - 1 - rng.nextInt(2);
 	    		try {
 					floodFill(Material.WATER, new Location(this,x,y,z));
@@ -351,15 +478,15 @@ public class World {
 					throw new RuntimeException(e);
 				}
 	    	}
-	    	System.out.println();
+	    	log.println();
 	   
-	    	System.out.print("Creando erupciones de lava");
+	    	log.print("Creando erupciones de lava");
 	    	char lava = Material.LAVA.getSymbol();
 	    	int numLavaSources = size*size/2000;
 	    	for (int w=0; w<numLavaSources; w++) {
-	    		System.out.print(lava);
-	    		x = rng.nextInt(size)+heightMap.negativeWorldLimit;
-	    		z = rng.nextInt(size)+heightMap.negativeWorldLimit;
+	    		log.print(lava);
+	    		x = rng.nextInt(size)+bounds.getMinX();
+	    		z = rng.nextInt(size)+bounds.getMinZ();
 	    		y = (int)((Location.SEA_LEVEL - 3) * rng.nextDouble()* rng.nextDouble());
 	    		try {
 					floodFill(Material.LAVA, new Location(this,x,y,z));
@@ -367,117 +494,728 @@ public class World {
 					throw new RuntimeException(e);			
 				}
 	    	}
-	    	System.out.println();
+	    	log.println();
 
 	    	OctaveGenerator onoise1 = new PerlinOctaveGenerator(this, 8);
-	    	OctaveGenerator onoise2 = new PerlinOctaveGenerator(this, 8);
-	    	boolean sandChance = false;
-	    	double entitySpawnChance = 0.05;
-	    	double itemsSpawnChance = 0.10;
-	    	double foodChance = 0.8;
-	    	double toolChance = 0.1;
-	    	double weaponChance = 0.1;
 	    	
-	    	System.out.println("Generating land area, entities and items...");
+	    	log.println("Generating land area, entities and items...");
 	    	for (x=0; x<size; x++) {    		
 	    		for (z=0; z<size; z++) {
-	    			sandChance = onoise1.noise(x, z, 0.5, 2.0) > 8.0;
-	    			y = (int)heightMap.heightMap[(int)x][(int)z];
-	    			Location surface = new Location(this,x+heightMap.negativeWorldLimit,y,z+heightMap.negativeWorldLimit); 
 	    			try {
-		    			if (sandChance) {
-		    				SolidBlock sand = new SolidBlock(Material.SAND);
-		    				if (rng.nextDouble() < 0.5)
-		    					sand.setDrops(Material.SAND, 1);
-		    				blocks.put(surface, sand);
-		    			}
-		    			else {
-		    				SolidBlock grass = new SolidBlock(Material.GRASS);
-		    				if (rng.nextDouble() < 0.5)
-		    					grass.setDrops(Material.GRASS, 1);
-		    				blocks.put(surface, grass);
-		    			}
-	    			} catch (WrongMaterialException | StackSizeException ex) {
-	    				// will never happen
-	    				ex.printStackTrace();
+	    				Location aboveSurface = generateSurface(rng, onoise1, x, z);
+	    				Creature entity = randomCreature(rng, aboveSurface);
+	    				if (entity != null)
+	    					creatures.put(key(aboveSurface), entity);
+	    				else {
+	    					ItemStack stack = randomItems(rng, materialRng);
+	    					if (stack != null)
+	    						items.put(key(aboveSurface), stack);
+	    				}
+	    			} catch (BadLocationException e) {
+	    				throw new RuntimeException(e);
+	    			}
+	    		}
+	    	}
+
+	    	createPlayer();
+	    }
+	    
+	    /**
+	     * It generates a new world of size*size in the plane (x,z) using the threads of 'pool'. The plane is split into
+	     * tiles of TILE_SIZE*TILE_SIZE columns and every tile is generated by its own task with its own random generators,
+	     * derived from the seed and the position of the tile. First the caves, veins and liquid sources that start in every
+	     * tile are planned; then every tile is generated applying, clipped to its columns, the caves and veins of all the tiles
+	     * that can reach it. This way the result only depends on seed and size, not on the number of threads.
+	     * @param seed for the generation algorithm
+	     * @param size world size for x and z dimensions
+	     * @param pool pool that runs the tasks
+	     * @param log stream where the progress of the generation is printed
+	     */
+	    private void generateParallel(long seed, int size, ForkJoinPool pool, PrintStream log) {
+	    	startTiles(seed, size);
+	    	for (int tz=0; tz<tilesPerSide; tz++)
+	    		for (int tx=0; tx<tilesPerSide; tx++)
+	    			tiles[tz*tilesPerSide + tx] = new Tile(seed, size, tx, tz);
+	    	
+	    	log.println("Planning caves, veins and liquids...");
+	    	pool.invoke(new TileTask(tiles, 0, tiles.length, new TilePass() {
+	    		public void run(Tile t) {
+	    			planTile(t);
+	    		}
+	    	}));
+	    	
+	    	log.println("Generando terreno...");
+	    	final ConcurrentLinkedQueue<FloodFill> fills = new ConcurrentLinkedQueue<FloodFill>();
+	    	pool.invoke(new TileTask(tiles, 0, tiles.length, new TilePass() {
+	    		public void run(Tile t) {
+	    			FloodFill fill = fills.poll();
+	    			if (fill == null) fill = new FloodFill(blocks);
+	    			generateTile(t, fill);
+	    			fills.add(fill);
+	    		}
+	    	}));
+	    	floods.addAll(fills);
+	    	
+	    	for (Tile t : tiles) addTileEntities(t);
+	    	tiles = null;
+	    	noises = null;
+	    	createPlayer();
+	    }
+	    
+	    /**
+	     * It prepares a world of size*size in the plane (x,z) whose tiles are only generated the first time one of their
+	     * locations is used (see generateAt). Only the tile of the player is generated here. The world is equal to the one
+	     * generated in parallel with the same seed and size.
+	     * @param seed for the generation algorithm
+	     * @param size world size for x and z dimensions
+	     */
+	    private void generateLazy(long seed, int size) {
+	    	startTiles(seed, size);
+	    	createPlayer();
+	    }
+	    
+	    /**
+	     * It empties the world and prepares the noise generators and the array of tiles used by the tiled generation.
+	     * @param seed for the generation algorithm
+	     * @param size world size for x and z dimensions
+	     */
+	    private void startTiles(long seed, int size) {
+	    	blocks.clear();
+	    	creatures.clear();
+	    	items.clear();
+	    	heightMap = new HeightMap(bounds);
+	    	noises = new Noises(this);
+	    	tilesPerSide = (size + TILE_SIZE - 1) / TILE_SIZE;
+	    	tiles = new Tile[tilesPerSide * tilesPerSide];
+	    }
+	    
+	    /**
+	     * It returns a tile with its caves, veins and liquid sources planned, creating and planning it if necessary.
+	     * @param tx position of the tile in 'x'
+	     * @param tz position of the tile in 'z'
+	     * @return the tile, or null if it is outside the world
+	     */
+	    private Tile tileAt(int tx, int tz) {
+	    	if (tx < 0 || tx >= tilesPerSide || tz < 0 || tz >= tilesPerSide) return null;
+	    	Tile t = tiles[tz*tilesPerSide + tx];
+	    	if (t == null) {
+	    		t = new Tile(seed, worldSize, tx, tz);
+	    		tiles[tz*tilesPerSide + tx] = t;
+	    	}
+	    	if (!t.planned) planTile(t);
+	    	return t;
+	    }
+	    
+	    /**
+	     * It generates the tile that contains the column (x, z) if the world is generated lazily and the tile has not been
+	     * generated yet. Nothing is done for columns outside the world.
+	     * @param x x coordinate
+	     * @param z z coordinate
+	     */
+	    private void generateAt(double x, double z) {
+	    	if (tiles == null) return;
+	    	int bx = (int)Math.floor(x);
+	    	int bz = (int)Math.floor(z);
+	    	if (!bounds.containsColumn(bx, bz)) return;
+	    	int gx = bx - bounds.getMinX();
+	    	int gz = bz - bounds.getMinZ();
+	    	Tile t = tileAt(gx / TILE_SIZE, gz / TILE_SIZE);
+	    	if (!t.generated) {
+	    		generateTile(t, flood);
+	    		addTileEntities(t);
+	    	}
+	    }
+	    
+	    /**
+	     * It generates every tile that has not been generated yet if the world is generated lazily, so that the whole
+	     * world is in 'blocks', 'items' and 'creatures'. Nothing is done for the rest of worlds.
+	     */
+	    void generateAll() {
+	    	if (tiles == null) return;
+	    	for (int tz = 0; tz < tilesPerSide; tz++) {
+	    		for (int tx = 0; tx < tilesPerSide; tx++) {
+	    			Tile t = tileAt(tx, tz);
+	    			if (!t.generated) {
+	    				generateTile(t, flood);
+	    				addTileEntities(t);
 	    			}
+	    		}
+	    	}
+	    }
+	    
+	    /**
+	     * It decides the caves, veins and liquid sources that start in a tile.
+	     * @param t tile
+	     */
+	    private void planTile(Tile t) {
+	    	Random rng = t.random(2);
+	    	int width = t.x1 - t.x0;
+	    	int depth = t.z1 - t.z0;
+	    	int area = width * depth;
+	    	int numCuevas = randomCount(rng, area * 256 / 8192.0);
+	    	for (int cueva=0; cueva<numCuevas; cueva++)
+	    		caveSpheroids(rng, t.x0 + rng.nextInt(width), rng.nextInt((int)Location.UPPER_Y_VALUE), t.z0 + rng.nextInt(depth), t.caves);
+	    	for (int numVein=0; numVein<VEIN_MATERIALS.length; numVein++) {
+	    		int numVeins = randomCount(rng, area * 256 * VEIN_ABUNDANCE[numVein] / 16384);
+	    		for (int v=0; v<numVeins; v++)
+	    			veinSpheroids(rng, t.x0 + rng.nextInt(width), rng.nextInt((int)Location.UPPER_Y_VALUE), t.z0 + rng.nextInt(depth), VEIN_ABUNDANCE[numVein], t.veins.get(numVein));
+	    	}
+	    	
+	    	int numWaterSources = randomCount(rng, area / 800.0);
+	    	for (int w=0; w<numWaterSources; w++) {
+	    		int x = t.x0 + rng.nextInt(width) + bounds.getMinX();
+	    		int z = t.z0 + rng.nextInt(depth) + bounds.getMinZ();
+	    		t.water.add(new int[] {x, (int)Location.SEA_LEVEL - 1 - rng.nextInt(2), z});
+	    	}
+	    	int numLavaSources = randomCount(rng, area / 2000.0);
+	    	for (int w=0; w<numLavaSources; w++) {
+	    		int x = t.x0 + rng.nextInt(width) + bounds.getMinX();
+	    		int z = t.z0 + rng.nextInt(depth) + bounds.getMinZ();
+	    		t.lava.add(new int[] {x, (int)((Location.SEA_LEVEL - 3) * rng.nextDouble()* rng.nextDouble()), z});
+	    	}
+	    	t.planned = true;
+	    }
+	    
+	    /**
+	     * It generates a tile: terrain, the caves and veins of every tile that can reach it, the liquids of its own sources
+	     * (which do not flow out of the tile) and the surface. Creatures and items are kept in the tile.
+	     * @param t tile
+	     * @param fill flood fill used for the liquids
+	     */
+	    private void generateTile(Tile t, FloodFill fill) {
+	    	t.generated = true;
+	    	Random rng = t.random(0);
+	    	for (int x=t.x0; x<t.x1; x++)
+	    		for (int z=t.z0; z<t.z1; z++)
+	    			heightMap.heightMap[x][z] = surfaceHeight(noises.noise1, noises.noise2, noises.noise3, x, z);
+	    	for (int x=t.x0; x<t.x1; x++)
+	    		for (int z=t.z0; z<t.z1; z++)
+	    			generateColumn(rng, noises.dirt, x, z);
+	    	
+	    	SpheroidCarver carver = new SpheroidCarver(blocks, bounds.getMinX());
+	    	for (int tz=t.tz-CAVE_REACH; tz<=t.tz+CAVE_REACH; tz++) {
+	    		for (int tx=t.tx-CAVE_REACH; tx<=t.tx+CAVE_REACH; tx++) {
+	    			Tile u = tileAt(tx, tz);
+	    			if (u != null) carve(carver, u.caves, null, t.x0, t.x1, t.z0, t.z1);
+	    		}
+	    	}
+	    	for (int numVein=0; numVein<VEIN_MATERIALS.length; numVein++) {
+	    		for (int tz=t.tz-VEIN_REACH; tz<=t.tz+VEIN_REACH; tz++) {
+	    			for (int tx=t.tx-VEIN_REACH; tx<=t.tx+VEIN_REACH; tx++) {
+	    				Tile u = tileAt(tx, tz);
+	    				if (u != null) carve(carver, u.veins.get(numVein), VEIN_MATERIALS[numVein], t.x0, t.x1, t.z0, t.z1);
+	    			}
+	    		}
+	    	}
+	    	
+	    	int minX = t.x0 + bounds.getMinX();
+	    	int maxX = t.x1 + bounds.getMinX();
+	    	int minZ = t.z0 + bounds.getMinZ();
+	    	int maxZ = t.z1 + bounds.getMinZ();
+	    	try {
+	    		for (int[] w : t.water)
+	    			fill.fill(w[0], w[1], w[2], BlockFactory.createBlock(Material.WATER), null, minX, maxX, minZ, maxZ);
+	    		for (int[] l : t.lava)
+	    			fill.fill(l[0], l[1], l[2], BlockFactory.createBlock(Material.LAVA), null, minX, maxX, minZ, maxZ);
+	    	} catch (WrongMaterialException e) {
+	    		// should never happen
+	    		e.printStackTrace();
+	    	}
+	    	
+	    	populateTile(t, noises.sand);
+	    }
+	    
+	    /**
+	     * It adds to the world the creatures and items spawned in a tile.
+	     * @param t tile
+	     */
+	    private void addTileEntities(Tile t) {
+	    	for (Creature c : t.creatures)
+	    		creatures.put(key(c.getLocation()), c);
+	    	for (int i=0; i<t.items.size(); i++)
+	    		items.put(key(t.itemLocations.get(i)), t.items.get(i));
+	    	t.creatures.clear();
+	    	t.itemLocations.clear();
+	    	t.items.clear();
+	    }
+	    
+	    /**
+	     * It places the surface blocks of a tile and decides the creatures and items above them.
+	     * The creatures and items are kept in the tile until they are added to the world.
+	     * @param t tile
+	     * @param sandNoise noise that chooses between sand and grass
+	     */
+	    private void populateTile(Tile t, OctaveGenerator sandNoise) {
+	    	Random rng = t.random(1);
+	    	for (int x=t.x0; x<t.x1; x++) {
+	    		for (int z=t.z0; z<t.z1; z++) {
 	    			try {
-	    				Location aboveSurface = surface.above();
-	    				
-	    				if (rng.nextDouble() < entitySpawnChance) {
-	    					Creature entity =null;
-	    					double entityHealth = rng.nextInt((int)LivingEntity.MAX_HEALTH)+1;
-	    					if (rng.nextDouble() < 0.75) 
-	    						entity = new Monster(aboveSurface, entityHealth);
-	    					else 
-	    						entity = new Animal(aboveSurface, entityHealth);
-	    					creatures.put(aboveSurface, entity);
-	    				} else { 
-	    					Material itemMaterial = null;
-	    					int amount = 1; 
-	    					if (rng.nextDouble() < itemsSpawnChance) {
-	    						double rand = rng.nextDouble();
-	    						if (rand < foodChance) { 
-	    							itemMaterial = Material.getRandomItem(8, 11);
-	    							amount = rng.nextInt(5)+1;
-	    						}
-	    						else if (rand < foodChance+toolChance)
-	    							itemMaterial = Material.getRandomItem(12, 13);
-	    						else
-	    							itemMaterial = Material.getRandomItem(14, 15);
-	    						
-	    						items.put(aboveSurface, new ItemStack(itemMaterial, amount));
+	    				Location aboveSurface = generateSurface(rng, sandNoise, x, z);
+	    				Creature entity = randomCreature(rng, aboveSurface);
+	    				if (entity != null)
+	    					t.creatures.add(entity);
+	    				else {
+	    					ItemStack stack = randomItems(rng, rng);
+	    					if (stack != null) {
+	    						t.itemLocations.add(aboveSurface);
+	    						t.items.add(stack);
 	    					}
 	    				}
-	    			} catch (BadLocationException | StackSizeException e) {
-	    				throw new RuntimeException(e);    			}
-
+	    			} catch (BadLocationException e) {
+	    				throw new RuntimeException(e);
+	    			}
 	    		}
 	    	}
+	    }
+	    
+	    /**
+	     * It calculates the height of the surface in a column.
+	     * @param noise1 noise for low terrain
+	     * @param noise2 noise for high terrain
+	     * @param noise3 noise that chooses between low and high terrain
+	     * @param x x coordinate, from 0 to size
+	     * @param z z coordinate, from 0 to size
+	     * @return height of the surface
+	     */
+	    private static double surfaceHeight(CombinedNoiseGenerator noise1, CombinedNoiseGenerator noise2, OctaveGenerator noise3, int x, int z) {
+	    	double heightLow = noise1.noise(x*1.3, z*1.3) / 6.0 - 4.0;
+	    	double heightHigh = noise2.noise(x*1.3, z*1.3) / 5.0 + 6.0;
+	    	double heightResult = 0.0;
+	    	if (noise3.noise(x, z, 0.5, 2) / 8.0 > 0.0)
+	    		heightResult = heightLow;
+	    	else
+	    		heightResult = Math.max(heightHigh, heightLow);
+	    	heightResult /= 2.0;
+	    	if (heightResult < 0.0)
+	    		heightResult = heightResult * 8.0 / 10.0;
+	    	return Math.floor(heightResult + Location.SEA_LEVEL);
+	    }
+	    
+	    /**
+	     * It fills a column with bedrock, stone and dirt up to the height of the surface.
+	     * @param rng random generator for the drops
+	     * @param noise noise for the dirt thickness
+	     * @param x x coordinate, from 0 to size
+	     * @param z z coordinate, from 0 to size
+	     */
+	    private void generateColumn(Random rng, OctaveGenerator noise, int x, int z) {
+	    	SolidBlock block = null;
+	    	Material material = null;
+	    	double dirtThickness = noise.noise(x, z, 0.5, 2.0) / 24 - 4;
+	    	double dirtTransition = heightMap.heightMap[x][z];
+	    	double stoneTransition = dirtTransition + dirtThickness;
+	    	for (int y=0; y<= dirtTransition; y++) {
+	    		if (y==0) material = Material.BEDROCK;
+	    		else if (y <= stoneTransition) 
+	    			material = Material.STONE;
+	    		else // if (y <= dirtTransition)
+	    			material = Material.DIRT;
+	    		try {
+	    			block = new SolidBlock(material);
+	    			if (rng.nextDouble() < 0.5) 
+	    				block.setDrops(block.getType(), 1);
+	    			blocks.put(x+bounds.getMinX(), y, z+bounds.getMinZ(), block);
+	    		} catch (WrongMaterialException | StackSizeException e) {
+	    			// Should never happen
+	    			e.printStackTrace();
+	    		}
+	    	}
+	    }
+	    
+	    /**
+	     * It places the sand or grass block of the surface of a column.
+	     * @param rng random generator for the drops
+	     * @param sandNoise noise that chooses between sand and grass
+	     * @param x x coordinate, from 0 to size
+	     * @param z z coordinate, from 0 to size
+	     * @return the location above the surface
+	     * @throws BadLocationException if the surface is at the top of the world
+	     */
+	    private Location generateSurface(Random rng, OctaveGenerator sandNoise, int x, int z) throws BadLocationException {
+	    	boolean sandChance = sandNoise.noise(x, z, 0.5, 2.0) > 8.0;
+	    	int y = (int)heightMap.heightMap[x][z];
+	    	Location surface = new Location(this,x+bounds.getMinX(),y,z+bounds.getMinZ());
+	    	try {
+	    		Material material = sandChance ? Material.SAND : Material.GRASS;
+	    		SolidBlock block = new SolidBlock(material);
+	    		if (rng.nextDouble() < 0.5)
+	    			block.setDrops(material, 1);
+	    		blocks.put(x+bounds.getMinX(), y, z+bounds.getMinZ(), block);
+	    	} catch (WrongMaterialException | StackSizeException ex) {
+	    		// will never happen
+	    		ex.printStackTrace();
+	    	}
+	    	return surface.above();
+	    }
+	    
+	    /**
+	     * It decides if a creature spawns in a location and creates it.
+	     * @param rng random generator
+	     * @param location location of the creature
+	     * @return the new creature or null if none spawns
+	     */
+	    private static Creature randomCreature(Random rng, Location location) {
+	    	if (rng.nextDouble() >= ENTITY_SPAWN_CHANCE) return null;
+	    	double entityHealth = rng.nextInt((int)LivingEntity.MAX_HEALTH)+1;
+	    	if (rng.nextDouble() < 0.75) 
+	    		return new Monster(location, entityHealth);
+	    	else 
+	    		return new Animal(location, entityHealth);
+	    }
+	    
+	    /**
+	     * It decides if some items spawn and creates them.
+	     * @param rng random generator
+	     * @param materialRng random generator used to choose the material
+	     * @return the items or null if none spawn
+	     */
+	    private static ItemStack randomItems(Random rng, Random materialRng) {
+	    	if (rng.nextDouble() >= ITEMS_SPAWN_CHANCE) return null;
+	    	Material itemMaterial = null;
+	    	int amount = 1;
+	    	double rand = rng.nextDouble();
+	    	if (rand < FOOD_CHANCE) { 
+	    		itemMaterial = Material.getRandomItem(materialRng, 8, 11);
+	    		amount = rng.nextInt(5)+1;
+	    	}
+	    	else if (rand < FOOD_CHANCE+TOOL_CHANCE)
+	    		itemMaterial = Material.getRandomItem(materialRng, 12, 13);
+	    	else
+	    		itemMaterial = Material.getRandomItem(materialRng, 14, 15);
+	    	try {
+	    		return new ItemStack(itemMaterial, amount);
+	    	} catch (StackSizeException e) {
+	    		throw new RuntimeException(e);
+	    	}
+	    }
+	    
+	    /**
+	     * It walks a random cave and adds the spheroids that have to be emptied to dig it, as arrays {x, y, z, radius}.
+	     * @param rng random generator
+	     * @param x starting x, from 0 to size
+	     * @param y starting y
+	     * @param z starting z, from 0 to size
+	     * @param out list where the spheroids are added
+	     */
+	    private static void caveSpheroids(Random rng, double x, double y, double z, List<double[]> out) {
+	    	double caveLength = rng.nextDouble() * rng.nextDouble() * 200;
+	    	double theta = rng.nextDouble() * Math.PI * 2;
+	    	double deltaTheta = 0.0;
+	    	double phi = rng.nextDouble() * Math.PI * 2;
+	    	double deltaPhi = 0.0;
+	    	double caveRadius = rng.nextDouble() * rng.nextDouble();
 
-
+	    	for (int i=1; i <= (int)caveLength ; i++) {
+	    		x = x + Math.sin(theta)*Math.cos(phi);
+	    		y = y + Math.cos(theta)*Math.cos(phi);
+	    		z = z + Math.sin(phi);
+	    		theta += deltaTheta*0.2;
+	    		deltaTheta *= 0.9;
+	    		deltaTheta += rng.nextDouble();
+	    		deltaTheta -= rng.nextDouble();
+	    		phi /= 2.0;
+	    		phi += deltaPhi/4.0;
+	    		deltaPhi *= 0.75;
+	    		deltaPhi += rng.nextDouble();
+	    		deltaPhi -= rng.nextDouble();
+	    		if (rng.nextDouble() >= 0.25) {
+	    			double cx = x + (rng.nextDouble()*4.0-2.0)*0.2;
+	    			double cy = y + (rng.nextDouble()*4.0-2.0)*0.2;
+	    			double cz = z + (rng.nextDouble()*4.0-2.0)*0.2;
+	    			double radius = (Location.UPPER_Y_VALUE - cy) / Location.UPPER_Y_VALUE;
+	    			radius = 1.2 + (radius * 3.5 + 1) * caveRadius;
+	    			radius *= Math.sin(i * Math.PI / caveLength);
+	    			out.add(new double[] {cx, cy, cz, radius});
+	    		}
+	    	}
+	    }
+	    
+	    /**
+	     * It walks a random vein and adds the spheroids that have to be filled to create it, as arrays {x, y, z, radius}.
+	     * @param rng random generator
+	     * @param x starting x, from 0 to size
+	     * @param y starting y
+	     * @param z starting z, from 0 to size
+	     * @param abundance abundance of the material of the vein
+	     * @param out list where the spheroids are added
+	     */
+	    private static void veinSpheroids(Random rng, double x, double y, double z, double abundance, List<double[]> out) {
+	    	double veinLength = rng.nextDouble() * rng.nextDouble() * 75 * abundance;
+	    	double theta = rng.nextDouble() * Math.PI * 2;
+	    	double deltaTheta = 0.0;
+	    	double phi = rng.nextDouble() * Math.PI * 2;
+	    	double deltaPhi = 0.0;
+	    	for (int len=0; len<(int)veinLength; len++) {
+	    		x = x + Math.sin(theta)*Math.cos(phi);
+	    		y = y + Math.cos(theta)*Math.cos(phi);
+	    		z = z + Math.sin(phi);
+	    		theta += deltaTheta*0.2;
+	    		deltaTheta *= 0.9;
+	    		deltaTheta += rng.nextDouble();
+	    		deltaTheta -= rng.nextDouble();
+	    		phi /= 2.0;
+	    		phi += deltaPhi/4.0;
+	    		deltaPhi *= 0.9; 
+	    		deltaPhi += rng.nextDouble();
+	    		deltaPhi -= rng.nextDouble();
+	    		double radius = abundance * Math.sin(len * Math.PI / veinLength) + 1;
+	    		out.add(new double[] {x, y, z, radius});
+	    	}
+	    }
+	    
+	    /**
+	     * It fills the given spheroids with a material, only in the columns between (minX, minZ) included and (maxX, maxZ) excluded.
+	     * Caves remove the blocks of the spheroids and veins replace them with one shared block with drops of the vein material.
+	     * @param carver carver that applies the spheroids
+	     * @param spheroids spheroids as arrays {x, y, z, radius}, with 'x' and 'z' from 0 to size
+	     * @param material material to fill with, or null to empty the spheroids
+	     * @param minX first column in 'x', from 0 to size
+	     * @param maxX last column in 'x' plus one
+	     * @param minZ first column in 'z', from 0 to size
+	     * @param maxZ last column in 'z' plus one
+	     */
+	    private void carve(SpheroidCarver carver, List<double[]> spheroids, Material material, int minX, int maxX, int minZ, int maxZ) {
+	    	long start = System.nanoTime();
+	    	Block veinBlock = null;
+	    	if (material != null) {
+	    		try {
+	    			SolidBlock block = new SolidBlock(material);
+	    			block.setDrops(material, 1);
+	    			veinBlock = BlockStorage.shared(block);
+	    		} catch (WrongMaterialException | StackSizeException e) {
+	    			// should never happen
+	    			e.printStackTrace();
+	    			return;
+	    		}
+	    	}
+	    	int neg = bounds.getMinX();
+	    	for (double[] s : spheroids) {
+	    		if (s[0] + s[3] < minX - 1 || s[0] - s[3] > maxX || s[2] + s[3] < minZ - 1 || s[2] - s[3] > maxZ) continue;
+	    		carver.carve(s[0], s[1], s[2], s[3], veinBlock, minX + neg, maxX + neg, minZ + neg, maxZ + neg);
+	    	}
+	    	(material == null ? caveNanos : veinNanos).addAndGet(System.nanoTime() - start);
+	    }
+	    
+	    /**
+	     * It rounds an expected number of elements up or down at random, so that the mean is kept
+	     * when an area is split into smaller ones.
+	     * @param rng random generator
+	     * @param expected expected number of elements
+	     * @return number of elements to generate
+	     */
+	    private static int randomCount(Random rng, double expected) {
+	    	int n = (int) expected;
+	    	if (rng.nextDouble() < expected - n) n++;
+	    	return n;
+	    }
+	    
+	    /**
+	     * It creates the player and removes the creatures and items at its location.
+	     */
+	    private void createPlayer() {
 	    	player = new Player("Steve",this);
 	    	Location playerLocation = player.getLocation();
-	    	creatures.remove(playerLocation);
-	    	items.remove(playerLocation);
+	    	creatures.remove(key(playerLocation));
+	    	items.remove(key(playerLocation));
+	    }
+	    
+	    /**
+	     * Square part of the world generated by the tasks of the parallel generation. It keeps what its tasks decide
+	     * until it is applied to the world in a fixed order.
+	     */
+	    private static class Tile {
+	    	/**
+	    	 * Seed used to derive the random generators of the tile
+	    	 */
+	    	private long seed;
+	    	/**
+	    	 * Position of the tile in 'x'
+	    	 */
+	    	private int tx;
+	    	/**
+	    	 * Position of the tile in 'z'
+	    	 */
+	    	private int tz;
+	    	/**
+	    	 * If the caves, veins and liquid sources of the tile have been decided
+	    	 */
+	    	private boolean planned;
+	    	/**
+	    	 * If the blocks of the tile have been generated
+	    	 */
+	    	private boolean generated;
+	    	/**
+	    	 * First column of the tile in 'x', from 0 to size
+	    	 */
+	    	private int x0;
+	    	/**
+	    	 * Last column of the tile in 'x' plus one
+	    	 */
+	    	private int x1;
+	    	/**
+	    	 * First column of the tile in 'z', from 0 to size
+	    	 */
+	    	private int z0;
+	    	/**
+	    	 * Last column of the tile in 'z' plus one
+	    	 */
+	    	private int z1;
+	    	/**
+	    	 * Spheroids to empty for the caves that start in the tile
+	    	 */
+	    	private List<double[]> caves = new ArrayList<double[]>();
+	    	/**
+	    	 * Spheroids to fill for the veins that start in the tile, one list for every material of VEIN_MATERIALS
+	    	 */
+	    	private List<List<double[]>> veins = new ArrayList<List<double[]>>();
+	    	/**
+	    	 * Water sources of the tile, as arrays {x, y, z}
+	    	 */
+	    	private List<int[]> water = new ArrayList<int[]>();
+	    	/**
+	    	 * Lava sources of the tile, as arrays {x, y, z}
+	    	 */
+	    	private List<int[]> lava = new ArrayList<int[]>();
+	    	/**
+	    	 * Creatures spawned in the tile
+	    	 */
+	    	private List<Creature> creatures = new ArrayList<Creature>();
+	    	/**
+	    	 * Locations of the items spawned in the tile
+	    	 */
+	    	private List<Location> itemLocations = new ArrayList<Location>();
+	    	/**
+	    	 * Items spawned in the tile, in the same order as 'itemLocations'
+	    	 */
+	    	private List<ItemStack> items = new ArrayList<ItemStack>();
+	    	
+	    	/**
+	    	 * It creates the tile (tx, tz) of a world.
+	    	 * @param worldSeed seed of the world
+	    	 * @param size size of the world
+	    	 * @param tx position of the tile in 'x'
+	    	 * @param tz position of the tile in 'z'
+	    	 */
+	    	private Tile(long worldSeed, int size, int tx, int tz) {
+	    		this.seed = worldSeed ^ (tx * 0x9E3779B97F4A7C15L) ^ (tz * 0xC2B2AE3D27D4EB4FL);
+	    		this.tx = tx;
+	    		this.tz = tz;
+	    		this.x0 = tx * TILE_SIZE;
+	    		this.x1 = Math.min(size, this.x0 + TILE_SIZE);
+	    		this.z0 = tz * TILE_SIZE;
+	    		this.z1 = Math.min(size, this.z0 + TILE_SIZE);
+	    		for (int i=0; i<VEIN_MATERIALS.length; i++) this.veins.add(new ArrayList<double[]>());
+	    	}
 	    	
+	    	/**
+	    	 * It returns the random generator of the tile for a step of the generation.
+	    	 * @param step number of the step
+	    	 * @return new random generator
+	    	 */
+	    	private Random random(int step) {
+	    		return new Random(this.seed ^ (step * 0x165667B19E3779F9L));
+	    	}
 	    }
 	    
 	    /**
-	     * Where fillOblateSpheroid() is a method which takes a central point, a radius and a material to fill to use on the block array.
-	     * @param centerPos central point
-	     * @param radius radius around central point
-	     * @param material material to fill with
-	     * @throws WrongMaterialException if 'material' is not a block material
+	     * Noise generators used by the tiled generation.
 	     */
-	    private void fillOblateSpheroid(Location centerPos, double radius, Material material) throws WrongMaterialException {
+	    private static class Noises {
+	    	/**
+	    	 * Noise for low terrain
+	    	 */
+	    	private CombinedNoiseGenerator noise1;
+	    	/**
+	    	 * Noise for high terrain
+	    	 */
+	    	private CombinedNoiseGenerator noise2;
+	    	/**
+	    	 * Noise that chooses between low and high terrain
+	    	 */
+	    	private OctaveGenerator noise3;
+	    	/**
+	    	 * Noise for the dirt thickness
+	    	 */
+	    	private OctaveGenerator dirt;
+	    	/**
+	    	 * Noise that chooses between sand and grass
+	    	 */
+	    	private OctaveGenerator sand;
 	    	
-					for (double x=centerPos.getX() - radius; x< centerPos.getX() + radius; x += 1.0) {					
-						for (double y=centerPos.getY() - radius; y< centerPos.getY() + radius; y += 1.0) {
-							for (double z=centerPos.getZ() - radius; z< centerPos.getZ() + radius; z += 1.0) {
-								double dx = x - centerPos.getX();
-								double dy = y - centerPos.getY();
-								double dz = z - centerPos.getZ();
-								
-								if ((dx*dx + 2*dy*dy + dz*dz) < radius*radius) {
-									// point (x,y,z) falls within level bounds ?
-									// we don't need to check it, just remove or replace that location from the blocks map.
-									Location loc = new Location(this,Math.floor(x+heightMap.negativeWorldLimit),Math.floor(y),Math.floor(z+heightMap.negativeWorldLimit));
-									if (material==null)
-										blocks.remove(loc);
-									else try { //if ((Math.abs(x) < worldSize/2.0-1.0) && (Math.abs(z) < worldSize/2.0-1.0) && y>0.0 && y<=Location.UPPER_Y_VALUE)
-										SolidBlock veinBlock = new SolidBlock(material);
-										veinBlock.setDrops(material, 1);
-										blocks.replace(loc, veinBlock);
-									} catch  (StackSizeException ex) {
-										// should never happen
-										ex.printStackTrace();
-									}
-								}
-							}
-						}
-					}
-		}
+	    	/**
+	    	 * It creates the noise generators of a world.
+	    	 * @param w world
+	    	 */
+	    	private Noises(World w) {
+	    		this.noise1 = new CombinedNoiseGenerator(w);
+	    		this.noise2 = new CombinedNoiseGenerator(w);
+	    		this.noise3 = new PerlinOctaveGenerator(w, 6);
+	    		this.dirt = new PerlinOctaveGenerator(w, 8);
+	    		this.sand = new PerlinOctaveGenerator(w, 8);
+	    	}
+	    }
+	    
+	    /**
+	     * Step of the parallel generation applied to every tile.
+	     */
+	    private interface TilePass {
+	    	/**
+	    	 * It applies the step to a tile.
+	    	 * @param t tile
+	    	 */
+	    	void run(Tile t);
+	    }
+	    
+	    /**
+	     * Task that applies a step of the generation to a range of tiles, splitting it in halves until a single tile is left.
+	     */
+	    private static class TileTask extends RecursiveAction {
+	    	/**
+	    	 * Serial version
+	    	 */
+	    	private static final long serialVersionUID = 1L;
+	    	/**
+	    	 * All the tiles of the world
+	    	 */
+	    	private Tile[] tiles;
+	    	/**
+	    	 * First tile of the range
+	    	 */
+	    	private int from;
+	    	/**
+	    	 * Last tile of the range plus one
+	    	 */
+	    	private int to;
+	    	/**
+	    	 * Step to apply
+	    	 */
+	    	private TilePass pass;
+	    	
+	    	/**
+	    	 * Constructor
+	    	 * @param tiles all the tiles of the world
+	    	 * @param from first tile of the range
+	    	 * @param to last tile of the range plus one
+	    	 * @param pass step to apply
+	    	 */
+	    	private TileTask(Tile[] tiles, int from, int to, TilePass pass) {
+	    		this.tiles = tiles;
+	    		this.from = from;
+	    		this.to = to;
+	    		this.pass = pass;
+	    	}
+	    	
+	    	@Override
+	    	protected void compute() {
+	    		if (to - from == 1) {
+	    			pass.run(tiles[from]);
+	    		}
+	    		else if (to - from > 1) {
+	    			int mid = (from + to) >>> 1;
+	    			invokeAll(new TileTask(tiles, from, mid, pass), new TileTask(tiles, mid, to, pass));
+	    		}
+	    	}
+	    }
 	    /**
 	     * floodFill function necessary to generate world
 	     * @param liquid material
@@ -488,38 +1226,10 @@ public class World {
 	    private void floodFill(Material liquid, Location from) throws WrongMaterialException, BadLocationException {
 	    	if (!liquid.isLiquid())
 	    		throw new WrongMaterialException(liquid);
-	    	if (!blocks.containsKey(from))
-	    	{
-	    		blocks.put(from, BlockFactory.createBlock(liquid));
-	    		items.remove(from);
-	    		Set<Location> floodArea = getFloodNeighborhood(from);
-	    		for (Location loc : floodArea) 
-	    			floodFill(liquid, loc);
-	    	}
+	    	if (from.getWorld() !=null && from.getWorld() != this)
+	    		throw new BadLocationException("This position is not of this world");
+	    	flood.fill((int)from.getX(), (int)from.getY(), (int)from.getZ(), BlockFactory.createBlock(liquid), items);
 	    }
-	    
-	    /**
-		 * Get the positions adjacent to this one that are not above and are free 
-		 * @param location location to get flood neighbourhood
-		 * @return if this position belongs to a world, returns only those adjacent positions valid for that world, if not, returns all adjacent positions
-		 * @throws BadLocationException when the position is out of world size
-		 */
-		private Set<Location> getFloodNeighborhood(Location location) throws BadLocationException {
-			if (location.getWorld() !=null && location.getWorld() != this)
-				throw new BadLocationException("This position is not of this world");
-			Set<Location> neighborhood = location.getNeighborhood();
-			Iterator<Location> iter = neighborhood.iterator();
-			while (iter.hasNext()) {
-				Location loc = iter.next();
-				try {
-					if ((loc.getY() > location.getY()) || getBlockAt(loc)!=null)
-						iter.remove();
-				} catch (BadLocationException e) {
-					throw new RuntimeException(e);
-				}
-			}
-			return neighborhood;
-		}
 
 
    
@@ -532,6 +1242,25 @@ public class World {
 	   return this.worldSize;
    }
    
+   /**
+    * Trivial getter
+    * @return limits of the world, or null if the world has no size
+    */
+   
+   public WorldBounds getBounds() {
+	   return this.bounds;
+   }
+   
+   /**
+    * It returns the id of the world, a small number greater than 0. Two live worlds have the same id only if they are
+    * equal, so the id can be compared instead of the world.
+    * @return id of the world
+    */
+   
+   public int getId() {
+	   return this.id;
+   }
+   
    /**
     * Trivial getter
     * @return world seed
@@ -567,15 +1296,69 @@ public class World {
  */
    
    public Block getBlockAt(Location loc) throws BadLocationException {
-	   if(loc.getWorld()==null||loc.getWorld().equals(this)==false) throw new BadLocationException("Location from other world or not associated to any world");
-	   if(this.blocks.get(loc)!=null) {
-		   return this.blocks.get(loc).clone();
+	   Block b = getSharedBlockAt(loc);
+	   if(b!=null) {
+	   	return BlockStorage.copyOf(b);
 	   }
 	   else {
 		   return null;
 	   }
    }
    
+   /**
+    * It returns the block in the given location without copying it. The block is shared by every location with
+    * an equal block, so it must not be modified; use getBlockAt to get a block that can be modified. It is only used
+    * by the classes of this package, the others read the blocks with getMaterialAt or getBlockAt.
+    * @param loc location from where block should be returned
+    * @return shared block in specified location or null if there is no block there
+    * @throws BadLocationException if location 'loc' does not belong to this world
+    */
+   Block getSharedBlockAt(Location loc) throws BadLocationException {
+	   if(loc.getWorld()==null||loc.getWorld().equals(this)==false) throw new BadLocationException("Location from other world or not associated to any world");
+	   return storedBlockAt(loc);
+   }
+   
+   /**
+    * It returns the material of the block in the given location, without copying the block
+    * @param loc location
+    * @return material of the block or null if there is no block there
+    * @throws BadLocationException if location 'loc' does not belong to this world
+    */
+   public Material getMaterialAt(Location loc) throws BadLocationException {
+	   Block b = getSharedBlockAt(loc);
+	   return (b==null) ? null : b.getType();
+   }
+   
+   /**
+    * It returns a copy of the block in the given position of this world
+    * @param p position
+    * @return block or null if there is no block there or the position is outside this world
+    */
+   public Block getBlockAt(BlockPos p) {
+	   Block b = getSharedBlockAt(p);
+	   return (b==null) ? null : BlockStorage.copyOf(b);
+   }
+   
+   /**
+    * It returns the block in the given position of this world without copying it, see getSharedBlockAt(Location)
+    * @param p position
+    * @return shared block or null if there is no block there or the position is outside this world
+    */
+   Block getSharedBlockAt(BlockPos p) {
+	   generateAt(p.getX(), p.getZ());
+	   return this.blocks.get(p.getX(), p.getY(), p.getZ());
+   }
+   
+   /**
+    * It returns the material of the block in the given position of this world, without copying the block
+    * @param p position
+    * @return material of the block or null if there is no block there or the position is outside this world
+    */
+   public Material getMaterialAt(BlockPos p) {
+	   Block b = getSharedBlockAt(p);
+	   return (b==null) ? null : b.getType();
+   }
+   
    /**
     * It returns the location representing the ground level at the location (x,*,z) given as argument
     * @param ground location where highest location should be returned
@@ -587,6 +1370,7 @@ public class World {
 	  
 	   
 	   if(ground.getWorld()==null || ground.getWorld().equals(this)==false) throw new BadLocationException("Location doesn't belong to this world, can't find the highest location");
+	   generateAt(ground.getX(), ground.getZ());
 	   double h=this.heightMap.get(ground.getX(), ground.getZ());
 	   Location l = new Location(this, ground.getX(), h, ground.getZ());
 	   return l;
@@ -601,11 +1385,20 @@ public class World {
    
    public ItemStack getItemsAt(Location loc) throws BadLocationException {
 	   if(loc.getWorld()==null||loc.getWorld().equals(this)==false) throw new BadLocationException("Location doesn't belong to this world, can't find items");
-	   return this.items.get(loc);
+	   return this.items.get(key(loc));
+   }
+   
+   /**
+    * It returns the items that are in the given position of this world
+    * @param p position
+    * @return items or null if there are none or the position is outside this world
+    */
+   public ItemStack getItemsAt(BlockPos p) {
+	   return this.items.get(key(p));
    }
    
    /**
-    * It returns a string representing the locations adjacent to the given location
+    * It returns a string representing the locations adjacent to the given location (see NeighbourhoodRenderer)
     * @param loc location
     * @return string representing neighborhood of given location
     * @throws BadLocationException if the location does not belong to this world
@@ -613,45 +1406,31 @@ public class World {
    
    public String getNeighbourhoodString(Location loc) throws BadLocationException {
 	   if(loc.getWorld().equals(this)==false) throw new BadLocationException("Location doesn't belong to this world, can't find neighbours");
-	   String s = "";
-	   
-	   for(int z=-1;z<=1;z++) {
-		   for(int y=1;y>=-1;y--) {
-			   for(int x=-1;x<=1;x++) {
-				   Location l = new Location(loc.getWorld(), x+loc.getX(), y+loc.getY(), z+loc.getZ());
-				   if(!loc.getNeighborhood().contains(l)&&!(x==0&&y==0&&z==0)) {
-					   s+="X";
-				   }
-				   else {
-					   if(this.getPlayer().getLocation().equals(l)) {
-						   s+="P";
-					   }
-					   else if(this.getItemsAt(l)==null) {
-						   if(this.getCreatureAt(l)==null) {
-							   if(this.getBlockAt(l)==null) {
-								   s+=".";
-							   }
-							   else {
-								   s+=this.getBlockAt(l).getType().getSymbol();
-							   }
-						   }
-						   else s+=getCreatureAt(l).getSymbol();
-					   }
-					   else {
-						   if(this.getItemsAt(l).getType().isBlock()) {
-							   s+=Character.toUpperCase(this.getItemsAt(l).getType().getSymbol());
-						   }
-						   else {   
-							   s+=this.getItemsAt(l).getType().getSymbol();
-						   }
-					   }
-				   }
-			   }
-			   s+=" ";
-		   }
-		   s+="\n";
-	   }
-	   return s;
+	   return new NeighbourhoodRenderer(1).render(loc).toString();
+   }
+   
+   /**
+    * It returns the symbol of what is in the given position, as shown by getNeighbourhoodString(): 'P' for the player,
+    * the symbol of the items (in upper case if they are blocks), of the creature or of the block there, or '.' if it is
+    * empty or outside the world. Nothing is copied, and a location with a solid block is resolved with a single lookup,
+    * since items and creatures can only be in free locations.
+    * @param x x coordinate
+    * @param y y coordinate
+    * @param z z coordinate
+    * @return symbol of the position
+    */
+   char symbolAt(int x, int y, int z) {
+	   if(this.player!=null&&this.player.getBlockPos().equals(x, y, z)) return 'P';
+	   if(!this.bounds.contains(x, y, z)) return '.';
+	   generateAt(x, z);
+	   Block b = this.blocks.get(x, y, z);
+	   if(b!=null&&!b.getType().isLiquid()) return b.getType().getSymbol();
+	   long k = LocationKey.pack(x, y, z);
+	   ItemStack is = this.items.get(k);
+	   if(is!=null) return is.getType().isBlock() ? Character.toUpperCase(is.getType().getSymbol()) : is.getType().getSymbol();
+	   Creature c = this.creatures.get(k);
+	   if(c!=null) return c.getSymbol();
+	   return (b==null) ? '.' : b.getType().getSymbol();
    }
    
    /**
@@ -663,8 +1442,9 @@ public class World {
    
    public boolean isFree(Location l) throws BadLocationException {
 	   if(l.getWorld().equals(this)==false) throw new BadLocationException("Location doesn't belong to this world, can't check if is free");
-	   if ((!this.blocks.containsKey(l)||(this.blocks.containsKey(l)&&this.blocks.get(l).getType().isLiquid()))&&!this.creatures.containsKey(l)) {
-		   if(!this.player.getLocation().equals(l))
+	   Block b = storedBlockAt(l);
+	   if ((b==null||b.getType().isLiquid())&&!this.creatures.containsKey(key(l))) {
+		   if(!isPlayerAt(l))
 			   return true;
 		   else return false;
 	   }
@@ -672,23 +1452,37 @@ public class World {
 		   return false;
 	   }
    }
+   
+   /**
+    * It checks if the given position of this world is free, i.e. if it is not occupied by a block, a creature or the player
+    * @param p position
+    * @return true if is free, false if not or if the position is outside this world
+    */
+   public boolean isFree(BlockPos p) {
+	   long key = key(p);
+	   if(key==NO_KEY) return false;
+	   Block b = this.blocks.get(p.getX(), p.getY(), p.getZ());
+	   return (b==null||b.getType().isLiquid())&&!this.creatures.containsKey(key)&&!this.player.getBlockPos().equals(p);
+   }
    /**
     * It adds a block to this world in the given location. If the location was previously occupied by another block, creature or item, they are removed from the world. 
+    * Blocks are stored by block position, so the coordinates of the location must be integer values.
     * @param l location where block should be added
     * @param b block which should be added
-    * @throws BadLocationException  if the location does not belong to this world, it is outside its limits, or is occupied by the player
+    * @throws BadLocationException  if the location does not belong to this world, it is outside its limits, its coordinates are not integer values, or is occupied by the player
     */
    public void addBlock(Location l, Block b) throws BadLocationException {
-	   if(Location.check(l)&&l.getWorld()!=null&&l.getWorld().equals(this)&&!this.player.getLocation().equals(l)) {
-		   if(this.blocks.containsKey(l)) this.blocks.remove(l);
-		   else if(this.items.containsKey(l)) this.items.remove(l);
-		   else if(this.creatures.containsKey(l)) this.creatures.remove(l);
+	   if(Location.check(l)&&isBlockLocation(l)&&l.getWorld()!=null&&l.getWorld().equals(this)&&!isPlayerAt(l)) {
+		   if(containsBlock(l)) this.blocks.remove((int)l.getX(), (int)l.getY(), (int)l.getZ());
+		   else if(this.items.containsKey(key(l))) this.items.remove(key(l));
+		   else if(this.creatures.containsKey(key(l))) this.creatures.remove(key(l));
 		   
 		   
-		   if (l.getY()>this.getHighestLocationAt(l).getY()) {
+		   if (l.getY()>this.heightMap.get(l.getX(), l.getZ())) {
 				this.heightMap.set(l.getX(), l.getZ(), l.getY());
 			}
-		   this.blocks.put(l, b);
+		   this.blocks.put((int)l.getX(), (int)l.getY(), (int)l.getZ(), b);
+		   publish(WorldEvent.Type.BLOCK_ADDED, l, b.getType(), 0);
 	   }
 	   else {
 		   throw new BadLocationException("Cant add block, invalid location");
@@ -697,13 +1491,15 @@ public class World {
    }
    /**
     * It adds a stack of items to this world, in the given location, which must be free. If there were other items in that location, they are replaced.
+    * Items are stored by block position, so the coordinates of the location must be integer values.
     * @param l location where items should be added
     * @param is stack of items
-    * @throws BadLocationException if the location is not of this world, it is outside its limits, or is occupied
+    * @throws BadLocationException if the location is not of this world, it is outside its limits, its coordinates are not integer values, or is occupied
     */
    public void addItems(Location l, ItemStack is) throws BadLocationException{
-	   if(Location.check(l)&&l.getWorld()!=null&&l.getWorld().equals(this)&&l.isFree()) {		   
-			   this.items.put(l, is);
+	   if(Location.check(l)&&isBlockLocation(l)&&l.getWorld()!=null&&l.getWorld().equals(this)&&l.isFree()) {		   
+			   this.items.put(key(l), is);
+			   publish(WorldEvent.Type.ITEMS_ADDED, l, is.getType(), is.getAmount());
 	   }
 	   else {
 		   throw new BadLocationException("Cant add block, invalid location");
@@ -711,13 +1507,16 @@ public class World {
    }
    /**
     * It adds a creature to this world. The creature can only be placed in a free location. If there were items in the location, they will be removed from the world.
+    * Creatures are stored by block position, so the coordinates of their location must be integer values.
     * @param c creature which should be added to the world
-    * @throws BadLocationException if the creature’s location does not belong to this world, it is outside its limits, or is occupied
+    * @throws BadLocationException if the creature’s location does not belong to this world, it is outside its limits, its coordinates are not integer values, or is occupied
     */
    public void addCreature(Creature c) throws BadLocationException{
-	   if(Location.check(c.getLocation())&&c.getLocation().getWorld()!=null&&c.getLocation().getWorld().equals(this)&&c.getLocation().isFree()) {
-		   if(this.items.containsKey(c.getLocation())) this.items.remove(c.getLocation());
-		   this.creatures.put(c.getLocation(), c);   
+	   Location l = c.getLocation();
+	   if(Location.check(l)&&isBlockLocation(l)&&l.getWorld()!=null&&l.getWorld().equals(this)&&l.isFree()) {
+		   this.items.remove(key(l));
+		   this.creatures.put(key(l), c);
+		   publish(WorldEvent.Type.CREATURE_ADDED, l, null, 0);
 	   }
 	   else {
 		   throw new BadLocationException("Cant add block, invalid location");
@@ -729,24 +1528,20 @@ public class World {
     * @throws BadLocationException if the block’s location does not belong to this world, it is outside its limits, or is occupied
     */
    public void destroyBlockAt(Location l) throws BadLocationException {
-	  if(l.getWorld()!=null && l.getWorld().equals(this)&&l.getY()!=0&&this.blocks.containsKey(l))
-		  {
-		  	if(this.blocks.get(l) instanceof SolidBlock) {
-		  		if(((SolidBlock)this.blocks.get(l)).getDrops()!=null) {
-		  			this.items.put(l, ((SolidBlock)this.blocks.get(l)).getDrops());
-		  		}
-				if (l.equals(this.getHighestLocationAt(l))) {
-					Location copy = this.getHighestLocationAt(l);
-					for(int i=1;i<=this.getHighestLocationAt(l).getY(); i++) {
-						copy=copy.below();
-						if(this.blocks.containsKey(copy)) {
-							this.heightMap.set(l.getX(), l.getZ(), l.getY()-i);
-							break;
-						}
-					}
+	  if(l.getWorld()!=null && l.getWorld().equals(this)&&l.getY()!=0&&containsBlock(l))
+	  	{
+	  	Block b = storedBlockAt(l);
+	  	if(b instanceof SolidBlock) {
+	  		if(((SolidBlock)b).getDrops()!=null) {
+	  			this.items.put(key(l), new ItemStack(((SolidBlock)b).getDrops()));
+	  		}
+				if (l.getY()==this.heightMap.get(l.getX(), l.getZ())) {
+					int below = this.blocks.highestBelow((int)l.getX(), (int)l.getY(), (int)l.getZ());
+					if (below>=0) this.heightMap.set(l.getX(), l.getZ(), below);
 				}
-		  		this.blocks.remove(l);
-		  	}
+		  		this.blocks.remove((int)l.getX(), (int)l.getY(), (int)l.getZ());
+		  		publish(WorldEvent.Type.BLOCK_DESTROYED, l, b.getType(), 0);
+		  			}
 		  }
 	  else {
 		  throw new BadLocationException("Wrong location");
@@ -763,14 +1558,23 @@ public class World {
 	   if(l.getWorld()==null||!l.getWorld().equals(this)) {
 		   throw new BadLocationException("Location doesnt belong to this world");
 	   }
-	   if(Location.check(l) && this.creatures.containsKey(l)) {
-		   return this.creatures.get(l);
-	   }
-	   else return null;
-	   
+	   return this.creatures.get(key(l));
+   }
+   
+   /**
+    * It returns the creature in the given position of this world
+    * @param p position
+    * @return creature or null if there is none or the position is outside this world
+    */
+   public Creature getCreatureAt(BlockPos p) {
+	   return this.creatures.get(key(p));
    }
    /**
-    * It returns all living creatures that are occupying locations adjacent to the given one.
+    * It returns all living creatures that are occupying locations adjacent to the given one. The creatures are
+    * looked for without creating the locations of the neighbourhood. They are added to the set in the order in which
+    * they would be found iterating getNeighborhood(), so the set is iterated in the same order as when it was filled
+    * from that set of locations, which decides the creatures the games attack. Besides the set, only a small array
+    * to sort them is allocated, when there are several creatures.
     * @param l location
     * @return collection of adjacent creatures to location l
     * @throws BadLocationException if the location does not belong to this world.
@@ -779,13 +1583,42 @@ public class World {
 	   if(l.getWorld()==null||!l.getWorld().equals(this)) {
 		   throw new BadLocationException("Location doesnt belong to this world");
 	   }
-	   Set<Location> neighbours = l.getNeighborhood();
 	   Collection<Creature> neighbour_creature=new HashSet<Creature>();
-	   for (Location i:neighbours) {
-		   if(this.creatures.containsKey(i)) {
-			   neighbour_creature.add(this.creatures.get(i));
+	   if(!isBlockLocation(l)) return neighbour_creature;
+	   int x=(int)l.getX(), y=(int)l.getY(), z=(int)l.getZ();
+	   int valid=0;
+	   int found=0;
+	   for (int i=0; i<Neighborhood.SIZE; i++) {
+		   int nx=x+Neighborhood.dx(i), ny=y+Neighborhood.dy(i), nz=z+Neighborhood.dz(i);
+		   if(!Location.check(this, nx, ny, nz)) continue;
+		   valid++;
+		   generateAt(nx, nz);
+		   if(this.creatures.get(LocationKey.pack(nx, ny, nz))!=null) found|=1<<i;
+	   }
+	   if(Integer.bitCount(found)==1) {
+		   int i=Integer.numberOfTrailingZeros(found);
+		   neighbour_creature.add(this.creatures.get(LocationKey.pack(x+Neighborhood.dx(i), y+Neighborhood.dy(i), z+Neighborhood.dz(i))));
+	   }
+	   else if(found!=0) {
+		   // getNeighborhood() adds the valid neighbours in the order of the offsets to a new HashSet, which is iterated
+		   // by bucket and, inside a bucket, in that order. Its table has 16 buckets and doubles after 12 and 24 locations.
+		   int buckets=(valid>24) ? 64 : (valid>12) ? 32 : 16;
+		   int[] order=new int[Integer.bitCount(found)];
+		   int n=0;
+		   for (int i=Integer.numberOfTrailingZeros(found); i<Neighborhood.SIZE; i++) {
+			   if((found&(1<<i))==0) continue;
+			   int h=Location.hashCode(l.getWorld(), x+Neighborhood.dx(i), y+Neighborhood.dy(i), z+Neighborhood.dz(i));
+			   int key=(((h^(h>>>16))&(buckets-1))<<5)|i;
+			   int k=n-1;
+			   for (; k>=0&&order[k]>key; k--) order[k+1]=order[k];
+			   order[k+1]=key;
+			   n++;
+		   }
+		   for (int key:order) {
+			   int i=key&31;
+			   neighbour_creature.add(this.creatures.get(LocationKey.pack(x+Neighborhood.dx(i), y+Neighborhood.dy(i), z+Neighborhood.dz(i))));
 		   }
-	   }   
+	   }
 	   return neighbour_creature;
    }
    /**
@@ -794,11 +1627,12 @@ public class World {
     * @throws BadLocationException if the location does not belong to this world or there is no creature in that location
     */
    public void killCreature(Location l) throws BadLocationException {
-	   if(l.getWorld()!=null&&l.getWorld().equals(this)&&this.creatures.containsKey(l)) {
-		   if(this.creatures.get(l) instanceof Animal) {
-			   this.items.put(l, ((Animal)this.creatures.get(l)).getDrops());
+	   if(l.getWorld()!=null&&l.getWorld().equals(this)&&this.creatures.containsKey(key(l))) {
+		   Creature c = this.creatures.remove(key(l));
+		   if(c instanceof Animal) {
+			   this.items.put(key(l), ((Animal)c).getDrops());
 		   }
-		   this.creatures.remove(l);
+		   publish(WorldEvent.Type.CREATURE_KILLED, l, null, 0);
 	   }
 	   else {
 		   throw new BadLocationException("Location doesnt belong to this world or there is no creature");
@@ -814,7 +1648,199 @@ public class World {
    
    public void removeItemsAt(Location l) throws BadLocationException {
 	   if(l.getWorld().equals(this)==false||getItemsAt(l)==null) throw new BadLocationException("Location doesn't belong to this world or lack of items in that position");
-	   this.items.remove(l);
+	   ItemStack is = this.items.remove(key(l));
+	   publish(WorldEvent.Type.ITEMS_REMOVED, l, is.getType(), is.getAmount());
+   }
+   
+   /**
+    * It returns the bus of the changes of the locations of this world, creating it the first time. The events are
+    * published by addBlock(), addItems(), addCreature(), destroyBlockAt(), killCreature() and removeItemsAt() while
+    * the bus has subscribers; the generation of the world is not published.
+    * @return bus of this world
+    */
+   public WorldEventBus getEventBus() {
+	   WorldEventBus b = this.events;
+	   if(b==null) {
+		   synchronized(this) {
+			   b = this.events;
+			   if(b==null) this.events = b = new WorldEventBus(this);
+		   }
+	   }
+	   return b;
+   }
+   
+   /**
+    * It returns the average number of bytes of heap used by each block of this world.
+    * @return bytes per block
+    */
+   public double getBytesPerBlock() {
+	   return this.blocks.getBytesPerBlock();
+   }
+   
+   /**
+    * It returns the number of water and lava cells filled when this world was generated
+    * @return liquid cells filled
+    */
+   public long getLiquidCellsFilled() {
+	   long cells = 0;
+	   for (FloodFill f : this.floods) cells += f.getCellsFilled();
+	   return cells;
+   }
+   
+   /**
+    * It returns the time spent digging the caves when this world was generated
+    * @return time in nanoseconds
+    */
+   public long getCaveCarvingTime() {
+	   return this.caveNanos.get();
+   }
+   
+   /**
+    * It returns the time spent filling the veins of granite and obsidian when this world was generated
+    * @return time in nanoseconds
+    */
+   public long getVeinCarvingTime() {
+	   return this.veinNanos.get();
+   }
+   
+   /**
+    * It returns the speed of the flood fill used to generate the water and lava of this world
+    * @return liquid cells filled per second
+    */
+   public double getLiquidCellsPerSecond() {
+	   long nanos = 0;
+	   for (FloodFill f : this.floods) nanos += f.getFillTime();
+	   if (nanos == 0) return 0.0;
+	   return getLiquidCellsFilled() * 1e9 / nanos;
+   }
+   
+   /**
+    * It publishes a change of a location, if the bus of this world has subscribers.
+    * @param type kind of change
+    * @param l location with integer coordinates
+    * @param m material of the block or the items, null for the creatures
+    * @param amount number of items, 0 for the blocks and the creatures
+    */
+   private void publish(WorldEvent.Type type, Location l, Material m, int amount) {
+	   WorldEventBus b = this.events;
+	   if(b!=null&&b.hasSubscribers()) b.publish(type, (int)l.getX(), (int)l.getY(), (int)l.getZ(), m, amount);
+   }
+   
+   /**
+    * It checks if the coordinates of a location are integer values, the only ones that can hold a block.
+    * @param l location
+    * @return true if 'x', 'y' and 'z' have no decimal part
+    */
+   private static boolean isBlockLocation(Location l) {
+	   return l.getX()==(int)l.getX() && l.getY()==(int)l.getY() && l.getZ()==(int)l.getZ();
+   }
+   
+   /**
+    * It returns the blocks of this world, without copying them. Used by WorldSnapshot.
+    * @return storage of the blocks
+    */
+   BlockStorage getStorage() {
+	   return this.blocks;
+   }
+   
+   /**
+    * It returns the items of this world indexed by their packed location (see LocationKey), without copying them.
+    * Used by WorldSnapshot.
+    * @return map of the items
+    */
+   LongObjectMap<ItemStack> getItemMap() {
+	   return this.items;
+   }
+   
+   /**
+    * It returns the creatures of this world indexed by their packed location (see LocationKey), without copying them.
+    * Used by WorldSnapshot.
+    * @return map of the creatures
+    */
+   LongObjectMap<Creature> getCreatureMap() {
+	   return this.creatures;
+   }
+   
+   /**
+    * It returns the height of the surface of the column (x, z), the one returned by getHighestLocationAt().
+    * @param x x coordinate
+    * @param z z coordinate
+    * @return height of the surface
+    */
+   double getSurface(int x, int z) {
+	   return this.heightMap.get(x, z);
+   }
+   
+   /**
+    * It changes the height of the surface of the column (x, z). Used by WorldSnapshot.
+    * @param x x coordinate
+    * @param z z coordinate
+    * @param y height of the surface
+    */
+   void setSurface(int x, int z, double y) {
+	   this.heightMap.set(x, z, y);
+   }
+   
+   /**
+    * Trivial setter, used by WorldSnapshot
+    * @param p player of this world
+    */
+   void setPlayer(Player p) {
+	   this.player = p;
+   }
+   
+   /**
+    * It returns the packed key (see LocationKey) that indexes the items and creatures in the given location.
+    * @param l location
+    * @return key of the location, or NO_KEY if it is outside the world or its coordinates are not integer values
+    */
+   private long key(Location l) {
+	   if(!isBlockLocation(l)||!Location.check(l)) return NO_KEY;
+	   generateAt(l.getX(), l.getZ());
+	   return LocationKey.pack((int)l.getX(), (int)l.getY(), (int)l.getZ());
+   }
+   
+   /**
+    * It returns the packed key (see LocationKey) that indexes the items and creatures in the given position.
+    * @param p position
+    * @return key of the position, or NO_KEY if it is outside the world
+    */
+   private long key(BlockPos p) {
+	   if(!p.check(this)) return NO_KEY;
+	   generateAt(p.getX(), p.getZ());
+	   return p.pack();
+   }
+   
+   /**
+    * It checks if the player is in the given location of this world. The player is always in a location with
+    * integer coordinates, so it is compared with the position of the player without copying its location.
+    * @param l location of this world
+    * @return true if the player is there
+    */
+   private boolean isPlayerAt(Location l) {
+	   return this.player!=null&&isBlockLocation(l)&&this.player.getBlockPos().equals((int)l.getX(), (int)l.getY(), (int)l.getZ());
+   }
+   
+   /**
+    * It returns the block stored in the given location, without copying it.
+    * @param l location
+    * @return block or null if there is none
+    */
+   private Block storedBlockAt(Location l) {
+	   if(!isBlockLocation(l)) return null;
+	   generateAt(l.getX(), l.getZ());
+	   return this.blocks.get((int)l.getX(), (int)l.getY(), (int)l.getZ());
+   }
+   
+   /**
+    * It checks if there is a block in the given location.
+    * @param l location
+    * @return true if there is a block
+    */
+   private boolean containsBlock(Location l) {
+	   if(!isBlockLocation(l)) return false;
+	   generateAt(l.getX(), l.getZ());
+	   return this.blocks.contains((int)l.getX(), (int)l.getY(), (int)l.getZ());
    }
    
    @Override
@@ -823,16 +1849,27 @@ public class World {
    }
    
 
-	@Override
-	public int hashCode() {
+	/**
+	 * It returns the hash code of a world from its name, seed and size.
+	 * @param name name of the world
+	 * @param seed seed of the world
+	 * @param size size of the world
+	 * @return hash code
+	 */
+	private static int hash(String name, long seed, int size) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((name == null) ? 0 : name.hashCode());
 		result = prime * result + (int) (seed ^ (seed >>> 32));
-		result = prime * result + worldSize;
+		result = prime * result + size;
 		return result;
 	}
 
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -842,6 +1879,10 @@ public class World {
 		if (getClass() != obj.getClass())
 			return false;
 		World other = (World) obj;
+		if (id == other.id)
+			return true;
+		if (hash != other.hash)
+			return false;
 		if (name == null) {
 			if (other.name != null)
 				return false;
@@ -0,0 +1,213 @@
+package model;
+
+/**
+ * Immutable box of blocks, with the limits included. Every world creates the one with its limits once (see ofSize()),
+ * so Location.check(), the storage, the persistence adapter and the generation use the same limits without computing
+ * them again from the size of the world.
+ * The containment tests for integer coordinates use a single comparison, and clip() intersects a whole area, like
+ * the 16x16x16 areas of WorldAdapter, with the box in one call.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class WorldBounds {
+
+	/**
+	 * Lowest 'x' of the box
+	 */
+	private final int minX;
+	/**
+	 * Lowest 'y' of the box
+	 */
+	private final int minY;
+	/**
+	 * Lowest 'z' of the box
+	 */
+	private final int minZ;
+	/**
+	 * Highest 'x' of the box
+	 */
+	private final int maxX;
+	/**
+	 * Highest 'y' of the box
+	 */
+	private final int maxY;
+	/**
+	 * Highest 'z' of the box
+	 */
+	private final int maxZ;
+
+	/**
+	 * Constructor. The limits are included in the box.
+	 * @param minX lowest 'x'
+	 * @param minY lowest 'y'
+	 * @param minZ lowest 'z'
+	 * @param maxX highest 'x', not lower than minX
+	 * @param maxY highest 'y', not lower than minY
+	 * @param maxZ highest 'z', not lower than minZ
+	 */
+	public WorldBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		if (maxX < minX || maxY < minY || maxZ < minZ) throw new IllegalArgumentException();
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+
+	/**
+	 * It returns the limits of a world of the given size: the location x=0,z=0 is in the center of the world, so a
+	 * size 51 world goes from -25 to 25 in 'x' and 'z', and a size 50 world from -24 to 25. The height goes from 0 to
+	 * Location.UPPER_Y_VALUE.
+	 * @param size size of the world in the (x,z) plane
+	 * @return limits of the world
+	 */
+	public static WorldBounds ofSize(int size) {
+		if (size <= 0) throw new IllegalArgumentException();
+		int max = size / 2;
+		int min = (size % 2 == 0) ? -(max - 1) : -max;
+		return new WorldBounds(min, 0, min, max, (int) Location.UPPER_Y_VALUE, max);
+	}
+
+	/**
+	 * Trivial getter
+	 * @return lowest 'x'
+	 */
+	public int getMinX() {
+		return this.minX;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return lowest 'y'
+	 */
+	public int getMinY() {
+		return this.minY;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return lowest 'z'
+	 */
+	public int getMinZ() {
+		return this.minZ;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return highest 'x'
+	 */
+	public int getMaxX() {
+		return this.maxX;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return highest 'y'
+	 */
+	public int getMaxY() {
+		return this.maxY;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return highest 'z'
+	 */
+	public int getMaxZ() {
+		return this.maxZ;
+	}
+
+	/**
+	 * It checks if the box contains a block. The differences with both limits of every axis are negative only if the
+	 * coordinate is out of the box, so the six of them are checked with a single comparison.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return true if (x, y, z) is inside the box
+	 */
+	public boolean contains(int x, int y, int z) {
+		return ((x - this.minX) | (this.maxX - x) | (y - this.minY) | (this.maxY - y) | (z - this.minZ) | (this.maxZ - z)) >= 0;
+	}
+
+	/**
+	 * It checks if the box contains a point with decimal coordinates, as Location.check() does.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return true if (x, y, z) is inside the box
+	 */
+	public boolean contains(double x, double y, double z) {
+		return x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY && z >= this.minZ && z <= this.maxZ;
+	}
+
+	/**
+	 * It checks if the box contains a column of the plane (x,z).
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @return true if the column is inside the box
+	 */
+	public boolean containsColumn(int x, int z) {
+		return ((x - this.minX) | (this.maxX - x) | (z - this.minZ) | (this.maxZ - z)) >= 0;
+	}
+
+	/**
+	 * It returns the part of an area that is inside the box.
+	 * @param x0 lowest 'x' of the area
+	 * @param y0 lowest 'y' of the area
+	 * @param z0 lowest 'z' of the area
+	 * @param x1 highest 'x' of the area
+	 * @param y1 highest 'y' of the area
+	 * @param z1 highest 'z' of the area
+	 * @return the area clipped to the box, this box if it contains the whole area, or null if they do not overlap
+	 */
+	public WorldBounds clip(int x0, int y0, int z0, int x1, int y1, int z1) {
+		int nx0 = Math.max(x0, this.minX);
+		int ny0 = Math.max(y0, this.minY);
+		int nz0 = Math.max(z0, this.minZ);
+		int nx1 = Math.min(x1, this.maxX);
+		int ny1 = Math.min(y1, this.maxY);
+		int nz1 = Math.min(z1, this.maxZ);
+		if (nx1 < nx0 || ny1 < ny0 || nz1 < nz0) return null;
+		if (nx0 == this.minX && ny0 == this.minY && nz0 == this.minZ && nx1 == this.maxX && ny1 == this.maxY && nz1 == this.maxZ) return this;
+		return new WorldBounds(nx0, ny0, nz0, nx1, ny1, nz1);
+	}
+
+	/**
+	 * It returns the part of an area of side^3 blocks that is inside the box.
+	 * @param p lowest corner of the area
+	 * @param side side of the area, in blocks
+	 * @return the area clipped to the box, or null if they do not overlap
+	 */
+	public WorldBounds clip(BlockPos p, int side) {
+		return clip(p.getX(), p.getY(), p.getZ(), p.getX() + side - 1, p.getY() + side - 1, p.getZ() + side - 1);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof WorldBounds))
+			return false;
+		WorldBounds other = (WorldBounds) obj;
+		return this.minX == other.minX && this.minY == other.minY && this.minZ == other.minZ
+				&& this.maxX == other.maxX && this.maxY == other.maxY && this.maxZ == other.maxZ;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + this.minX;
+		result = prime * result + this.minY;
+		result = prime * result + this.minZ;
+		result = prime * result + this.maxX;
+		result = prime * result + this.maxY;
+		result = prime * result + this.maxZ;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "WorldBounds{" + this.minX + "," + this.minY + "," + this.minZ + " to " + this.maxX + "," + this.maxY + "," + this.maxZ + "}";
+	}
+}
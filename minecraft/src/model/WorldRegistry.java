@@ -0,0 +1,188 @@
+package model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry that gives every live world a small integer id, so that Location and World can compare worlds with a
+ * single int instead of the name, seed and size of the world. The hash codes are still computed from the name, seed
+ * and size, so that the order of the collections of worlds and locations does not depend on the ids.
+ * Two worlds are equal when they have the same name, seed and size, so equal worlds share the same id: the id is
+ * kept while there is a live world with that name, seed and size, and it is reused for other worlds once all of them
+ * have been collected. The worlds are only weakly referenced, so the registry does not keep them alive.
+ * Id 0 is never given to a world; Location uses it for locations without world.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+final class WorldRegistry {
+
+	/**
+	 * Ids given to the worlds, indexed by their name, seed and size
+	 */
+	private static final Map<Key, Entry> ENTRIES = new HashMap<Key, Entry>();
+	/**
+	 * References to the registered worlds, kept until the worlds are collected
+	 */
+	private static final Set<WorldRef> REFS = new HashSet<WorldRef>();
+	/**
+	 * Queue where the references to the collected worlds are left
+	 */
+	private static final ReferenceQueue<World> QUEUE = new ReferenceQueue<World>();
+	/**
+	 * Ids that are no longer used by any world
+	 */
+	private static final ArrayDeque<Integer> FREE = new ArrayDeque<Integer>();
+	/**
+	 * Next id never given before
+	 */
+	private static int nextId = 1;
+
+	/**
+	 * Private constructor, this class only has class methods.
+	 */
+	private WorldRegistry() {
+	}
+
+	/**
+	 * It registers a new world and returns its id, the same one of the live worlds equal to it.
+	 * @param w world
+	 * @param name name of the world
+	 * @param seed seed of the world
+	 * @param size size of the world
+	 * @return id of the world, greater than 0
+	 */
+	static synchronized int register(World w, String name, long seed, int size) {
+		expunge();
+		Key key = new Key(name, seed, size);
+		Entry e = ENTRIES.get(key);
+		if (e == null) {
+			Integer free = FREE.poll();
+			e = new Entry(free != null ? free : nextId++);
+			ENTRIES.put(key, e);
+		}
+		e.count++;
+		REFS.add(new WorldRef(w, key));
+		return e.id;
+	}
+
+	/**
+	 * It returns the number of ids in use.
+	 * @return number of different worlds alive
+	 */
+	static synchronized int size() {
+		expunge();
+		return ENTRIES.size();
+	}
+
+	/**
+	 * It releases the ids of the worlds that have been collected and are not shared with a live world.
+	 */
+	private static void expunge() {
+		WorldRef ref;
+		while ((ref = (WorldRef) QUEUE.poll()) != null) {
+			REFS.remove(ref);
+			Entry e = ENTRIES.get(ref.key);
+			if (--e.count == 0) {
+				ENTRIES.remove(ref.key);
+				FREE.push(e.id);
+			}
+		}
+	}
+
+	/**
+	 * Name, seed and size of a world: the fields compared by World.equals().
+	 */
+	private static final class Key {
+		/**
+		 * Name of the world
+		 */
+		private final String name;
+		/**
+		 * Seed of the world
+		 */
+		private final long seed;
+		/**
+		 * Size of the world
+		 */
+		private final int size;
+
+		/**
+		 * Constructor
+		 * @param name name of the world
+		 * @param seed seed of the world
+		 * @param size size of the world
+		 */
+		private Key(String name, long seed, int size) {
+			this.name = name;
+			this.seed = seed;
+			this.size = size;
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((name == null) ? 0 : name.hashCode());
+			result = prime * result + (int) (seed ^ (seed >>> 32));
+			result = prime * result + size;
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return (name == null ? other.name == null : name.equals(other.name)) && seed == other.seed && size == other.size;
+		}
+	}
+
+	/**
+	 * Id given to a name, seed and size, and number of live worlds that use it.
+	 */
+	private static final class Entry {
+		/**
+		 * Id of the worlds
+		 */
+		private final int id;
+		/**
+		 * Number of live worlds with this id
+		 */
+		private int count;
+
+		/**
+		 * Constructor
+		 * @param id id of the worlds
+		 */
+		private Entry(int id) {
+			this.id = id;
+		}
+	}
+
+	/**
+	 * Weak reference to a registered world, which remembers the key of the world after it is collected.
+	 */
+	private static final class WorldRef extends WeakReference<World> {
+		/**
+		 * Name, seed and size of the world
+		 */
+		private final Key key;
+
+		/**
+		 * Constructor
+		 * @param w world
+		 * @param key name, seed and size of the world
+		 */
+		private WorldRef(World w, Key key) {
+			super(w, QUEUE);
+			this.key = key;
+		}
+	}
+}
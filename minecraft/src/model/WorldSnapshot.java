@@ -0,0 +1,330 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import model.entities.Animal;
+import model.entities.Creature;
+import model.entities.Monster;
+import model.entities.Player;
+import model.exceptions.StackSizeException;
+import model.exceptions.WrongMaterialException;
+import model.storage.BlockStorage;
+import model.storage.LocationKey;
+import model.storage.LongObjectMap;
+
+/**
+ * Compact binary image of the state of a game: its world (blocks, surface, items and creatures), its player and its
+ * scores. The blocks are written column by column as runs of equal blocks from y=0 to the highest one, so a column
+ * usually takes a few bytes per layer of material instead of one entry per block. A lazy world is generated
+ * completely before it is written, and a restored world is not generated again, so it is equal whatever the way the
+ * original one was generated. The items and creatures are written in the order of their locations, so two equal
+ * games always have the same snapshot.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class WorldSnapshot {
+
+	/**
+	 * First bytes of a snapshot, "BWW1". It is not the magic of binary play scripts, so a script is never read as a
+	 * snapshot
+	 */
+	public static final int MAGIC = 0x42575731;
+
+	/**
+	 * Private constructor, this class only has static methods
+	 */
+	private WorldSnapshot() {
+	}
+
+	/**
+	 * It writes the state of a game.
+	 * @param game game with a world
+	 * @param out stream where the snapshot is written
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public static void write(BlockWorld game, DataOutputStream out) throws IOException {
+		World w = game.getWorld();
+		w.generateAll();
+		out.writeInt(MAGIC);
+		out.writeUTF(w.getName());
+		out.writeLong(w.getSeed());
+		out.writeInt(w.getSize());
+		writeBlocks(w, out);
+
+		LongObjectMap<ItemStack> items = w.getItemMap();
+		long[] keys = items.keys();
+		Arrays.sort(keys);
+		out.writeInt(keys.length);
+		for (long k : keys) {
+			out.writeLong(k);
+			writeItems(items.get(k), out);
+		}
+		LongObjectMap<Creature> creatures = w.getCreatureMap();
+		keys = creatures.keys();
+		Arrays.sort(keys);
+		out.writeInt(keys.length);
+		for (long k : keys) {
+			Creature c = creatures.get(k);
+			out.writeLong(k);
+			out.writeBoolean(c instanceof Monster);
+			out.writeDouble(c.getHealth());
+		}
+
+		Player p = w.getPlayer();
+		Location l = p.getLocation();
+		BlockPos o = p.getOrientationPos();
+		BlockPos at = p.getBlockPos();
+		out.writeUTF(p.getName());
+		out.writeDouble(l.getX());
+		out.writeDouble(l.getY());
+		out.writeDouble(l.getZ());
+		out.writeDouble(p.getHealth());
+		out.writeDouble(p.getFoodLevel());
+		out.writeByte(o.getX() - at.getX());
+		out.writeByte(o.getY() - at.getY());
+		out.writeByte(o.getZ() - at.getZ());
+		InventoryView inventory = p.getInventoryView();
+		out.writeInt(inventory.getSize());
+		for (int i = 0; i < inventory.getSize(); i++) writeItems(inventory.getItem(i), out);
+		out.writeBoolean(inventory.getItemInHand() != null);
+		if (inventory.getItemInHand() != null) writeItems(inventory.getItemInHand(), out);
+		out.writeBoolean(inventory.isAutoMerge());
+
+		out.writeDouble(game.getItemsScore().getScoring());
+		out.writeDouble(game.getMiningScore().getScoring());
+		out.writeDouble(game.getMovementScore().getScoring());
+		Location previous = game.getMovementScore().getPreviousLocation();
+		out.writeBoolean(previous != null);
+		if (previous != null) {
+			out.writeDouble(previous.getX());
+			out.writeDouble(previous.getY());
+			out.writeDouble(previous.getZ());
+		}
+	}
+
+	/**
+	 * It reads the state of a game written by write() and creates a new game with it (see BlockWorld.newInstance()).
+	 * @param in stream with the snapshot
+	 * @param out stream where the information of the player is printed, or null to use System.out
+	 * @param err stream where the errors of the commands are printed, or null to use System.err
+	 * @return restored game
+	 * @throws IOException if the snapshot can not be read or it is not valid
+	 */
+	public static BlockWorld read(DataInputStream in, PrintStream out, PrintStream err) throws IOException {
+		if (in.readInt() != MAGIC) throw new IOException("Not a world snapshot");
+		String name = in.readUTF();
+		long seed = in.readLong();
+		int size = in.readInt();
+		World w;
+		try {
+			w = new World(seed, size, name);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Wrong size of world " + size);
+		}
+		try {
+			readBlocks(w, in);
+
+			LongObjectMap<ItemStack> items = w.getItemMap();
+			for (int n = readCount(in); n > 0; n--) {
+				long k = readKey(w, in);
+				items.put(k, readItems(in));
+			}
+			LongObjectMap<Creature> creatures = w.getCreatureMap();
+			for (int n = readCount(in); n > 0; n--) {
+				long k = readKey(w, in);
+				Location l = new Location(w, LocationKey.getX(k), LocationKey.getY(k), LocationKey.getZ(k));
+				creatures.put(k, in.readBoolean() ? new Monster(l, in.readDouble()) : new Animal(l, in.readDouble()));
+			}
+
+			String playerName = in.readUTF();
+			Location l = new Location(w, in.readDouble(), in.readDouble(), in.readDouble());
+			double health = in.readDouble();
+			double food = in.readDouble();
+			BlockPos orientation = new BlockPos(in.readByte(), in.readByte(), in.readByte());
+			Inventory inventory = new Inventory();
+			for (int n = readCount(in); n > 0; n--) inventory.addItem(readItems(in));
+			if (in.readBoolean()) inventory.setItemInHand(readItems(in));
+			inventory.setAutoMerge(in.readBoolean());
+			w.setPlayer(new Player(playerName, l, health, food, orientation, inventory));
+
+			double itemsScore = in.readDouble();
+			double miningScore = in.readDouble();
+			double movementScore = in.readDouble();
+			Location previous = in.readBoolean() ? new Location(w, in.readDouble(), in.readDouble(), in.readDouble()) : null;
+			BlockWorld game = BlockWorld.newInstance(out, err);
+			game.restoreGame(w, itemsScore, miningScore, movementScore, previous);
+			return game;
+		} catch (StackSizeException | WrongMaterialException e) {
+			throw new IOException("Wrong snapshot: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * It writes the surface and the blocks of every column of a world, as runs of equal blocks from y=0.
+	 * @param w world
+	 * @param out stream where the blocks are written
+	 * @throws IOException if they can not be written
+	 */
+	private static void writeBlocks(World w, DataOutputStream out) throws IOException {
+		BlockStorage blocks = w.getStorage();
+		WorldBounds bounds = w.getBounds();
+		for (int x = bounds.getMinX(); x <= bounds.getMaxX(); x++) {
+			for (int z = bounds.getMinZ(); z <= bounds.getMaxZ(); z++) {
+				out.writeDouble(w.getSurface(x, z));
+				int top = blocks.highest(x, z);
+				out.writeShort(top + 1);
+				int y = 0;
+				while (y <= top) {
+					Block b = blocks.get(x, y, z);
+					int end = y + 1;
+					while (end <= top && same(b, blocks.get(x, end, z))) end++;
+					out.writeByte(end - y - 1);
+					writeBlock(b, out);
+					y = end;
+				}
+			}
+		}
+	}
+
+	/**
+	 * It reads the blocks written by writeBlocks() into an empty world.
+	 * @param w world
+	 * @param in stream with the blocks
+	 * @throws IOException if they can not be read
+	 * @throws WrongMaterialException if a block has a wrong material
+	 * @throws StackSizeException if the drops of a block are wrong
+	 */
+	private static void readBlocks(World w, DataInputStream in) throws IOException, WrongMaterialException, StackSizeException {
+		BlockStorage blocks = w.getStorage();
+		WorldBounds bounds = w.getBounds();
+		for (int x = bounds.getMinX(); x <= bounds.getMaxX(); x++) {
+			for (int z = bounds.getMinZ(); z <= bounds.getMaxZ(); z++) {
+				w.setSurface(x, z, in.readDouble());
+				int height = in.readShort();
+				if (height < 0 || height > bounds.getMaxY() + 1) throw new IOException("Wrong column height " + height);
+				int y = 0;
+				while (y < height) {
+					int end = y + in.readUnsignedByte() + 1;
+					if (end > height) throw new IOException("Wrong run of blocks");
+					Block b = readBlock(in);
+					if (b != null) {
+						b = BlockStorage.shared(b);
+						for (int i = y; i < end; i++) blocks.put(x, i, z, b);
+					}
+					y = end;
+				}
+			}
+		}
+	}
+
+	/**
+	 * It checks if two stored blocks are equal.
+	 * @param a block or null
+	 * @param b block or null
+	 * @return true if both are null or equal blocks
+	 */
+	private static boolean same(Block a, Block b) {
+		return (a == null) ? b == null : a == b || a.equals(b);
+	}
+
+	/**
+	 * It writes a block: its material (0 for no block) and the drops of a solid block.
+	 * @param b block or null
+	 * @param out stream where the block is written
+	 * @throws IOException if it can not be written
+	 */
+	private static void writeBlock(Block b, DataOutputStream out) throws IOException {
+		if (b == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeByte(b.getType().ordinal() + 1);
+		if (b instanceof SolidBlock) {
+			ItemStack drops = ((SolidBlock) b).getDrops();
+			out.writeByte((drops != null) ? drops.getType().ordinal() + 1 : 0);
+			if (drops != null) out.writeByte(drops.getAmount());
+		}
+	}
+
+	/**
+	 * It reads a block written by writeBlock().
+	 * @param in stream with the block
+	 * @return block, or null if there is none
+	 * @throws IOException if it can not be read
+	 * @throws WrongMaterialException if the material is not a block
+	 * @throws StackSizeException if the drops are wrong
+	 */
+	private static Block readBlock(DataInputStream in) throws IOException, WrongMaterialException, StackSizeException {
+		int m = in.readUnsignedByte();
+		if (m == 0) return null;
+		Block b = BlockFactory.createBlock(material(m - 1));
+		if (b instanceof SolidBlock) {
+			int drops = in.readUnsignedByte();
+			if (drops != 0) ((SolidBlock) b).setDrops(material(drops - 1), in.readUnsignedByte());
+		}
+		return b;
+	}
+
+	/**
+	 * It writes a stack of items: its material and its amount.
+	 * @param is items
+	 * @param out stream where the items are written
+	 * @throws IOException if they can not be written
+	 */
+	private static void writeItems(ItemStack is, DataOutputStream out) throws IOException {
+		out.writeByte(is.getType().ordinal());
+		out.writeByte(is.getAmount());
+	}
+
+	/**
+	 * It reads a stack of items written by writeItems().
+	 * @param in stream with the items
+	 * @return items
+	 * @throws IOException if they can not be read
+	 * @throws StackSizeException if the amount is wrong
+	 */
+	private static ItemStack readItems(DataInputStream in) throws IOException, StackSizeException {
+		return new ItemStack(material(in.readUnsignedByte()), in.readUnsignedByte());
+	}
+
+	/**
+	 * It reads the packed location of an item or creature and checks that it is inside the world.
+	 * @param w world
+	 * @param in stream with the location
+	 * @return packed location (see LocationKey)
+	 * @throws IOException if it can not be read or it is outside the world
+	 */
+	private static long readKey(World w, DataInputStream in) throws IOException {
+		long k = in.readLong();
+		if (!w.getBounds().contains(LocationKey.getX(k), LocationKey.getY(k), LocationKey.getZ(k))) throw new IOException("Location out of the world");
+		return k;
+	}
+
+	/**
+	 * It reads the number of elements of a list.
+	 * @param in stream with the number
+	 * @return number of elements
+	 * @throws IOException if it can not be read or it is negative
+	 */
+	private static int readCount(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		if (n < 0) throw new IOException("Wrong number of elements " + n);
+		return n;
+	}
+
+	/**
+	 * It returns the material with the given ordinal.
+	 * @param ordinal position of the material in Material.values()
+	 * @return material
+	 * @throws IOException if there is no material with that ordinal
+	 */
+	private static Material material(int ordinal) throws IOException {
+		Material[] values = Material.values();
+		if (ordinal >= values.length) throw new IOException("Wrong material " + ordinal);
+		return values[ordinal];
+	}
+}
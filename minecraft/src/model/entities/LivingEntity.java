@@ -1,6 +1,8 @@
 package model.entities;
 
+import model.BlockPos;
 import model.Location;
+import model.World;
 
 /**
  * This class represents an entity that lives in a world. They have a certain level of health and occupy a location in the world.
@@ -18,6 +20,10 @@ public abstract class LivingEntity {
 	 * Current player location
 	 */
 	protected Location location;
+	/**
+	 * Position of the block of the current location, null until it is needed
+	 */
+	private BlockPos position;
 	
 	/**
 	 * Maximum level of health points that player can have
@@ -51,6 +57,32 @@ public abstract class LivingEntity {
 		return new Location(this.location);
 		
 	}
+	
+	/**
+	 * It returns the world of the entity without copying its location.
+	 * @return world where the entity is
+	 */
+	public World getWorld() {
+		return this.location.getWorld();
+	}
+	
+	/**
+	 * It returns the position of the block where the entity is. Unlike getLocation(), it does not make a copy.
+	 * @return position of the entity
+	 */
+	public BlockPos getBlockPos() {
+		if(this.position==null) this.position = BlockPos.of(this.location);
+		return this.position;
+	}
+	
+	/**
+	 * It changes the location of the entity.
+	 * @param l new location
+	 */
+	protected void setLocation(Location l) {
+		this.location = l;
+		this.position = null;
+	}
 
 	/**
 	 * It checks if the player has a health level equal to or less than zero.
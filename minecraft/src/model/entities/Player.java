@@ -1,6 +1,8 @@
 package model.entities;
 
+import model.BlockPos;
 import model.Inventory;
+import model.InventoryView;
 import model.ItemStack;
 import model.Location;
 import model.Material;
@@ -31,7 +33,7 @@ public class Player extends LivingEntity {
 	/**
 	 * Relative location representing a player orientation in the world
 	 */
-	private Location orientation;
+	private BlockPos orientation;
 	/**
 	 * Symbol representing a player in the world
 	 */
@@ -53,12 +55,13 @@ public class Player extends LivingEntity {
 		super(new Location(w, 0, 0, 0), MAX_HEALTH);
 		try {
 			this.name=n;
-			this.location = w.getHighestLocationAt(this.location);
-			this.location.setY(this.location.getY()+1);
+			Location l = w.getHighestLocationAt(this.location);
+			l.setY(l.getY()+1);
+			setLocation(l);
 			this.inventory = new Inventory();
 			this.inventory.setItemInHand(new ItemStack(Material.WOOD_SWORD, 1));
 			this.foodLevel=MAX_FOODLEVEL;
-			this.orientation=new Location(w, 0,0,1);
+			this.orientation=new BlockPos(0,0,1);
 		}
 		catch(BadLocationException ex1) {
 			System.out.println(ex1.getMessage());
@@ -67,6 +70,22 @@ public class Player extends LivingEntity {
 			System.out.println(ex2.getMessage());
 		}
 	}
+	/**
+	 * It creates a player with the given state, as it was when a snapshot of its world was taken (see model.WorldSnapshot).
+	 * @param n name of player
+	 * @param l location of player
+	 * @param health health level
+	 * @param food food level
+	 * @param orientation orientation relative to the location
+	 * @param inventory inventory, which is copied
+	 */
+	public Player(String n, Location l, double health, double food, BlockPos orientation, Inventory inventory) {
+		super(l, health);
+		this.name=n;
+		this.inventory = new Inventory(inventory);
+		this.setFoodLevel(food);
+		this.orientation=orientation;
+	}
 	/**
 	 * Trivial getter
 	 * @return player's food level
@@ -101,11 +120,26 @@ public class Player extends LivingEntity {
 		this.name=name;
 	}
 	/**
-	 * It returns a copy of the player’s inventory.
+	 * It returns a copy of the player’s inventory (see Inventory.snapshot()). getInventoryView() does not copy it.
 	 * @return inventory
 	 */
 	public Inventory getInventory() {
-		return new Inventory(this.inventory);
+		return this.inventory.snapshot();
+	}
+	/**
+	 * It returns a read-only view of the player’s inventory, which is not copied and always shows its current items.
+	 * @return view of the inventory
+	 */
+	public InventoryView getInventoryView() {
+		return this.inventory.view();
+	}
+	/**
+	 * It sets whether the items added to the inventory are merged into the stacks of the same material that are not
+	 * full (see Inventory.setAutoMerge()), which keeps the inventory of a long game small.
+	 * @param autoMerge true to merge the items added
+	 */
+	public void setInventoryAutoMerge(boolean autoMerge) {
+		this.inventory.setAutoMerge(autoMerge);
 	}
 	/**
 	 * Trivial getter
@@ -130,8 +164,8 @@ public class Player extends LivingEntity {
 		Location l = new Location(this.location.getWorld(), this.location.getX()+dx, this.location.getY()+dy, this.location.getZ()+dz);
 		if(!isDead()) {
 			
-			if (this.location.getNeighborhood().contains(l) && l.isFree()) {
-				this.location=l;
+			if (this.location.isAdjacent(l) && l.isFree()) {
+				setLocation(l);
 				decreaseFoodLevel(0.05);
 				return l;
 			}
@@ -194,7 +228,8 @@ public class Player extends LivingEntity {
 		}	
 	}
 	/**
-	 * It adds the items to the player’s inventory; they are stored in a new inventory position
+	 * It adds the items to the player’s inventory; they are stored in a new inventory position, unless the inventory
+	 * merges stacks (see setInventoryAutoMerge())
 	 * @param items items to add to inventory
 	 */
 	public void addItemsToInventory(ItemStack items) {
@@ -236,7 +271,14 @@ public class Player extends LivingEntity {
 	 * @return orientation
 	 */
 	public Location getOrientation() {
-		return this.getLocation().add(this.orientation);
+		return new Location(this.location.getWorld(), this.location.getX()+this.orientation.getX(), this.location.getY()+this.orientation.getY(), this.location.getZ()+this.orientation.getZ());
+	}
+	/**
+	 * It returns the position of the block the player is faced towards, without creating a location.
+	 * @return position of the orientation
+	 */
+	public BlockPos getOrientationPos() {
+		return this.getBlockPos().offset(this.orientation);
 	}
 	/**
 	 * It returns the char ‘P’, which represents the player.
@@ -258,9 +300,7 @@ public class Player extends LivingEntity {
 		if(!this.isDead())
 		{
 			if(x==0&&y==0&&z==0) throw new BadLocationException("Bad orientation location");
-			this.orientation.setX(x);
-			this.orientation.setY(y);
-			this.orientation.setZ(z);
+			this.orientation=new BlockPos(x, y, z);
 			if(x>1||x<-1||y>1||y<-1||z>1||z<-1) throw new BadLocationException("Bad orientation location");
 		}
 		else throw new EntityIsDeadException();
@@ -274,7 +314,7 @@ public class Player extends LivingEntity {
 		String s = "";
 		s += "Name="+this.name+"\n";
 		s += "Location{world="+this.location.getWorld().toString()+",x="+this.location.getX()+",y="+this.location.getY()+",z="+this.location.getZ()+'}'+"\n";
-		s += "Orientation=Location{world="+this.orientation.getWorld().toString()+",x="+this.orientation.getX()+",y="+this.orientation.getY()+",z="+this.orientation.getZ()+'}'+"\n";
+		s += "Orientation=Location{world="+this.location.getWorld().toString()+",x="+(double)this.orientation.getX()+",y="+(double)this.orientation.getY()+",z="+(double)this.orientation.getZ()+'}'+"\n";
 		s += "Health=" + this.getHealth()+ "\n";
 		s += "Food level=" + this.foodLevel + "\n";
 		s += "Inventory=" + this.inventory.toString();
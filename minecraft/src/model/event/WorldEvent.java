@@ -0,0 +1,167 @@
+package model.event;
+
+import model.Material;
+import model.World;
+
+/**
+ * Change of the contents of a location of a world, published by its WorldEventBus. The events are slots of the ring
+ * of the bus that are reused for later events, so a listener must copy what it needs and never keep the event.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class WorldEvent {
+
+	/**
+	 * Kind of change, one per method of World that changes a location
+	 */
+	public enum Type {
+		/**
+		 * World.addBlock(): a block was added, replacing what was in the location
+		 */
+		BLOCK_ADDED,
+		/**
+		 * World.destroyBlockAt(): a solid block was destroyed, and its drops, if any, were left in the location
+		 */
+		BLOCK_DESTROYED,
+		/**
+		 * World.addItems(): items were left in the location
+		 */
+		ITEMS_ADDED,
+		/**
+		 * World.removeItemsAt(): the items of the location were removed
+		 */
+		ITEMS_REMOVED,
+		/**
+		 * World.addCreature(): a creature was added to the location
+		 */
+		CREATURE_ADDED,
+		/**
+		 * World.killCreature(): the creature of the location was killed, and the drops of an animal were left there
+		 */
+		CREATURE_KILLED
+	}
+
+	/**
+	 * World of the change
+	 */
+	private final World world;
+	/**
+	 * Number of the event in its bus, from 0
+	 */
+	private long sequence;
+	/**
+	 * Kind of change
+	 */
+	private Type type;
+	/**
+	 * Coordinates of the location
+	 */
+	private int x, y, z;
+	/**
+	 * Material of the block or the items, null for the creatures
+	 */
+	private Material material;
+	/**
+	 * Number of items, 0 for the blocks and the creatures
+	 */
+	private int amount;
+
+	/**
+	 * It creates an empty slot of a ring of events.
+	 * @param w world of the events
+	 */
+	WorldEvent(World w) {
+		this.world = w;
+		this.sequence = -1;
+	}
+
+	/**
+	 * It fills the slot with a new event.
+	 * @param sequence number of the event in its bus
+	 * @param type kind of change
+	 * @param x x coordinate of the location
+	 * @param y y coordinate of the location
+	 * @param z z coordinate of the location
+	 * @param material material of the block or the items, null for the creatures
+	 * @param amount number of items, 0 for the blocks and the creatures
+	 */
+	void set(long sequence, Type type, int x, int y, int z, Material material, int amount) {
+		this.sequence = sequence;
+		this.type = type;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.material = material;
+		this.amount = amount;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return world of the change
+	 */
+	public World getWorld() {
+		return this.world;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of the event in its bus, from 0
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return kind of change
+	 */
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return x coordinate of the location
+	 */
+	public int getX() {
+		return this.x;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return y coordinate of the location
+	 */
+	public int getY() {
+		return this.y;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return z coordinate of the location
+	 */
+	public int getZ() {
+		return this.z;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return material of the block added or destroyed or of the items added or removed, null for the creatures
+	 */
+	public Material getMaterial() {
+		return this.material;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of items added or removed, 0 for the blocks and the creatures
+	 */
+	public int getAmount() {
+		return this.amount;
+	}
+
+	@Override
+	public String toString() {
+		return "WorldEvent [" + this.sequence + " " + this.type + " (" + this.x + "," + this.y + "," + this.z + ") "
+				+ this.material + " " + this.amount + "]";
+	}
+}
@@ -0,0 +1,374 @@
+package model.event;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import model.Material;
+import model.World;
+import model.event.WorldEvent.Type;
+
+/**
+ * Bus of the changes of the locations of a world (see World.getEventBus()). The events are written into a ring of
+ * slots allocated when the bus is created, so publishing an event does not create any object. Synchronous
+ * subscribers are called by the thread that changes the world, before the method of World returns. Asynchronous
+ * subscribers have their own thread, which follows the ring from behind; when the ring is full the world waits for
+ * the slowest of them, so they never lose an event but a slow one slows the game down.
+ * A world does not create its bus until it is asked for it, and it only publishes events while the bus has
+ * subscribers, so the changes of a world nobody listens to only cost a check of a field. The events must be
+ * published by a single thread at a time, as a World is changed.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class WorldEventBus {
+
+	/**
+	 * Number of slots of the ring of the buses created by World
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/**
+	 * Maximum time an idle asynchronous subscription sleeps before looking again at the ring, in nanoseconds
+	 */
+	private static final long PARK_NANOS = 1000000L;
+	/**
+	 * Number of times the publisher yields while the ring is full before it sleeps, and an asynchronous subscription
+	 * yields while the ring is empty before it sleeps
+	 */
+	private static final int YIELDS = 100;
+	/**
+	 * Array of a bus without synchronous subscribers
+	 */
+	private static final WorldEventListener[] NO_LISTENERS = new WorldEventListener[0];
+	/**
+	 * Array of a bus without asynchronous subscribers
+	 */
+	private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+	/**
+	 * Number of the last thread of an asynchronous subscription
+	 */
+	private static final AtomicInteger THREADS = new AtomicInteger();
+
+	/**
+	 * Slots of the events, reused every 'ring.length' events
+	 */
+	private final WorldEvent[] ring;
+	/**
+	 * ring.length-1, to find the slot of an event
+	 */
+	private final int mask;
+	/**
+	 * Sequence of the last event published, -1 if there is none
+	 */
+	private volatile long cursor;
+	/**
+	 * Synchronous subscribers, replaced by a new array when they change
+	 */
+	private volatile WorldEventListener[] listeners;
+	/**
+	 * Asynchronous subscriptions, replaced by a new array when they change
+	 */
+	private volatile Subscription[] subscriptions;
+	/**
+	 * True if the bus has any subscriber
+	 */
+	private volatile boolean active;
+	/**
+	 * Lowest sequence delivered by every asynchronous subscription the last time the publisher looked at them
+	 */
+	private long gate;
+
+	/**
+	 * Asynchronous subscription to a bus, with its own thread. It must be closed to stop it.
+	 * @author Katarzyna Kaczorowska
+	 *
+	 */
+	public static final class Subscription implements AutoCloseable, Runnable {
+		/**
+		 * Bus of the subscription
+		 */
+		private final WorldEventBus bus;
+		/**
+		 * Subscriber
+		 */
+		private final WorldEventListener listener;
+		/**
+		 * Thread that delivers the events
+		 */
+		private final Thread thread;
+		/**
+		 * Sequence of the last event delivered
+		 */
+		private volatile long sequence;
+		/**
+		 * True while the thread sleeps waiting for events
+		 */
+		private volatile boolean parked;
+		/**
+		 * False once the subscription is closed
+		 */
+		private volatile boolean running;
+		/**
+		 * Last exception thrown by the subscriber, or null
+		 */
+		private volatile RuntimeException failure;
+
+		/**
+		 * It creates a subscription that starts with the events published after the current one.
+		 * @param bus bus
+		 * @param listener subscriber
+		 */
+		private Subscription(WorldEventBus bus, WorldEventListener listener) {
+			this.bus = bus;
+			this.listener = listener;
+			this.sequence = bus.cursor;
+			this.running = true;
+			this.thread = new Thread(this, "world-events-" + THREADS.incrementAndGet());
+			this.thread.setDaemon(true);
+		}
+
+		/**
+		 * It delivers the events until the subscription is closed, and then the ones published before it was closed.
+		 * An exception thrown by the subscriber is kept (see getFailure()) and the next events are still delivered.
+		 */
+		@Override
+		public void run() {
+			WorldEvent[] ring = this.bus.ring;
+			int mask = this.bus.mask;
+			long next = this.sequence + 1;
+			int idle = 0;
+			while (true) {
+				long available = this.bus.cursor;
+				if (next <= available) {
+					idle = 0;
+					for (; next <= available; next++) {
+						try {
+							this.listener.onEvent(ring[(int) next & mask]);
+						} catch (RuntimeException e) {
+							this.failure = e;
+						}
+					}
+					this.sequence = available;
+					continue;
+				}
+				if (!this.running) return;
+				if (++idle < YIELDS) {
+					Thread.yield();
+					continue;
+				}
+				this.parked = true;
+				if (this.bus.cursor == available && this.running) LockSupport.parkNanos(this, PARK_NANOS);
+				this.parked = false;
+			}
+		}
+
+		/**
+		 * Trivial getter
+		 * @return sequence of the last event delivered to the subscriber
+		 */
+		public long getSequence() {
+			return this.sequence;
+		}
+
+		/**
+		 * Trivial getter
+		 * @return last exception thrown by the subscriber, or null if there was none
+		 */
+		public RuntimeException getFailure() {
+			return this.failure;
+		}
+
+		/**
+		 * It waits until an event has been delivered to the subscriber.
+		 * @param sequence sequence of the event, for example the one returned by WorldEventBus.getSequence()
+		 * @param timeoutMillis maximum time to wait, in milliseconds
+		 * @return true if the event has been delivered, false if the time ran out
+		 * @throws InterruptedException if the thread is interrupted while it waits
+		 */
+		public boolean await(long sequence, long timeoutMillis) throws InterruptedException {
+			long end = System.nanoTime() + timeoutMillis * 1000000L;
+			while (this.sequence < sequence) {
+				if (Thread.interrupted()) throw new InterruptedException();
+				if (System.nanoTime() - end >= 0) return false;
+				LockSupport.parkNanos(PARK_NANOS / 10);
+			}
+			return true;
+		}
+
+		/**
+		 * It stops the subscription after delivering the events already published. It can not be called by the
+		 * subscriber itself.
+		 */
+		@Override
+		public void close() {
+			if (Thread.currentThread() == this.thread) throw new IllegalStateException("A subscription can not close itself");
+			this.running = false;
+			LockSupport.unpark(this.thread);
+			boolean interrupted = false;
+			while (this.thread.isAlive()) {
+				try {
+					this.thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			this.bus.remove(this);
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * It creates a bus with DEFAULT_CAPACITY slots.
+	 * @param w world of the events
+	 */
+	public WorldEventBus(World w) {
+		this(w, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * It creates a bus.
+	 * @param w world of the events
+	 * @param capacity number of slots of the ring, a power of 2: the maximum number of events an asynchronous
+	 * subscriber can fall behind
+	 * @throws IllegalArgumentException if the capacity is not a positive power of 2
+	 */
+	public WorldEventBus(World w, int capacity) {
+		if (capacity <= 0 || (capacity & (capacity - 1)) != 0) throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+		this.ring = new WorldEvent[capacity];
+		for (int i = 0; i < capacity; i++) this.ring[i] = new WorldEvent(w);
+		this.mask = capacity - 1;
+		this.cursor = -1;
+		this.gate = -1;
+		this.listeners = NO_LISTENERS;
+		this.subscriptions = NO_SUBSCRIPTIONS;
+		this.active = false;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return true if the bus has any subscriber, so the world must publish its changes
+	 */
+	public boolean hasSubscribers() {
+		return this.active;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return sequence of the last event published, -1 if there is none
+	 */
+	public long getSequence() {
+		return this.cursor;
+	}
+
+	/**
+	 * It adds a synchronous subscriber, called by the thread that changes the world.
+	 * @param l subscriber
+	 */
+	public synchronized void subscribe(WorldEventListener l) {
+		WorldEventListener[] a = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+		a[a.length - 1] = l;
+		this.listeners = a;
+		this.active = true;
+	}
+
+	/**
+	 * It removes a synchronous subscriber, if it is one of this bus.
+	 * @param l subscriber
+	 */
+	public synchronized void unsubscribe(WorldEventListener l) {
+		for (int i = 0; i < this.listeners.length; i++) {
+			if (this.listeners[i] == l) {
+				WorldEventListener[] a = new WorldEventListener[this.listeners.length - 1];
+				System.arraycopy(this.listeners, 0, a, 0, i);
+				System.arraycopy(this.listeners, i + 1, a, i, a.length - i);
+				this.listeners = (a.length == 0) ? NO_LISTENERS : a;
+				break;
+			}
+		}
+		this.active = this.listeners.length + this.subscriptions.length > 0;
+	}
+
+	/**
+	 * It adds an asynchronous subscriber, which receives the events published from now on in its own thread.
+	 * @param l subscriber
+	 * @return subscription, which must be closed to stop its thread
+	 */
+	public synchronized Subscription subscribeAsync(WorldEventListener l) {
+		Subscription s = new Subscription(this, l);
+		Subscription[] a = Arrays.copyOf(this.subscriptions, this.subscriptions.length + 1);
+		a[a.length - 1] = s;
+		this.subscriptions = a;
+		this.active = true;
+		s.thread.start();
+		return s;
+	}
+
+	/**
+	 * It removes a closed asynchronous subscription.
+	 * @param s subscription
+	 */
+	private synchronized void remove(Subscription s) {
+		for (int i = 0; i < this.subscriptions.length; i++) {
+			if (this.subscriptions[i] == s) {
+				Subscription[] a = new Subscription[this.subscriptions.length - 1];
+				System.arraycopy(this.subscriptions, 0, a, 0, i);
+				System.arraycopy(this.subscriptions, i + 1, a, i, a.length - i);
+				this.subscriptions = (a.length == 0) ? NO_SUBSCRIPTIONS : a;
+				break;
+			}
+		}
+		this.active = this.listeners.length + this.subscriptions.length > 0;
+	}
+
+	/**
+	 * It publishes an event: it is written into the next slot of the ring, once every asynchronous subscriber has
+	 * received the event that used it before, the synchronous subscribers are called and the asynchronous ones are
+	 * woken up. Called by World.
+	 * @param type kind of change
+	 * @param x x coordinate of the location
+	 * @param y y coordinate of the location
+	 * @param z z coordinate of the location
+	 * @param material material of the block or the items, null for the creatures
+	 * @param amount number of items, 0 for the blocks and the creatures
+	 */
+	public void publish(Type type, int x, int y, int z, Material material, int amount) {
+		long seq = this.cursor + 1;
+		Subscription[] subs = this.subscriptions;
+		if (subs.length > 0) waitForSlot(seq - this.ring.length, subs);
+		WorldEvent e = this.ring[(int) seq & this.mask];
+		e.set(seq, type, x, y, z, material, amount);
+		WorldEventListener[] a = this.listeners;
+		for (int i = 0; i < a.length; i++) a[i].onEvent(e);
+		this.cursor = seq;
+		for (int i = 0; i < subs.length; i++) {
+			if (subs[i].parked) LockSupport.unpark(subs[i].thread);
+		}
+	}
+
+	/**
+	 * It waits until every asynchronous subscription has received an event.
+	 * @param wrap sequence of the event that used the slot to be filled
+	 * @param subs asynchronous subscriptions
+	 */
+	private void waitForSlot(long wrap, Subscription[] subs) {
+		if (wrap <= this.gate) return;
+		int yields = 0;
+		long min;
+		while (wrap > (min = minSequence(subs))) {
+			for (int i = 0; i < subs.length; i++) LockSupport.unpark(subs[i].thread);
+			if (++yields < YIELDS) Thread.yield();
+			else LockSupport.parkNanos(1000);
+		}
+		this.gate = min;
+	}
+
+	/**
+	 * It returns the lowest sequence delivered by some subscriptions.
+	 * @param subs subscriptions
+	 * @return lowest sequence
+	 */
+	private static long minSequence(Subscription[] subs) {
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < subs.length; i++) min = Math.min(min, subs[i].sequence);
+		return min;
+	}
+}
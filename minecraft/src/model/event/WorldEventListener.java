@@ -0,0 +1,17 @@
+package model.event;
+
+/**
+ * Subscriber of the events of a WorldEventBus.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public interface WorldEventListener {
+
+	/**
+	 * It is called for every event published after the subscription, in the order they were published: by the thread
+	 * that changed the world for the synchronous subscribers, and by the thread of the subscription for the
+	 * asynchronous ones. The event is reused by later events, so it must not be kept.
+	 * @param e event
+	 */
+	void onEvent(WorldEvent e);
+}
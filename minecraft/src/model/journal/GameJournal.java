@@ -0,0 +1,321 @@
+package model.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import model.BlockWorld;
+import model.CommandBatch;
+import model.WorldSnapshot;
+import model.script.ScriptReader;
+import model.script.ScriptWriter;
+
+/**
+ * Game whose commands are written to a journal before they are executed, so it can be recovered after a crash.
+ * A directory holds the journal, a binary play script (see ScriptWriter) with the header of the game and every
+ * command that changes it, and the snapshots of the game (see WorldSnapshot) taken every 'interval' commands.
+ * recover() loads the latest snapshot and only executes the commands journaled after it; the game is deterministic,
+ * so the result is the same game. A command cut by a crash is removed from the journal.
+ * The journal is flushed to the operating system before every batch is executed, so it survives the crash of the
+ * process; sync() also forces it to the disk. The world is generated completely when the game is created.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class GameJournal implements Closeable {
+
+	/**
+	 * Name of the journal in the directory of the game
+	 */
+	public static final String JOURNAL = "journal.bin";
+	/**
+	 * Start of the names of the snapshots, which end with the number of commands they include
+	 */
+	private static final String SNAPSHOT = "snapshot-";
+	/**
+	 * Name of a snapshot while it is written
+	 */
+	private static final String TEMPORARY = "snapshot.tmp";
+	/**
+	 * Maximum number of commands executed in a batch while the journal is replayed
+	 */
+	private static final int REPLAY_BATCH = 1024;
+
+	/**
+	 * Directory of the game
+	 */
+	private final Path dir;
+	/**
+	 * Game
+	 */
+	private final BlockWorld game;
+	/**
+	 * Number of commands between snapshots, 0 to take them only when snapshot() is called
+	 */
+	private final int interval;
+	/**
+	 * File of the journal, opened to append
+	 */
+	private final FileOutputStream file;
+	/**
+	 * Writer of the commands to the journal
+	 */
+	private final ScriptWriter writer;
+	/**
+	 * Number of commands in the journal
+	 */
+	private long commands;
+	/**
+	 * Number of commands included in the latest snapshot
+	 */
+	private long snapshotCommands;
+
+	/**
+	 * Private constructor, games are created by create() and recover()
+	 * @param dir directory of the game
+	 * @param game game
+	 * @param interval number of commands between snapshots
+	 * @param commands number of commands in the journal
+	 * @param snapshotCommands number of commands included in the latest snapshot
+	 * @throws IOException if the journal can not be opened
+	 */
+	private GameJournal(Path dir, BlockWorld game, int interval, long commands, long snapshotCommands) throws IOException {
+		if (interval < 0) throw new IllegalArgumentException("Negative interval " + interval);
+		this.dir = dir;
+		this.game = game;
+		this.interval = interval;
+		this.file = new FileOutputStream(dir.resolve(JOURNAL).toFile(), true);
+		this.writer = new ScriptWriter(this.file);
+		this.commands = commands;
+		this.snapshotCommands = snapshotCommands;
+	}
+
+	/**
+	 * It creates a new game in a directory, with an empty journal and the snapshot of its new world.
+	 * @param dir directory of the game, created if it does not exist
+	 * @param seed seed of the world
+	 * @param size size of the world
+	 * @param worldName name of the world
+	 * @param playerName name of the player
+	 * @param interval number of commands between snapshots, 0 to take them only when snapshot() is called
+	 * @param out stream where the information of the player is printed, or null to use System.out
+	 * @param err stream where the errors of the commands are printed, or null to use System.err
+	 * @return the journaled game
+	 * @throws FileAlreadyExistsException if the directory already has a journal
+	 * @throws IOException if the files can not be written
+	 */
+	public static GameJournal create(Path dir, long seed, int size, String worldName, String playerName, int interval,
+			PrintStream out, PrintStream err) throws IOException {
+		Files.createDirectories(dir);
+		Path journal = dir.resolve(JOURNAL);
+		BlockWorld game = BlockWorld.newInstance(out, err);
+		game.createWorld(seed, size, worldName, playerName, true);
+		try (ScriptWriter w = new ScriptWriter(Files.newOutputStream(journal, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+			w.writeHeader(seed, size, playerName, worldName);
+		}
+		GameJournal g = new GameJournal(dir, game, interval, 0, 0);
+		g.snapshot();
+		return g;
+	}
+
+	/**
+	 * It recovers the game of a directory: it loads its latest valid snapshot and executes the commands journaled
+	 * after it. The incomplete command at the end of the journal, if any, is removed.
+	 * @param dir directory of the game
+	 * @param interval number of commands between snapshots, 0 to take them only when snapshot() is called
+	 * @param out stream where the information of the player is printed, or null to use System.out
+	 * @param err stream where the errors of the commands are printed, or null to use System.err
+	 * @return the journaled game
+	 * @throws NoSuchFileException if the directory has no journal
+	 * @throws IOException if the journal or every snapshot can not be read
+	 */
+	public static GameJournal recover(Path dir, int interval, PrintStream out, PrintStream err) throws IOException {
+		Path journal = dir.resolve(JOURNAL);
+		if (!Files.exists(journal)) throw new NoSuchFileException(journal.toString());
+		BlockWorld game = null;
+		long commands = 0;
+		long offset = 0;
+		IOException failure = null;
+		for (Path snapshot : snapshots(dir)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+				commands = in.readLong();
+				offset = in.readLong();
+				game = WorldSnapshot.read(in, out, err);
+				break;
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (game == null) throw (failure != null) ? failure : new NoSuchFileException(dir.resolve(SNAPSHOT + "0").toString());
+		long snapshotCommands = commands;
+
+		try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ScriptReader reader = new ScriptReader(channel);
+			reader.readHeader();
+			if (!reader.isBinary() || channel.size() < offset) throw new IOException("Wrong journal " + journal);
+			byte[] tail = new byte[(int) (channel.size() - offset)];
+			ByteBuffer buffer = ByteBuffer.wrap(tail);
+			channel.position(offset);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+			reader.reset(tail, 0, buffer.position());
+
+			CommandBatch batch = new CommandBatch(REPLAY_BATCH);
+			long end = 0;
+			try {
+				while (reader.next()) {
+					batch.add(reader.getOperation(), reader.getArgument(0), reader.getArgument(1), reader.getArgument(2));
+					end = reader.position();
+					if (batch.size() == REPLAY_BATCH) commands += replay(game, batch);
+				}
+			} catch (NoSuchElementException e) {
+				// the last command was cut by a crash, it was never executed
+			}
+			commands += replay(game, batch);
+			channel.truncate(offset + end);
+		}
+		return new GameJournal(dir, game, interval, commands, snapshotCommands);
+	}
+
+	/**
+	 * It executes a batch of commands read from the journal and empties it.
+	 * @param game game
+	 * @param batch commands
+	 * @return number of commands executed
+	 */
+	private static int replay(BlockWorld game, CommandBatch batch) {
+		int n = batch.size();
+		game.executeBatch(game.getWorld().getPlayer(), batch);
+		batch.clear();
+		return n;
+	}
+
+	/**
+	 * It returns the snapshots of a directory, from the latest to the oldest.
+	 * @param dir directory of a game
+	 * @return paths of the snapshots
+	 * @throws IOException if the directory can not be read
+	 */
+	private static List<Path> snapshots(Path dir) throws IOException {
+		List<Long> numbers = new ArrayList<Long>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SNAPSHOT + "*")) {
+			for (Path p : files) {
+				try {
+					numbers.add(Long.parseLong(p.getFileName().toString().substring(SNAPSHOT.length())));
+				} catch (NumberFormatException e) {
+					// not a snapshot
+				}
+			}
+		}
+		Collections.sort(numbers, Collections.reverseOrder());
+		List<Path> paths = new ArrayList<Path>();
+		for (Long n : numbers) paths.add(dir.resolve(SNAPSHOT + n));
+		return paths;
+	}
+
+	/**
+	 * It writes a batch of commands to the journal and executes them. The "show" and "view" commands are executed but
+	 * not journaled, since they do not change the game. A snapshot is taken when 'interval' commands have been journaled
+	 * since the latest one.
+	 * @param batch commands
+	 * @return status of every command (see BlockWorld.executeBatch())
+	 * @throws IOException if the journal or the snapshot can not be written; the commands are not executed if the
+	 * journal fails
+	 */
+	public byte[] execute(CommandBatch batch) throws IOException {
+		int n = 0;
+		for (int i = 0; i < batch.size(); i++) {
+			int op = batch.getOperation(i);
+			if (op == CommandBatch.SHOW || op == CommandBatch.VIEW) continue;
+			this.writer.write(op, batch.getArgument(i, 0), batch.getArgument(i, 1), batch.getArgument(i, 2));
+			n++;
+		}
+		this.writer.flush();
+		this.commands += n;
+		byte[] status = this.game.executeBatch(this.game.getWorld().getPlayer(), batch);
+		if (this.interval > 0 && this.commands - this.snapshotCommands >= this.interval) snapshot();
+		return status;
+	}
+
+	/**
+	 * It takes a snapshot of the game, which replaces the previous ones. It is written to a temporary file that is
+	 * renamed when it is complete, so a crash never leaves a partial snapshot.
+	 * @throws IOException if the snapshot can not be written
+	 */
+	public void snapshot() throws IOException {
+		this.writer.flush();
+		long offset = this.file.getChannel().size();
+		Path temporary = this.dir.resolve(TEMPORARY);
+		try (FileOutputStream f = new FileOutputStream(temporary.toFile());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(f))) {
+			out.writeLong(this.commands);
+			out.writeLong(offset);
+			WorldSnapshot.write(this.game, out);
+			out.flush();
+			f.getFD().sync();
+		}
+		Files.move(temporary, this.dir.resolve(SNAPSHOT + this.commands), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		for (Path p : snapshots(this.dir)) {
+			if (!p.getFileName().toString().equals(SNAPSHOT + this.commands)) Files.deleteIfExists(p);
+		}
+		this.snapshotCommands = this.commands;
+	}
+
+	/**
+	 * It forces the journal to the disk, so that it also survives the crash of the system.
+	 * @throws IOException if the journal can not be written
+	 */
+	public void sync() throws IOException {
+		this.writer.flush();
+		this.file.getFD().sync();
+	}
+
+	/**
+	 * Trivial getter
+	 * @return game, whose commands must be executed by execute() to be journaled
+	 */
+	public BlockWorld getGame() {
+		return this.game;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of commands in the journal
+	 */
+	public long getCommands() {
+		return this.commands;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of commands included in the latest snapshot
+	 */
+	public long getSnapshotCommands() {
+		return this.snapshotCommands;
+	}
+
+	/**
+	 * It closes the journal. The game is not changed.
+	 * @throws IOException if the journal can not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.writer.close();
+	}
+}
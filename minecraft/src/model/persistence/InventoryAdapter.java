@@ -1,10 +1,11 @@
 package model.persistence;
 
-import model.Inventory;
+import model.InventoryView;
 import model.ItemStack;
 
 /**
- * This class implements the methods in the interface IInventory, relying on the methods of the class Inventory.
+ * This class implements the methods in the interface IInventory, relying on the methods of the class Inventory or of
+ * any other view of an inventory, which is not copied.
  * @author Katarzyna Kaczorowska
  *
  */
@@ -12,12 +13,12 @@ public class InventoryAdapter implements IInventory {
 	/**
 	 * Inventory adopted to the interface
 	 */
-	private Inventory inventory;
+	private InventoryView inventory;
 	/**
-	 * Overloaded constructor taking as argument the Inventory object that we want to adapt to the interface IInventory.
+	 * Overloaded constructor taking as argument the Inventory object (or view of an inventory) that we want to adapt to the interface IInventory.
 	 * @param i inventory to adopt
 	 */
-	public InventoryAdapter(Inventory i){
+	public InventoryAdapter(InventoryView i){
 		this.inventory = i;
 	}
 	/**
@@ -1,6 +1,5 @@
 package model.persistence;
 
-import model.Inventory;
 import model.Location;
 import model.entities.Player;
 /**
@@ -20,12 +19,13 @@ public class PlayerAdapter implements IPlayer {
 	private IInventory inventory;
 	
 	/**
-	 * Overloaded constructor taking as argument the Player object that we want to adapt to the interface IPlayer. It builds an InventoryAdapter from the inventory of player ‘p’.
+	 * Overloaded constructor taking as argument the Player object that we want to adapt to the interface IPlayer. It builds an InventoryAdapter from a snapshot of the inventory of player ‘p’,
+	 * whose items are only copied if the player changes them while the adapter is used.
 	 * @param p player
 	 */
 	public PlayerAdapter(Player p){
 		this.player = p;
-		this.inventory = new InventoryAdapter(p.getInventory());
+		this.inventory = new InventoryAdapter(p.getInventoryView().snapshot());
 	}
 	/**
 	 * Trivial getter
@@ -8,11 +8,13 @@ import java.util.NavigableMap;
 import java.util.TreeMap;
 
 import model.Block;
+import model.BlockPos;
 import model.ItemStack;
 import model.LiquidBlock;
 import model.Location;
 import model.Material;
 import model.World;
+import model.WorldBounds;
 import model.entities.Creature;
 import model.exceptions.BadLocationException;
 import model.exceptions.WrongMaterialException;
@@ -47,20 +49,25 @@ public class WorldAdapter implements IWorld{
 	 */
 	public NavigableMap<Location, Block> getMapBlock(Location l){
 		NavigableMap<Location, Block> blocks = new TreeMap<Location, Block>();
+		BlockPos corner = blockCorner(l);
+		WorldBounds area = (corner!=null) ? this.world.getBounds().clip(corner, 16) : null;
 		for(int i=0;i<16;i++) {
 			for(int j=0; j<16; j++) {
 				for(int k=0; k<16; k++) {
 					Location i_loc = new Location(l.getWorld(), l.getX()+i, l.getY()+j, l.getZ()+k);
-					Location i_loc_relative = new Location(i_loc);
-					i_loc_relative.substract(l);
+					Location i_loc_relative = new Location(l.getWorld(), i_loc.getX()-l.getX(), i_loc.getY()-l.getY(), i_loc.getZ()-l.getZ());
+					boolean inside;
+					if(corner!=null) inside = area!=null && area.contains(corner.getX()+i, corner.getY()+j, corner.getZ()+k);
+					else inside = Location.check(i_loc);
 					
-					if(Location.check(i_loc)){
+					if(inside){
 						try {
-							if(this.world.getBlockAt(i_loc)==null) {
+							Block b = this.world.getBlockAt(i_loc);
+							if(b==null) {
 								blocks.put(i_loc_relative, new LiquidBlock(Material.AIR));
 							}
 							else {
-								blocks.put(i_loc_relative, this.world.getBlockAt(i_loc));
+								blocks.put(i_loc_relative, b);
 							}
 						} catch (BadLocationException | WrongMaterialException e) {
 							e.printStackTrace();
@@ -80,15 +87,7 @@ public class WorldAdapter implements IWorld{
 	 * @return the negative limit of the locations
 	 */
 	public int getNegativeLimit() {
-		int size = this.world.getSize();
-		int range_down;
-		if(size%2==1) {
-			range_down = ((size-1)/2)*(-1);
-		}
-		else {
-			range_down = (size/2-1)*(-1);
-		}
-		return range_down;
+		return this.world.getBounds().getMinX();
 	}
 	/**
 	 * Trivial getter
@@ -102,15 +101,7 @@ public class WorldAdapter implements IWorld{
 	 * @return the positive limit of the locations
 	 */
 	public int getPositiveLimit() {
-		int size = this.world.getSize();
-		int range_up;
-		if(size%2==1) {
-			range_up = (size-1)/2;
-		}
-		else {
-			range_up = size/2;
-		}
-		return range_up;
+		return this.world.getBounds().getMaxX();
 	}
 	/**
 	 * It returns a list with the creatures that inhabit the world and whose locations lies within the area of 16x16x16 blocks
@@ -119,13 +110,29 @@ public class WorldAdapter implements IWorld{
 	 */
 	public List<Creature> getCreatures(Location l){
 		List<Creature> creatures = new ArrayList<Creature>();
+		BlockPos corner = blockCorner(l);
+		if(corner!=null) {
+			WorldBounds area = this.world.getBounds().clip(corner, 16);
+			if(area==null) return creatures;
+			for(int x=area.getMinX(); x<=area.getMaxX(); x++) {
+				for(int y=area.getMinY(); y<=area.getMaxY(); y++) {
+					for(int z=area.getMinZ(); z<=area.getMaxZ(); z++) {
+						Creature c = this.world.getCreatureAt(new BlockPos(x, y, z));
+						if(c!=null) {
+							creatures.add(c);
+						}
+					}
+				}
+			}
+			return creatures;
+		}
 		for(int i=0;i<16;i++) {
 			for(int j=0; j<16; j++) {
 				for(int k=0; k<16; k++) {
 					try {
-						Location i_loc = new Location(l.getWorld(), l.getX()+i, l.getY()+j, l.getZ()+k);
-						if(this.world.getCreatureAt(i_loc)!=null) {
-							creatures.add(this.world.getCreatureAt(i_loc));
+						Creature c = this.world.getCreatureAt(new Location(l.getWorld(), l.getX()+i, l.getY()+j, l.getZ()+k));
+						if(c!=null) {
+							creatures.add(c);
 						}
 					} catch (BadLocationException e) {
 						e.printStackTrace();
@@ -142,13 +149,29 @@ public class WorldAdapter implements IWorld{
 	 */
 	public Map<Location, ItemStack> getItems(Location l){
 		Map<Location, ItemStack> items = new HashMap<Location, ItemStack>();
+		BlockPos corner = blockCorner(l);
+		if(corner!=null) {
+			WorldBounds area = this.world.getBounds().clip(corner, 16);
+			if(area==null) return items;
+			for(int x=area.getMinX(); x<=area.getMaxX(); x++) {
+				for(int y=area.getMinY(); y<=area.getMaxY(); y++) {
+					for(int z=area.getMinZ(); z<=area.getMaxZ(); z++) {
+						ItemStack is = this.world.getItemsAt(new BlockPos(x, y, z));
+						if(is!=null) {
+							items.put(new Location(l.getWorld(), l.getX()+(x-corner.getX()), l.getY()+(y-corner.getY()), l.getZ()+(z-corner.getZ())), is);
+						}
+					}
+				}
+			}
+			return items;
+		}
 		for(int i=0;i<16;i++) {
 			for(int j=0; j<16; j++) {
 				for(int k=0; k<16; k++) {
 					try {
-						Location i_loc = new Location(l.getWorld(), l.getX()+i, l.getY()+j, l.getZ()+k);
-						if(this.world.getItemsAt(i_loc)!=null) {
-							items.put(i_loc, this.world.getItemsAt(i_loc));
+						ItemStack is = this.world.getItemsAt(new Location(l.getWorld(), l.getX()+i, l.getY()+j, l.getZ()+k));
+						if(is!=null) {
+							items.put(new Location(l.getWorld(), l.getX()+i, l.getY()+j, l.getZ()+k), is);
 						}
 					} catch (BadLocationException e) {
 						e.printStackTrace();
@@ -158,4 +181,15 @@ public class WorldAdapter implements IWorld{
 				}
 		return items;
 	}
+	/**
+	 * It returns the position of the given location if it is a location of this world with integer coordinates, so
+	 * that the areas that start there can be read by position without creating locations.
+	 * @param l location
+	 * @return position of the location, or null if the area must be read by location
+	 */
+	private BlockPos blockCorner(Location l) {
+		if(l.getWorld()==null||!l.getWorld().equals(this.world)) return null;
+		if(l.getX()!=Math.rint(l.getX())||l.getY()!=Math.rint(l.getY())||l.getZ()!=Math.rint(l.getZ())) return null;
+		return BlockPos.of(l);
+	}
 }
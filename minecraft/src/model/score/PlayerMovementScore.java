@@ -22,6 +22,13 @@ public class PlayerMovementScore extends Score<Location> {
 		super(s);
 		previousLocation=null;
 	}
+	/**
+	 * It returns the previous location of the player.
+	 * @return copy of the previous location, or null if no location has been scored yet
+	 */
+	public Location getPreviousLocation() {
+		return (this.previousLocation!=null) ? new Location(this.previousLocation) : null;
+	}
 	@Override
 	public int compareTo(Score<Location> s) {
 		if(this.score<s.score) {
@@ -43,6 +43,13 @@ public abstract class Score<T> implements Comparable<Score<T>> {
 	public double getScoring() {
 		return this.score;
 	}
+	/**
+	 * It sets the player score, for example to restore a saved game.
+	 * @param s new score
+	 */
+	public void setScoring(double s) {
+		this.score=s;
+	}
 	/**
 	 * Abstract method that increases (or decreases) the player’s score according to the object that is passed as an argument. Obviously, the behaviour of this method will depend on the type of score and will be implemented in the subclasses of Score.
 	 * @param t type to be defined
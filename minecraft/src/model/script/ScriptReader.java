@@ -0,0 +1,579 @@
+package model.script;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+import model.CommandBatch;
+
+/**
+ * Reader of the play scripts of BlockWorld, in text or in the binary format written by ScriptWriter.
+ * The first line of a text script has the seed, the size, the name of the player and the name of the world, and it is
+ * followed by the commands "move dx dy dz", "orientate dx dy dz", "useItem times", "show", "view radius" and
+ * "selectItem position", separated by spaces or lines. An unknown command is skipped with the rest of its line, as BlockWorld did with its
+ * Scanner.
+ * The bytes are read through a buffer from a channel and the commands are turned directly into their operation (see
+ * CommandBatch) and int arguments, so reading a command does not create any object. Binary scripts start with
+ * MAGIC and are detected when the header is read.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class ScriptReader implements Closeable {
+
+	/**
+	 * First bytes of a binary script
+	 */
+	static final byte[] MAGIC = { 'B', 'W', 'S', '1' };
+	/**
+	 * Size of the buffer, in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * Names of the commands of the text scripts, indexed by their operation
+	 */
+	private static final byte[][] KEYWORDS = new byte[CommandBatch.VIEW + 1][];
+
+	static {
+		KEYWORDS[CommandBatch.MOVE] = "move".getBytes(StandardCharsets.US_ASCII);
+		KEYWORDS[CommandBatch.ORIENTATE] = "orientate".getBytes(StandardCharsets.US_ASCII);
+		KEYWORDS[CommandBatch.USE_ITEM] = "useItem".getBytes(StandardCharsets.US_ASCII);
+		KEYWORDS[CommandBatch.SELECT_ITEM] = "selectItem".getBytes(StandardCharsets.US_ASCII);
+		KEYWORDS[CommandBatch.SHOW] = "show".getBytes(StandardCharsets.US_ASCII);
+		KEYWORDS[CommandBatch.VIEW] = "view".getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Channel the script is read from
+	 */
+	private ReadableByteChannel channel;
+	/**
+	 * Bytes read from the channel
+	 */
+	private byte[] buffer;
+	/**
+	 * Buffer of the channel, backed by 'buffer'
+	 */
+	private ByteBuffer bytes;
+	/**
+	 * Position of the next byte to read in 'buffer'
+	 */
+	private int pos;
+	/**
+	 * Number of valid bytes in 'buffer'
+	 */
+	private int limit;
+	/**
+	 * Position in the script of the first byte of 'buffer'
+	 */
+	private long base;
+	/**
+	 * If the end of the channel has been reached
+	 */
+	private boolean eof;
+	/**
+	 * Charset of the names of a text script
+	 */
+	private Charset charset;
+	/**
+	 * If the script is in the binary format
+	 */
+	private boolean binary;
+	/**
+	 * Bytes of the last token read; it grows if a token does not fit
+	 */
+	private byte[] token = new byte[32];
+	/**
+	 * Length of the last token read
+	 */
+	private int tokenLength;
+	/**
+	 * Seed of the world of the script
+	 */
+	private long seed;
+	/**
+	 * Size of the world of the script
+	 */
+	private int size;
+	/**
+	 * Name of the player of the script
+	 */
+	private String playerName;
+	/**
+	 * Name of the world of the script
+	 */
+	private String worldName;
+	/**
+	 * Operation of the last command read
+	 */
+	private int operation = -1;
+	/**
+	 * Arguments of the last command read
+	 */
+	private int[] arguments = new int[3];
+
+	/**
+	 * It creates a reader of the script in a channel. The names of a text script are decoded with the default charset,
+	 * as Scanner does.
+	 * @param channel channel with the script
+	 */
+	public ScriptReader(ReadableByteChannel channel) {
+		this(channel, Charset.defaultCharset());
+	}
+
+	/**
+	 * It creates a reader of the script in a channel.
+	 * @param channel channel with the script
+	 * @param charset charset of the names of a text script
+	 */
+	public ScriptReader(ReadableByteChannel channel, Charset charset) {
+		this.channel = channel;
+		this.charset = charset;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.bytes = ByteBuffer.wrap(this.buffer);
+	}
+
+	/**
+	 * It creates a reader of the script in an array of bytes.
+	 * @param script bytes of the script
+	 */
+	public ScriptReader(byte[] script) {
+		this.channel = null;
+		this.charset = Charset.defaultCharset();
+		this.buffer = script;
+		this.limit = script.length;
+		this.eof = true;
+	}
+
+	/**
+	 * It makes the reader continue the script with the bytes of an array, which may be reused afterwards. The header
+	 * already read is kept, so a server can read every group of commands received from a client with the same reader.
+	 * @param script bytes that follow the ones already read
+	 * @param offset position of the first byte
+	 * @param length number of bytes
+	 */
+	public void reset(byte[] script, int offset, int length) {
+		this.channel = null;
+		this.bytes = null;
+		this.buffer = script;
+		this.pos = offset;
+		this.limit = offset + length;
+		this.base = -offset;
+		this.eof = true;
+		this.operation = -1;
+	}
+
+	/**
+	 * It opens a script file. It is read through a buffer from the channel of the file.
+	 * @param f file of the script
+	 * @return reader of the script
+	 * @throws FileNotFoundException if the file can not be opened
+	 */
+	public static ScriptReader open(File f) throws FileNotFoundException {
+		return new ScriptReader(new FileInputStream(f).getChannel());
+	}
+
+	/**
+	 * It reads the header of the script: the first line of a text script, or the header of a binary one.
+	 * @throws IOException if the script can not be read
+	 * @throws NoSuchElementException if the header is not complete
+	 * @throws InputMismatchException if the seed or the size are not numbers
+	 */
+	public void readHeader() throws IOException {
+		if (startsWithMagic()) {
+			this.binary = true;
+			this.pos += MAGIC.length;
+			this.seed = ((long) readInt32() << 32) | (readInt32() & 0xFFFFFFFFL);
+			this.size = readInt32();
+			this.playerName = readUtf();
+			this.worldName = readUtf();
+		}
+		else {
+			this.seed = nextLong();
+			this.size = (int) checkInt(nextLong());
+			if (!nextToken()) throw new NoSuchElementException();
+			this.playerName = new String(this.token, 0, this.tokenLength, this.charset);
+			this.worldName = restOfLine();
+		}
+	}
+
+	/**
+	 * Trivial getter
+	 * @return seed of the world of the script
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return size of the world of the script
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return name of the player of the script
+	 */
+	public String getPlayerName() {
+		return this.playerName;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return name of the world of the script
+	 */
+	public String getWorldName() {
+		return this.worldName;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return true if the script is in the binary format
+	 */
+	public boolean isBinary() {
+		return this.binary;
+	}
+
+	/**
+	 * It reads the next command of the script, skipping the unknown ones.
+	 * @return false if there are no more commands
+	 * @throws IOException if the script can not be read
+	 * @throws NoSuchElementException if the script ends before the arguments of a command
+	 * @throws InputMismatchException if an argument is not a number
+	 */
+	public boolean next() throws IOException {
+		if (this.binary) return nextBinary();
+		while (nextToken()) {
+			int op = keyword();
+			if (op < 0) {
+				skipLine();
+				continue;
+			}
+			this.operation = op;
+			int n = arity(op);
+			for (int i = 0; i < 3; i++) this.arguments[i] = (i < n) ? (int) checkInt(nextLong()) : 0;
+			return true;
+		}
+		this.operation = -1;
+		return false;
+	}
+
+	/**
+	 * It reads commands of the script into a batch.
+	 * @param batch batch where the commands are added
+	 * @param max maximum number of commands to read
+	 * @return number of commands added, 0 at the end of the script
+	 * @throws IOException if the script can not be read
+	 */
+	public int readBatch(CommandBatch batch, int max) throws IOException {
+		int n = 0;
+		while (n < max && next()) {
+			batch.add(this.operation, this.arguments[0], this.arguments[1], this.arguments[2]);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return operation of the last command read (see CommandBatch), or -1 if there is none
+	 */
+	public int getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * It returns the number of bytes consumed, from the start of the script or from the offset of the last reset().
+	 * After next() it is the position of the end of the last command read, where a truncated script can be cut.
+	 * @return position in the script
+	 */
+	public long position() {
+		return this.base + this.pos;
+	}
+
+	/**
+	 * It returns an argument of the last command read.
+	 * @param n number of the argument, from 0 to 2
+	 * @return the argument, 0 if the command has less arguments
+	 */
+	public int getArgument(int n) {
+		return this.arguments[n];
+	}
+
+	/**
+	 * It returns the number of arguments of an operation.
+	 * @param op operation
+	 * @return number of arguments
+	 */
+	static int arity(int op) {
+		switch (op) {
+		case CommandBatch.MOVE:
+		case CommandBatch.ORIENTATE:
+			return 3;
+		case CommandBatch.USE_ITEM:
+		case CommandBatch.SELECT_ITEM:
+		case CommandBatch.VIEW:
+			return 1;
+		default:
+			return 0;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.channel != null) this.channel.close();
+	}
+
+	/**
+	 * It reads the next command of a binary script: the operation in a byte and the arguments as varints.
+	 * @return false if there are no more commands
+	 * @throws IOException if the script can not be read
+	 */
+	private boolean nextBinary() throws IOException {
+		int op = read();
+		if (op < 0) {
+			this.operation = -1;
+			return false;
+		}
+		if (op > CommandBatch.VIEW) throw new InputMismatchException("Unknown operation " + op);
+		this.operation = op;
+		int n = arity(op);
+		for (int i = 0; i < 3; i++) this.arguments[i] = (i < n) ? readVarInt() : 0;
+		return true;
+	}
+
+	/**
+	 * It returns the next byte of the script, reading from the channel if necessary.
+	 * @return the byte, or -1 at the end of the script
+	 * @throws IOException if the script can not be read
+	 */
+	private int read() throws IOException {
+		if (this.pos == this.limit && !fill()) return -1;
+		return this.buffer[this.pos++] & 0xFF;
+	}
+
+	/**
+	 * It returns the next byte of the script without consuming it.
+	 * @return the byte, or -1 at the end of the script
+	 * @throws IOException if the script can not be read
+	 */
+	private int peek() throws IOException {
+		if (this.pos == this.limit && !fill()) return -1;
+		return this.buffer[this.pos] & 0xFF;
+	}
+
+	/**
+	 * It reads more bytes from the channel into the buffer, keeping the ones not consumed yet.
+	 * @return false if there are no more bytes
+	 * @throws IOException if the script can not be read
+	 */
+	private boolean fill() throws IOException {
+		if (this.eof) return this.pos < this.limit;
+		int kept = this.limit - this.pos;
+		this.base += this.pos;
+		System.arraycopy(this.buffer, this.pos, this.buffer, 0, kept);
+		this.pos = 0;
+		this.limit = kept;
+		while (this.limit == kept) {
+			this.bytes.clear();
+			this.bytes.position(this.limit);
+			int n = this.channel.read(this.bytes);
+			if (n < 0) {
+				this.eof = true;
+				break;
+			}
+			this.limit += n;
+		}
+		return this.pos < this.limit;
+	}
+
+	/**
+	 * It checks if the script starts with MAGIC, without consuming it.
+	 * @return true if it is a binary script
+	 * @throws IOException if the script can not be read
+	 */
+	private boolean startsWithMagic() throws IOException {
+		while (this.limit - this.pos < MAGIC.length && !this.eof) {
+			int before = this.limit;
+			fill();
+			if (this.limit == before) break;
+		}
+		if (this.limit - this.pos < MAGIC.length) return false;
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (this.buffer[this.pos + i] != MAGIC[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * It checks if a byte is a separator of the text scripts, as Character.isWhitespace() does for ASCII.
+	 * @param c byte
+	 * @return true if it is a space
+	 */
+	private static boolean isSpace(int c) {
+		return c == ' ' || (c >= 0x09 && c <= 0x0D) || (c >= 0x1C && c <= 0x1F);
+	}
+
+	/**
+	 * It reads the next token, the bytes until the next space, into 'token'.
+	 * @return false if there are no more tokens
+	 * @throws IOException if the script can not be read
+	 */
+	private boolean nextToken() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c >= 0 && isSpace(c));
+		if (c < 0) return false;
+		int n = 0;
+		while (c >= 0 && !isSpace(c)) {
+			if (n == this.token.length) this.token = Arrays.copyOf(this.token, n * 2);
+			this.token[n++] = (byte) c;
+			c = peek();
+			if (c >= 0 && !isSpace(c)) this.pos++;
+		}
+		this.tokenLength = n;
+		return true;
+	}
+
+	/**
+	 * It returns the command of the last token.
+	 * @return operation of the command, or -1 if it is not a command
+	 */
+	private int keyword() {
+		for (int op = 0; op < KEYWORDS.length; op++) {
+			byte[] k = KEYWORDS[op];
+			if (k.length != this.tokenLength) continue;
+			int i = 0;
+			while (i < k.length && k[i] == this.token[i]) i++;
+			if (i == k.length) return op;
+		}
+		return -1;
+	}
+
+	/**
+	 * It reads the next token as an integer.
+	 * @return the number
+	 * @throws IOException if the script can not be read
+	 * @throws NoSuchElementException if there are no more tokens
+	 * @throws InputMismatchException if the token is not an integer
+	 */
+	private long nextLong() throws IOException {
+		if (!nextToken()) throw new NoSuchElementException();
+		int n = this.tokenLength;
+		int i = 0;
+		boolean negative = false;
+		if (this.token[0] == '-' || this.token[0] == '+') {
+			negative = this.token[0] == '-';
+			i = 1;
+		}
+		if (i == n) throw new InputMismatchException();
+		long value = 0;
+		for (; i < n; i++) {
+			int d = this.token[i] - '0';
+			if (d < 0 || d > 9) throw new InputMismatchException();
+			if (value > (Long.MAX_VALUE - d) / 10) throw new InputMismatchException();
+			value = value * 10 + d;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * It checks that a number fits in an int.
+	 * @param value number
+	 * @return the number
+	 * @throws InputMismatchException if it does not fit
+	 */
+	private static long checkInt(long value) {
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw new InputMismatchException();
+		return value;
+	}
+
+	/**
+	 * It skips the rest of the current line and its line separator.
+	 * @throws IOException if the script can not be read
+	 */
+	private void skipLine() throws IOException {
+		int c = read();
+		while (c >= 0 && c != '\n' && c != '\r') c = read();
+		if (c == '\r' && peek() == '\n') this.pos++;
+	}
+
+	/**
+	 * It reads the rest of the current line, without its line separator.
+	 * @return the rest of the line
+	 * @throws IOException if the script can not be read
+	 */
+	private String restOfLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int c = read();
+		while (c >= 0 && c != '\n' && c != '\r') {
+			line.write(c);
+			c = read();
+		}
+		if (c == '\r' && peek() == '\n') this.pos++;
+		return new String(line.toByteArray(), this.charset);
+	}
+
+	/**
+	 * It reads a big-endian int of a binary script.
+	 * @return the number
+	 * @throws IOException if the script can not be read
+	 */
+	private int readInt32() throws IOException {
+		int value = 0;
+		for (int i = 0; i < 4; i++) value = (value << 8) | readByte();
+		return value;
+	}
+
+	/**
+	 * It reads a string of a binary script: its length in two bytes and its bytes in UTF-8.
+	 * @return the string
+	 * @throws IOException if the script can not be read
+	 */
+	private String readUtf() throws IOException {
+		int n = (readByte() << 8) | readByte();
+		byte[] b = new byte[n];
+		for (int i = 0; i < n; i++) b[i] = (byte) readByte();
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * It reads a zigzag-encoded varint of a binary script.
+	 * @return the number
+	 * @throws IOException if the script can not be read
+	 */
+	private int readVarInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return (value >>> 1) ^ -(value & 1);
+		}
+		throw new InputMismatchException("Malformed varint");
+	}
+
+	/**
+	 * It reads a byte that must be in the script.
+	 * @return the byte
+	 * @throws IOException if the script can not be read
+	 * @throws NoSuchElementException if the script has ended
+	 */
+	private int readByte() throws IOException {
+		int b = read();
+		if (b < 0) throw new NoSuchElementException();
+		return b;
+	}
+}
@@ -0,0 +1,151 @@
+package model.script;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import model.CommandBatch;
+
+/**
+ * Writer of play scripts in the binary format read by ScriptReader. A binary script starts with ScriptReader.MAGIC,
+ * followed by the seed (8 bytes), the size (4 bytes), and the names of the player and of the world (length in 2 bytes
+ * and UTF-8 bytes). Then every command is its operation in a byte (see CommandBatch) followed by its arguments as
+ * zigzag varints, so a move takes 4 bytes instead of the 12 of "move -1 0 1\n".
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class ScriptWriter implements Closeable {
+
+	/**
+	 * Stream where the script is written
+	 */
+	private OutputStream out;
+
+	/**
+	 * It creates a writer of a binary script.
+	 * @param out stream where the script is written
+	 */
+	public ScriptWriter(OutputStream out) {
+		this.out = new BufferedOutputStream(out);
+	}
+
+	/**
+	 * It writes the header of the script. It must be written before any command.
+	 * @param seed seed of the world
+	 * @param size size of the world
+	 * @param playerName name of the player
+	 * @param worldName name of the world
+	 * @throws IOException if the script can not be written
+	 */
+	public void writeHeader(long seed, int size, String playerName, String worldName) throws IOException {
+		this.out.write(ScriptReader.MAGIC);
+		writeInt32((int) (seed >>> 32));
+		writeInt32((int) seed);
+		writeInt32(size);
+		writeUtf(playerName);
+		writeUtf(worldName);
+	}
+
+	/**
+	 * It writes a command.
+	 * @param operation operation of the command (see CommandBatch)
+	 * @param a first argument
+	 * @param b second argument, ignored if the operation has less arguments
+	 * @param c third argument, ignored if the operation has less arguments
+	 * @throws IOException if the script can not be written
+	 */
+	public void write(int operation, int a, int b, int c) throws IOException {
+		if (operation < CommandBatch.MOVE || operation > CommandBatch.VIEW) throw new IllegalArgumentException("Unknown operation " + operation);
+		this.out.write(operation);
+		int n = ScriptReader.arity(operation);
+		if (n > 0) writeVarInt(a);
+		if (n > 1) {
+			writeVarInt(b);
+			writeVarInt(c);
+		}
+	}
+
+	/**
+	 * It writes the commands of a batch.
+	 * @param batch commands
+	 * @throws IOException if the script can not be written
+	 */
+	public void write(CommandBatch batch) throws IOException {
+		for (int i = 0; i < batch.size(); i++)
+			write(batch.getOperation(i), batch.getArgument(i, 0), batch.getArgument(i, 1), batch.getArgument(i, 2));
+	}
+
+	/**
+	 * It writes a script read from another one, for example to compile a text script to the binary format.
+	 * @param in script to copy, whose header has not been read yet
+	 * @param out stream where the binary script is written; it is not closed
+	 * @return number of commands written
+	 * @throws IOException if a script can not be read or written
+	 */
+	public static int compile(ScriptReader in, OutputStream out) throws IOException {
+		ScriptWriter w = new ScriptWriter(out);
+		in.readHeader();
+		w.writeHeader(in.getSeed(), in.getSize(), in.getPlayerName(), in.getWorldName());
+		int n = 0;
+		while (in.next()) {
+			w.write(in.getOperation(), in.getArgument(0), in.getArgument(1), in.getArgument(2));
+			n++;
+		}
+		w.flush();
+		return n;
+	}
+
+	/**
+	 * It writes the buffered bytes to the stream.
+	 * @throws IOException if the script can not be written
+	 */
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.out.close();
+	}
+
+	/**
+	 * It writes a big-endian int.
+	 * @param v number
+	 * @throws IOException if the script can not be written
+	 */
+	private void writeInt32(int v) throws IOException {
+		this.out.write(v >>> 24);
+		this.out.write(v >>> 16);
+		this.out.write(v >>> 8);
+		this.out.write(v);
+	}
+
+	/**
+	 * It writes a string as its length in two bytes and its UTF-8 bytes.
+	 * @param s string
+	 * @throws IOException if the script can not be written
+	 */
+	private void writeUtf(String s) throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		if (b.length > 0xFFFF) throw new IllegalArgumentException("Name too long");
+		this.out.write(b.length >>> 8);
+		this.out.write(b.length);
+		this.out.write(b);
+	}
+
+	/**
+	 * It writes a number as a zigzag varint: 7 bits in every byte, with the small negative numbers in few bytes.
+	 * @param v number
+	 * @throws IOException if the script can not be written
+	 */
+	private void writeVarInt(int v) throws IOException {
+		int z = (v << 1) ^ (v >> 31);
+		while ((z & ~0x7F) != 0) {
+			this.out.write((z & 0x7F) | 0x80);
+			z >>>= 7;
+		}
+		this.out.write(z);
+	}
+}
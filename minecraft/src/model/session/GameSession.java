@@ -0,0 +1,185 @@
+package model.session;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.BlockWorld;
+import model.CommandBatch;
+import model.World;
+import model.entities.Player;
+
+/**
+ * Game of a SessionManager: a BlockWorld with its own world, player, scores and output. The tasks submitted to a
+ * session are executed in order, one at a time, by the threads of the manager, so different sessions run
+ * concurrently but the game of a session is never used by two threads at the same time.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class GameSession {
+
+	/**
+	 * Maximum number of tasks executed before the thread is given back to the pool, so that a busy session does not
+	 * delay the others
+	 */
+	private static final int MAX_TASKS = 16;
+
+	/**
+	 * Identifier of the session in its manager
+	 */
+	private final int id;
+	/**
+	 * Game of the session
+	 */
+	private final BlockWorld game;
+	/**
+	 * Threads that execute the tasks
+	 */
+	private final Executor executor;
+	/**
+	 * Tasks waiting to be executed
+	 */
+	private final ConcurrentLinkedQueue<Runnable> tasks;
+	/**
+	 * True while a thread is executing the tasks of the session or is about to
+	 */
+	private final AtomicBoolean scheduled;
+	/**
+	 * Task of the executor that executes the waiting tasks
+	 */
+	private final Runnable drain;
+	/**
+	 * True if the session does not accept more tasks
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * It creates a session whose world has already been created.
+	 * @param id identifier of the session
+	 * @param game game of the session
+	 * @param executor threads that execute the tasks
+	 */
+	GameSession(int id, BlockWorld game, Executor executor) {
+		this.id = id;
+		this.game = game;
+		this.executor = executor;
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		this.scheduled = new AtomicBoolean(false);
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+		this.closed = false;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return identifier of the session
+	 */
+	public int getId() {
+		return this.id;
+	}
+
+	/**
+	 * Trivial getter. The game must only be used from the tasks of the session.
+	 * @return game of the session
+	 */
+	public BlockWorld getGame() {
+		return this.game;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return world of the session
+	 */
+	public World getWorld() {
+		return this.game.getWorld();
+	}
+
+	/**
+	 * Trivial getter
+	 * @return player of the session
+	 */
+	public Player getPlayer() {
+		return this.game.getWorld().getPlayer();
+	}
+
+	/**
+	 * Trivial getter
+	 * @return true if the session does not accept more tasks
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * It executes a batch of commands of the player (see BlockWorld.executeBatch()) after the tasks already submitted.
+	 * The batch must not be modified until the task is done.
+	 * @param batch commands
+	 * @return status of every command
+	 * @throws IllegalStateException if the session is closed
+	 */
+	public Future<byte[]> submit(final CommandBatch batch) {
+		return submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return game.executeBatch(getPlayer(), batch);
+			}
+		});
+	}
+
+	/**
+	 * It executes a task that uses the game of the session after the tasks already submitted.
+	 * @param <T> type of the result of the task
+	 * @param task task
+	 * @return result of the task
+	 * @throws IllegalStateException if the session is closed
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		FutureTask<T> f = new FutureTask<T>(task);
+		if (this.closed) throw new IllegalStateException("Session " + this.id + " is closed");
+		this.tasks.add(f);
+		schedule();
+		return f;
+	}
+
+	/**
+	 * It stops accepting tasks. The tasks already submitted are still executed.
+	 */
+	void close() {
+		this.closed = true;
+	}
+
+	/**
+	 * It gives a thread of the executor to the session if it has waiting tasks and no thread.
+	 */
+	private void schedule() {
+		if (!this.tasks.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this.drain);
+			} catch (RejectedExecutionException e) {
+				this.scheduled.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * It executes some waiting tasks and gives the thread back to the executor.
+	 */
+	private void drain() {
+		try {
+			Runnable task;
+			for (int n = 0; n < MAX_TASKS && (task = this.tasks.poll()) != null; n++) task.run();
+		} finally {
+			this.scheduled.set(false);
+			schedule();
+		}
+	}
+}
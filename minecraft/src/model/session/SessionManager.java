@@ -0,0 +1,153 @@
+package model.session;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.BlockWorld;
+
+/**
+ * Host of many independent games. Every GameSession has its own BlockWorld, so its world, player and scores are
+ * not shared with other sessions nor with BlockWorld.getInstance(), and the tasks of all the sessions are executed
+ * concurrently by a fixed pool of threads.
+ * The worlds of the sessions are generated lazily: creating one is fast, it prints nothing and it does not use the
+ * shared generator of Material, so a session always gets the same world for the same seed and size.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class SessionManager implements AutoCloseable {
+
+	/**
+	 * Threads that execute the tasks of the sessions
+	 */
+	private final ExecutorService pool;
+	/**
+	 * Open sessions, indexed by their identifier
+	 */
+	private final ConcurrentHashMap<Integer, GameSession> sessions;
+	/**
+	 * Identifier of the next session
+	 */
+	private final AtomicInteger nextId;
+
+	/**
+	 * It creates a manager with a thread per processor.
+	 */
+	public SessionManager() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * It creates a manager.
+	 * @param threads number of threads that execute the tasks of the sessions
+	 */
+	public SessionManager(int threads) {
+		if (threads <= 0) throw new IllegalArgumentException("Number of threads must be positive");
+		final AtomicInteger n = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "session-" + n.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.sessions = new ConcurrentHashMap<Integer, GameSession>();
+		this.nextId = new AtomicInteger(1);
+	}
+
+	/**
+	 * It opens a session with a new world.
+	 * @param seed seed of the world
+	 * @param size size of the world
+	 * @param worldName name of the world
+	 * @param playerName name of the player
+	 * @param out stream where the information of the player and the errors of the commands are printed, or null to
+	 * use System.out and System.err
+	 * @return new session
+	 * @throws IllegalStateException if the manager is closed
+	 */
+	public GameSession open(long seed, int size, String worldName, String playerName, PrintStream out) {
+		if (this.pool.isShutdown()) throw new IllegalStateException("Session manager is closed");
+		BlockWorld game = BlockWorld.newInstance(out, out);
+		game.createWorld(seed, size, worldName, playerName, true);
+		GameSession s = new GameSession(this.nextId.getAndIncrement(), game, this.pool);
+		this.sessions.put(s.getId(), s);
+		return s;
+	}
+
+	/**
+	 * It executes a task with the threads of the manager, outside the sessions: for example opening a session, which
+	 * generates the first tile of its world, without stopping the thread that asks for it.
+	 * @param task task
+	 * @return result of the task
+	 * @throws IllegalStateException if the manager is closed
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		try {
+			return this.pool.submit(task);
+		} catch (RejectedExecutionException e) {
+			throw new IllegalStateException("Session manager is closed");
+		}
+	}
+
+	/**
+	 * It returns an open session.
+	 * @param id identifier of the session
+	 * @return the session, or null if there is no open session with that identifier
+	 */
+	public GameSession get(int id) {
+		return this.sessions.get(id);
+	}
+
+	/**
+	 * It closes a session. The tasks already submitted to it are still executed.
+	 * @param id identifier of the session
+	 * @return true if the session was open
+	 */
+	public boolean close(int id) {
+		GameSession s = this.sessions.remove(id);
+		if (s == null) return false;
+		s.close();
+		return true;
+	}
+
+	/**
+	 * It returns the number of open sessions.
+	 * @return number of open sessions
+	 */
+	public int size() {
+		return this.sessions.size();
+	}
+
+	/**
+	 * It returns the open sessions.
+	 * @return unmodifiable view of the open sessions
+	 */
+	public Collection<GameSession> getSessions() {
+		return Collections.unmodifiableCollection(this.sessions.values());
+	}
+
+	/**
+	 * It closes all the sessions and waits until the tasks already submitted are executed.
+	 */
+	@Override
+	public void close() {
+		for (Integer id : this.sessions.keySet()) close(id);
+		this.pool.shutdown();
+		try {
+			while (!this.pool.awaitTermination(1, TimeUnit.MINUTES));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,487 @@
+package model.session;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import model.CommandBatch;
+import model.script.ScriptReader;
+
+/**
+ * Socket front end of a SessionManager. Every connection is a game that speaks the text language of the play
+ * scripts: the first line is the header (seed, size, name of the player and name of the world), which opens a
+ * session and is answered with "session id", and the following lines are commands. Every group of complete lines
+ * received is executed as a CommandBatch and answered with the output of its "show" and "view" commands (the latter
+ * only send the cells that changed since the previous view, see ViewTracker) and a line "status" followed by the
+ * status code of every command (see CommandBatch). Unknown commands are skipped, and a wrong header or argument is
+ * answered with "error" and closes the connection.
+ * A single thread accepts, reads and writes all the connections with a Selector, and the sessions are opened and the
+ * commands are executed by the threads of the manager, so a new connection does not delay the others and a
+ * connection without commands in flight only costs its buffers and its game.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class SessionServer implements AutoCloseable {
+
+	/**
+	 * Initial size of the buffer of the lines received from a connection
+	 */
+	private static final int INITIAL_BUFFER = 256;
+	/**
+	 * Maximum size of the buffer of the lines received from a connection
+	 */
+	private static final int MAX_BUFFER = 1 << 16;
+	/**
+	 * First word of the line with the status codes of the commands
+	 */
+	private static final byte[] STATUS = "status".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Connection of a client
+	 */
+	private static final class Connection {
+		/**
+		 * Channel of the connection
+		 */
+		final SocketChannel channel;
+		/**
+		 * Key of the channel in the selector
+		 */
+		final SelectionKey key;
+		/**
+		 * Bytes received and not executed yet
+		 */
+		ByteBuffer in;
+		/**
+		 * Output of the commands, sent when they are executed
+		 */
+		final ByteArrayOutputStream output;
+		/**
+		 * Stream of the game that prints into 'output'
+		 */
+		final PrintStream print;
+		/**
+		 * Bytes being sent, or null
+		 */
+		ByteBuffer response;
+		/**
+		 * Session of the connection, null until the header is received
+		 */
+		GameSession session;
+		/**
+		 * Reader of the received lines
+		 */
+		ScriptReader reader;
+		/**
+		 * Commands being executed
+		 */
+		final CommandBatch batch;
+		/**
+		 * True while the session is being opened or the commands are being executed
+		 */
+		boolean inFlight;
+		/**
+		 * True while the session is being opened
+		 */
+		boolean opening;
+		/**
+		 * Exception thrown while the session was opened, or null
+		 */
+		RuntimeException failure;
+		/**
+		 * True if the connection must be closed when the response is sent
+		 */
+		boolean closing;
+
+		/**
+		 * It creates the state of a new connection.
+		 * @param channel channel of the connection
+		 * @param key key of the channel
+		 */
+		Connection(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+			this.in = ByteBuffer.allocate(INITIAL_BUFFER);
+			this.output = new ByteArrayOutputStream(64);
+			this.print = new PrintStream(this.output);
+			this.batch = new CommandBatch(4);
+		}
+	}
+
+	/**
+	 * Manager of the sessions of the connections
+	 */
+	private final SessionManager manager;
+	/**
+	 * Selector of all the channels
+	 */
+	private final Selector selector;
+	/**
+	 * Channel that accepts the connections
+	 */
+	private final ServerSocketChannel server;
+	/**
+	 * Connections whose session has been opened or whose commands have been executed, to be answered by the thread of
+	 * the selector
+	 */
+	private final ConcurrentLinkedQueue<Connection> done;
+	/**
+	 * Thread of the selector
+	 */
+	private Thread thread;
+	/**
+	 * False when the server must stop
+	 */
+	private volatile boolean running;
+	/**
+	 * Number of open connections
+	 */
+	private volatile int connections;
+
+	/**
+	 * It creates a server listening on an address. Connections are not accepted until start() is called.
+	 * @param manager manager of the sessions of the connections
+	 * @param address address to listen on, for example new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)
+	 * @throws IOException if the address can not be used
+	 */
+	public SessionServer(SessionManager manager, InetSocketAddress address) throws IOException {
+		this.manager = manager;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		this.server.bind(address, 1024);
+		this.server.configureBlocking(false);
+		this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+		this.done = new ConcurrentLinkedQueue<Connection>();
+		this.running = false;
+		this.connections = 0;
+	}
+
+	/**
+	 * It returns the port the server listens on.
+	 * @return port of the server
+	 */
+	public int getPort() {
+		return this.server.socket().getLocalPort();
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of open connections
+	 */
+	public int getConnections() {
+		return this.connections;
+	}
+
+	/**
+	 * It starts the thread that accepts and serves the connections.
+	 */
+	public synchronized void start() {
+		if (this.thread != null) throw new IllegalStateException("Server already started");
+		this.running = true;
+		this.thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "session-server");
+		this.thread.start();
+	}
+
+	/**
+	 * It stops the server, closing all the connections and their sessions.
+	 */
+	@Override
+	public synchronized void close() {
+		this.running = false;
+		this.selector.wakeup();
+		if (this.thread != null) {
+			try {
+				this.thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (SelectionKey key : this.selector.keys()) {
+			if (key.attachment() != null) disconnect((Connection) key.attachment());
+		}
+		this.done.clear();
+		try {
+			this.server.close();
+			this.selector.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * It serves the connections until the server is closed.
+	 */
+	private void serve() {
+		while (this.running) {
+			try {
+				this.selector.select();
+			} catch (IOException e) {
+				break;
+			}
+			Connection c;
+			while ((c = this.done.poll()) != null) {
+				if (c.opening) opened(c);
+				else respond(c);
+			}
+			Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				SelectionKey key = it.next();
+				it.remove();
+				c = (Connection) key.attachment();
+				try {
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) accept();
+					else {
+						if (key.isReadable()) read(c);
+						if (key.isValid() && key.isWritable()) write(c);
+					}
+				} catch (IOException e) {
+					if (c != null) disconnect(c);
+				}
+			}
+		}
+	}
+
+	/**
+	 * It accepts a waiting connection.
+	 * @throws IOException if the connection can not be accepted
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = this.server.accept();
+		if (channel == null) return;
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+		key.attach(new Connection(channel, key));
+		this.connections++;
+	}
+
+	/**
+	 * It reads the bytes received from a connection and executes its complete lines.
+	 * @param c connection
+	 * @throws IOException if the connection fails
+	 */
+	private void read(Connection c) throws IOException {
+		if (!c.in.hasRemaining()) {
+			if (c.in.capacity() == MAX_BUFFER) {
+				fail(c, "line too long");
+				return;
+			}
+			ByteBuffer bigger = ByteBuffer.allocate(Math.min(MAX_BUFFER, c.in.capacity() * 2));
+			c.in.flip();
+			bigger.put(c.in);
+			c.in = bigger;
+		}
+		if (c.channel.read(c.in) < 0) {
+			disconnect(c);
+			return;
+		}
+		execute(c);
+	}
+
+	/**
+	 * It executes the complete lines received from a connection: the header, which opens the session, if it has not
+	 * been opened, or the commands, which are submitted to the session. The incomplete line is kept.
+	 * @param c connection
+	 */
+	private void execute(Connection c) {
+		byte[] a = c.in.array();
+		int end = c.in.position();
+		int last = end - 1;
+		while (last >= 0 && a[last] != '\n') last--;
+		if (last < 0) {
+			if (c.output.size() > 0) respond(c);
+			return;
+		}
+		if (c.session == null) {
+			open(c);
+			return;
+		}
+		c.batch.clear();
+		try {
+			c.reader.reset(a, 0, last + 1);
+			c.reader.readBatch(c.batch, Integer.MAX_VALUE);
+		} catch (IOException | RuntimeException e) {
+			fail(c, e.getMessage());
+			return;
+		}
+		System.arraycopy(a, last + 1, a, 0, end - last - 1);
+		c.in.position(end - last - 1);
+		if (c.batch.size() == 0) {
+			if (c.output.size() > 0) respond(c);
+			return;
+		}
+		final Connection connection = c;
+		c.inFlight = true;
+		c.key.interestOps(0);
+		try {
+			c.session.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						byte[] status = connection.session.getGame().executeBatch(connection.session.getPlayer(), connection.batch);
+						connection.output.write(STATUS, 0, STATUS.length);
+						for (byte b : status) {
+							connection.output.write(' ');
+							connection.output.write('0' + b);
+						}
+						connection.output.write('\n');
+					} finally {
+						done.add(connection);
+						selector.wakeup();
+					}
+					return null;
+				}
+			});
+		} catch (IllegalStateException e) {
+			c.inFlight = false;
+			fail(c, e.getMessage());
+		}
+	}
+
+	/**
+	 * It reads the header received from a connection and opens its session with the threads of the manager, which
+	 * answer "session id". The connection is not read until the session has been opened, and the lines received after
+	 * the header are kept.
+	 * @param c connection, with the header complete
+	 */
+	private void open(Connection c) {
+		byte[] a = c.in.array();
+		int end = c.in.position();
+		int start = 0;
+		while (a[start] != '\n') start++;
+		start++;
+		try {
+			c.reader = new ScriptReader(a);
+			c.reader.reset(a, 0, start);
+			c.reader.readHeader();
+		} catch (IOException | RuntimeException e) {
+			fail(c, e.getMessage());
+			return;
+		}
+		System.arraycopy(a, start, a, 0, end - start);
+		c.in.position(end - start);
+		final long seed = c.reader.getSeed();
+		final int size = c.reader.getSize();
+		final String worldName = c.reader.getWorldName();
+		final String playerName = c.reader.getPlayerName();
+		final Connection connection = c;
+		c.inFlight = true;
+		c.opening = true;
+		c.key.interestOps(0);
+		try {
+			this.manager.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						GameSession s = manager.open(seed, size, worldName, playerName, connection.print);
+						synchronized (connection) {
+							if (connection.channel.isOpen()) connection.session = s;
+							else manager.close(s.getId());
+						}
+						connection.print.print("session " + s.getId() + "\n");
+					} catch (RuntimeException e) {
+						connection.failure = e;
+					} finally {
+						done.add(connection);
+						selector.wakeup();
+					}
+					return null;
+				}
+			});
+		} catch (IllegalStateException e) {
+			c.inFlight = false;
+			c.opening = false;
+			fail(c, e.getMessage());
+		}
+	}
+
+	/**
+	 * It answers a connection whose session has been opened, executing the lines received after the header.
+	 * @param c connection
+	 */
+	private void opened(Connection c) {
+		c.inFlight = false;
+		c.opening = false;
+		if (!c.key.isValid()) return;
+		if (c.failure != null) fail(c, c.failure.getMessage());
+		else execute(c);
+	}
+
+	/**
+	 * It sends the output of a connection.
+	 * @param c connection
+	 */
+	private void respond(Connection c) {
+		c.inFlight = false;
+		if (!c.key.isValid()) return;
+		c.response = ByteBuffer.wrap(c.output.toByteArray());
+		c.output.reset();
+		try {
+			write(c);
+		} catch (IOException e) {
+			disconnect(c);
+		}
+	}
+
+	/**
+	 * It sends the pending response of a connection, and it goes back to reading when it has been sent.
+	 * @param c connection
+	 * @throws IOException if the connection fails
+	 */
+	private void write(Connection c) throws IOException {
+		c.channel.write(c.response);
+		if (c.response.hasRemaining()) {
+			c.key.interestOps(SelectionKey.OP_WRITE);
+			return;
+		}
+		c.response = null;
+		if (c.closing) disconnect(c);
+		else c.key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * It answers an error, after the output not sent yet, and closes the connection.
+	 * @param c connection
+	 * @param message message of the error
+	 */
+	private void fail(Connection c, String message) {
+		c.closing = true;
+		byte[] b = ("error " + ((message != null) ? message : "wrong command") + "\n").getBytes(StandardCharsets.UTF_8);
+		c.output.write(b, 0, b.length);
+		respond(c);
+	}
+
+	/**
+	 * It closes a connection and its session. The commands in flight are still executed.
+	 * @param c connection
+	 */
+	private void disconnect(Connection c) {
+		GameSession session;
+		synchronized (c) {
+			if (!c.channel.isOpen()) return;
+			c.key.cancel();
+			try {
+				c.channel.close();
+			} catch (IOException e) {
+			}
+			session = c.session;
+		}
+		if (session != null) this.manager.close(session.getId());
+		this.connections--;
+	}
+}
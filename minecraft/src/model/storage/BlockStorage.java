@@ -0,0 +1,404 @@
+package model.storage;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import model.Block;
+import model.ItemStack;
+import model.Location;
+import model.Material;
+import model.SolidBlock;
+import model.WorldBounds;
+import model.exceptions.StackSizeException;
+
+/**
+ * Storage engine for the blocks of a world. The world is split into sections of 16x16x16 cells
+ * (see ChunkSection) which are only created when a block is stored in them, and released when they become empty.
+ * Coordinates are the ones used by Location: 'x' and 'z' between the negative and positive limits of the world,
+ * and 'y' between 0 and Location.UPPER_Y_VALUE.
+ * The storage also keeps a bitset per column with the occupied heights, so the highest block of a column
+ * or the first block below a height are found in constant time.
+ * Different threads can modify the storage at the same time as long as each one works on its own sections.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public class BlockStorage {
+
+	/**
+	 * Number of sections in the vertical axis
+	 */
+	private static final int SECTIONS_Y = ((int) Location.UPPER_Y_VALUE + 1) / ChunkSection.SIZE;
+	/**
+	 * Number of materials
+	 */
+	private static final int MATERIALS = Material.values().length;
+	/**
+	 * Shared instances of the stored blocks, one for every material, drops material and drops amount (see sharedIndex)
+	 */
+	private static final AtomicReferenceArray<Block> SHARED =
+			new AtomicReferenceArray<Block>(MATERIALS * (MATERIALS + 1) * (ItemStack.MAX_STACK_SIZE + 1));
+
+	/**
+	 * Limits of the world
+	 */
+	private WorldBounds bounds;
+	/**
+	 * Negative limit of the world in 'x' and 'z'
+	 */
+	private int negativeLimit;
+	/**
+	 * Number of sections in the 'x' and 'z' axes
+	 */
+	private int sectionsPerSide;
+	/**
+	 * Sections of the world, null if the section is empty
+	 */
+	private ChunkSection[] sections;
+	/**
+	 * Occupancy of the columns, grouped like the sections in 16x16 columns: every column uses 4 longs with a bit
+	 * set for every 'y' that holds a block. null if the group has never had a block.
+	 */
+	private long[][] columns;
+
+	/**
+	 * It creates an empty storage for a world of the given size.
+	 * @param worldSize size of the world in the (x,z) plane
+	 */
+	public BlockStorage(int worldSize) {
+		this(WorldBounds.ofSize(worldSize));
+	}
+
+	/**
+	 * It creates an empty storage for a world with the given limits.
+	 * @param bounds limits of the world, with the same side in 'x' and 'z'
+	 */
+	public BlockStorage(WorldBounds bounds) {
+		int worldSize = bounds.getMaxX() - bounds.getMinX() + 1;
+		this.bounds = bounds;
+		this.negativeLimit = bounds.getMinX();
+		this.sectionsPerSide = (worldSize + ChunkSection.SIZE - 1) / ChunkSection.SIZE;
+		this.sections = new ChunkSection[this.sectionsPerSide * this.sectionsPerSide * SECTIONS_Y];
+		this.columns = new long[this.sectionsPerSide * this.sectionsPerSide][];
+	}
+
+	/**
+	 * It checks if the coordinates are inside the world.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return true if a block can be stored there
+	 */
+	public boolean inBounds(int x, int y, int z) {
+		return this.bounds.contains(x, y, z);
+	}
+
+	/**
+	 * It returns the block in the given coordinates. The returned block is shared with other cells, so it must not be modified.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return the block or null if there is none or the coordinates are outside the world
+	 */
+	public Block get(int x, int y, int z) {
+		if (!inBounds(x, y, z)) return null;
+		ChunkSection s = this.sections[sectionIndex(x, y, z)];
+		if (s == null) return null;
+		return s.get(cellIndex(x, y, z));
+	}
+
+	/**
+	 * It checks if there is a block in the given coordinates.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return true if there is a block
+	 */
+	public boolean contains(int x, int y, int z) {
+		if (!inBounds(x, y, z)) return false;
+		ChunkSection s = this.sections[sectionIndex(x, y, z)];
+		return s != null && s.contains(cellIndex(x, y, z));
+	}
+
+	/**
+	 * It stores a block in the given coordinates, replacing the previous one.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @param b block to store
+	 * @return the previous block or null
+	 * @throws IllegalArgumentException if the coordinates are outside the world
+	 */
+	public Block put(int x, int y, int z, Block b) {
+		if (!inBounds(x, y, z)) throw new IllegalArgumentException("Coordinates out of the world");
+		if (b == null) return remove(x, y, z);
+		int si = sectionIndex(x, y, z);
+		if (this.sections[si] == null) this.sections[si] = new ChunkSection();
+		int ci = columnIndex(x, z);
+		long[] column = this.columns[ci];
+		if (column == null) {
+			column = new long[ChunkSection.SIZE * ChunkSection.SIZE * 4];
+			this.columns[ci] = column;
+		}
+		column[columnOffset(x, z) + (y >> 6)] |= 1L << (y & 63);
+		return this.sections[si].set(cellIndex(x, y, z), b);
+	}
+
+	/**
+	 * It replaces the block in the given coordinates only if there is already a block there.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @param b new block
+	 * @return the previous block or null if nothing was replaced
+	 */
+	public Block replace(int x, int y, int z, Block b) {
+		if (!contains(x, y, z)) return null;
+		return this.sections[sectionIndex(x, y, z)].set(cellIndex(x, y, z), b);
+	}
+
+	/**
+	 * It removes the block in the given coordinates.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return the removed block or null if there was none
+	 */
+	public Block remove(int x, int y, int z) {
+		if (!inBounds(x, y, z)) return null;
+		int si = sectionIndex(x, y, z);
+		ChunkSection s = this.sections[si];
+		if (s == null) return null;
+		Block old = s.set(cellIndex(x, y, z), null);
+		if (old != null) {
+			this.columns[columnIndex(x, z)][columnOffset(x, z) + (y >> 6)] &= ~(1L << (y & 63));
+			if (s.isEmpty()) this.sections[si] = null;
+		}
+		return old;
+	}
+
+	/**
+	 * It removes the blocks of a vertical run of cells of the column (x, z). Cells outside the world are ignored.
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @param y0 first 'y'
+	 * @param y1 last 'y'
+	 */
+	public void removeRun(int x, int z, int y0, int y1) {
+		if (!inBounds(x, 0, z)) return;
+		y0 = Math.max(y0, 0);
+		y1 = Math.min(y1, (int) Location.UPPER_Y_VALUE);
+		long[] column = this.columns[columnIndex(x, z)];
+		if (column == null) return;
+		int offset = columnOffset(x, z);
+		int ci = cellIndex(x, 0, z);
+		for (int sy = y0 >> 4; sy <= y1 >> 4; sy++) {
+			int from = Math.max(y0, sy << 4);
+			int to = Math.min(y1, (sy << 4) + 15);
+			long mask = ((-1L >>> (63 - (to & 63))) >>> (from & 63)) << (from & 63);
+			if ((column[offset + (from >> 6)] & mask) == 0) continue;
+			column[offset + (from >> 6)] &= ~mask;
+			int si = sectionIndex(x, sy << 4, z);
+			ChunkSection s = this.sections[si];
+			s.setRun(ci & 15, (ci >> 4) & 15, from & 15, to & 15, null, true);
+			if (s.isEmpty()) this.sections[si] = null;
+		}
+	}
+
+	/**
+	 * It replaces the blocks of a vertical run of cells of the column (x, z), leaving the empty cells empty.
+	 * Cells outside the world are ignored.
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @param y0 first 'y'
+	 * @param y1 last 'y'
+	 * @param b new block
+	 */
+	public void replaceRun(int x, int z, int y0, int y1, Block b) {
+		if (!inBounds(x, 0, z)) return;
+		y0 = Math.max(y0, 0);
+		y1 = Math.min(y1, (int) Location.UPPER_Y_VALUE);
+		int ci = cellIndex(x, 0, z);
+		for (int sy = y0 >> 4; sy <= y1 >> 4; sy++) {
+			ChunkSection s = this.sections[sectionIndex(x, sy << 4, z)];
+			if (s == null) continue;
+			s.setRun(ci & 15, (ci >> 4) & 15, Math.max(y0, sy << 4) & 15, Math.min(y1, (sy << 4) + 15) & 15, b, true);
+		}
+	}
+
+	/**
+	 * It returns the highest 'y' of the column (x, z) that holds a block.
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @return highest occupied 'y', or -1 if the column is empty or outside the world
+	 */
+	public int highest(int x, int z) {
+		return highestBelow(x, (int) Location.UPPER_Y_VALUE + 1, z);
+	}
+
+	/**
+	 * It returns the highest 'y' of the column (x, z) below the given one that holds a block.
+	 * @param x x coordinate
+	 * @param y the result is lower than this 'y'
+	 * @param z z coordinate
+	 * @return highest occupied 'y' lower than 'y', or -1 if there is none or the column is outside the world
+	 */
+	public int highestBelow(int x, int y, int z) {
+		if (!inBounds(x, 0, z) || y <= 0) return -1;
+		long[] column = this.columns[columnIndex(x, z)];
+		if (column == null) return -1;
+		int offset = columnOffset(x, z);
+		int top = Math.min(y - 1, (int) Location.UPPER_Y_VALUE);
+		int word = top >> 6;
+		long bits = column[offset + word] & (-1L >>> (63 - (top & 63)));
+		while (true) {
+			if (bits != 0) return (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+			if (--word < 0) return -1;
+			bits = column[offset + word];
+		}
+	}
+
+	/**
+	 * It removes all the blocks.
+	 */
+	public void clear() {
+		for (int i = 0; i < this.sections.length; i++) this.sections[i] = null;
+		for (int i = 0; i < this.columns.length; i++) this.columns[i] = null;
+	}
+
+	/**
+	 * It counts the blocks stored.
+	 * @return number of blocks stored
+	 */
+	public int size() {
+		int size = 0;
+		for (ChunkSection s : this.sections) {
+			if (s != null) size += s.getBlockCount();
+		}
+		return size;
+	}
+
+	/**
+	 * It estimates the heap used by the storage, including every allocated section.
+	 * @return approximate number of bytes
+	 */
+	public long getMemoryUsage() {
+		long bytes = 16 + 16 + 4L * this.sections.length + 16 + 4L * this.columns.length;
+		for (ChunkSection s : this.sections) {
+			if (s != null) bytes += s.getMemoryUsage();
+		}
+		for (long[] c : this.columns) {
+			if (c != null) bytes += 16 + 8L * c.length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * It returns the average heap used by each stored block.
+	 * @return bytes per block, or 0 if there are no blocks
+	 */
+	public double getBytesPerBlock() {
+		int size = size();
+		if (size == 0) return 0.0;
+		return (double) getMemoryUsage() / size;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of sections the world is split into, allocated or not
+	 */
+	int getSectionCount() {
+		return this.sections.length;
+	}
+
+	/**
+	 * It returns the shared instance of a block: every block with the same material and drops is stored
+	 * as the same instance in every section, so it must never be modified.
+	 * @param b block
+	 * @return shared block equal to 'b'
+	 */
+	public static Block shared(Block b) {
+		int i = sharedIndex(b);
+		Block s = SHARED.get(i);
+		if (s == null) {
+			SHARED.compareAndSet(i, null, copyOf(b));
+			s = SHARED.get(i);
+		}
+		return s;
+	}
+
+	/**
+	 * It returns the position of a block in SHARED.
+	 * @param b block
+	 * @return index computed from its material and drops
+	 */
+	private static int sharedIndex(Block b) {
+		int drops = 0;
+		int amount = 0;
+		if (b instanceof SolidBlock && ((SolidBlock) b).getDrops() != null) {
+			drops = ((SolidBlock) b).getDrops().getType().ordinal() + 1;
+			amount = ((SolidBlock) b).getDrops().getAmount();
+		}
+		return (b.getType().ordinal() * (MATERIALS + 1) + drops) * (ItemStack.MAX_STACK_SIZE + 1) + amount;
+	}
+
+	/**
+	 * It returns a copy of the block that does not share its drops with the original one.
+	 * @param b block to copy
+	 * @return copy of the block
+	 */
+	public static Block copyOf(Block b) {
+		Block copy = b.clone();
+		if (copy instanceof SolidBlock && ((SolidBlock) copy).getDrops() != null) {
+			try {
+				((SolidBlock) copy).setDrops(((SolidBlock) b).getDrops().getType(), ((SolidBlock) b).getDrops().getAmount());
+			} catch (StackSizeException e) {
+				// should never happen, the drops were already valid
+				e.printStackTrace();
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * It returns the position in 'sections' of the section that contains the coordinates.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return section index
+	 */
+	int sectionIndex(int x, int y, int z) {
+		int sx = (x - this.negativeLimit) >> 4;
+		int sz = (z - this.negativeLimit) >> 4;
+		return ((y >> 4) * this.sectionsPerSide + sz) * this.sectionsPerSide + sx;
+	}
+
+	/**
+	 * It returns the position in 'columns' of the group that contains the column (x, z).
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @return group index
+	 */
+	private int columnIndex(int x, int z) {
+		return ((z - this.negativeLimit) >> 4) * this.sectionsPerSide + ((x - this.negativeLimit) >> 4);
+	}
+
+	/**
+	 * It returns the position of the first long of the column (x, z) inside its group.
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @return offset of the column
+	 */
+	private int columnOffset(int x, int z) {
+		return ((((z - this.negativeLimit) & 15) << 4) | ((x - this.negativeLimit) & 15)) << 2;
+	}
+
+	/**
+	 * It returns the index of the cell inside its section.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return cell index
+	 */
+	int cellIndex(int x, int y, int z) {
+		return ChunkSection.index((x - this.negativeLimit) & 15, y & 15, (z - this.negativeLimit) & 15);
+	}
+}
@@ -0,0 +1,246 @@
+package model.storage;
+
+import model.Block;
+
+/**
+ * A cube of 16x16x16 block cells. Instead of keeping one Block object per cell, the section keeps a small palette
+ * with the different blocks it contains (material plus drops) and a bit-packed array with the palette index of every cell.
+ * Palette index 0 is reserved for the empty cell (no block).
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public class ChunkSection {
+
+	/**
+	 * Length of the side of a section
+	 */
+	public static final int SIZE = 16;
+	/**
+	 * Number of cells in a section
+	 */
+	public static final int VOLUME = SIZE * SIZE * SIZE;
+
+	/**
+	 * Different blocks stored in this section. Position 0 is always null (empty cell).
+	 */
+	private Block[] palette;
+	/**
+	 * Number of cells using each palette entry
+	 */
+	private int[] counts;
+	/**
+	 * Number of palette entries in use
+	 */
+	private int paletteSize;
+	/**
+	 * Number of bits used to store each palette index
+	 */
+	private int bitsPerEntry;
+	/**
+	 * Number of indexes packed in every long of 'data'
+	 */
+	private int entriesPerLong;
+	/**
+	 * Bit-packed palette indexes, one per cell
+	 */
+	private long[] data;
+
+	/**
+	 * It creates an empty section.
+	 */
+	public ChunkSection() {
+		this.palette = new Block[2];
+		this.counts = new int[2];
+		this.paletteSize = 1;
+		this.counts[0] = VOLUME;
+		resize(1);
+	}
+
+	/**
+	 * It returns the index of a cell inside the section.
+	 * @param x x coordinate inside the section, from 0 to 15
+	 * @param y y coordinate inside the section, from 0 to 15
+	 * @param z z coordinate inside the section, from 0 to 15
+	 * @return index of the cell
+	 */
+	public static int index(int x, int y, int z) {
+		return (y << 8) | (z << 4) | x;
+	}
+
+	/**
+	 * It returns the block stored in a cell. The returned block is shared by every cell with the same
+	 * palette entry, so it must not be modified.
+	 * @param index index of the cell
+	 * @return block in the cell or null if it is empty
+	 */
+	public Block get(int index) {
+		return this.palette[getEntry(index)];
+	}
+
+	/**
+	 * It checks if a cell contains a block.
+	 * @param index index of the cell
+	 * @return true if there is a block in the cell
+	 */
+	public boolean contains(int index) {
+		return getEntry(index) != 0;
+	}
+
+	/**
+	 * It stores a block in a cell. The shared instance of the block (see BlockStorage.shared) is added to the palette
+	 * if there is no equal block in it yet.
+	 * @param index index of the cell
+	 * @param b block to store or null to empty the cell
+	 * @return block previously stored in the cell or null
+	 */
+	public Block set(int index, Block b) {
+		int old = getEntry(index);
+		int entry = (b == null) ? 0 : paletteIndex(b);
+		if (entry == old) return this.palette[old];
+		if (entry > (1 << this.bitsPerEntry) - 1) {
+			resize(this.bitsPerEntry + 1);
+		}
+		setEntry(index, entry);
+		this.counts[entry]++;
+		this.counts[old]--;
+		return this.palette[old];
+	}
+
+	/**
+	 * It stores the same block in a vertical run of cells, looking up the palette only once.
+	 * @param x x coordinate inside the section
+	 * @param z z coordinate inside the section
+	 * @param y0 first 'y' inside the section
+	 * @param y1 last 'y' inside the section
+	 * @param b block to store or null to empty the cells
+	 * @param onlyFull if true, the empty cells are not changed
+	 */
+	public void setRun(int x, int z, int y0, int y1, Block b, boolean onlyFull) {
+		int entry = (b == null) ? 0 : paletteIndex(b);
+		if (entry > (1 << this.bitsPerEntry) - 1) {
+			resize(this.bitsPerEntry + 1);
+		}
+		for (int y = y0; y <= y1; y++) {
+			int index = index(x, y, z);
+			int old = getEntry(index);
+			if (old == entry || (onlyFull && old == 0)) continue;
+			setEntry(index, entry);
+			this.counts[entry]++;
+			this.counts[old]--;
+		}
+	}
+
+	/**
+	 * It checks if the section has no blocks.
+	 * @return true if every cell is empty
+	 */
+	public boolean isEmpty() {
+		return this.counts[0] == VOLUME;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of cells that contain a block
+	 */
+	public int getBlockCount() {
+		return VOLUME - this.counts[0];
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of palette entries, including the empty one
+	 */
+	public int getPaletteSize() {
+		return this.paletteSize;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of bits used by each cell
+	 */
+	public int getBitsPerEntry() {
+		return this.bitsPerEntry;
+	}
+
+	/**
+	 * It estimates the heap used by this section: object headers, palette, counters and packed data.
+	 * The blocks of the palette are shared by all the sections, so they are not counted.
+	 * @return approximate number of bytes
+	 */
+	public long getMemoryUsage() {
+		return 16 + 16 + 4L * this.palette.length + 16 + 4L * this.counts.length + 16 + 8L * this.data.length;
+	}
+
+	/**
+	 * It returns the palette entry of a block, adding it to the palette if necessary.
+	 * Entries no longer used by any cell are reused before growing the palette.
+	 * @param b block
+	 * @return palette index
+	 */
+	private int paletteIndex(Block b) {
+		int free = -1;
+		for (int i = 1; i < this.paletteSize; i++) {
+			if (this.counts[i] == 0) {
+				if (free == -1) free = i;
+			}
+			else if (this.palette[i].equals(b)) {
+				return i;
+			}
+		}
+		if (free == -1) {
+			if (this.paletteSize == this.palette.length) {
+				Block[] palette = new Block[this.palette.length * 2];
+				int[] counts = new int[this.counts.length * 2];
+				System.arraycopy(this.palette, 0, palette, 0, this.paletteSize);
+				System.arraycopy(this.counts, 0, counts, 0, this.paletteSize);
+				this.palette = palette;
+				this.counts = counts;
+			}
+			free = this.paletteSize++;
+		}
+		this.palette[free] = BlockStorage.shared(b);
+		return free;
+	}
+
+	/**
+	 * It reads the palette index of a cell.
+	 * @param index index of the cell
+	 * @return palette index
+	 */
+	private int getEntry(int index) {
+		int shift = (index % this.entriesPerLong) * this.bitsPerEntry;
+		return (int) ((this.data[index / this.entriesPerLong] >>> shift) & ((1L << this.bitsPerEntry) - 1));
+	}
+
+	/**
+	 * It writes the palette index of a cell.
+	 * @param index index of the cell
+	 * @param entry palette index
+	 */
+	private void setEntry(int index, int entry) {
+		int shift = (index % this.entriesPerLong) * this.bitsPerEntry;
+		long mask = ((1L << this.bitsPerEntry) - 1) << shift;
+		int i = index / this.entriesPerLong;
+		this.data[i] = (this.data[i] & ~mask) | (((long) entry << shift) & mask);
+	}
+
+	/**
+	 * It repacks the cells using a different number of bits per cell.
+	 * @param bits new number of bits per cell
+	 */
+	private void resize(int bits) {
+		long[] old = this.data;
+		int oldBits = this.bitsPerEntry;
+		int oldPerLong = this.entriesPerLong;
+		this.bitsPerEntry = bits;
+		this.entriesPerLong = 64 / bits;
+		this.data = new long[(VOLUME + this.entriesPerLong - 1) / this.entriesPerLong];
+		if (old != null) {
+			long mask = (1L << oldBits) - 1;
+			for (int i = 0; i < VOLUME; i++) {
+				int entry = (int) ((old[i / oldPerLong] >>> ((i % oldPerLong) * oldBits)) & mask);
+				if (entry != 0) setEntry(i, entry);
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package model.storage;
+
+import model.Block;
+
+/**
+ * Iterative flood fill over a BlockStorage. Starting from a free cell, it fills with a block every free cell that can be
+ * reached moving to one of the 26 adjacent cells that is not above the current one.
+ * The cells waiting to be filled are kept in a queue of packed coordinates (see LocationKey) and the cells already
+ * queued are marked in a bitset per section, so the stack depth is constant whatever the size of the filled area.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public class FloodFill {
+
+	/**
+	 * Offsets in 'x' of the neighbours a liquid can flow to
+	 */
+	private static final int[] DX;
+	/**
+	 * Offsets in 'y' of the neighbours a liquid can flow to
+	 */
+	private static final int[] DY;
+	/**
+	 * Offsets in 'z' of the neighbours a liquid can flow to
+	 */
+	private static final int[] DZ;
+
+	static {
+		DX = new int[17];
+		DY = new int[17];
+		DZ = new int[17];
+		int n = 0;
+		for (int dy = -1; dy <= 0; dy++) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dz = -1; dz <= 1; dz++) {
+					if (dx == 0 && dy == 0 && dz == 0) continue;
+					DX[n] = dx;
+					DY[n] = dy;
+					DZ[n] = dz;
+					n++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Storage to fill
+	 */
+	private BlockStorage storage;
+	/**
+	 * Bitset of queued cells for every section, null if no cell of the section has been queued
+	 */
+	private long[][] visited;
+	/**
+	 * Sections with a bitset in 'visited'
+	 */
+	private int[] touched;
+	/**
+	 * Number of sections in 'touched'
+	 */
+	private int touchedSize;
+	/**
+	 * Circular queue of packed coordinates waiting to be filled
+	 */
+	private long[] queue;
+	/**
+	 * Position of the first element of the queue
+	 */
+	private int head;
+	/**
+	 * Number of elements in the queue
+	 */
+	private int queueSize;
+	/**
+	 * First column in 'x' the current fill can reach
+	 */
+	private int minX;
+	/**
+	 * Last column in 'x' the current fill can reach plus one
+	 */
+	private int maxX;
+	/**
+	 * First column in 'z' the current fill can reach
+	 */
+	private int minZ;
+	/**
+	 * Last column in 'z' the current fill can reach plus one
+	 */
+	private int maxZ;
+	/**
+	 * Total number of cells filled
+	 */
+	private long cellsFilled;
+	/**
+	 * Total time spent filling, in nanoseconds
+	 */
+	private long nanos;
+
+	/**
+	 * It creates a flood fill for a storage.
+	 * @param storage storage to fill
+	 */
+	public FloodFill(BlockStorage storage) {
+		this.storage = storage;
+		this.visited = new long[storage.getSectionCount()][];
+		this.touched = new int[16];
+		this.queue = new long[1024];
+	}
+
+	/**
+	 * It fills the area reachable from the given cell. Nothing is done if the cell is outside the world or not free.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @param liquid block to fill with
+	 * @param cleared map whose entries in the filled cells are removed, it can be null
+	 * @return number of cells filled
+	 */
+	public int fill(int x, int y, int z, Block liquid, LongObjectMap<?> cleared) {
+		return fill(x, y, z, liquid, cleared, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * It fills the area reachable from the given cell without leaving the columns between (minX, minZ) included
+	 * and (maxX, maxZ) excluded. Nothing is done if the cell is outside those columns, outside the world or not free.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @param liquid block to fill with
+	 * @param cleared map whose entries in the filled cells are removed, it can be null
+	 * @param minX first column in 'x'
+	 * @param maxX last column in 'x' plus one
+	 * @param minZ first column in 'z'
+	 * @param maxZ last column in 'z' plus one
+	 * @return number of cells filled
+	 */
+	public int fill(int x, int y, int z, Block liquid, LongObjectMap<?> cleared, int minX, int maxX, int minZ, int maxZ) {
+		long start = System.nanoTime();
+		this.minX = minX;
+		this.maxX = maxX;
+		this.minZ = minZ;
+		this.maxZ = maxZ;
+		int filled = 0;
+		if (mark(x, y, z)) {
+			while (this.queueSize > 0) {
+				long key = this.queue[this.head];
+				this.head = (this.head + 1) & (this.queue.length - 1);
+				this.queueSize--;
+				int cx = LocationKey.getX(key);
+				int cy = LocationKey.getY(key);
+				int cz = LocationKey.getZ(key);
+				this.storage.put(cx, cy, cz, liquid);
+				if (cleared != null) cleared.remove(key);
+				filled++;
+				for (int i = 0; i < DX.length; i++) {
+					mark(cx + DX[i], cy + DY[i], cz + DZ[i]);
+				}
+			}
+		}
+		for (int i = 0; i < this.touchedSize; i++) this.visited[this.touched[i]] = null;
+		this.touchedSize = 0;
+		this.cellsFilled += filled;
+		this.nanos += System.nanoTime() - start;
+		return filled;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return total number of cells filled by this flood fill
+	 */
+	public long getCellsFilled() {
+		return this.cellsFilled;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return total time spent filling, in nanoseconds
+	 */
+	public long getFillTime() {
+		return this.nanos;
+	}
+
+	/**
+	 * It returns the speed of the flood fill since it was created.
+	 * @return cells filled per second, or 0 if nothing has been filled
+	 */
+	public double getCellsPerSecond() {
+		if (this.nanos == 0) return 0.0;
+		return this.cellsFilled * 1e9 / this.nanos;
+	}
+
+	/**
+	 * It queues a cell if it is inside the world and the columns of the current fill, free and not queued yet.
+	 * @param x x coordinate
+	 * @param y y coordinate
+	 * @param z z coordinate
+	 * @return true if the cell was queued
+	 */
+	private boolean mark(int x, int y, int z) {
+		if (x < this.minX || x >= this.maxX || z < this.minZ || z >= this.maxZ) return false;
+		if (!this.storage.inBounds(x, y, z)) return false;
+		int si = this.storage.sectionIndex(x, y, z);
+		int ci = this.storage.cellIndex(x, y, z);
+		long[] bits = this.visited[si];
+		if (bits == null) {
+			bits = new long[ChunkSection.VOLUME / 64];
+			this.visited[si] = bits;
+			if (this.touchedSize == this.touched.length) {
+				int[] touched = new int[this.touched.length * 2];
+				System.arraycopy(this.touched, 0, touched, 0, this.touchedSize);
+				this.touched = touched;
+			}
+			this.touched[this.touchedSize++] = si;
+		}
+		long bit = 1L << (ci & 63);
+		if ((bits[ci >> 6] & bit) != 0) return false;
+		bits[ci >> 6] |= bit;
+		if (this.storage.contains(x, y, z)) return false;
+		if (this.queueSize == this.queue.length) grow();
+		this.queue[(this.head + this.queueSize) & (this.queue.length - 1)] = LocationKey.pack(x, y, z);
+		this.queueSize++;
+		return true;
+	}
+
+	/**
+	 * It doubles the capacity of the queue keeping its elements in order.
+	 */
+	private void grow() {
+		long[] queue = new long[this.queue.length * 2];
+		for (int i = 0; i < this.queueSize; i++) {
+			queue[i] = this.queue[(this.head + i) & (this.queue.length - 1)];
+		}
+		this.queue = queue;
+		this.head = 0;
+	}
+}
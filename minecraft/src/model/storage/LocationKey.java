@@ -0,0 +1,72 @@
+package model.storage;
+
+/**
+ * It packs the integer coordinates of a block location into a single long, so that locations can be used as keys
+ * without creating Location objects or hashing their world. The key keeps 'x' in the upper 26 bits, 'z' in the next 26 bits
+ * and 'y' in the lower 12 bits; 'x' and 'z' are stored in two's complement.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public final class LocationKey {
+
+	/**
+	 * Number of bits used for 'x' and 'z'
+	 */
+	private static final int XZ_BITS = 26;
+	/**
+	 * Number of bits used for 'y'
+	 */
+	private static final int Y_BITS = 12;
+	/**
+	 * Mask for 'x' and 'z'
+	 */
+	private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+	/**
+	 * Mask for 'y'
+	 */
+	private static final long Y_MASK = (1L << Y_BITS) - 1;
+
+	/**
+	 * Private constructor, this class only has class methods.
+	 */
+	private LocationKey() {
+	}
+
+	/**
+	 * It builds the key of a location.
+	 * @param x x coordinate, between -2^25 and 2^25-1
+	 * @param y y coordinate, between 0 and 4095
+	 * @param z z coordinate, between -2^25 and 2^25-1
+	 * @return packed key
+	 */
+	public static long pack(int x, int y, int z) {
+		return ((x & XZ_MASK) << (XZ_BITS + Y_BITS)) | ((z & XZ_MASK) << Y_BITS) | (y & Y_MASK);
+	}
+
+	/**
+	 * It returns the 'x' coordinate of a key.
+	 * @param key packed key
+	 * @return x coordinate
+	 */
+	public static int getX(long key) {
+		return (int) (key >> (XZ_BITS + Y_BITS));
+	}
+
+	/**
+	 * It returns the 'y' coordinate of a key.
+	 * @param key packed key
+	 * @return y coordinate
+	 */
+	public static int getY(long key) {
+		return (int) (key & Y_MASK);
+	}
+
+	/**
+	 * It returns the 'z' coordinate of a key.
+	 * @param key packed key
+	 * @return z coordinate
+	 */
+	public static int getZ(long key) {
+		return (int) ((key << XZ_BITS) >> (XZ_BITS + Y_BITS));
+	}
+}
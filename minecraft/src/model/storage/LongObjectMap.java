@@ -0,0 +1,199 @@
+package model.storage;
+
+/**
+ * Hash map from primitive long keys to objects, implemented with open addressing and linear probing.
+ * Keys are never boxed and lookups do not allocate. Null values are not allowed: a null value marks a free slot.
+ * @author Katarzyna Kaczorowska
+ *
+ * @param <V> type of the values
+ */
+public class LongObjectMap<V> {
+
+	/**
+	 * Initial number of slots, it must be a power of two
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Keys of the slots
+	 */
+	private long[] keys;
+	/**
+	 * Values of the slots, null if the slot is free
+	 */
+	private Object[] values;
+	/**
+	 * Number of entries
+	 */
+	private int size;
+	/**
+	 * Mask used to obtain a slot from a hash
+	 */
+	private int mask;
+
+	/**
+	 * It creates an empty map.
+	 */
+	public LongObjectMap() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * It returns the value associated to a key.
+	 * @param key key
+	 * @return value or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = slot(key);
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) return (V) this.values[i];
+			i = (i + 1) & this.mask;
+		}
+		return null;
+	}
+
+	/**
+	 * It returns the keys of the map, in no particular order.
+	 * @return new array with every key
+	 */
+	public long[] keys() {
+		long[] k = new long[this.size];
+		int n = 0;
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.values[i] != null) k[n++] = this.keys[i];
+		}
+		return k;
+	}
+
+	/**
+	 * It checks if a key is in the map.
+	 * @param key key
+	 * @return true if the key has a value
+	 */
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * It associates a value to a key, replacing the previous value.
+	 * @param key key
+	 * @param value value, it can not be null
+	 * @return previous value or null
+	 * @throws NullPointerException if the value is null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) throw new NullPointerException("Null values are not allowed");
+		int i = slot(key);
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) {
+				V old = (V) this.values[i];
+				this.values[i] = value;
+				return old;
+			}
+			i = (i + 1) & this.mask;
+		}
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+		if (this.size * 4 > this.values.length * 3) rehash(this.values.length * 2);
+		return null;
+	}
+
+	/**
+	 * It removes a key from the map.
+	 * @param key key
+	 * @return removed value or null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = slot(key);
+		while (this.values[i] != null) {
+			if (this.keys[i] == key) {
+				V old = (V) this.values[i];
+				shiftBack(i);
+				this.size--;
+				return old;
+			}
+			i = (i + 1) & this.mask;
+		}
+		return null;
+	}
+
+	/**
+	 * It removes all the entries.
+	 */
+	public void clear() {
+		if (this.size == 0) return;
+		for (int i = 0; i < this.values.length; i++) this.values[i] = null;
+		this.size = 0;
+	}
+
+	/**
+	 * Trivial getter
+	 * @return number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * It fills the hole left by a removed entry moving back the following entries of its probe sequence,
+	 * so no deleted markers are needed.
+	 * @param hole free slot
+	 */
+	private void shiftBack(int hole) {
+		int i = hole;
+		while (true) {
+			i = (i + 1) & this.mask;
+			if (this.values[i] == null) break;
+			int home = slot(this.keys[i]);
+			// the entry in 'i' can fill the hole if its home slot is not between the hole and 'i' (cyclically)
+			if (((i - home) & this.mask) >= ((i - hole) & this.mask)) {
+				this.keys[hole] = this.keys[i];
+				this.values[hole] = this.values[i];
+				hole = i;
+			}
+		}
+		this.values[hole] = null;
+	}
+
+	/**
+	 * It returns the home slot of a key.
+	 * @param key key
+	 * @return slot
+	 */
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & this.mask;
+	}
+
+	/**
+	 * It creates the arrays for the given number of slots.
+	 * @param capacity number of slots, a power of two
+	 */
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * It moves every entry to new arrays of the given number of slots.
+	 * @param capacity number of slots, a power of two
+	 */
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		allocate(capacity);
+		for (int j = 0; j < oldValues.length; j++) {
+			if (oldValues[j] != null) {
+				int i = slot(oldKeys[j]);
+				while (this.values[i] != null) i = (i + 1) & this.mask;
+				this.keys[i] = oldKeys[j];
+				this.values[i] = oldValues[j];
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package model.storage;
+
+import java.util.Arrays;
+
+import model.Block;
+
+/**
+ * Bulk carving of oblate spheroids (dx*dx + 2*dy*dy + dz*dz &lt; radius*radius) into a BlockStorage, used to dig caves
+ * and fill veins. The sample points of every axis and their squared distances to the center are computed once per
+ * spheroid, and the cells inside it are applied as vertical runs, so each section and palette entry is looked up
+ * once per run instead of once per cell. The buffers are reused between spheroids, so a carver must not be shared
+ * by different threads.
+ * @author Katarzyna Kaczorowska
+ *
+ */
+public class SpheroidCarver {
+
+	/**
+	 * Storage to carve
+	 */
+	private BlockStorage storage;
+	/**
+	 * Value added to the 'x' and 'z' of the spheroids to get storage coordinates
+	 */
+	private int offset;
+	/**
+	 * Squared distances to the center of the samples in 'x'
+	 */
+	private double[] dx2 = new double[16];
+	/**
+	 * Doubled squared distances to the center of the samples in 'y'
+	 */
+	private double[] dy2 = new double[16];
+	/**
+	 * Squared distances to the center of the samples in 'z'
+	 */
+	private double[] dz2 = new double[16];
+	/**
+	 * Cell of every sample in 'x'
+	 */
+	private int[] cellX = new int[16];
+	/**
+	 * Cell of every sample in 'y'
+	 */
+	private int[] cellY = new int[16];
+	/**
+	 * Cell of every sample in 'z'
+	 */
+	private int[] cellZ = new int[16];
+
+	/**
+	 * It creates a carver for a storage.
+	 * @param storage storage to carve
+	 * @param offset value added to the 'x' and 'z' of the spheroids to get storage coordinates
+	 */
+	public SpheroidCarver(BlockStorage storage, int offset) {
+		this.storage = storage;
+		this.offset = offset;
+	}
+
+	/**
+	 * It fills a spheroid with a block, only in the columns between (minX, minZ) included and (maxX, maxZ) excluded.
+	 * Only the cells that already have a block are changed when filling; null empties the cells.
+	 * @param cx x of the center
+	 * @param cy y of the center
+	 * @param cz z of the center
+	 * @param radius radius of the spheroid
+	 * @param b block to fill with, or null to empty the spheroid
+	 * @param minX first column in 'x', in storage coordinates
+	 * @param maxX last column in 'x' plus one
+	 * @param minZ first column in 'z', in storage coordinates
+	 * @param maxZ last column in 'z' plus one
+	 */
+	public void carve(double cx, double cy, double cz, double radius, Block b, int minX, int maxX, int minZ, int maxZ) {
+		int nx = samples(cx, radius, this.offset, 0);
+		int ny = samples(cy, radius, 0, 1);
+		int nz = samples(cz, radius, this.offset, 2);
+		double r2 = radius * radius;
+		for (int i = 0; i < nx; i++) {
+			int bx = this.cellX[i];
+			if (bx < minX || bx >= maxX) continue;
+			for (int k = 0; k < nz; k++) {
+				int bz = this.cellZ[k];
+				if (bz < minZ || bz >= maxZ || this.dx2[i] + this.dz2[k] >= r2) continue;
+				int run = -1;
+				for (int j = 0; j < ny; j++) {
+					boolean inside = (this.dx2[i] + this.dy2[j]) + this.dz2[k] < r2;
+					if (run >= 0 && (!inside || this.cellY[j] != this.cellY[j - 1] + 1)) {
+						apply(bx, bz, this.cellY[run], this.cellY[j - 1], b);
+						run = -1;
+					}
+					if (inside && run < 0) run = j;
+				}
+				if (run >= 0) apply(bx, bz, this.cellY[run], this.cellY[ny - 1], b);
+			}
+		}
+	}
+
+	/**
+	 * It applies the block to a vertical run of cells.
+	 * @param x x coordinate
+	 * @param z z coordinate
+	 * @param y0 first 'y'
+	 * @param y1 last 'y'
+	 * @param b block, or null to empty the cells
+	 */
+	private void apply(int x, int z, int y0, int y1, Block b) {
+		if (b == null) this.storage.removeRun(x, z, y0, y1);
+		else this.storage.replaceRun(x, z, y0, y1, b);
+	}
+
+	/**
+	 * It computes the samples of an axis, walking from center-radius to center+radius in steps of 1.0.
+	 * @param center coordinate of the center
+	 * @param radius radius of the spheroid
+	 * @param offset value added to get the cell of a sample
+	 * @param axis 0 for 'x', 1 for 'y' (whose squared distance is doubled) and 2 for 'z'
+	 * @return number of samples
+	 */
+	private int samples(double center, double radius, int offset, int axis) {
+		int n = 0;
+		for (double v = center - radius; v < center + radius; v += 1.0) {
+			if (n == this.dx2.length) grow();
+			double d = v - center;
+			double d2 = (axis == 1) ? 2 * d * d : d * d;
+			int cell = (int) Math.floor(v + offset);
+			if (axis == 0) {
+				this.dx2[n] = d2;
+				this.cellX[n] = cell;
+			}
+			else if (axis == 1) {
+				this.dy2[n] = d2;
+				this.cellY[n] = cell;
+			}
+			else {
+				this.dz2[n] = d2;
+				this.cellZ[n] = cell;
+			}
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * It doubles the size of the buffers.
+	 */
+	private void grow() {
+		int size = this.dx2.length * 2;
+		this.dx2 = Arrays.copyOf(this.dx2, size);
+		this.dy2 = Arrays.copyOf(this.dy2, size);
+		this.dz2 = Arrays.copyOf(this.dz2, size);
+		this.cellX = Arrays.copyOf(this.cellX, size);
+		this.cellY = Arrays.copyOf(this.cellY, size);
+		this.cellZ = Arrays.copyOf(this.cellZ, size);
+	}
+}
@@ -0,0 +1,121 @@
+package mains;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.BlockWorld;
+import model.Material;
+import model.World;
+import model.score.CollectedItemsScore;
+import model.score.MiningScore;
+import model.score.PlayerMovementScore;
+import model.score.Ranking;
+import model.score.XPScore;
+
+public class Tournament_P5Test {
+
+	static final int[][] GAMES = { { 3, 24 }, { 7, 30 }, { 11, 20 }, { 3, 24 }, { 5, 16 }, { 8, 28 } };
+	static final int MOVES = 300;
+
+	PrintStream stdout;
+	PrintStream stderr;
+	InputStream stdin;
+
+	@Before
+	public void setUp() {
+		stdout = System.out;
+		stderr = System.err;
+		stdin = System.in;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+	}
+
+	@After
+	public void tearDown() {
+		System.setOut(stdout);
+		System.setErr(stderr);
+		System.setIn(stdin);
+	}
+
+	/* Rankings and winners printed by a run of Main4_ranking before the tournament was added, for the games of
+	 * test/files/Main4_ranking.games */
+	static String solution() throws FileNotFoundException {
+		StringBuilder sb = new StringBuilder();
+		Scanner sc = new Scanner(new File("test/files/Main4_ranking.rankings"));
+		while (sc.hasNextLine()) sb.append(sc.nextLine()).append('\n');
+		sc.close();
+		return sb.toString();
+	}
+
+	/* Main4_ranking and the tournament, with any number of threads, give the rankings of the stored run */
+	@Test
+	public void testSameAsMain4Ranking() throws FileNotFoundException, InterruptedException {
+		String expected = solution();
+
+		Material.setRandomSeed(1L);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out));
+		System.setErr(new PrintStream(new ByteArrayOutputStream()));
+		System.setIn(new FileInputStream("test/files/Main4_ranking.games"));
+		Main4_ranking.main(new String[0]);
+		System.out.flush();
+		String printed = out.toString();
+		assertEquals(expected, printed.substring(printed.indexOf("Collected items ranking: ")).replace("\r\n", "\n"));
+
+		for (int threads = 1; threads <= 4; threads += 3) {
+			Tournament t = new Tournament(1000);
+			Scanner input = new Scanner(new File("test/files/Main4_ranking.games"));
+			while (input.hasNextInt()) t.addGame(input.nextInt(), input.nextInt(), input.next(), input.nextLine());
+			input.close();
+			t.play(threads);
+			String rankings = "Collected items ranking: " + t.getItemsRanking().getSortedRanking() + "\n"
+					+ "Mining ranking: " + t.getMiningRanking().getSortedRanking() + "\n"
+					+ "Movement ranking: " + t.getMovementRanking().getSortedRanking() + "\n"
+					+ "Experience ranking: " + t.getXpRanking().getSortedRanking() + "\n";
+			assertEquals(expected.substring(0, expected.indexOf("Collected items winner")), rankings);
+		}
+	}
+
+	/* The parallel tournament fills the rankings as the games played one after another with BlockWorld.getInstance() */
+	@Test
+	public void testSameAsSequential() throws InterruptedException {
+		Ranking<CollectedItemsScore> itemsRanking = new Ranking<>();
+		Ranking<MiningScore> miningRanking = new Ranking<>();
+		Ranking<PlayerMovementScore> movementRanking = new Ranking<>();
+		Ranking<XPScore> xpRanking = new Ranking<>();
+		Material.setRandomSeed(5L);
+		BlockWorld game = BlockWorld.getInstance();
+		for (int i = 0; i < GAMES.length; i++) {
+			World world = game.createWorld(GAMES[i][0], GAMES[i][1], "World", "P" + i);
+			Tournament.randomWalk(game, world, MOVES, null, null);
+			itemsRanking.addScore(game.getItemsScore());
+			miningRanking.addScore(game.getMiningScore());
+			movementRanking.addScore(game.getMovementScore());
+			XPScore xp = new XPScore(world.getPlayer());
+			xp.addScore(game.getItemsScore());
+			xp.addScore(game.getMiningScore());
+			xpRanking.addScore(xp);
+		}
+
+		for (int threads = 1; threads <= 4; threads += 3) {
+			Tournament t = new Tournament(MOVES, 5L);
+			for (int i = 0; i < GAMES.length; i++) t.addGame(GAMES[i][0], GAMES[i][1], "P" + i, "World");
+			t.play(threads);
+			assertEquals(GAMES.length, t.getGames());
+			assertEquals(itemsRanking.getSortedRanking().toString(), t.getItemsRanking().getSortedRanking().toString());
+			assertEquals(miningRanking.getSortedRanking().toString(), t.getMiningRanking().getSortedRanking().toString());
+			assertEquals(movementRanking.getSortedRanking().toString(), t.getMovementRanking().getSortedRanking().toString());
+			assertEquals(xpRanking.getSortedRanking().toString(), t.getXpRanking().getSortedRanking().toString());
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.entities.Player;
+
+public class BlockPos_P5Test {
+
+	World world;
+
+	@Before
+	public void setUp() {
+		world = new World(3, 20, "W", "Steve");
+	}
+
+	/* Equal positions are equal and have the same hash code */
+	@Test
+	public void testEqualsHashCode() {
+		BlockPos p = new BlockPos(1, 2, -3);
+		assertEquals(p, new BlockPos(1, 2, -3));
+		assertEquals(p.hashCode(), new BlockPos(1, 2, -3).hashCode());
+		assertNotEquals(p, new BlockPos(1, -3, 2));
+		assertNotEquals(p, new Location(null, 1, 2, -3));
+		assertTrue(p.equals(1, 2, -3));
+		Set<BlockPos> set = new HashSet<BlockPos>();
+		for (int i = 0; i < 3; i++) set.add(new BlockPos(i, i, i));
+		assertTrue(set.contains(new BlockPos(2, 2, 2)));
+		assertEquals("BlockPos{x=1,y=2,z=-3}", p.toString());
+	}
+
+	/* Conversions keep the coordinates; decimals go to the block that contains the location */
+	@Test
+	public void testConversions() {
+		Location l = new Location(world, -4, 63, 7);
+		BlockPos p = BlockPos.of(l);
+		assertTrue(p.equals(-4, 63, 7));
+		assertEquals(l, p.toLocation(world));
+		assertTrue(BlockPos.of(new Location(world, -0.5, 1.5, 0.5)).equals(-1, 1, 0));
+	}
+
+	/* Offsets create new positions and leave the original one unchanged */
+	@Test
+	public void testOffsets() {
+		BlockPos p = new BlockPos(0, 10, 0);
+		assertTrue(p.offset(1, -1, 1).equals(1, 9, 1));
+		assertTrue(p.offset(new BlockPos(-1, 0, 2)).equals(-1, 10, 2));
+		assertTrue(p.above().equals(0, 11, 0));
+		assertTrue(p.below().equals(0, 9, 0));
+		assertTrue(p.equals(0, 10, 0));
+		assertEquals(Math.sqrt(3), p.distance(p.offset(1, 1, 1)), 1e-9);
+	}
+
+	/* Same order as Location.compareTo() and same limits as Location.check() */
+	@Test
+	public void testCompareAndCheck() {
+		BlockPos a = new BlockPos(0, 5, 9);
+		BlockPos b = new BlockPos(0, 6, -9);
+		assertTrue(a.compareTo(b) < 0);
+		assertTrue(b.compareTo(a) > 0);
+		assertEquals(0, a.compareTo(new BlockPos(0, 5, 9)));
+		assertEquals(Integer.signum(a.toLocation(world).compareTo(b.toLocation(world))), Integer.signum(a.compareTo(b)));
+		for (int x = -12; x <= 12; x++) {
+			assertEquals(Location.check(world, x, 0, x), new BlockPos(x, 0, x).check(world));
+		}
+		assertFalse(new BlockPos(0, 256, 0).check(world));
+		assertTrue(new BlockPos(1000, -5, 0).check(null));
+	}
+
+	/* The methods of World by position give the same answers as the ones by location */
+	@Test
+	public void testWorldByPosition() throws Exception {
+		for (int x = -9; x <= 10; x++) {
+			for (int z = -9; z <= 10; z++) {
+				for (int y = 0; y <= 255; y++) {
+					Location l = new Location(world, x, y, z);
+					BlockPos p = new BlockPos(x, y, z);
+					assertEquals(world.getBlockAt(l), world.getBlockAt(p));
+					assertSame(world.getSharedBlockAt(l), world.getSharedBlockAt(p));
+					assertEquals(world.getMaterialAt(l), world.getMaterialAt(p));
+					assertSame(world.getItemsAt(l), world.getItemsAt(p));
+					assertSame(world.getCreatureAt(l), world.getCreatureAt(p));
+					assertEquals(world.isFree(l), world.isFree(p));
+				}
+			}
+		}
+		assertNull(world.getSharedBlockAt(new BlockPos(11, 0, 0)));
+		assertFalse(world.isFree(new BlockPos(0, 256, 0)));
+		assertFalse(world.isFree(world.getPlayer().getBlockPos()));
+	}
+
+	/* The position of the player follows its moves and the orientation */
+	@Test
+	public void testPlayerPosition() throws Exception {
+		Player p = world.getPlayer();
+		assertEquals(BlockPos.of(p.getLocation()), p.getBlockPos());
+		assertSame(p.getBlockPos(), p.getBlockPos());
+		assertEquals(BlockPos.of(p.getOrientation()), p.getOrientationPos());
+		p.orientate(-1, 1, 0);
+		assertEquals(BlockPos.of(p.getOrientation()), p.getOrientationPos());
+		assertEquals(p.getBlockPos().offset(-1, 1, 0), p.getOrientationPos());
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dz = -1; dz <= 1; dz++) {
+				if (dx == 0 && dz == 0) continue;
+				Location target = p.getLocation();
+				target.setX(target.getX() + dx);
+				target.setZ(target.getZ() + dz);
+				if (!target.isFree()) continue;
+				p.move(dx, 0, dz);
+				assertEquals(BlockPos.of(p.getLocation()), p.getBlockPos());
+				return;
+			}
+		}
+	}
+}
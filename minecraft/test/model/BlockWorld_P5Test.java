@@ -0,0 +1,73 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.script.ScriptReader;
+
+public class BlockWorld_P5Test {
+
+	PrintStream stdout;
+	ByteArrayOutputStream output;
+
+	@Before
+	public void setUp() {
+		stdout = System.out;
+		output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+	}
+
+	@After
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	/* Playing a file command by command prints the same as playFile() */
+	@Test
+	public void testPlayNextCommandEqualsPlayFile() throws Exception {
+		BlockWorld game = BlockWorld.getInstance();
+		Material.setRandomSeed(1L);
+		game.playFile("test/files/DangerousPlanet2.input");
+		System.out.flush();
+		String whole = output.toString();
+		output.reset();
+
+		Material.setRandomSeed(1L);
+		ScriptReader in = ScriptReader.open(new File("test/files/DangerousPlanet2.input"));
+		World w = game.startPlay(in);
+		assertEquals(" World75x75", w.getName());
+		int commands = 0;
+		while (game.playNextCommand(in)) commands++;
+		assertTrue(commands > 0);
+		assertFalse(game.playNextCommand(in));
+		in.close();
+		System.out.flush();
+		assertEquals(whole, output.toString());
+	}
+
+	/* Unknown commands are skipped with the rest of their line */
+	@Test
+	public void testPlayNextCommandUnknown() throws Exception {
+		BlockWorld game = BlockWorld.getInstance();
+		ScriptReader in = new ScriptReader("3 20 Alex Small\nmova 0 0 1\nshow\n".getBytes("UTF-8"));
+		game.startPlay(in);
+		System.out.flush();
+		output.reset();
+		assertTrue(game.playNextCommand(in));
+		System.out.flush();
+		assertTrue(output.toString().startsWith("Name=Alex"));
+		output.reset();
+		assertFalse(game.playNextCommand(in));
+		System.out.flush();
+		assertEquals("", output.toString());
+	}
+}
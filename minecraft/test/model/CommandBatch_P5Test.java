@@ -0,0 +1,135 @@
+package model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.entities.LivingEntity;
+import model.entities.Player;
+import model.exceptions.BadInventoryPositionException;
+import model.exceptions.BadLocationException;
+import model.exceptions.EntityIsDeadException;
+
+public class CommandBatch_P5Test {
+
+	PrintStream stdout;
+	BlockWorld game;
+
+	@Before
+	public void setUp() {
+		stdout = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		game = BlockWorld.getInstance();
+	}
+
+	@After
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	/* Commands are kept in order with their arguments */
+	@Test
+	public void testBatch() {
+		CommandBatch batch = new CommandBatch(1);
+		batch.move(1, 0, -1).orientate(0, 1, 0).useItem(3).selectItem(2);
+		assertEquals(4, batch.size());
+		assertEquals(CommandBatch.MOVE, batch.getOperation(0));
+		assertEquals(-1, batch.getArgument(0, 2));
+		assertEquals(CommandBatch.SELECT_ITEM, batch.getOperation(3));
+		assertEquals(2, batch.getArgument(3, 0));
+		assertEquals("move 1 0 -1\norientate 0 1 0\nuseItem 3\nselectItem 2\n", batch.toString());
+		batch.clear();
+		assertEquals(0, batch.size());
+		try {
+			batch.getOperation(0);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException e) {
+		}
+		try {
+			batch.add(7, 0, 0, 0);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/* It runs a command with the methods of BlockWorld and returns the status of its exception */
+	private byte runSingle(Player p, int op, int a, int b, int c) {
+		if (p.isDead()) return CommandBatch.ENTITY_DEAD;
+		try {
+			switch (op) {
+			case CommandBatch.MOVE: game.movePlayer(p, a, b, c); break;
+			case CommandBatch.ORIENTATE: game.orientatePlayer(p, a, b, c); break;
+			case CommandBatch.USE_ITEM: game.useItem(p, a); break;
+			default: game.selectItem(p, a);
+			}
+		} catch (BadLocationException e) {
+			return CommandBatch.BAD_LOCATION;
+		} catch (EntityIsDeadException e) {
+			return CommandBatch.ENTITY_DEAD;
+		} catch (BadInventoryPositionException e) {
+			return CommandBatch.BAD_INVENTORY_POSITION;
+		} catch (IllegalArgumentException e) {
+			return CommandBatch.ILLEGAL_ARGUMENT;
+		}
+		return CommandBatch.OK;
+	}
+
+	/* A batch leaves the game as the same commands executed one by one and gives the status of their exceptions */
+	@Test
+	public void testExecuteBatchEqualsSingleCommands() {
+		Random rng = new Random(7);
+		CommandBatch batch = new CommandBatch();
+		for (int i = 0; i < 3000; i++) {
+			int op = rng.nextInt(4);
+			if (op == CommandBatch.MOVE || op == CommandBatch.ORIENTATE)
+				batch.add(op, rng.nextInt(5) - 2, rng.nextInt(3) - 1, rng.nextInt(5) - 2);
+			else
+				batch.add(op, rng.nextInt(4) - (op == CommandBatch.USE_ITEM ? 1 : 0), 0, 0);
+		}
+
+		Material.setRandomSeed(3L);
+		Player p = game.createWorld(5, 40, "Batch", "Steve").getPlayer();
+		byte[] expected = new byte[batch.size()];
+		for (int i = 0; i < batch.size(); i++) {
+			if (i % 100 == 0) p.setHealth(LivingEntity.MAX_HEALTH);
+			expected[i] = runSingle(p, batch.getOperation(i), batch.getArgument(i, 0), batch.getArgument(i, 1), batch.getArgument(i, 2));
+		}
+		String single = p.toString() + game.showPlayerInfo(p);
+
+		Material.setRandomSeed(3L);
+		p = game.createWorld(5, 40, "Batch", "Steve").getPlayer();
+		byte[] status = new byte[batch.size()];
+		CommandBatch part = new CommandBatch();
+		for (int i = 0; i < batch.size(); i += 100) {
+			p.setHealth(LivingEntity.MAX_HEALTH);
+			part.clear();
+			for (int j = i; j < i + 100; j++) part.add(batch.getOperation(j), batch.getArgument(j, 0), batch.getArgument(j, 1), batch.getArgument(j, 2));
+			byte[] s = game.executeBatch(p, part);
+			System.arraycopy(s, 0, status, i, s.length);
+		}
+		assertArrayEquals(expected, status);
+		assertEquals(single, p.toString() + game.showPlayerInfo(p));
+	}
+
+	/* Once the player is dead the rest of the batch is not executed */
+	@Test
+	public void testExecuteBatchDeadPlayer() {
+		Player p = game.createWorld(5, 20, "Batch", "Steve").getPlayer();
+		CommandBatch batch = new CommandBatch().orientate(0, 0, 0).useItem(0).selectItem(100).selectItem(-1).orientate(1, 0, 0);
+		byte[] status = new byte[10];
+		assertEquals(1, game.executeBatch(p, batch, status));
+		assertArrayEquals(new byte[] { CommandBatch.BAD_LOCATION, CommandBatch.ILLEGAL_ARGUMENT, CommandBatch.BAD_INVENTORY_POSITION,
+				CommandBatch.BAD_INVENTORY_POSITION, CommandBatch.OK }, Arrays.copyOf(status, 5));
+		p.setHealth(0);
+		assertArrayEquals(new byte[] { CommandBatch.ENTITY_DEAD, CommandBatch.ENTITY_DEAD }, game.executeBatch(p, new CommandBatch().move(1, 0, 0).selectItem(0)));
+	}
+}
@@ -0,0 +1,160 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.entities.Player;
+import model.exceptions.BadInventoryPositionException;
+import model.exceptions.StackSizeException;
+
+public class Inventory_P5Test {
+
+	Inventory inv;
+
+	@Before
+	public void setUp() throws StackSizeException {
+		inv = new Inventory();
+		inv.addItem(new ItemStack(Material.APPLE, 5));
+		inv.addItem(new ItemStack(Material.DIRT, 10));
+		inv.addItem(new ItemStack(Material.IRON_SWORD, 1));
+		inv.setItemInHand(new ItemStack(Material.BREAD, 3));
+	}
+
+	/* The view is created once, shows the current items and can not be used to change the inventory */
+	@Test
+	public void testView() throws StackSizeException, BadInventoryPositionException {
+		InventoryView v = inv.view();
+		assertSame(v, inv.view());
+		assertFalse(v instanceof Inventory);
+		assertEquals(3, v.getSize());
+		assertSame(inv.getItem(1), v.getItem(1));
+		assertNull(v.getItem(3));
+		assertEquals(2, v.first(Material.IRON_SWORD));
+		inv.addItem(new ItemStack(Material.SAND, 2));
+		inv.clear(0);
+		assertEquals(3, v.getSize());
+		assertEquals(Material.SAND, v.getItem(2).getType());
+		assertEquals(inv.toString(), v.toString());
+		assertEquals(inv, v.snapshot());
+	}
+
+	/* A snapshot is equal to a copy and it does not change with the inventory, nor the inventory with it */
+	@Test
+	public void testSnapshot() throws StackSizeException, BadInventoryPositionException {
+		Inventory copy = new Inventory(inv);
+		Inventory s = inv.snapshot();
+		assertEquals(copy, s);
+		assertNotEquals(System.identityHashCode(inv.getItemInHand()), System.identityHashCode(s.getItemInHand()));
+
+		inv.addItem(new ItemStack(Material.SAND, 2));
+		inv.setItem(0, new ItemStack(Material.BEEF, 1));
+		inv.getItemInHand().setAmount(1);
+		assertEquals(copy, s);
+
+		Inventory s2 = inv.snapshot();
+		Inventory expected = new Inventory(inv);
+		s2.clear(1);
+		s2.clear();
+		assertEquals(0, s2.getSize());
+		assertEquals(expected, inv);
+
+		Inventory s3 = inv.snapshot();
+		inv.clear();
+		assertEquals(expected, s3);
+		assertEquals(0, inv.getSize());
+		s3.addItem(new ItemStack(Material.GRASS, 1));
+		assertEquals(5, s3.getSize());
+		assertEquals(copy, s);
+	}
+
+	/* The view of the inventory of a player is not a copy, and getInventory() still returns one */
+	@Test
+	public void testPlayer() throws StackSizeException {
+		World w = new World(1, 16, "W", "P", true);
+		Player p = w.getPlayer();
+		InventoryView v = p.getInventoryView();
+		assertSame(v, p.getInventoryView());
+		Inventory before = p.getInventory();
+		p.addItemsToInventory(new ItemStack(Material.APPLE, 4));
+		assertEquals(1, v.getSize());
+		assertEquals(0, before.getSize());
+		assertEquals(p.getInventory(), v.snapshot());
+		assertTrue(p.getInventory().getItemInHand() != v.getItemInHand());
+	}
+
+	/* first() and contains() agree with a search of the list after any sequence of changes */
+	@Test
+	public void testIndex() throws StackSizeException, BadInventoryPositionException {
+		Material[] materials = { Material.APPLE, Material.DIRT, Material.SAND, Material.IRON_SWORD, Material.BEEF };
+		Random rnd = new Random(7);
+		assertEquals(1, inv.first(Material.DIRT));
+		assertTrue(inv.contains(Material.APPLE));
+		assertFalse(inv.contains(Material.BREAD));
+		for (int i = 0; i < 2000; i++) {
+			Material m = materials[rnd.nextInt(materials.length)];
+			ItemStack is = new ItemStack(m, (m == Material.IRON_SWORD) ? 1 : 1 + rnd.nextInt(ItemStack.MAX_STACK_SIZE));
+			int op = rnd.nextInt(10);
+			if (op < 5 || inv.getSize() == 0) inv.addItem(is);
+			else if (op < 8) inv.clear(rnd.nextInt(inv.getSize()));
+			else if (op < 9) inv.setItem(rnd.nextInt(inv.getSize()), is);
+			else if (i % 7 == 0) inv.clear();
+			else inv.setAutoMerge(!inv.isAutoMerge());
+			if (i % 50 == 0) inv.snapshot().addItem(is);
+			for (Material s : materials) {
+				int first = -1;
+				for (int n = inv.getSize() - 1; n >= 0; n--) if (inv.getItem(n).getType() == s) first = n;
+				assertEquals(first, inv.first(s));
+				assertEquals(first >= 0, inv.contains(s));
+				assertEquals(first, inv.view().first(s));
+			}
+		}
+	}
+
+	/* An inventory that merges stacks fills the stacks it has before using a new position, without changing its
+	 * snapshots nor the stacks given to it */
+	@Test
+	public void testAutoMerge() throws StackSizeException, BadInventoryPositionException {
+		ItemStack apples = inv.getItem(0);
+		Inventory s = inv.snapshot();
+		inv.setAutoMerge(true);
+		assertTrue(inv.isAutoMerge());
+		ItemStack is = new ItemStack(Material.APPLE, 60);
+		assertEquals(60, inv.addItem(is));
+		assertEquals(4, inv.getSize());
+		assertEquals(ItemStack.MAX_STACK_SIZE, inv.getItem(0).getAmount());
+		assertEquals(1, inv.getItem(3).getAmount());
+		assertEquals(60, is.getAmount());
+		assertEquals(5, apples.getAmount());
+		assertEquals(5, s.getItem(0).getAmount());
+		assertEquals(3, s.getSize());
+
+		ItemStack sword = new ItemStack(Material.IRON_SWORD, 1);
+		inv.addItem(sword);
+		assertSame(sword, inv.getItem(4));
+		inv.clear(0);
+		inv.addItem(new ItemStack(Material.APPLE, 10));
+		assertEquals(4, inv.getSize());
+		assertEquals(11, inv.getItem(2).getAmount());
+		assertTrue(inv.snapshot().isAutoMerge());
+
+		for (int i = 0; i < 10000; i++) inv.addItem(new ItemStack(Material.SAND, 1 + i % 10));
+		assertEquals(4 + (55000 + ItemStack.MAX_STACK_SIZE - 1) / ItemStack.MAX_STACK_SIZE, inv.getSize());
+		assertEquals(4, inv.first(Material.SAND));
+		int size = inv.getSize();
+		assertEquals(55000 % ItemStack.MAX_STACK_SIZE, inv.getItem(size - 1).getAmount());
+		inv.getItem(size - 1).setAmount(ItemStack.MAX_STACK_SIZE);
+		inv.getItem(4).setAmount(1);
+		inv.addItem(new ItemStack(Material.SAND, 2));
+		assertEquals(3, inv.getItem(4).getAmount());
+		assertEquals(size, inv.getSize());
+	}
+}
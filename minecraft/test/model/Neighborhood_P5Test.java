@@ -0,0 +1,118 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.entities.Animal;
+import model.entities.Creature;
+import model.entities.Monster;
+import model.exceptions.BadLocationException;
+
+public class Neighborhood_P5Test {
+
+	World world, other;
+
+	@Before
+	public void setUp() {
+		world = new World(3, 10, "W", "Steve");
+		other = new World(3, 10, "Other", "Steve");
+	}
+
+	/* Locations visited by forEach() */
+	private Set<Location> visited(final World w, int x, int y, int z) {
+		final Set<Location> set = new HashSet<Location>();
+		Neighborhood.forEach(w, x, y, z, new Neighborhood.Visitor() {
+			@Override
+			public boolean visit(int nx, int ny, int nz) {
+				set.add(new Location(w, nx, ny, nz));
+				return true;
+			}
+		});
+		return set;
+	}
+
+	/* forEach() visits the same locations as getNeighborhood(), also in the limits of the world and without world */
+	@Test
+	public void testForEachEqualsGetNeighborhood() {
+		int[][] cases = { { 0, 60, 0 }, { -4, 0, -4 }, { 5, 255, 5 }, { 5, 100, -4 }, { 20, 300, 20 } };
+		for (int[] c : cases) {
+			assertEquals(new Location(world, c[0], c[1], c[2]).getNeighborhood(), visited(world, c[0], c[1], c[2]));
+			assertEquals(new Location(null, c[0], c[1], c[2]).getNeighborhood(), visited(null, c[0], c[1], c[2]));
+		}
+		assertEquals(26, visited(null, 0, 0, 0).size());
+		assertEquals(7, visited(world, -4, 0, -4).size());
+	}
+
+	/* The visit stops when the visitor returns false */
+	@Test
+	public void testForEachStops() {
+		final int[] count = { 0 };
+		assertFalse(Neighborhood.forEach(null, 0, 0, 0, new Neighborhood.Visitor() {
+			@Override
+			public boolean visit(int x, int y, int z) {
+				return ++count[0] < 3;
+			}
+		}));
+		assertEquals(3, count[0]);
+	}
+
+	/* getNearbyCreatures() iterates the creatures in the same order as a set filled from getNeighborhood() */
+	@Test
+	public void testNearbyCreaturesOrder() throws BadLocationException {
+		Random rng = new Random(7);
+		int[][] cases = { { 0, 200, 0 }, { -4, 200, -4 }, { 5, 200, 0 }, { 0, 255, 0 }, { -4, 255, 5 } };
+		for (int[] c : cases) {
+			for (int n = 0; n < 20; n++) {
+				World w = new World(3, 10, "W", "Steve");
+				Location center = new Location(w, c[0], c[1], c[2]);
+				double chance = rng.nextDouble();
+				for (Location l : center.getNeighborhood()) {
+					if (rng.nextDouble() < chance) {
+						double health = 1 + rng.nextInt(20);
+						w.addCreature(rng.nextBoolean() ? new Animal(l, health) : new Monster(l, health));
+					}
+				}
+				Collection<Creature> expected = new HashSet<Creature>();
+				for (Location l : center.getNeighborhood()) {
+					Creature creature = w.getCreatureAt(l);
+					if (creature != null) expected.add(creature);
+				}
+				assertEquals(new ArrayList<Creature>(expected), new ArrayList<Creature>(w.getNearbyCreatures(center)));
+			}
+		}
+	}
+
+	/* isAdjacent() gives the same answer as getNeighborhood().contains() */
+	@Test
+	public void testIsAdjacentEqualsContains() {
+		double[] values = { -5, -4, -3.5, -3, -1, -0.5, -0.0, 0, 0.5, 1, 1.5, 2, 4, 5, 6 };
+		Location[] centers = { new Location(world, 0, 1, 0), new Location(world, -4, 0, 5), new Location(world, 5, 255, -4),
+				new Location(null, 0, 0, 0), new Location(world, 0.5, 1, 0) };
+		for (Location c : centers) {
+			Set<Location> neighbours = c.getNeighborhood();
+			for (double x : values) {
+				for (double z : values) {
+					for (double y : new double[] { -1, 0, 1, 2, 254, 255, 256 }) {
+						Location l = new Location(c.getWorld(), x, y, z);
+						assertEquals(c + " " + l, neighbours.contains(l), c.isAdjacent(l));
+					}
+				}
+			}
+		}
+		Location l = new Location(world, 0, 60, 0);
+		assertTrue(l.isAdjacent(new Location(world, 1, 61, -1)));
+		assertFalse(l.isAdjacent(new Location(other, 1, 61, -1)));
+		assertFalse(l.isAdjacent(new Location(null, 1, 61, -1)));
+		assertFalse(l.isAdjacent(l));
+	}
+}
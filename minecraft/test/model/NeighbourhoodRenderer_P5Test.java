@@ -0,0 +1,115 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.entities.Creature;
+import model.exceptions.BadLocationException;
+
+public class NeighbourhoodRenderer_P5Test {
+
+	static final PrintStream QUIET = new PrintStream(new ByteArrayOutputStream());
+
+	/* Symbol of a location looked up through the public methods of World, as getNeighbourhoodString() did */
+	static char symbol(World w, Location l) throws BadLocationException {
+		if (w.getPlayer().getLocation().equals(l)) return 'P';
+		ItemStack is = w.getItemsAt(l);
+		if (is != null) return is.getType().isBlock() ? Character.toUpperCase(is.getType().getSymbol()) : is.getType().getSymbol();
+		Creature c = w.getCreatureAt(l);
+		if (c != null) return c.getSymbol();
+		Block b = w.getBlockAt(l);
+		return (b == null) ? '.' : b.getType().getSymbol();
+	}
+
+	/* View of any radius built location by location */
+	static String expected(World w, int x, int y, int z, int r) throws BadLocationException {
+		StringBuilder sb = new StringBuilder();
+		for (int dz = -r; dz <= r; dz++) {
+			for (int dy = r; dy >= -r; dy--) {
+				for (int dx = -r; dx <= r; dx++) {
+					Location l = new Location(w, x + dx, y + dy, z + dz);
+					if (!Location.check(l) && !(dx == 0 && dy == 0 && dz == 0)) sb.append('X');
+					else sb.append(symbol(w, l));
+				}
+				sb.append(' ');
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/* It checks the views of random locations near the surface and on the borders of a world */
+	static void checkViews(World w, Random rng) throws BadLocationException {
+		NeighbourhoodRenderer one = new NeighbourhoodRenderer(1);
+		NeighbourhoodRenderer three = new NeighbourhoodRenderer(3);
+		WorldBounds b = w.getBounds();
+		for (int i = 0; i < 300; i++) {
+			int x = b.getMinX() + rng.nextInt(b.getMaxX() - b.getMinX() + 1);
+			int z = b.getMinZ() + rng.nextInt(b.getMaxZ() - b.getMinZ() + 1);
+			if (i % 10 == 0) x = b.getMinX();
+			if (i % 10 == 1) z = b.getMaxZ();
+			int y = (int) w.getHighestLocationAt(new Location(w, x, 0, z)).getY() + rng.nextInt(5) - 2;
+			if (i % 20 == 2) y = 0;
+			if (i % 20 == 3) y = (int) Location.UPPER_Y_VALUE;
+			Location l = new Location(w, x, y, z);
+			assertEquals(expected(w, x, y, z, 1), w.getNeighbourhoodString(l));
+			assertEquals(expected(w, x, y, z, 1), one.render(w, x, y, z).toString());
+			assertEquals(expected(w, x, y, z, 3), three.render(l).toString());
+		}
+		Location p = w.getPlayer().getLocation();
+		assertEquals(expected(w, (int) p.getX(), (int) p.getY(), (int) p.getZ(), 3), three.render(p).toString());
+	}
+
+	/* The views are equal to the ones built with the lookups of World, in worlds generated in both ways */
+	@Test
+	public void testViews() throws BadLocationException {
+		checkViews(new World(4, 40, "Seq", "Steve"), new Random(1));
+		checkViews(new World(4, 40, "Lazy", "Steve", true), new Random(2));
+	}
+
+	/* The views are still right after the player has mined, placed blocks and collected items */
+	@Test
+	public void testAfterPlaying() throws BadLocationException {
+		BlockWorld game = BlockWorld.newInstance(QUIET, QUIET);
+		World w = game.createWorld(8, 32, "W", "P", true);
+		Random rng = new Random(5);
+		for (int i = 0; i < 500; i++) {
+			CommandBatch batch = new CommandBatch();
+			int r = rng.nextInt(4);
+			if (r < 2) batch.move(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+			else if (r == 2) batch.orientate(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+			else batch.useItem(1 + rng.nextInt(3));
+			game.executeBatch(w.getPlayer(), batch);
+			w.getPlayer().setHealth(w.getPlayer().getHealth() + 1);
+		}
+		checkViews(w, rng);
+		String info = game.showPlayerInfo(w.getPlayer());
+		assertEquals(info, game.showPlayerInfo(w.getPlayer()));
+		assertEquals(w.getPlayer().toString() + "\n" + w.getNeighbourhoodString(w.getPlayer().getLocation()), info.substring(0, info.indexOf("Scores:")));
+	}
+
+	/* The view has (2r+1)^3 symbols plus a space per row and a line break per level */
+	@Test
+	public void testRadius() {
+		World w = new World(1, 16, "W", "P");
+		assertEquals(1 + 1 + 1, new NeighbourhoodRenderer(0).render(w, 0, 70, 0).getView().length);
+		assertEquals(7 * (7 * 8 + 1), new NeighbourhoodRenderer(3).getView().length);
+		assertEquals(3, new NeighbourhoodRenderer(3).getRadius());
+		try {
+			new NeighbourhoodRenderer(-1);
+			fail("Negative radius");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new NeighbourhoodRenderer(1).render(new Location(null, 0, 0, 0));
+			fail("Location without world");
+		} catch (BadLocationException e) {
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.entities.LivingEntity;
+import model.exceptions.BadLocationException;
+import model.exceptions.WrongMaterialException;
+
+public class ViewTracker_P5Test {
+
+	static final PrintStream QUIET = new PrintStream(new ByteArrayOutputStream());
+
+	/* View kept by a client from the views it receives */
+	static class Client {
+		int r;
+		char[] cells;
+
+		void receive(String s) {
+			if (s.startsWith("view ")) {
+				r = Integer.parseInt(s.substring(5, s.indexOf('\n')));
+				StringBuilder sb = new StringBuilder();
+				for (char c : s.substring(s.indexOf('\n') + 1).toCharArray()) if (c != ' ' && c != '\n') sb.append(c);
+				cells = sb.toString().toCharArray();
+				return;
+			}
+			assertTrue(s, s.startsWith("delta ") && s.endsWith("\n"));
+			String[] t = s.trim().split(" ");
+			int dx = Integer.parseInt(t[1]), dy = Integer.parseInt(t[2]), dz = Integer.parseInt(t[3]);
+			String entering = t[4];
+			int side = 2 * r + 1;
+			char[] next = new char[cells.length];
+			int i = 0, e = 0;
+			for (int z = -r; z <= r; z++) {
+				for (int y = r; y >= -r; y--) {
+					for (int x = -r; x <= r; x++) {
+						int ox = x + dx, oy = y + dy, oz = z + dz;
+						if (Math.abs(ox) <= r && Math.abs(oy) <= r && Math.abs(oz) <= r) next[i++] = cells[((oz + r) * side + r - oy) * side + ox + r];
+						else next[i++] = entering.charAt(e++);
+					}
+				}
+			}
+			assertEquals(s, entering.equals("-") ? 0 : entering.length(), e);
+			int n = Integer.parseInt(t[5]);
+			assertEquals(s, 6 + 4 * n, t.length);
+			for (int j = 0; j < n; j++) {
+				int x = Integer.parseInt(t[6 + 4 * j]), y = Integer.parseInt(t[7 + 4 * j]), z = Integer.parseInt(t[8 + 4 * j]);
+				next[((z + r) * side + r - y) * side + x + r] = t[9 + 4 * j].charAt(0);
+			}
+			cells = next;
+		}
+
+		String view() {
+			int side = 2 * r + 1;
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < cells.length; i += side) {
+				sb.append(cells, i, side).append(' ');
+				if ((i + side) % (side * side) == 0) sb.append('\n');
+			}
+			return sb.toString();
+		}
+	}
+
+	/* It returns the full view of the player */
+	static String render(World w, int r) {
+		BlockPos p = w.getPlayer().getBlockPos();
+		return new NeighbourhoodRenderer(r).render(w, p.getX(), p.getY(), p.getZ()).toString();
+	}
+
+	/* A client that applies the views always has the full view of the player, while the player mines, collects items,
+	 * kills creatures and moves, and while blocks are added around it */
+	@Test
+	public void testDeltasRebuildTheView() throws BadLocationException, WrongMaterialException {
+		for (int r = 1; r <= 4; r += 3) {
+			BlockWorld game = BlockWorld.newInstance(QUIET, QUIET);
+			World w = game.createWorld(8, 32, "W", "P", true);
+			Random rng = new Random(r);
+			Client client = new Client();
+			int deltas = 0;
+			for (int i = 0; i < 1500; i++) {
+				CommandBatch batch = new CommandBatch();
+				int op = rng.nextInt(5);
+				if (op < 2) batch.move(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+				else if (op == 2) batch.orientate(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+				else if (op == 3) batch.useItem(1 + rng.nextInt(3));
+				else {
+					BlockPos p = w.getPlayer().getBlockPos();
+					for (int j = rng.nextInt(100); j > 0; j--) {
+						Location l = new Location(w, p.getX() + rng.nextInt(2 * r + 3) - r - 1, p.getY() + rng.nextInt(2 * r + 3) - r - 1, p.getZ() + rng.nextInt(2 * r + 3) - r - 1);
+						if (Location.check(l) && l.getY() > 0 && !l.equals(w.getPlayer().getLocation())) w.addBlock(l, BlockFactory.createBlock(Material.DIRT));
+					}
+				}
+				game.executeBatch(w.getPlayer(), batch);
+				w.getPlayer().setHealth(LivingEntity.MAX_HEALTH);
+				String s = game.showPlayerView(r);
+				if (s.startsWith("delta")) deltas++;
+				client.receive(s);
+				assertEquals("Step " + i, render(w, r), client.view());
+			}
+			assertEquals(1499, deltas);
+		}
+	}
+
+	/* Only the cells that changed are sent, and the first view and a new radius are sent in full */
+	@Test
+	public void testChangedCells() throws BadLocationException {
+		World w = new World(3, 32, "W", "P");
+		BlockPos p = w.getPlayer().getBlockPos();
+		try (ViewTracker t = new ViewTracker(w, 2)) {
+			t.update();
+			assertTrue(t.isFull());
+			assertEquals(render(w, 2), t.toString());
+			assertEquals("delta 0 0 0 - 0\n", t.update().appendTo(new StringBuilder()).toString());
+			assertFalse(t.isFull());
+
+			Location below = new Location(w, p.getX(), p.getY() - 1, p.getZ());
+			w.destroyBlockAt(below);
+			t.update();
+			assertEquals(0, t.getEntering());
+			assertEquals(1, t.getChanged());
+			assertEquals(w.symbolAt(p.getX(), p.getY() - 1, p.getZ()), t.getCell(0, -1, 0));
+
+			t.update(p.getX() + 1, p.getY(), p.getZ());
+			assertEquals(25, t.getEntering());
+			assertEquals(new NeighbourhoodRenderer(2).render(w, p.getX() + 1, p.getY(), p.getZ()).toString(), t.toString());
+		}
+		BlockWorld game = BlockWorld.newInstance(QUIET, QUIET);
+		World g = game.createWorld(3, 32, "W", "P");
+		assertTrue(game.showPlayerView(1).startsWith("view 1\n"));
+		assertTrue(game.showPlayerView(1).startsWith("delta 0 0 0 - "));
+		assertEquals("view 2\n" + render(g, 2), game.showPlayerView(2));
+		game.createWorld(3, 32, "W", "P");
+		assertTrue(game.showPlayerView(2).startsWith("view 2\n"));
+	}
+
+	/* The command "view" goes through batches, and a wrong radius is an illegal argument */
+	@Test
+	public void testCommand() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BlockWorld game = BlockWorld.newInstance(new PrintStream(out), QUIET);
+		World w = game.createWorld(3, 32, "W", "P");
+		byte[] status = game.executeBatch(w.getPlayer(), new CommandBatch().view(1).view(-1).view(BlockWorld.MAX_VIEW_RADIUS + 1).view(1));
+		assertEquals(CommandBatch.OK, status[0]);
+		assertEquals(CommandBatch.ILLEGAL_ARGUMENT, status[1]);
+		assertEquals(CommandBatch.ILLEGAL_ARGUMENT, status[2]);
+		assertEquals(CommandBatch.OK, status[3]);
+		assertEquals("view 1\n" + render(w, 1) + "delta 0 0 0 - 0\n", out.toString());
+		assertEquals("view 3\n", new CommandBatch().view(3).toString());
+		try {
+			new ViewTracker(w, -1);
+			fail("Negative radius");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import model.persistence.WorldAdapter;
+
+public class WorldBounds_P5Test {
+
+	/* Limits computed from the size as the worlds always did */
+	private static boolean inside(int size, double x, double y, double z) {
+		long up, down;
+		if (size % 2 == 1) {
+			up = (size - 1) / 2;
+			down = -up;
+		}
+		else {
+			up = size / 2;
+			down = -(up - 1);
+		}
+		return x >= down && x <= up && y >= 0 && y <= Location.UPPER_Y_VALUE && z >= down && z <= up;
+	}
+
+	/* The limits of a world are the same ones given by the size */
+	@Test
+	public void testOfSize() {
+		WorldBounds b = WorldBounds.ofSize(51);
+		assertEquals(-25, b.getMinX());
+		assertEquals(25, b.getMaxX());
+		assertEquals(0, b.getMinY());
+		assertEquals((int) Location.UPPER_Y_VALUE, b.getMaxY());
+		b = WorldBounds.ofSize(50);
+		assertEquals(-24, b.getMinZ());
+		assertEquals(25, b.getMaxZ());
+		b = WorldBounds.ofSize(1);
+		assertEquals(0, b.getMinX());
+		assertEquals(0, b.getMaxX());
+	}
+
+	/* contains() gives the same answers as the old computation of Location.check() */
+	@Test
+	public void testContains() {
+		double[] ys = { -1, -0.5, 0, 0.5, 128, 255, 255.5, 256 };
+		for (int size = 1; size <= 20; size++) {
+			WorldBounds b = WorldBounds.ofSize(size);
+			for (int x = -12; x <= 12; x++) {
+				for (int z = -12; z <= 12; z += 3) {
+					for (double y : ys) {
+						assertEquals(inside(size, x, y, z), b.contains((double) x, y, z));
+						assertEquals(inside(size, x + 0.5, y, z - 0.5), b.contains(x + 0.5, y, z - 0.5));
+						if (y == Math.rint(y)) assertEquals(inside(size, x, y, z), b.contains(x, (int) y, z));
+					}
+					assertEquals(inside(size, x, 0, z), b.containsColumn(x, z));
+				}
+			}
+		}
+		WorldBounds b = WorldBounds.ofSize(10);
+		assertFalse(b.contains(Integer.MAX_VALUE, 0, 0));
+		assertFalse(b.contains(Integer.MIN_VALUE, 0, 0));
+		assertFalse(b.contains(Double.NaN, 0, 0));
+	}
+
+	/* clip() returns the part of an area inside the box */
+	@Test
+	public void testClip() {
+		WorldBounds b = WorldBounds.ofSize(20);
+		assertEquals(new WorldBounds(-9, 0, 5, 6, 26, 10), b.clip(new BlockPos(-20, 0, 5), 27));
+		assertEquals(new WorldBounds(0, 250, 0, 10, 255, 10), b.clip(0, 250, 0, 15, 265, 15));
+		assertNull(b.clip(new BlockPos(11, 0, 0), 16));
+		assertNull(b.clip(new BlockPos(0, -16, 0), 16));
+		assertSame(b, b.clip(-100, -100, -100, 100, 300, 100));
+		assertEquals(new WorldBounds(1, 2, 3, 1, 2, 3), b.clip(new BlockPos(1, 2, 3), 1));
+	}
+
+	/* The worlds, Location.check() and WorldAdapter use the limits of the world */
+	@Test
+	public void testWorld() {
+		World w = new World(4, 33, "W", "Steve");
+		assertEquals(WorldBounds.ofSize(33), w.getBounds());
+		assertSame(w.getBounds(), w.getBounds());
+		assertTrue(Location.check(w, 16, 255, -16));
+		assertFalse(Location.check(w, 17, 255, -16));
+		assertFalse(Location.check(w, 16.5, 255, -16));
+		assertFalse(Location.check(new World("Empty"), 0, 0, 0));
+		WorldAdapter adapter = new WorldAdapter(w);
+		assertEquals(-16, adapter.getNegativeLimit());
+		assertEquals(16, adapter.getPositiveLimit());
+	}
+}
@@ -0,0 +1,63 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class WorldRegistry_P5Test {
+
+	/* Equal worlds share their id and different worlds have different ids */
+	@Test
+	public void testIds() {
+		World a = new World(3, 10, "A", "Steve");
+		World a2 = new World(3, 10, "A", "Alex");
+		World b = new World(3, 10, "B", "Steve");
+		World c = new World(4, 10, "A", "Steve");
+		World d = new World("A");
+		assertTrue(a.getId() > 0);
+		assertEquals(a.getId(), a2.getId());
+		assertEquals(a, a2);
+		assertEquals(a.hashCode(), a2.hashCode());
+		Set<Integer> ids = new HashSet<Integer>();
+		for (World w : new World[] { a, b, c, d }) ids.add(w.getId());
+		assertEquals(4, ids.size());
+		assertNotEquals(a, b);
+		assertNotEquals(a, c);
+		assertNotEquals(a, d);
+		assertEquals(d, new World("A"));
+	}
+
+	/* Locations compare and hash their worlds by id */
+	@Test
+	public void testLocations() {
+		World a = new World("Earth");
+		World a2 = new World("Earth");
+		World b = new World("Mars");
+		Location l = new Location(a, 1, 2, 3);
+		assertEquals(l, new Location(a2, 1, 2, 3));
+		assertEquals(l.hashCode(), new Location(a2, 1, 2, 3).hashCode());
+		assertNotEquals(l, new Location(b, 1, 2, 3));
+		assertNotEquals(l, new Location(null, 1, 2, 3));
+		assertEquals(new Location(null, 1, 2, 3), new Location(null, 1, 2, 3));
+		Set<Location> set = new HashSet<Location>();
+		set.add(l);
+		assertTrue(set.contains(new Location(a2, 1, 2, 3)));
+	}
+
+	/* The ids of the worlds that are no longer used are released */
+	@Test
+	public void testRelease() throws InterruptedException {
+		int before = WorldRegistry.size();
+		for (int i = 0; i < 100; i++) new World("Temporary " + i);
+		for (int i = 0; i < 50 && WorldRegistry.size() >= before + 100; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertTrue(WorldRegistry.size() < before + 100);
+	}
+}
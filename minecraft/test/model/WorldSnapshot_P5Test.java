@@ -0,0 +1,123 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.exceptions.BadLocationException;
+import model.script.ScriptWriter;
+
+public class WorldSnapshot_P5Test {
+
+	static final PrintStream QUIET = new PrintStream(new ByteArrayOutputStream());
+
+	/* It returns a batch of random commands that move, mine and place blocks */
+	static CommandBatch randomBatch(Random rng, int n) {
+		CommandBatch batch = new CommandBatch(n);
+		for (int i = 0; i < n; i++) {
+			int r = rng.nextInt(10);
+			if (r < 5) batch.move(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+			else if (r < 7) batch.orientate(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+			else if (r < 9) batch.useItem(1 + rng.nextInt(3));
+			else batch.selectItem(rng.nextInt(3));
+		}
+		return batch;
+	}
+
+	/* It returns the snapshot of a game */
+	static byte[] snapshot(BlockWorld game) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		WorldSnapshot.write(game, out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/* It restores a game from its snapshot */
+	static BlockWorld restore(byte[] snapshot) throws IOException {
+		return WorldSnapshot.read(new DataInputStream(new ByteArrayInputStream(snapshot)), QUIET, QUIET);
+	}
+
+	/* A restored game has the same state as the original one and evolves in the same way */
+	@Test
+	public void testRestore() throws IOException, BadLocationException {
+		BlockWorld game = BlockWorld.newInstance(QUIET, QUIET);
+		game.createWorld(5, 40, "Snap", "Steve", true);
+		Random rng = new Random(3);
+		for (int i = 0; i < 30; i++) game.executeBatch(game.getWorld().getPlayer(), randomBatch(rng, 10));
+		byte[] before = snapshot(game);
+		BlockWorld copy = restore(before);
+		assertEquals(Arrays.toString(before), Arrays.toString(snapshot(copy)));
+
+		World w = game.getWorld();
+		World c = copy.getWorld();
+		assertEquals(w.getName(), c.getName());
+		assertEquals(w.getSeed(), c.getSeed());
+		assertEquals(w.getSize(), c.getSize());
+		assertEquals(w.getPlayer().toString(), c.getPlayer().toString());
+		assertEquals(game.getItemsScore().getScoring(), copy.getItemsScore().getScoring(), 0);
+		assertEquals(game.getMiningScore().getScoring(), copy.getMiningScore().getScoring(), 0);
+		assertEquals(game.getMovementScore().getScoring(), copy.getMovementScore().getScoring(), 0);
+		Location l = w.getPlayer().getLocation();
+		assertEquals(w.getNeighbourhoodString(l), c.getNeighbourhoodString(new Location(c, l.getX(), l.getY(), l.getZ())));
+
+		for (int i = 0; i < 30; i++) {
+			CommandBatch batch = randomBatch(rng, 10);
+			assertEquals(Arrays.toString(game.executeBatch(w.getPlayer(), batch)), Arrays.toString(copy.executeBatch(c.getPlayer(), batch)));
+		}
+		assertEquals(Arrays.toString(snapshot(game)), Arrays.toString(snapshot(copy)));
+	}
+
+	/* The snapshot of a lazy world does not depend on the order in which its tiles were generated */
+	@Test
+	public void testGeneration() throws IOException, BadLocationException {
+		BlockWorld lazy = BlockWorld.newInstance(QUIET, QUIET);
+		lazy.createWorld(9, 40, "W", "P", true);
+		BlockWorld touched = BlockWorld.newInstance(QUIET, QUIET);
+		World w = touched.createWorld(9, 40, "W", "P", true);
+		WorldBounds b = w.getBounds();
+		w.getHighestLocationAt(new Location(w, b.getMaxX(), 0, b.getMaxZ()));
+		w.getHighestLocationAt(new Location(w, b.getMinX(), 0, b.getMaxZ()));
+		assertEquals(Arrays.toString(snapshot(lazy)), Arrays.toString(snapshot(touched)));
+		assertNull(restore(snapshot(lazy)).getMovementScore().getPreviousLocation());
+	}
+
+	/* A snapshot that is not complete or has wrong data can not be read */
+	@Test
+	public void testWrongSnapshot() throws IOException {
+		BlockWorld game = BlockWorld.newInstance(QUIET, QUIET);
+		game.createWorld(1, 16, "W", "P", true);
+		byte[] b = snapshot(game);
+		try {
+			restore(Arrays.copyOf(b, b.length / 2));
+			fail("Partial snapshot read");
+		} catch (IOException e) {
+		}
+		b[0] = 'X';
+		try {
+			restore(b);
+			fail("Wrong snapshot read");
+		} catch (IOException e) {
+		}
+		ByteArrayOutputStream script = new ByteArrayOutputStream();
+		ScriptWriter writer = new ScriptWriter(script);
+		writer.writeHeader(1, 16, "P", "W");
+		writer.close();
+		try {
+			restore(script.toByteArray());
+			fail("Binary script read as a snapshot");
+		} catch (IOException e) {
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import model.entities.Creature;
+import model.exceptions.BadLocationException;
+
+public class World_P5Test {
+
+	static ForkJoinPool pool1, pool4;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		pool1 = new ForkJoinPool(1);
+		pool4 = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		pool1.shutdown();
+		pool4.shutdown();
+	}
+
+	/* Blocks, creatures and items of both worlds must be equal in every position */
+	private void assertSameWorld(World w1, World w2) throws BadLocationException {
+		assertSameWorld(w1, w2, true);
+	}
+
+	/* Blocks of both worlds, and creatures and items only if 'entities', must be equal in every position */
+	private void assertSameWorld(World w1, World w2, boolean entities) throws BadLocationException {
+		assertEquals(w1.getSize(), w2.getSize());
+		int size = w1.getSize();
+		int negative = (size % 2 == 0) ? -(size / 2 - 1) : -(size / 2);
+		for (int x = negative; x < negative + size; x++) {
+			for (int z = negative; z < negative + size; z++) {
+				for (int y = 0; y <= Location.UPPER_Y_VALUE; y++) {
+					Location l1 = new Location(w1, x, y, z);
+					Location l2 = new Location(w2, x, y, z);
+					assertEquals("Block at "+l1, w1.getBlockAt(l1), w2.getBlockAt(l2));
+					if (!entities) continue;
+					assertEquals("Items at "+l1, w1.getItemsAt(l1), w2.getItemsAt(l2));
+					Creature c1 = w1.getCreatureAt(l1);
+					Creature c2 = w2.getCreatureAt(l2);
+					if (c1 == null || c2 == null) assertEquals("Creature at "+l1, c1, c2);
+					else {
+						assertEquals("Creature at "+l1, c1.getClass(), c2.getClass());
+						assertEquals("Creature at "+l1, c1.getHealth(), c2.getHealth(), 0.0);
+					}
+				}
+			}
+		}
+		Location p1 = w1.getPlayer().getLocation();
+		Location p2 = w2.getPlayer().getLocation();
+		assertEquals(p1.getX(), p2.getX(), 0.0);
+		assertEquals(p1.getY(), p2.getY(), 0.0);
+		assertEquals(p1.getZ(), p2.getZ(), 0.0);
+	}
+
+	/* The same seed and size generate the same world with any number of threads */
+	@Test
+	public void testParallelGenerationIsDeterministic() throws BadLocationException {
+		World w1 = new World(7, 50, "W1", "Steve", pool1);
+		World w4 = new World(7, 50, "W4", "Steve", pool4);
+		assertSameWorld(w1, w4);
+	}
+
+	/* Sizes that are not multiple of the tile size, including worlds smaller than a tile */
+	@Test
+	public void testParallelGenerationOddSizes() throws BadLocationException {
+		assertSameWorld(new World(42, 33, "W1", "Steve", pool1), new World(42, 33, "W4", "Steve", pool4));
+		assertSameWorld(new World(5, 10, "W1", "Steve", pool1), new World(5, 10, "W4", "Steve", pool4));
+	}
+
+	/* A parallel world is a complete world: bedrock at the bottom and a player on the surface */
+	@Test
+	public void testParallelWorldIsComplete() throws BadLocationException {
+		World w = new World(123, 40, "W", "Steve", pool4);
+		Location bottom = new Location(w, 0, 0, 0);
+		assertNotNull(w.getBlockAt(bottom));
+		assertEquals(Material.BEDROCK, w.getBlockAt(bottom).getType());
+		assertEquals("Steve", w.getPlayer().getName());
+		assertNull(w.getCreatureAt(w.getPlayer().getLocation()));
+		assertNull(w.getItemsAt(w.getPlayer().getLocation()));
+	}
+
+	/* A lazy world is equal to the world generated in parallel */
+	@Test
+	public void testLazyEqualsParallel() throws BadLocationException {
+		assertSameWorld(new World(7, 50, "L", "Steve", true), new World(7, 50, "P", "Steve", pool4));
+		assertSameWorld(new World(42, 33, "L", "Steve", true), new World(42, 33, "P", "Steve", pool1));
+	}
+
+	/* The order in which the tiles of a lazy world are used does not change them */
+	@Test
+	public void testLazyOrderDoesNotMatter() throws BadLocationException {
+		World w1 = new World(9, 100, "L1", "Steve", true);
+		World w2 = new World(9, 100, "L2", "Steve", true);
+		w2.getBlockAt(new Location(w2, 50, 0, 50));
+		w2.getBlockAt(new Location(w2, -49, 0, 50));
+		w2.getBlockAt(new Location(w2, 20, 0, -30));
+		assertSameWorld(w1, w2);
+	}
+
+	/* Only the used part of a big lazy world is generated */
+	@Test
+	public void testLazyBigWorld() throws BadLocationException {
+		World w = new World(3, 1000, "Big", "Steve", true);
+		assertEquals("Steve", w.getPlayer().getName());
+		assertNull(w.getCreatureAt(w.getPlayer().getLocation()));
+		Location corner = new Location(w, 500, 0, -499);
+		assertEquals(Material.BEDROCK, w.getBlockAt(corner).getType());
+		Location top = w.getHighestLocationAt(new Location(w, -499, 0, 500));
+		assertNotNull(w.getBlockAt(top));
+	}
+
+	/* getMaterialAt and getSharedBlockAt read the stored block, getBlockAt returns a copy of it */
+	@Test
+	public void testSharedReads() throws Exception {
+		World w = new World(5, 10, "W", "Steve");
+		Location bottom = new Location(w, 0, 0, 0);
+		assertEquals(Material.BEDROCK, w.getMaterialAt(bottom));
+		for (int x = -4; x <= 5; x++) {
+			Block b = w.getSharedBlockAt(new Location(w, x, 0, 5));
+			if (b.equals(w.getSharedBlockAt(bottom))) assertSame(w.getSharedBlockAt(bottom), b);
+		}
+		assertEquals(w.getSharedBlockAt(bottom), w.getBlockAt(bottom));
+		assertNotSame(w.getSharedBlockAt(bottom), w.getBlockAt(bottom));
+		Location air = new Location(w, 0, 200, 0);
+		assertNull(w.getMaterialAt(air));
+		assertNull(w.getSharedBlockAt(air));
+	}
+
+	/* A null pool keeps the sequential generation (the materials of the items depend on Material.rng, so only blocks are compared) */
+	@Test
+	public void testNullPoolIsSequential() throws BadLocationException {
+		assertSameWorld(new World(5, 10, "W1", "Steve"), new World(5, 10, "W2", "Steve", null), false);
+	}
+}
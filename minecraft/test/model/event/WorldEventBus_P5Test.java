@@ -0,0 +1,127 @@
+package model.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.BlockFactory;
+import model.ItemStack;
+import model.Location;
+import model.Material;
+import model.World;
+import model.entities.Animal;
+import model.event.WorldEvent.Type;
+
+public class WorldEventBus_P5Test {
+
+	/* Subscriber that keeps a copy of every event */
+	static class Recorder implements WorldEventListener {
+		List<String> events = new ArrayList<String>();
+
+		@Override
+		public void onEvent(WorldEvent e) {
+			events.add(e.getType() + " " + e.getX() + " " + e.getY() + " " + e.getZ() + " " + e.getMaterial() + " " + e.getAmount());
+		}
+	}
+
+	/* Every method of World that changes a location publishes its event, and nothing is published without subscribers */
+	@Test
+	public void testWorldEvents() throws Exception {
+		World w = new World(3, 32, "W", "P", true);
+		Location p = w.getPlayer().getLocation();
+		Location l = w.getHighestLocationAt(new Location(w, p.getX() + 3, 0, p.getZ()));
+		l.setY(l.getY() + 1);
+		int x = (int) l.getX(), y = (int) l.getY(), z = (int) l.getZ();
+		WorldEventBus bus = w.getEventBus();
+		assertTrue(bus == w.getEventBus());
+		assertFalse(bus.hasSubscribers());
+
+		w.addBlock(l, BlockFactory.createBlock(Material.DIRT));
+		assertEquals(-1, bus.getSequence());
+
+		Recorder r = new Recorder();
+		bus.subscribe(r);
+		assertTrue(bus.hasSubscribers());
+		w.destroyBlockAt(l);
+		w.addItems(l, new ItemStack(Material.APPLE, 3));
+		w.removeItemsAt(l);
+		w.addCreature(new Animal(new Location(w, x, y, z), 10));
+		w.killCreature(l);
+		w.removeItemsAt(l);
+		w.addBlock(l, BlockFactory.createBlock(Material.STONE));
+		String at = " " + x + " " + y + " " + z + " ";
+		assertEquals("[" + Type.BLOCK_DESTROYED + at + "DIRT 0, " + Type.ITEMS_ADDED + at + "APPLE 3, "
+				+ Type.ITEMS_REMOVED + at + "APPLE 3, " + Type.CREATURE_ADDED + at + "null 0, "
+				+ Type.CREATURE_KILLED + at + "null 0, " + Type.ITEMS_REMOVED + at + "BEEF 1, "
+				+ Type.BLOCK_ADDED + at + "STONE 0]", r.events.toString());
+		assertEquals(6, bus.getSequence());
+
+		bus.unsubscribe(r);
+		assertFalse(bus.hasSubscribers());
+		w.destroyBlockAt(l);
+		assertEquals(6, bus.getSequence());
+		assertEquals(7, r.events.size());
+	}
+
+	/* An asynchronous subscriber receives every event in order, also when it is slower than the publisher and the
+	 * ring wraps around */
+	@Test
+	public void testAsyncSubscriber() throws InterruptedException {
+		WorldEventBus bus = new WorldEventBus(null, 8);
+		final long[] received = { 0, 0 };
+		WorldEventBus.Subscription s = bus.subscribeAsync(new WorldEventListener() {
+			@Override
+			public void onEvent(WorldEvent e) {
+				if (e.getSequence() != received[0] || e.getX() != (int) received[0]) received[1]++;
+				received[0]++;
+				if (received[0] % 1000 == 0) Thread.yield();
+			}
+		});
+		Recorder sync = new Recorder();
+		bus.subscribe(sync);
+		for (int i = 0; i < 20000; i++) bus.publish(Type.BLOCK_ADDED, i, 1, 2, Material.SAND, 0);
+		assertTrue(s.await(bus.getSequence(), 10000));
+		assertEquals(20000, received[0]);
+		assertEquals(0, received[1]);
+		assertEquals(20000, sync.events.size());
+
+		for (int i = 20000; i < 20100; i++) bus.publish(Type.BLOCK_ADDED, i, 1, 2, Material.SAND, 0);
+		s.close();
+		assertEquals(bus.getSequence(), s.getSequence());
+		assertEquals(20100, received[0]);
+		assertNull(s.getFailure());
+		bus.unsubscribe(sync);
+		assertFalse(bus.hasSubscribers());
+	}
+
+	/* An exception of an asynchronous subscriber is kept and the next events are still delivered */
+	@Test
+	public void testFailure() throws InterruptedException {
+		WorldEventBus bus = new WorldEventBus(null, 4);
+		final int[] received = { 0 };
+		WorldEventBus.Subscription s = bus.subscribeAsync(new WorldEventListener() {
+			@Override
+			public void onEvent(WorldEvent e) {
+				received[0]++;
+				if (e.getSequence() == 1) throw new IllegalStateException("Wrong event");
+			}
+		});
+		for (int i = 0; i < 10; i++) bus.publish(Type.ITEMS_ADDED, 0, 0, 0, Material.APPLE, 1);
+		assertTrue(s.await(9, 10000));
+		s.close();
+		assertEquals(10, received[0]);
+		assertEquals("Wrong event", s.getFailure().getMessage());
+		try {
+			new WorldEventBus(null, 12);
+			fail("Capacity not a power of 2");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
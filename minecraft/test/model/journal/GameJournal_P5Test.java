@@ -0,0 +1,149 @@
+package model.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.BlockWorld;
+import model.CommandBatch;
+import model.WorldSnapshot;
+
+public class GameJournal_P5Test {
+
+	static final PrintStream QUIET = new PrintStream(new ByteArrayOutputStream());
+
+	Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("journal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path p : files) Files.delete(p);
+		}
+		Files.delete(dir);
+	}
+
+	/* It returns a batch of random commands, with a "show" from time to time */
+	static CommandBatch randomBatch(Random rng, int n) {
+		CommandBatch batch = new CommandBatch(n);
+		for (int i = 0; i < n; i++) {
+			int r = rng.nextInt(20);
+			if (r < 10) batch.move(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+			else if (r < 14) batch.orientate(rng.nextInt(3) - 1, rng.nextInt(3) - 1, rng.nextInt(3) - 1);
+			else if (r < 18) batch.useItem(1 + rng.nextInt(3));
+			else if (r < 19) batch.selectItem(rng.nextInt(3));
+			else batch.show();
+		}
+		return batch;
+	}
+
+	/* It returns the snapshot of a game */
+	static String snapshot(BlockWorld game) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		WorldSnapshot.write(game, out);
+		out.flush();
+		return Arrays.toString(bytes.toByteArray());
+	}
+
+	/* After a crash that cuts the last command, the recovered game is equal to the one that was being played */
+	@Test
+	public void testRecover() throws IOException {
+		Random rng = new Random(11);
+		GameJournal journal = GameJournal.create(dir, 4, 40, "World", "Steve", 100, QUIET, QUIET);
+		for (int i = 0; i < 60; i++) journal.execute(randomBatch(rng, 7));
+		long commands = journal.getCommands();
+		assertTrue(journal.getSnapshotCommands() > 0);
+		assertTrue(commands - journal.getSnapshotCommands() < 100);
+		String played = snapshot(journal.getGame());
+		journal.close();
+
+		Path file = dir.resolve(GameJournal.JOURNAL);
+		long size = Files.size(file);
+		Files.write(file, new byte[] { CommandBatch.MOVE, 2 }, StandardOpenOption.APPEND);
+		GameJournal recovered = GameJournal.recover(dir, 100, QUIET, QUIET);
+		assertEquals(commands, recovered.getCommands());
+		assertEquals(size, Files.size(file));
+		assertEquals(played, snapshot(recovered.getGame()));
+
+		BlockWorld same = GameJournal.recover(dir, 100, QUIET, QUIET).getGame();
+		for (int i = 0; i < 40; i++) {
+			CommandBatch batch = randomBatch(rng, 7);
+			assertEquals(Arrays.toString(same.executeBatch(same.getWorld().getPlayer(), batch)), Arrays.toString(recovered.execute(batch)));
+		}
+		recovered.close();
+		assertEquals(snapshot(same), snapshot(GameJournal.recover(dir, 0, QUIET, QUIET).getGame()));
+	}
+
+	/* The inventory of a recovered game still merges the items added if the played one did */
+	@Test
+	public void testRecoverAutoMerge() throws IOException {
+		Random rng = new Random(5);
+		GameJournal journal = GameJournal.create(dir, 4, 40, "World", "Steve", 50, QUIET, QUIET);
+		journal.getGame().getWorld().getPlayer().setInventoryAutoMerge(true);
+		journal.snapshot();
+		for (int i = 0; i < 60; i++) journal.execute(randomBatch(rng, 7));
+		String played = snapshot(journal.getGame());
+		journal.close();
+
+		GameJournal recovered = GameJournal.recover(dir, 50, QUIET, QUIET);
+		assertTrue(recovered.getGame().getWorld().getPlayer().getInventoryView().isAutoMerge());
+		assertEquals(played, snapshot(recovered.getGame()));
+		BlockWorld same = GameJournal.recover(dir, 50, QUIET, QUIET).getGame();
+		for (int i = 0; i < 40; i++) {
+			CommandBatch batch = randomBatch(rng, 7);
+			assertEquals(Arrays.toString(same.executeBatch(same.getWorld().getPlayer(), batch)), Arrays.toString(recovered.execute(batch)));
+		}
+		recovered.close();
+		assertEquals(snapshot(same), snapshot(GameJournal.recover(dir, 0, QUIET, QUIET).getGame()));
+	}
+
+	/* Only the latest snapshot is kept, and the games are not created over other games */
+	@Test
+	public void testFiles() throws IOException {
+		try {
+			GameJournal.recover(dir, 10, QUIET, QUIET);
+			fail("Recovered a missing game");
+		} catch (NoSuchFileException e) {
+		}
+		GameJournal journal = GameJournal.create(dir, 1, 16, "W", "P", 0, QUIET, QUIET);
+		journal.execute(new CommandBatch().move(1, 0, 0).show().move(-1, 0, 0));
+		assertEquals(2, journal.getCommands());
+		assertEquals(0, journal.getSnapshotCommands());
+		journal.snapshot();
+		journal.sync();
+		journal.close();
+		assertTrue(Files.exists(dir.resolve("snapshot-2")));
+		assertTrue(!Files.exists(dir.resolve("snapshot-0")));
+		try {
+			GameJournal.create(dir, 1, 16, "W", "P", 0, QUIET, QUIET);
+			fail("Created a game over another one");
+		} catch (FileAlreadyExistsException e) {
+		}
+		GameJournal recovered = GameJournal.recover(dir, 0, QUIET, QUIET);
+		assertEquals(2, recovered.getCommands());
+		assertEquals(2, recovered.getSnapshotCommands());
+		recovered.close();
+	}
+}
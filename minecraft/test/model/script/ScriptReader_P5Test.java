@@ -0,0 +1,178 @@
+package model.script;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.BlockWorld;
+import model.CommandBatch;
+import model.Material;
+
+public class ScriptReader_P5Test {
+
+	static final String SCRIPT = "5 75 Paul  Dangerous World\r\n"
+			+ "move 1 0 -1\n  orientate\t0 1 0\nfly 1 2 3\nuseItem 3 show\nselectItem\n2\n\nmove -1 +1 0";
+
+	PrintStream stdout;
+	ByteArrayOutputStream output;
+
+	@Before
+	public void setUp() {
+		stdout = System.out;
+		output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output));
+	}
+
+	@After
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	/* Channel that returns a single byte in every read */
+	private static ReadableByteChannel slowChannel(byte[] data) {
+		final ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(data));
+		return new ReadableByteChannel() {
+			@Override
+			public boolean isOpen() {
+				return in.isOpen();
+			}
+
+			@Override
+			public void close() throws IOException {
+				in.close();
+			}
+
+			@Override
+			public int read(ByteBuffer dst) throws IOException {
+				if (!dst.hasRemaining()) return 0;
+				ByteBuffer one = ByteBuffer.allocate(1);
+				int n = in.read(one);
+				if (n > 0) dst.put(one.get(0));
+				return n;
+			}
+		};
+	}
+
+	/* It reads all the commands of a script into a batch */
+	private static CommandBatch readAll(ScriptReader in) throws IOException {
+		in.readHeader();
+		CommandBatch batch = new CommandBatch();
+		while (in.readBatch(batch, 2) > 0);
+		return batch;
+	}
+
+	/* The header and the commands are read as Scanner read them, skipping the unknown commands */
+	@Test
+	public void testText() throws IOException {
+		String expected = "move 1 0 -1\norientate 0 1 0\nuseItem 3\nshow\nselectItem 2\nmove -1 1 0\n";
+		byte[] data = SCRIPT.getBytes(StandardCharsets.UTF_8);
+		for (ScriptReader in : new ScriptReader[] { new ScriptReader(data), new ScriptReader(slowChannel(data)) }) {
+			CommandBatch batch = readAll(in);
+			assertFalse(in.isBinary());
+			assertEquals(5L, in.getSeed());
+			assertEquals(75, in.getSize());
+			assertEquals("Paul", in.getPlayerName());
+			assertEquals("  Dangerous World", in.getWorldName());
+			assertEquals(expected, batch.toString());
+			assertFalse(in.next());
+			assertEquals(-1, in.getOperation());
+		}
+	}
+
+	/* Wrong numbers and missing arguments throw the exceptions of Scanner */
+	@Test
+	public void testErrors() throws IOException {
+		ScriptReader in = new ScriptReader("1 10 A W\nmove 1 x 0\n".getBytes(StandardCharsets.UTF_8));
+		in.readHeader();
+		try {
+			in.next();
+			assertTrue(false);
+		} catch (InputMismatchException e) {
+		}
+		in = new ScriptReader("1 10 A W\nuseItem".getBytes(StandardCharsets.UTF_8));
+		in.readHeader();
+		try {
+			in.next();
+			assertTrue(false);
+		} catch (NoSuchElementException e) {
+		}
+		in = new ScriptReader("1 99999999999 A W\n".getBytes(StandardCharsets.UTF_8));
+		try {
+			in.readHeader();
+			assertTrue(false);
+		} catch (InputMismatchException e) {
+		}
+	}
+
+	/* A script compiled to the binary format has the same header and commands */
+	@Test
+	public void testBinary() throws IOException {
+		ByteArrayOutputStream bin = new ByteArrayOutputStream();
+		byte[] data = SCRIPT.getBytes(StandardCharsets.UTF_8);
+		assertEquals(6, ScriptWriter.compile(new ScriptReader(data), bin));
+		String text = readAll(new ScriptReader(data)).toString();
+		for (ScriptReader in : new ScriptReader[] { new ScriptReader(bin.toByteArray()), new ScriptReader(slowChannel(bin.toByteArray())) }) {
+			assertEquals(text, readAll(in).toString());
+			assertTrue(in.isBinary());
+			assertEquals(5L, in.getSeed());
+			assertEquals("Paul", in.getPlayerName());
+			assertEquals("  Dangerous World", in.getWorldName());
+		}
+
+		bin.reset();
+		ScriptWriter w = new ScriptWriter(bin);
+		w.writeHeader(-1L << 40, 3, "Ñandú", "");
+		w.write(new CommandBatch().move(-1, 1, 0).useItem(Integer.MAX_VALUE).selectItem(Integer.MIN_VALUE).show());
+		w.close();
+		byte[] b = bin.toByteArray();
+		assertEquals(4 + 8 + 4 + 2 + 7 + 2 + 4 + 6 + 6 + 1, b.length);
+		ScriptReader in = new ScriptReader(b);
+		CommandBatch batch = readAll(in);
+		assertEquals(-1L << 40, in.getSeed());
+		assertEquals("Ñandú", in.getPlayerName());
+		assertEquals("", in.getWorldName());
+		assertEquals("move -1 1 0\nuseItem 2147483647\nselectItem -2147483648\nshow\n", batch.toString());
+	}
+
+	/* Playing a script compiled to the binary format prints the same as playing the text one */
+	@Test
+	public void testPlayFileBinary() throws IOException {
+		BlockWorld game = BlockWorld.getInstance();
+		Material.setRandomSeed(1L);
+		game.playFile("test/files/DangerousPlanet1.input");
+		System.out.flush();
+		String text = output.toString();
+		output.reset();
+
+		File f = File.createTempFile("script", ".bws");
+		f.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(f);
+				ScriptReader in = ScriptReader.open(new File("test/files/DangerousPlanet1.input"))) {
+			assertTrue(ScriptWriter.compile(in, out) > 0);
+		}
+		assertTrue(f.length() < Files.size(new File("test/files/DangerousPlanet1.input").toPath()));
+		Material.setRandomSeed(1L);
+		game.playFile(f.getPath());
+		System.out.flush();
+		assertArrayEquals(text.getBytes(), output.toByteArray());
+	}
+}
@@ -0,0 +1,139 @@
+package model.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.BlockWorld;
+import model.CommandBatch;
+
+public class SessionManager_P5Test {
+
+	static final int SESSIONS = 200;
+	static final int SIZE = 32;
+
+	SessionManager manager;
+
+	@Before
+	public void setUp() {
+		manager = new SessionManager(4);
+	}
+
+	@After
+	public void tearDown() {
+		manager.close();
+	}
+
+	/* Random commands of the game number i */
+	private static CommandBatch randomBatch(int i) {
+		Random r = new Random(i);
+		CommandBatch batch = new CommandBatch();
+		for (int n = 0; n < 50; n++) {
+			if (r.nextInt(5) == 0) batch.orientate(r.nextInt(3) - 1, r.nextInt(3) - 1, r.nextInt(3) - 1);
+			else batch.move(r.nextInt(3) - 1, r.nextInt(3) - 1, r.nextInt(3) - 1);
+			if (r.nextInt(10) == 0) batch.useItem(1 + r.nextInt(3));
+		}
+		return batch;
+	}
+
+	/* Concurrent sessions give the same results as the same games played one after another */
+	@Test
+	public void testIndependentSessions() throws InterruptedException, ExecutionException {
+		List<GameSession> sessions = new ArrayList<GameSession>();
+		List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+		for (int i = 0; i < SESSIONS; i++) {
+			GameSession s = manager.open(i, SIZE, "World " + i, "Player " + i, new PrintStream(new ByteArrayOutputStream()));
+			sessions.add(s);
+			results.add(s.submit(randomBatch(i)));
+		}
+		assertEquals(SESSIONS, manager.size());
+		for (int i = 0; i < SESSIONS; i++) {
+			GameSession s = sessions.get(i);
+			byte[] status = results.get(i).get();
+			BlockWorld game = BlockWorld.newInstance(new PrintStream(new ByteArrayOutputStream()), null);
+			game.createWorld(i, SIZE, "World " + i, "Player " + i, true);
+			assertEquals("Game " + i, Arrays.toString(game.executeBatch(game.getWorld().getPlayer(), randomBatch(i))),
+					Arrays.toString(status));
+			assertEquals("Game " + i, game.getWorld().getPlayer().toString(), s.getPlayer().toString());
+			assertEquals("Game " + i, game.getMovementScore().getScoring(), s.getGame().getMovementScore().getScoring(), 0.0);
+			assertEquals("Game " + i, game.getItemsScore().getScoring(), s.getGame().getItemsScore().getScoring(), 0.0);
+			assertSame(s, manager.get(s.getId()));
+		}
+	}
+
+	/* The tasks of a session are executed in order and never at the same time */
+	@Test
+	public void testSerialTasks() throws InterruptedException, ExecutionException {
+		GameSession s = manager.open(1, SIZE, "W", "P", null);
+		final List<Integer> order = new ArrayList<Integer>();
+		final AtomicInteger running = new AtomicInteger();
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 500; i++) {
+			final int n = i;
+			results.add(s.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					if (running.incrementAndGet() != 1) throw new IllegalStateException();
+					order.add(n);
+					running.decrementAndGet();
+					return n;
+				}
+			}));
+		}
+		for (int i = 0; i < 500; i++) assertEquals(i, results.get(i).get().intValue());
+		for (int i = 0; i < 500; i++) assertEquals(i, order.get(i).intValue());
+	}
+
+	/* The information of the player is printed to the stream of the session */
+	@Test
+	public void testOutput() throws InterruptedException, ExecutionException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GameSession s = manager.open(3, SIZE, "Mine", "Steve", new PrintStream(out, true));
+		assertArrayEquals(new byte[] { CommandBatch.OK }, s.submit(new CommandBatch().show()).get());
+		assertTrue(out.toString().contains("Steve"));
+		assertTrue(out.toString().contains("Scores: [items: "));
+	}
+
+	/* Closed sessions are removed and do not accept tasks */
+	@Test
+	public void testClose() throws InterruptedException, ExecutionException {
+		GameSession s = manager.open(2, SIZE, "W", "P", null);
+		Future<byte[]> pending = s.submit(new CommandBatch().orientate(1, 0, 0));
+		assertTrue(manager.close(s.getId()));
+		assertFalse(manager.close(s.getId()));
+		assertNull(manager.get(s.getId()));
+		assertTrue(s.isClosed());
+		assertArrayEquals(new byte[] { CommandBatch.OK }, pending.get());
+		try {
+			s.submit(new CommandBatch());
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+		}
+		manager.close();
+		assertEquals(0, manager.size());
+		try {
+			manager.open(2, SIZE, "W", "P", null);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package model.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.BlockWorld;
+import model.CommandBatch;
+
+public class SessionServer_P5Test {
+
+	SessionManager manager;
+	SessionServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		manager = new SessionManager(2);
+		server = new SessionServer(manager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+		manager.close();
+	}
+
+	/* Client of the server */
+	static class Client implements AutoCloseable {
+		Socket socket;
+		OutputStream out;
+		BufferedReader in;
+
+		Client(int port) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setSoTimeout(10000);
+			out = socket.getOutputStream();
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		}
+
+		void send(String s) throws IOException {
+			out.write(s.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	/* It returns the line of the status codes of a batch executed in a game */
+	private static String status(BlockWorld game, CommandBatch batch) {
+		StringBuilder sb = new StringBuilder("status");
+		for (byte b : game.executeBatch(game.getWorld().getPlayer(), batch)) sb.append(' ').append(b);
+		return sb.toString();
+	}
+
+	/* The header opens a session and every group of complete lines is answered with its status codes */
+	@Test
+	public void testCommands() throws IOException {
+		BlockWorld game = BlockWorld.newInstance(new PrintStream(new ByteArrayOutputStream()), null);
+		game.createWorld(7, 32, "W", "P", true);
+		try (Client c = new Client(server.getPort())) {
+			c.send("7 32 P W\nmove 1 0 0\n");
+			String session = c.in.readLine();
+			assertTrue(session, session.startsWith("session "));
+			assertTrue(manager.get(Integer.parseInt(session.substring(8))) != null);
+			assertEquals(status(game, new CommandBatch().move(1, 0, 0)), c.in.readLine());
+			c.send("orientate 0 0 1\nfly 1 2 3\nmove 0 0 1\nmove 0 0");
+			assertEquals(status(game, new CommandBatch().orientate(0, 0, 1).move(0, 0, 1)), c.in.readLine());
+			c.send(" -1\nselectItem 9\n");
+			assertEquals(status(game, new CommandBatch().move(0, 0, -1).selectItem(9)), c.in.readLine());
+			assertTrue(status(game, new CommandBatch().selectItem(9)).endsWith(" " + CommandBatch.BAD_INVENTORY_POSITION));
+			c.send("show\n");
+			String info = c.in.readLine();
+			assertTrue(info, info.contains("P"));
+			String line;
+			while (!(line = c.in.readLine()).startsWith("status"));
+			assertEquals("status 0", line);
+		}
+	}
+
+	/* A wrong header or argument is answered with an error and closes the connection and its session */
+	@Test
+	public void testErrors() throws IOException, InterruptedException {
+		try (Client c = new Client(server.getPort())) {
+			c.send("seed 32 P W\n");
+			assertTrue(c.in.readLine().startsWith("error"));
+			assertNull(c.in.readLine());
+		}
+		try (Client c = new Client(server.getPort())) {
+			c.send("1 32 P W\nmove 1 x 0\n");
+			String session = c.in.readLine();
+			assertTrue(c.in.readLine().startsWith("error"));
+			assertNull(c.in.readLine());
+			int id = Integer.parseInt(session.substring(8));
+			for (int i = 0; i < 100 && manager.get(id) != null; i++) Thread.sleep(10);
+			assertNull(manager.get(id));
+		}
+	}
+
+	/* The sessions are opened by the threads of the manager, so the server answers other connections while they wait */
+	@Test
+	public void testOpenDoesNotBlock() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 2; i++) {
+			manager.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws InterruptedException {
+					release.await();
+					return null;
+				}
+			});
+		}
+		try (Client waiting = new Client(server.getPort()); Client wrong = new Client(server.getPort())) {
+			waiting.send("3 16 P W\nmove 1 0 0\n");
+			wrong.send("seed 16 P W\n");
+			assertTrue(wrong.in.readLine().startsWith("error"));
+			assertEquals(0, manager.size());
+			release.countDown();
+			assertTrue(waiting.in.readLine().startsWith("session "));
+			assertTrue(waiting.in.readLine().startsWith("status "));
+			assertEquals(1, manager.size());
+		}
+	}
+
+	/* Many clients play at the same time */
+	@Test
+	public void testManyClients() throws IOException {
+		Client[] clients = new Client[50];
+		for (int i = 0; i < clients.length; i++) {
+			clients[i] = new Client(server.getPort());
+			clients[i].send(i + " 16 P W\n");
+		}
+		for (int i = 0; i < clients.length; i++) assertTrue(clients[i].in.readLine().startsWith("session "));
+		for (int step = 0; step < 5; step++) {
+			for (Client c : clients) c.send("move 1 0 0\nmove -1 0 0\n");
+			for (Client c : clients) assertTrue(c.in.readLine().startsWith("status "));
+		}
+		assertEquals(clients.length, manager.size());
+		for (Client c : clients) c.close();
+	}
+}
@@ -0,0 +1,170 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Block;
+import model.BlockFactory;
+import model.Material;
+import model.SolidBlock;
+
+public class BlockStorage_P5Test {
+
+	BlockStorage storage10, storage51;
+	Block stone, stoneDrops, water;
+
+	@Before
+	public void setUp() throws Exception {
+		storage10 = new BlockStorage(10);
+		storage51 = new BlockStorage(51);
+		stone = BlockFactory.createBlock(Material.STONE);
+		stoneDrops = BlockFactory.createBlock(Material.STONE);
+		((SolidBlock)stoneDrops).setDrops(Material.STONE, 1);
+		water = BlockFactory.createBlock(Material.WATER);
+	}
+
+	/* Limits of the world: a size 10 world goes from -4 to 5, a size 51 world from -25 to 25 */
+	@Test
+	public void testInBounds() {
+		assertTrue(storage10.inBounds(-4, 0, -4));
+		assertTrue(storage10.inBounds(5, 255, 5));
+		assertFalse(storage10.inBounds(-5, 0, 0));
+		assertFalse(storage10.inBounds(6, 0, 0));
+		assertFalse(storage10.inBounds(0, 256, 0));
+		assertFalse(storage10.inBounds(0, -1, 0));
+		assertTrue(storage51.inBounds(-25, 63, 25));
+		assertFalse(storage51.inBounds(26, 63, 25));
+	}
+
+	/* put, get, contains and remove in different sections */
+	@Test
+	public void testPutGetRemove() {
+		assertNull(storage51.get(0, 63, 0));
+		assertNull(storage51.put(0, 63, 0, stone));
+		assertNull(storage51.put(-25, 0, 25, water));
+		assertNull(storage51.put(25, 255, -25, stoneDrops));
+		assertEquals(3, storage51.size());
+		assertEquals(stone, storage51.get(0, 63, 0));
+		assertEquals(water, storage51.get(-25, 0, 25));
+		assertEquals(stoneDrops, storage51.get(25, 255, -25));
+		assertTrue(storage51.contains(0, 63, 0));
+		assertFalse(storage51.contains(0, 64, 0));
+		assertNull(storage51.get(100, 63, 0));
+
+		assertEquals(stone, storage51.put(0, 63, 0, water));
+		assertEquals(3, storage51.size());
+		assertEquals(water, storage51.remove(0, 63, 0));
+		assertNull(storage51.remove(0, 63, 0));
+		assertFalse(storage51.contains(0, 63, 0));
+		assertEquals(2, storage51.size());
+
+		storage51.clear();
+		assertEquals(0, storage51.size());
+		assertNull(storage51.get(-25, 0, 25));
+	}
+
+	/* replace only changes locations that already have a block */
+	@Test
+	public void testReplace() {
+		assertNull(storage10.replace(0, 10, 0, stone));
+		assertFalse(storage10.contains(0, 10, 0));
+		storage10.put(0, 10, 0, stone);
+		assertEquals(stone, storage10.replace(0, 10, 0, stoneDrops));
+		assertEquals(stoneDrops, storage10.get(0, 10, 0));
+		assertEquals(1, storage10.size());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testPutOutOfWorld() {
+		storage10.put(6, 10, 0, stone);
+	}
+
+	/* The storage keeps its own copy: changing the original block does not affect it */
+	@Test
+	public void testStoredCopy() throws Exception {
+		storage10.put(1, 1, 1, stone);
+		((SolidBlock)stone).setDrops(Material.STONE, 1);
+		assertNull(((SolidBlock)storage10.get(1, 1, 1)).getDrops());
+		Block copy = BlockStorage.copyOf(stoneDrops);
+		assertEquals(stoneDrops, copy);
+		assertNotSame(((SolidBlock)stoneDrops).getDrops(), ((SolidBlock)copy).getDrops());
+	}
+
+	/* The occupancy of the columns follows puts and removes */
+	@Test
+	public void testColumnOccupancy() {
+		assertEquals(-1, storage51.highest(3, -3));
+		storage51.put(3, 0, -3, stone);
+		storage51.put(3, 64, -3, stone);
+		storage51.put(3, 200, -3, water);
+		storage51.put(4, 255, -3, stone);
+		assertEquals(200, storage51.highest(3, -3));
+		assertEquals(255, storage51.highest(4, -3));
+		assertEquals(64, storage51.highestBelow(3, 200, -3));
+		assertEquals(64, storage51.highestBelow(3, 65, -3));
+		assertEquals(0, storage51.highestBelow(3, 64, -3));
+		assertEquals(-1, storage51.highestBelow(3, 0, -3));
+		storage51.remove(3, 200, -3);
+		assertEquals(64, storage51.highest(3, -3));
+		storage51.put(3, 64, -3, null);
+		assertEquals(0, storage51.highest(3, -3));
+		assertEquals(-1, storage51.highest(30, -3));
+		storage51.clear();
+		assertEquals(-1, storage51.highest(4, -3));
+	}
+
+	/* Equal blocks are stored as one shared instance in every section */
+	@Test
+	public void testSharedBlocks() throws Exception {
+		Block otherStone = BlockFactory.createBlock(Material.STONE);
+		assertSame(BlockStorage.shared(stone), BlockStorage.shared(otherStone));
+		assertNotSame(BlockStorage.shared(stone), BlockStorage.shared(stoneDrops));
+		assertEquals(stoneDrops, BlockStorage.shared(stoneDrops));
+		storage51.put(0, 0, 0, stone);
+		storage51.put(25, 255, 25, otherStone);
+		assertSame(storage51.get(0, 0, 0), storage51.get(25, 255, 25));
+		assertNotSame(stone, storage51.get(0, 0, 0));
+	}
+
+	/* The palette grows when a section holds many different blocks, and every cell keeps its value */
+	@Test
+	public void testPaletteGrowth() throws Exception {
+		ChunkSection section = new ChunkSection();
+		Material[] materials = { Material.BEDROCK, Material.CHEST, Material.SAND, Material.DIRT, Material.GRASS,
+				Material.STONE, Material.GRANITE, Material.OBSIDIAN, Material.LAVA, Material.WATER, Material.AIR };
+		for (int i = 0; i < ChunkSection.VOLUME; i++) {
+			section.set(i, BlockFactory.createBlock(materials[i % materials.length]));
+		}
+		assertEquals(ChunkSection.VOLUME, section.getBlockCount());
+		assertEquals(materials.length + 1, section.getPaletteSize());
+		assertEquals(4, section.getBitsPerEntry());
+		for (int i = 0; i < ChunkSection.VOLUME; i++) {
+			assertEquals(materials[i % materials.length], section.get(i).getType());
+		}
+		for (int i = 0; i < ChunkSection.VOLUME; i++) {
+			section.set(i, null);
+		}
+		assertTrue(section.isEmpty());
+	}
+
+	/* A full column of solid blocks uses far less memory than one object per block */
+	@Test
+	public void testBytesPerBlock() {
+		assertEquals(0.0, storage10.getBytesPerBlock(), 0.001);
+		for (int x = -4; x <= 5; x++)
+			for (int z = -4; z <= 5; z++)
+				for (int y = 0; y < 64; y++)
+					storage10.put(x, y, z, (y % 2 == 0) ? stone : stoneDrops);
+		assertEquals(6400, storage10.size());
+		assertNotNull(storage10.get(5, 63, 5));
+		assertTrue(storage10.getBytesPerBlock() < 8.0);
+	}
+}
@@ -0,0 +1,96 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Block;
+import model.BlockFactory;
+import model.Material;
+
+public class FloodFill_P5Test {
+
+	BlockStorage storage;
+	FloodFill flood;
+	Block stone, water;
+
+	@Before
+	public void setUp() throws Exception {
+		storage = new BlockStorage(20);
+		flood = new FloodFill(storage);
+		stone = BlockFactory.createBlock(Material.STONE);
+		water = BlockFactory.createBlock(Material.WATER);
+	}
+
+	/* Floor of stone at y=10 in the whole world (-9..10) */
+	private void floor() {
+		for (int x = -9; x <= 10; x++)
+			for (int z = -9; z <= 10; z++)
+				storage.put(x, 10, z, stone);
+	}
+
+	/* The liquid never goes up: only y=11 is filled above the floor */
+	@Test
+	public void testFillDoesNotGoUp() {
+		floor();
+		assertEquals(400, flood.fill(0, 11, 0, water, null));
+		for (int x = -9; x <= 10; x++) {
+			for (int z = -9; z <= 10; z++) {
+				assertEquals(water, storage.get(x, 11, z));
+				assertEquals(stone, storage.get(x, 10, z));
+				assertNull(storage.get(x, 12, z));
+			}
+		}
+		assertEquals(400, flood.getCellsFilled());
+		assertTrue(flood.getCellsPerSecond() > 0);
+	}
+
+	/* Diagonal moves downwards are allowed, so a hole in the floor drains the liquid to the bottom */
+	@Test
+	public void testFillThroughDiagonalHole() {
+		floor();
+		storage.remove(3, 10, 3);
+		int filled = flood.fill(-9, 11, -9, water, null);
+		assertEquals(400 + 1 + 20 * 20 * 10, filled);
+		assertEquals(water, storage.get(3, 10, 3));
+		assertEquals(water, storage.get(-9, 0, 10));
+	}
+
+	/* Occupied or out of the world starting cells fill nothing */
+	@Test
+	public void testFillNothing() {
+		floor();
+		assertEquals(0, flood.fill(0, 10, 0, water, null));
+		assertEquals(0, flood.fill(11, 11, 0, water, null));
+		assertEquals(0, flood.fill(0, 256, 0, water, null));
+		assertEquals(0, flood.getCellsFilled());
+	}
+
+	/* Entries of the cleared map in the filled cells are removed */
+	@Test
+	public void testFillClearsMap() {
+		floor();
+		LongObjectMap<String> items = new LongObjectMap<String>();
+		items.put(LocationKey.pack(5, 11, 5), "filled");
+		items.put(LocationKey.pack(5, 12, 5), "above");
+		items.put(LocationKey.pack(5, 9, 5), "below");
+		flood.fill(0, 11, 0, water, items);
+		assertFalse(items.containsKey(LocationKey.pack(5, 11, 5)));
+		assertTrue(items.containsKey(LocationKey.pack(5, 12, 5)));
+		assertTrue(items.containsKey(LocationKey.pack(5, 9, 5)));
+	}
+
+	/* A cavern of more than a million cells, filled from the top, does not overflow the stack */
+	@Test
+	public void testBigCavern() {
+		BlockStorage big = new BlockStorage(64);
+		FloodFill bigFlood = new FloodFill(big);
+		assertEquals(64 * 64 * 256, bigFlood.fill(0, 255, 0, water, null));
+		assertEquals(64 * 64 * 256, big.size());
+		assertEquals(0, bigFlood.fill(0, 255, 0, water, null));
+	}
+}
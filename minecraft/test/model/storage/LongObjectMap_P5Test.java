@@ -0,0 +1,85 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LongObjectMap_P5Test {
+
+	LongObjectMap<String> map;
+
+	@Before
+	public void setUp() throws Exception {
+		map = new LongObjectMap<String>();
+	}
+
+	/* pack/getX/getY/getZ are inverse operations, also for negative coordinates */
+	@Test
+	public void testLocationKey() {
+		int[][] coords = { {0,0,0}, {-1,0,-1}, {25,255,-25}, {-24,63,25}, {(1<<25)-1, 4095, -(1<<25)} };
+		for (int[] c : coords) {
+			long key = LocationKey.pack(c[0], c[1], c[2]);
+			assertEquals(c[0], LocationKey.getX(key));
+			assertEquals(c[1], LocationKey.getY(key));
+			assertEquals(c[2], LocationKey.getZ(key));
+		}
+		assertNotEquals(LocationKey.pack(1, 2, 3), LocationKey.pack(3, 2, 1));
+		assertNotEquals(LocationKey.pack(0, 1, 0), LocationKey.pack(0, 0, 1));
+	}
+
+	/* put, get, containsKey and remove of a few keys */
+	@Test
+	public void testPutGetRemove() {
+		long k1 = LocationKey.pack(0, 64, 0);
+		long k2 = LocationKey.pack(-3, 64, 2);
+		assertNull(map.get(k1));
+		assertNull(map.put(k1, "A"));
+		assertNull(map.put(k2, "B"));
+		assertEquals("A", map.put(k1, "C"));
+		assertEquals(2, map.size());
+		assertEquals("C", map.get(k1));
+		assertTrue(map.containsKey(k2));
+		assertEquals("B", map.remove(k2));
+		assertNull(map.remove(k2));
+		assertFalse(map.containsKey(k2));
+		assertEquals(1, map.size());
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(k1));
+	}
+
+	@Test(expected=NullPointerException.class)
+	public void testPutNull() {
+		map.put(1L, null);
+	}
+
+	/* Random operations give the same results as a HashMap, including growth and removals in the middle of probe sequences */
+	@Test
+	public void testSameAsHashMap() {
+		Map<Long, String> reference = new HashMap<Long, String>();
+		Random rng = new Random(7L);
+		for (int i = 0; i < 20000; i++) {
+			long key = LocationKey.pack(rng.nextInt(40) - 20, rng.nextInt(256), rng.nextInt(40) - 20);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(reference.remove(key), map.remove(key));
+			}
+			else {
+				String value = Integer.toString(i);
+				assertEquals(reference.put(key, value), map.put(key, value));
+			}
+			assertEquals(reference.size(), map.size());
+		}
+		for (Map.Entry<Long, String> e : reference.entrySet()) {
+			assertEquals(e.getValue(), map.get(e.getKey()));
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package model.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import model.Block;
+import model.BlockFactory;
+import model.Material;
+
+public class SpheroidCarver_P5Test {
+
+	BlockStorage storage, expected;
+	Block stone, granite;
+
+	@Before
+	public void setUp() throws Exception {
+		storage = new BlockStorage(40);
+		expected = new BlockStorage(40);
+		stone = BlockFactory.createBlock(Material.STONE);
+		granite = BlockFactory.createBlock(Material.GRANITE);
+		for (int x = -19; x <= 20; x++) {
+			for (int z = -19; z <= 20; z++) {
+				for (int y = 0; y < 70; y++) {
+					storage.put(x, y, z, stone);
+					expected.put(x, y, z, stone);
+				}
+			}
+		}
+	}
+
+	/* The original cell by cell loop of World.fillOblateSpheroid */
+	private void naive(double cx, double cy, double cz, double radius, Block b, int offset, int minX, int maxX, int minZ, int maxZ) {
+		for (double x = cx - radius; x < cx + radius; x += 1.0) {
+			for (double y = cy - radius; y < cy + radius; y += 1.0) {
+				for (double z = cz - radius; z < cz + radius; z += 1.0) {
+					double dx = x - cx;
+					double dy = y - cy;
+					double dz = z - cz;
+					if ((dx*dx + 2*dy*dy + dz*dz) < radius*radius) {
+						int bx = (int)Math.floor(x + offset);
+						int by = (int)Math.floor(y);
+						int bz = (int)Math.floor(z + offset);
+						if (bx < minX || bx >= maxX || bz < minZ || bz >= maxZ || !expected.inBounds(bx, by, bz)) continue;
+						if (b == null) expected.remove(bx, by, bz);
+						else expected.replace(bx, by, bz, b);
+					}
+				}
+			}
+		}
+	}
+
+	/* Both storages have the same blocks and the same highest blocks */
+	private void assertSameStorage() {
+		assertEquals(expected.size(), storage.size());
+		for (int x = -19; x <= 20; x++) {
+			for (int z = -19; z <= 20; z++) {
+				assertEquals(expected.highest(x, z), storage.highest(x, z));
+				for (int y = 0; y < 80; y++) {
+					assertEquals(x+","+y+","+z, expected.get(x, y, z), storage.get(x, y, z));
+				}
+			}
+		}
+	}
+
+	/* Random caves and veins, some of them crossing the limits of the world and of the columns */
+	@Test
+	public void testSameAsCellByCell() {
+		Random rng = new Random(17);
+		SpheroidCarver carver = new SpheroidCarver(storage, -19);
+		for (int i = 0; i < 200; i++) {
+			double cx = rng.nextDouble() * 46 - 3;
+			double cy = rng.nextDouble() * 80 - 5;
+			double cz = rng.nextDouble() * 46 - 3;
+			double radius = 0.5 + rng.nextDouble() * 7;
+			Block b = (i % 3 == 0) ? granite : null;
+			carver.carve(cx, cy, cz, radius, b, -15, 15, -19, 21);
+			naive(cx, cy, cz, radius, b, -19, -15, 15, -19, 21);
+		}
+		assertSameStorage();
+	}
+
+	/* A vein does not fill the empty cells of a cave */
+	@Test
+	public void testVeinOnlyReplaces() {
+		SpheroidCarver carver = new SpheroidCarver(storage, 0);
+		carver.carve(0.5, 30.5, 0.5, 5, null, -19, 21, -19, 21);
+		carver.carve(2.5, 30.5, 0.5, 5, granite, -19, 21, -19, 21);
+		assertNull(storage.get(0, 30, 0));
+		assertEquals(granite, storage.get(5, 30, 0));
+		naive(0.5, 30.5, 0.5, 5, null, 0, -19, 21, -19, 21);
+		naive(2.5, 30.5, 0.5, 5, granite, 0, -19, 21, -19, 21);
+		assertSameStorage();
+	}
+
+	/* Runs crossing sections, the top of the world and empty columns */
+	@Test
+	public void testRuns() {
+		storage.removeRun(0, 0, 10, 40);
+		assertEquals(9, storage.highestBelow(0, 41, 0));
+		assertEquals(69, storage.highest(0, 0));
+		storage.removeRun(0, 0, 41, 300);
+		assertEquals(9, storage.highest(0, 0));
+		storage.replaceRun(0, 0, -5, 20, granite);
+		assertEquals(granite, storage.get(0, 0, 0));
+		assertEquals(granite, storage.get(0, 9, 0));
+		assertNull(storage.get(0, 10, 0));
+		storage.removeRun(0, 0, 0, 255);
+		assertEquals(-1, storage.highest(0, 0));
+		storage.removeRun(0, 0, 0, 255);
+		storage.removeRun(30, 0, 0, 255);
+		assertEquals(40 * 40 * 70 - 70, storage.size());
+	}
+}